@@ -0,0 +1,35 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 内容寻址文件存储配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.blob-store")
+public class BlobStoreProperties {
+
+    /**
+     * 是否启用定时垃圾回收
+     */
+    private boolean gcEnabled = true;
+
+    /**
+     * 垃圾回收执行时间（默认每天 03:30）
+     */
+    private String gcCron = "0 30 3 * * *";
+
+    /**
+     * 引用数归零后保留的小时数
+     * 先上传、稍后才提交评价等引用记录的文件在宽限期内不会被回收
+     */
+    private int gcGraceHours = 24;
+
+    /**
+     * 每批处理的文件数
+     */
+    private int batchSize = 100;
+}
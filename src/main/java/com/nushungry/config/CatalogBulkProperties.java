@@ -0,0 +1,30 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 餐厅/摊位目录批量导入导出配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.catalog-bulk")
+public class CatalogBulkProperties {
+
+    /**
+     * 导入时每批处理的行数（一次自然键查询 + 一次 JDBC 批量写入）
+     */
+    private int batchSize = 500;
+
+    /**
+     * 导入结果中最多返回的错误行数，超出部分只计数
+     */
+    private int maxReportedErrors = 100;
+
+    /**
+     * 导出游标每次从数据库拉取的行数
+     * MySQL 需要连接参数 useCursorFetch=true 才会按此值分批读取
+     */
+    private int exportFetchSize = 1000;
+}
@@ -0,0 +1,64 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 文件异步删除配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.file-deletion")
+public class FileDeletionProperties {
+
+    /**
+     * 是否启用后台删除（关闭后任务只入库不处理）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每批领取的任务数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 轮询间隔（毫秒），用于处理重试和其他节点写入的任务
+     */
+    private long pollIntervalMs = 10000;
+
+    /**
+     * 最大尝试次数，超过后任务标记为失败
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * 首次重试的退避时间（毫秒），之后每次翻倍
+     */
+    private long initialBackoffMs = 30000;
+
+    /**
+     * 退避时间上限（毫秒）
+     */
+    private long maxBackoffMs = 3600000;
+
+    /**
+     * 领取超时（分钟），超时未完成的任务会被重新放回待删除队列
+     */
+    private long claimTimeoutMinutes = 10;
+
+    /**
+     * 是否启用定时孤儿文件扫描
+     */
+    private boolean orphanScanEnabled = true;
+
+    /**
+     * 孤儿文件扫描执行时间（默认每天 04:30）
+     */
+    private String orphanScanCron = "0 30 4 * * *";
+
+    /**
+     * 文件写入后保留的小时数，先上传、稍后才保存引用记录的文件在宽限期内不会被当作孤儿文件
+     */
+    private int orphanGraceHours = 24;
+}
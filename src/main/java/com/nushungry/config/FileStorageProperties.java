@@ -27,6 +27,21 @@ public class FileStorageProperties {
      */
     private String thumbnailDir = "thumbnails";
 
+    /**
+     * 头像存储目录
+     */
+    private String avatarDir = "avatars";
+
+    /**
+     * 待处理上传的临时目录
+     */
+    private String stagingDir = "tmp";
+
+    /**
+     * 按需缩放图片的缓存目录
+     */
+    private String renderCacheDir = "render-cache";
+
     /**
      * 最大文件大小（字节）默认10MB
      */
@@ -57,6 +72,51 @@ public class FileStorageProperties {
      */
     private boolean generateThumbnail = true;
 
+    /**
+     * 单张图片允许的最大像素数（按文件头中的宽高判断，超过则拒绝，防止解压炸弹）默认1亿像素
+     */
+    private long maxImagePixels = 100_000_000L;
+
+    /**
+     * 所有上传同时解码占用的像素内存上限（字节）默认256MB
+     */
+    private long maxDecodeMemoryBytes = 256L * 1024 * 1024;
+
+    /**
+     * 等待解码内存的最长时间（毫秒），超时返回 503
+     */
+    private long decodeWaitTimeoutMs = 5000;
+
+    /**
+     * 批量上传时同时处理的图片数（所有请求共享），0 表示使用 CPU 核数
+     */
+    private int uploadConcurrency = 0;
+
+    /**
+     * 等待处理的图片数上限，超过时该图片返回处理繁忙
+     */
+    private int uploadQueueCapacity = 100;
+
+    /**
+     * 上传流写入磁盘时的缓冲区大小（字节）
+     */
+    private int ingestBufferBytes = 64 * 1024;
+
+    /**
+     * 文件名为 UUID 或 SHA-256 的上传文件（内容不会变化）的缓存时间（秒），默认一年
+     */
+    private long immutableCacheSeconds = 365L * 24 * 60 * 60;
+
+    /**
+     * 其他上传文件的缓存时间（秒）
+     */
+    private long cacheSeconds = 3600;
+
+    /**
+     * 是否通过容器的 sendfile 直接从文件发送响应（容器不支持时使用 FileChannel.transferTo）
+     */
+    private boolean zeroCopy = true;
+
     /**
      * 获取完整的图片上传目录路径
      */
@@ -70,4 +130,25 @@ public class FileStorageProperties {
     public String getThumbnailUploadPath() {
         return uploadDir + "/" + thumbnailDir;
     }
+
+    /**
+     * 获取完整的头像上传目录路径
+     */
+    public String getAvatarUploadPath() {
+        return uploadDir + "/" + avatarDir;
+    }
+
+    /**
+     * 获取完整的临时目录路径
+     */
+    public String getStagingUploadPath() {
+        return uploadDir + "/" + stagingDir;
+    }
+
+    /**
+     * 获取完整的按需缩放缓存目录路径
+     */
+    public String getRenderCacheUploadPath() {
+        return uploadDir + "/" + renderCacheDir;
+    }
 }
@@ -0,0 +1,57 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片输出编码配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.image-encoding")
+public class ImageEncodingProperties {
+
+    /**
+     * 主格式，图片 URL 指向该格式的文件，必须是所有客户端都能解码的格式
+     */
+    private String primaryFormat = "jpeg";
+
+    /**
+     * 额外输出的格式（有对应编码器时写入与主文件同名的文件，按 Accept 协商返回）
+     */
+    private List<String> alternateFormats = new ArrayList<>(List.of("avif", "webp"));
+
+    /**
+     * 目标结构相似度（SSIM），选择达到该值的最低质量；0 表示不按 SSIM 选择
+     */
+    private double targetSsim = 0.95;
+
+    /**
+     * 每像素最多字节数，超过时继续降低质量；0 表示不限制
+     */
+    private double maxBytesPerPixel = 0.3;
+
+    /**
+     * 质量搜索下限
+     */
+    private float minQuality = 0.5f;
+
+    /**
+     * 质量搜索上限
+     */
+    private float maxQuality = 0.9f;
+
+    /**
+     * 每个条件的二分搜索次数
+     */
+    private int searchSteps = 5;
+
+    /**
+     * 每个输出最多试编码的次数（含最终结果），用完后使用已找到的质量
+     */
+    private int maxTrialEncodes = 6;
+}
@@ -0,0 +1,64 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片后台处理任务配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.image-processing")
+public class ImageProcessingProperties {
+
+    /**
+     * 是否启用后台处理（关闭后任务只入库不处理）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 处理线程数，0 表示使用 CPU 核数
+     */
+    private int workers = 0;
+
+    /**
+     * 生成的图片宽度，最小的一个作为 Image.thumbnailUrl
+     */
+    private List<Integer> variantWidths = new ArrayList<>(List.of(300, 800, 1600));
+
+    /**
+     * 轮询间隔（毫秒），用于处理重试和其他节点写入的任务
+     */
+    private long pollIntervalMs = 5000;
+
+    /**
+     * 最大尝试次数，超过后任务标记为失败
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 首次重试的退避时间（毫秒），之后每次翻倍
+     */
+    private long initialBackoffMs = 10000;
+
+    /**
+     * 退避时间上限（毫秒）
+     */
+    private long maxBackoffMs = 600000;
+
+    /**
+     * 领取超时（分钟），超时未完成的任务会被重新放回待处理队列
+     */
+    private long claimTimeoutMinutes = 10;
+
+    /**
+     * 实际使用的处理线程数
+     */
+    public int resolveWorkers() {
+        return workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,37 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按需缩放图片配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.image-render")
+public class ImageRenderProperties {
+
+    /**
+     * 允许请求的宽度（白名单之外的尺寸返回 400，防止任意尺寸占满缓存）
+     */
+    private List<Integer> allowedWidths = new ArrayList<>(List.of(150, 300, 480, 640, 800, 1080, 1600));
+
+    /**
+     * 允许请求的高度
+     */
+    private List<Integer> allowedHeights = new ArrayList<>(List.of(150, 300, 480, 640, 800, 1080, 1600));
+
+    /**
+     * 缓存目录的总大小上限（字节），超过后按最近最少使用淘汰，默认512MB
+     */
+    private long maxCacheBytes = 512L * 1024 * 1024;
+
+    /**
+     * 响应的缓存时间（秒）
+     */
+    private long cacheSeconds = 86400;
+}
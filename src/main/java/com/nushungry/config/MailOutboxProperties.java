@@ -0,0 +1,54 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 邮件发件箱（异步发送）配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.mail.outbox")
+public class MailOutboxProperties {
+
+    /**
+     * 是否启用后台发送（关闭后邮件只入库不发送）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 发送线程数（同时打开的SMTP连接数上限）
+     */
+    private int workers = 2;
+
+    /**
+     * 每批领取的邮件数，同一批邮件复用一个SMTP连接发送
+     */
+    private int batchSize = 20;
+
+    /**
+     * 轮询间隔（毫秒），用于处理重试和其他节点写入的邮件
+     */
+    private long pollIntervalMs = 5000;
+
+    /**
+     * 最大尝试次数，超过后移入死信表
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * 首次重试的退避时间（毫秒），之后每次翻倍
+     */
+    private long initialBackoffMs = 30000;
+
+    /**
+     * 退避时间上限（毫秒）
+     */
+    private long maxBackoffMs = 3600000;
+
+    /**
+     * 领取超时（分钟），超时未完成的邮件会被重新放回待发送队列
+     */
+    private long claimTimeoutMinutes = 10;
+}
@@ -0,0 +1,60 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 密码哈希配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.password-hashing")
+public class PasswordHashingProperties {
+
+    /**
+     * BCrypt 成本因子（4-31），为 0 时在启动时根据 targetLatencyMs 自动测定
+     */
+    private int strength = 10;
+
+    /**
+     * 自动测定时单次哈希的目标耗时（毫秒）
+     */
+    private long targetLatencyMs = 250;
+
+    /**
+     * 自动测定的成本因子下限
+     */
+    private int minStrength = 10;
+
+    /**
+     * 自动测定的成本因子上限
+     */
+    private int maxStrength = 14;
+
+    /**
+     * 哈希线程数，为 0 时使用CPU核数
+     */
+    private int threads = 0;
+
+    /**
+     * 等待队列长度，队列满时直接拒绝（503）
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 请求线程等待哈希结果的最长时间（毫秒），超时按繁忙处理
+     */
+    private long maxWaitMs = 5000;
+
+    /**
+     * 繁忙时返回的 Retry-After（秒）
+     */
+    private long retryAfterSeconds = 2;
+
+    /**
+     * 登录时若已存哈希的成本高于当前配置，是否也重新哈希（降低成本）
+     * 默认只在成本提高时重新哈希
+     */
+    private boolean allowDowngrade = false;
+}
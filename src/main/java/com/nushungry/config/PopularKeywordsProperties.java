@@ -0,0 +1,54 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 热门搜索关键词（内存统计）配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.search-history.popular")
+public class PopularKeywordsProperties {
+
+    /**
+     * 是否启用内存统计（关闭后每次查询都执行SQL聚合）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 时间桶长度（分钟），查询窗口按桶对齐
+     */
+    private int bucketMinutes = 60;
+
+    /**
+     * 内存中保留的最长窗口（小时），更长的窗口回退到SQL查询
+     */
+    private int maxWindowHours = 168;
+
+    /**
+     * 每个时间桶跟踪的高频关键词数量
+     */
+    private int topK = 200;
+
+    /**
+     * Count-Min Sketch 每行的计数器数量
+     */
+    private int sketchWidth = 1024;
+
+    /**
+     * Count-Min Sketch 的行数
+     */
+    private int sketchDepth = 4;
+
+    /**
+     * 同一窗口的排行结果缓存时间（毫秒）
+     */
+    private long cacheTtlMs = 1000;
+
+    /**
+     * 启动时是否从 search_history 表重建统计
+     */
+    private boolean rebuildOnStartup = true;
+}
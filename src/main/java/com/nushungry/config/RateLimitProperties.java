@@ -0,0 +1,54 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 接口限流配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * 是否启用限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 是否信任 X-Forwarded-For 头获取客户端IP
+     * 仅在应用部署于可信反向代理之后时开启，否则客户端可伪造该头绕过IP限流
+     */
+    private boolean trustForwardedFor = false;
+
+    /**
+     * 清理空闲令牌桶的间隔（毫秒）
+     */
+    private long sweepIntervalMs = 300000;
+
+    /**
+     * 按规则名覆盖注解上的容量和周期，例如 app.rate-limit.limits.login-ip.capacity=50
+     */
+    private Map<String, Limit> limits = new HashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Limit {
+
+        /**
+         * 桶容量，未配置时使用注解上的值
+         */
+        private Integer capacity;
+
+        /**
+         * 补满整个桶所需的秒数，未配置时使用注解上的值
+         */
+        private Long periodSeconds;
+    }
+}
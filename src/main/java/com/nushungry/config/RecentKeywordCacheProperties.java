@@ -0,0 +1,29 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 用户最近搜索关键词缓存配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.search-history.recent")
+public class RecentKeywordCacheProperties {
+
+    /**
+     * 是否启用缓存（关闭后每次查询数据库）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个用户保留的关键词数量，需不小于接口允许的最大 limit
+     */
+    private int perUserCapacity = 50;
+
+    /**
+     * 缓存总内存预算（字节，按关键词长度估算），超出后淘汰最久未访问的用户
+     */
+    private long maxMemoryBytes = 16 * 1024 * 1024;
+}
@@ -0,0 +1,109 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据保留（定时清理）配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.retention")
+public class RetentionProperties {
+
+    /**
+     * 是否启用定时清理
+     */
+    private boolean enabled = true;
+
+    /**
+     * 清理任务的执行时间（cron表达式），默认每天凌晨3:30
+     */
+    private String cron = "0 30 3 * * *";
+
+    /**
+     * 每批删除的最大行数
+     */
+    private int chunkSize = 500;
+
+    /**
+     * 两批删除之间的休眠时间（毫秒），用于让出表锁
+     */
+    private long pauseBetweenChunksMs = 200;
+
+    /**
+     * 单次执行中每张表最多处理的批次数
+     */
+    private int maxChunksPerRun = 2000;
+
+    /**
+     * 分布式锁租期（分钟），保证同一时间只有一个节点执行清理
+     */
+    private long lockLeaseMinutes = 30;
+
+    /**
+     * Refresh Token：过期超过30天后删除
+     */
+    private Policy refreshTokens = new Policy(true, 30);
+
+    /**
+     * 验证码：过期后即删除
+     */
+    private Policy verificationCodes = new Policy(true, 0);
+
+    /**
+     * 密码重置令牌：过期后即删除
+     */
+    private Policy passwordResetTokens = new Policy(true, 0);
+
+    /**
+     * 搜索历史：保留90天
+     */
+    private Policy searchHistory = new Policy(true, 90);
+
+    /**
+     * 搜索关键词每日汇总：保留2年
+     */
+    private Policy searchKeywordDaily = new Policy(true, 730);
+
+    /**
+     * 发件箱：已发送的邮件保留7天
+     */
+    private Policy emailOutbox = new Policy(true, 7);
+
+    /**
+     * 邮件死信：保留30天
+     */
+    private Policy emailDeadLetters = new Policy(true, 30);
+
+    /**
+     * 图片处理任务：已完成或失败的任务保留7天
+     */
+    private Policy imageProcessingJobs = new Policy(true, 7);
+
+    /**
+     * 单张表的保留策略
+     */
+    @Data
+    public static class Policy {
+
+        /**
+         * 是否清理该表
+         */
+        private boolean enabled;
+
+        /**
+         * 保留天数（以表的时间列为基准）
+         */
+        private int retentionDays;
+
+        public Policy() {
+        }
+
+        public Policy(boolean enabled, int retentionDays) {
+            this.enabled = enabled;
+            this.retentionDays = retentionDays;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 搜索历史写缓冲配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.search-history.buffer")
+public class SearchHistoryBufferProperties {
+
+    /**
+     * 是否启用写缓冲（关闭后每次搜索在请求线程中直接写库）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓冲区容量（向上取整为2的幂）
+     */
+    private int capacity = 8192;
+
+    /**
+     * 每批写入的最大条数，缓冲区积压达到该数量时立即写入
+     */
+    private int batchSize = 200;
+
+    /**
+     * 最长写入间隔（毫秒）
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * 缓冲区满时的处理方式：DROP 直接丢弃，BLOCK 等待最多 blockTimeoutMs 后丢弃
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    /**
+     * BLOCK 模式下的最长等待时间（毫秒）
+     */
+    private long blockTimeoutMs = 20;
+
+    public enum OverflowPolicy {
+        DROP,
+        BLOCK
+    }
+}
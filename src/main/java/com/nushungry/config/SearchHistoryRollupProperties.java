@@ -0,0 +1,34 @@
+package com.nushungry.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 搜索历史按天汇总和分区维护配置属性
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.search-history.rollup")
+public class SearchHistoryRollupProperties {
+
+    /**
+     * 是否启用每日汇总
+     */
+    private boolean enabled = true;
+
+    /**
+     * 汇总任务执行时间（默认每天 00:10，汇总前一天）
+     */
+    private String cron = "0 10 0 * * *";
+
+    /**
+     * 单次最多补汇总的天数（首次启用或停机后追赶），默认覆盖搜索历史的保留期
+     */
+    private int maxDaysPerRun = 100;
+
+    /**
+     * search_history 已按天分区时，提前创建的分区天数
+     */
+    private int partitionDaysAhead = 7;
+}
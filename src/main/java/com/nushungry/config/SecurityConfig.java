@@ -1,7 +1,10 @@
 package com.nushungry.config;
 
 import com.nushungry.filter.JwtAuthenticationFilter;
+import com.nushungry.security.BcryptCostCalibrator;
+import com.nushungry.security.OffloadingPasswordEncoder;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,12 +15,13 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+@Slf4j
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true)
@@ -26,6 +30,7 @@ public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final UserDetailsService userDetailsService;
+    private final PasswordHashingProperties passwordHashingProperties;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -101,9 +106,22 @@ public class SecurityConfig {
         return http.build();
     }
 
+    /**
+     * BCrypt 在独立的有界线程池中执行，成本因子为 0 时按目标耗时自动测定
+     */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        int strength = passwordHashingProperties.getStrength();
+        if (strength <= 0) {
+            BcryptCostCalibrator.Calibration calibration = BcryptCostCalibrator.calibrate(
+                    passwordHashingProperties.getTargetLatencyMs(),
+                    passwordHashingProperties.getMinStrength(),
+                    passwordHashingProperties.getMaxStrength());
+            strength = calibration.recommendedStrength();
+            log.info("Calibrated BCrypt strength {} for target {}ms (measured: {})",
+                    strength, calibration.targetLatencyMs(), calibration.measuredMillis());
+        }
+        return new OffloadingPasswordEncoder(passwordHashingProperties, strength);
     }
 
     @Bean
@@ -111,6 +129,10 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
         authProvider.setPasswordEncoder(passwordEncoder());
+        // 登录成功时若哈希成本与当前配置不同，自动重新哈希并保存
+        if (userDetailsService instanceof UserDetailsPasswordService passwordService) {
+            authProvider.setUserDetailsPasswordService(passwordService);
+        }
         return authProvider;
     }
 
@@ -0,0 +1,99 @@
+package com.nushungry.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 虚拟线程运行模式检查
+ * 通过 spring.threads.virtual.enabled=true 开启（需要 JDK 21+），开启后 Tomcat 请求线程、
+ * &#64;Async 执行器和定时任务都运行在虚拟线程上。
+ * 虚拟线程下并发请求数不再受 Tomcat 线程池限制，数据库连接池成为实际的并发上限，
+ * 因此启动时检查连接池配置并输出当前模式。
+ */
+@Slf4j
+@Configuration
+public class VirtualThreadConfig {
+
+    private static final int VIRTUAL_THREADS_MIN_JAVA_VERSION = 21;
+
+    private final DataSource dataSource;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsRequested;
+
+    @Value("${spring.task.execution.simple.concurrency-limit:-1}")
+    private int asyncConcurrencyLimit;
+
+    public VirtualThreadConfig(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void logThreadingMode() {
+        int javaVersion = Runtime.version().feature();
+        if (virtualThreadsRequested && javaVersion < VIRTUAL_THREADS_MIN_JAVA_VERSION) {
+            log.warn("spring.threads.virtual.enabled=true is ignored on Java {}; "
+                    + "virtual threads require Java {}+, falling back to platform threads",
+                    javaVersion, VIRTUAL_THREADS_MIN_JAVA_VERSION);
+            return;
+        }
+
+        if (!isVirtualThreadsActive()) {
+            log.info("Request execution: platform threads (Java {})", javaVersion);
+            return;
+        }
+
+        int poolSize = getMaximumPoolSize();
+        log.info("Request execution: virtual threads (Java {}), JDBC pool max size {}, @Async concurrency limit {}",
+                javaVersion, poolSize, asyncConcurrencyLimit < 0 ? "unbounded" : asyncConcurrencyLimit);
+        if (asyncConcurrencyLimit < 0 || asyncConcurrencyLimit > poolSize) {
+            log.warn("@Async tasks are not bounded below the JDBC pool size ({}); "
+                    + "set spring.task.execution.simple.concurrency-limit to keep background writes "
+                    + "from starving request threads of connections", poolSize);
+        }
+    }
+
+    /**
+     * 虚拟线程模式是否实际生效
+     */
+    public boolean isVirtualThreadsActive() {
+        return virtualThreadsRequested && Runtime.version().feature() >= VIRTUAL_THREADS_MIN_JAVA_VERSION;
+    }
+
+    /**
+     * 获取运行模式和连接池状态
+     */
+    public Map<String, Object> getRuntimeInfo() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("javaVersion", Runtime.version().toString());
+        info.put("virtualThreadsRequested", virtualThreadsRequested);
+        info.put("virtualThreadsActive", isVirtualThreadsActive());
+        info.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        info.put("liveThreads", Thread.activeCount());
+
+        if (dataSource instanceof HikariDataSource hikari) {
+            Map<String, Object> pool = new HashMap<>();
+            pool.put("maximumPoolSize", hikari.getMaximumPoolSize());
+            pool.put("connectionTimeoutMs", hikari.getConnectionTimeout());
+            if (hikari.getHikariPoolMXBean() != null) {
+                pool.put("active", hikari.getHikariPoolMXBean().getActiveConnections());
+                pool.put("idle", hikari.getHikariPoolMXBean().getIdleConnections());
+                pool.put("awaiting", hikari.getHikariPoolMXBean().getThreadsAwaitingConnection());
+            }
+            info.put("jdbcPool", pool);
+        }
+        return info;
+    }
+
+    private int getMaximumPoolSize() {
+        return dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : -1;
+    }
+}
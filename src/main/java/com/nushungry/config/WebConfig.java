@@ -1,11 +1,11 @@
 package com.nushungry.config;
 
+import com.nushungry.interceptor.RateLimitInterceptor;
 import com.nushungry.interceptor.RoleCheckInterceptor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
@@ -13,29 +13,21 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final RoleCheckInterceptor roleCheckInterceptor;
+    private final RateLimitInterceptor rateLimitInterceptor;
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         // 禁用 WebMvcConfigurer 的 CORS 配置，使用 CorsConfig 的统一配置
     }
 
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // 配置静态资源访问路径 - 图片
-        registry.addResourceHandler("/uploads/images/**")
-                .addResourceLocations("file:uploads/images/");
-
-        // 配置静态资源访问路径 - 缩略图
-        registry.addResourceHandler("/uploads/thumbnails/**")
-                .addResourceLocations("file:uploads/thumbnails/");
-
-        // 兼容旧的路径
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
-    }
+    // /uploads/** 由 UploadResourceController 处理（缓存头、条件请求、Range 和 sendfile）
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // 注册限流拦截器（按IP），需在其他拦截器之前执行
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/api/**");
+
         // 注册角色检查拦截器
         registry.addInterceptor(roleCheckInterceptor)
                 .addPathPatterns("/api/admin/**")
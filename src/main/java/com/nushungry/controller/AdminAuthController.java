@@ -4,6 +4,8 @@ import com.nushungry.dto.LoginRequestDTO;
 import com.nushungry.dto.LoginResponseDTO;
 import com.nushungry.model.User;
 import com.nushungry.model.UserRole;
+import com.nushungry.ratelimit.RateLimit;
+import com.nushungry.security.PasswordHashingBusyException;
 import com.nushungry.service.AuthService;
 import com.nushungry.service.UserService;
 import com.nushungry.util.JwtUtil;
@@ -42,11 +44,16 @@ public class AdminAuthController {
      */
     @PostMapping("/login")
     @Operation(summary = "管理员登录", description = "管理员专用登录接口，验证管理员身份并返回JWT token")
+    @RateLimit(name = "admin-login-ip", key = RateLimit.Key.IP, capacity = 10, periodSeconds = 60)
+    @RateLimit(name = "admin-login-username", key = RateLimit.Key.USERNAME, capacity = 5, periodSeconds = 300)
     public ResponseEntity<?> adminLogin(@Valid @RequestBody LoginRequestDTO loginRequest) {
         try {
             LoginResponseDTO response = authService.adminLogin(loginRequest);
             return ResponseEntity.ok(response);
 
+        } catch (PasswordHashingBusyException e) {
+            // 哈希线程池繁忙，交给全局处理返回 503
+            throw e;
         } catch (BadCredentialsException e) {
             log.warn("Failed admin login attempt for username: {}", loginRequest.getUsername());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
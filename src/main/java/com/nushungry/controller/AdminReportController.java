@@ -2,6 +2,7 @@ package com.nushungry.controller;
 
 import com.nushungry.dto.HandleReportRequest;
 import com.nushungry.dto.ReportResponse;
+import com.nushungry.dto.ReportedReviewResponse;
 import com.nushungry.model.User;
 import com.nushungry.service.ReviewReportService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -42,14 +43,14 @@ public class AdminReportController {
      * 获取待处理的举报列表
      */
     @GetMapping("/pending")
-    @Operation(summary = "获取待处理举报", description = "获取待处理和处理中的举报列表")
+    @Operation(summary = "获取待处理举报", description = "获取待处理和处理中的举报列表，按被举报评价的待处理举报人数和最近举报时间排序")
     @SecurityRequirement(name = "Bearer Authentication")
     public ResponseEntity<Map<String, Object>> getPendingReports(
             @Parameter(description = "页码（从0开始）") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "每页大小") @RequestParam(defaultValue = "20") int size) {
 
         try {
-            Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+            Pageable pageable = PageRequest.of(page, size);
             Page<ReportResponse> reportsPage = reportService.getPendingReports(pageable);
 
             Map<String, Object> response = new HashMap<>();
@@ -70,6 +71,37 @@ public class AdminReportController {
         }
     }
 
+    /**
+     * 获取按评价合并的举报队列
+     */
+    @GetMapping("/reviews")
+    @Operation(summary = "获取被举报评价队列", description = "同一评价的多条待处理举报合并为一项，附举报次数和原因分布")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getReportedReviews(
+            @Parameter(description = "页码（从0开始）") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "每页大小") @RequestParam(defaultValue = "20") int size) {
+
+        try {
+            Page<ReportedReviewResponse> reviewsPage = reportService.getReportedReviews(PageRequest.of(page, size));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", reviewsPage.getContent());
+            response.put("currentPage", reviewsPage.getNumber());
+            response.put("totalItems", reviewsPage.getTotalElements());
+            response.put("totalPages", reviewsPage.getTotalPages());
+            response.put("pageSize", reviewsPage.getSize());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error getting reported reviews: {}", e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     /**
      * 获取所有举报列表
      */
@@ -131,6 +163,35 @@ public class AdminReportController {
         }
     }
 
+    /**
+     * 批量处理某评价的全部待处理举报
+     */
+    @PostMapping("/review/{reviewId}/handle")
+    @Operation(summary = "批量处理评价的举报", description = "一次处理某评价的全部待处理举报")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> handleReportsOfReview(
+            @PathVariable Long reviewId,
+            @Valid @RequestBody HandleReportRequest request,
+            @AuthenticationPrincipal User admin) {
+
+        try {
+            int handled = reportService.handleReportsOfReview(reviewId, admin.getUsername(), request);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", String.format("已处理 %d 条举报", handled));
+            response.put("handledCount", handled);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error handling reports of review: {}", e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     /**
      * 获取举报统计
      */
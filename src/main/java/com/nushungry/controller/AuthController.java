@@ -7,6 +7,8 @@ import com.nushungry.dto.RefreshTokenRequest;
 import com.nushungry.dto.RefreshTokenResponse;
 import com.nushungry.dto.RegisterRequest;
 import com.nushungry.dto.ResetPasswordRequest;
+import com.nushungry.ratelimit.RateLimit;
+import com.nushungry.security.PasswordHashingBusyException;
 import com.nushungry.service.UserService;
 import com.nushungry.service.PasswordResetService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -38,6 +40,8 @@ public class AuthController {
             String userAgent = httpRequest.getHeader("User-Agent");
             AuthResponse response = userService.register(request, ipAddress, userAgent);
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            throw e;
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -45,6 +49,8 @@ public class AuthController {
 
     @PostMapping("/login")
     @Operation(summary = "Login user")
+    @RateLimit(name = "login-ip", key = RateLimit.Key.IP, capacity = 30, periodSeconds = 60)
+    @RateLimit(name = "login-username", key = RateLimit.Key.USERNAME, capacity = 10, periodSeconds = 300)
     public ResponseEntity<AuthResponse> login(
             @RequestBody LoginRequest request,
             HttpServletRequest httpRequest) {
@@ -53,6 +59,9 @@ public class AuthController {
             String userAgent = httpRequest.getHeader("User-Agent");
             AuthResponse response = userService.login(request, ipAddress, userAgent);
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            // 哈希线程池繁忙，交给全局处理返回 503
+            throw e;
         } catch (RuntimeException e) {
             return ResponseEntity.status(401).build();
         }
@@ -60,6 +69,8 @@ public class AuthController {
 
     @PostMapping("/forgot-password")
     @Operation(summary = "Send verification code to email for password reset")
+    @RateLimit(name = "reset-code-ip", key = RateLimit.Key.IP, capacity = 20, periodSeconds = 3600)
+    @RateLimit(name = "reset-code-email", key = RateLimit.Key.EMAIL, capacity = 5, periodSeconds = 3600)
     public ResponseEntity<?> forgotPassword(@RequestBody ForgotPasswordRequest request) {
         if (request == null || !StringUtils.hasText(request.getEmail())) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -88,6 +99,8 @@ public class AuthController {
 
     @PostMapping("/reset-password")
     @Operation(summary = "Verify code and reset password")
+    @RateLimit(name = "reset-verify-ip", key = RateLimit.Key.IP, capacity = 30, periodSeconds = 600)
+    @RateLimit(name = "reset-verify-email", key = RateLimit.Key.EMAIL, capacity = 10, periodSeconds = 600)
     public ResponseEntity<?> resetPassword(@RequestBody ResetPasswordRequest request) {
         if (request == null
                 || !StringUtils.hasText(request.getEmail())
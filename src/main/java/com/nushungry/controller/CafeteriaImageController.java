@@ -4,6 +4,8 @@ import com.nushungry.model.Cafeteria;
 import com.nushungry.model.Image;
 import com.nushungry.repository.CafeteriaRepository;
 import com.nushungry.repository.ImageRepository;
+import com.nushungry.service.BlobStoreService;
+import com.nushungry.service.ImageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -34,11 +36,17 @@ public class CafeteriaImageController {
 
     private final CafeteriaRepository cafeteriaRepository;
     private final ImageRepository imageRepository;
+    private final BlobStoreService blobStoreService;
+    private final ImageService imageService;
 
     public CafeteriaImageController(CafeteriaRepository cafeteriaRepository,
-                                   ImageRepository imageRepository) {
+                                   ImageRepository imageRepository,
+                                   BlobStoreService blobStoreService,
+                                   ImageService imageService) {
         this.cafeteriaRepository = cafeteriaRepository;
         this.imageRepository = imageRepository;
+        this.blobStoreService = blobStoreService;
+        this.imageService = imageService;
     }
 
     /**
@@ -77,12 +85,12 @@ public class CafeteriaImageController {
                 // 如果有缩略图URL，也保存
                 if (request.getThumbnailUrls() != null &&
                     request.getThumbnailUrls().size() > request.getImageUrls().indexOf(imageUrl)) {
-                    String thumbnailUrl = request.getThumbnailUrls().get(request.getImageUrls().indexOf(imageUrl));
-                    // 注意：需要在 Image 实体中添加 thumbnailUrl 字段
-                    // image.setThumbnailUrl(thumbnailUrl);
+                    image.setThumbnailUrl(request.getThumbnailUrls().get(request.getImageUrls().indexOf(imageUrl)));
                 }
 
+                imageService.populateMetadata(image);
                 Image savedImage = imageRepository.save(image);
+                blobStoreService.retain(savedImage.getImageUrl(), savedImage.getThumbnailUrl());
                 savedImages.add(savedImage);
                 log.info("图片已关联到食堂: imageId={}, cafeteriaId={}", savedImage.getId(), cafeteriaId);
             }
@@ -135,8 +143,8 @@ public class CafeteriaImageController {
                 throw new RuntimeException("该图片不属于指定食堂");
             }
 
-            // 删除图片记录
-            imageRepository.delete(image);
+            // 删除图片记录，文件由后台线程删除
+            imageService.deleteImages(List.of(imageId));
 
             response.put("success", true);
             response.put("message", "图片删除成功");
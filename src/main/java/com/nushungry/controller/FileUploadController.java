@@ -1,6 +1,8 @@
 package com.nushungry.controller;
 
-import com.nushungry.service.FileStorageService;
+import com.nushungry.model.ImageProcessingJob;
+import com.nushungry.service.BlobStoreService;
+import com.nushungry.service.ImageProcessingJobService;
 import com.nushungry.service.ImageProcessingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -17,6 +19,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
  * 文件上传控制器
@@ -29,13 +34,16 @@ import java.util.Map;
 @Tag(name = "文件上传", description = "文件上传相关接口")
 public class FileUploadController {
 
-    private final FileStorageService fileStorageService;
+    private final BlobStoreService blobStoreService;
     private final ImageProcessingService imageProcessingService;
+    private final ImageProcessingJobService imageProcessingJobService;
 
-    public FileUploadController(FileStorageService fileStorageService,
-                               ImageProcessingService imageProcessingService) {
-        this.fileStorageService = fileStorageService;
+    public FileUploadController(BlobStoreService blobStoreService,
+                               ImageProcessingService imageProcessingService,
+                               ImageProcessingJobService imageProcessingJobService) {
+        this.blobStoreService = blobStoreService;
         this.imageProcessingService = imageProcessingService;
+        this.imageProcessingJobService = imageProcessingJobService;
     }
 
     /**
@@ -51,7 +59,10 @@ public class FileUploadController {
             @RequestParam(value = "generateThumbnail", defaultValue = "true") boolean generateThumbnail,
 
             @Parameter(description = "是否压缩图片", example = "true")
-            @RequestParam(value = "compress", defaultValue = "true") boolean compress) {
+            @RequestParam(value = "compress", defaultValue = "true") boolean compress,
+
+            @Parameter(description = "是否在后台处理（立即返回原图URL和任务ID，压缩图和缩略图由后台任务生成）", example = "false")
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
 
         try {
             log.info("接收到图片上传请求: {}, 大小: {} bytes", file.getOriginalFilename(), file.getSize());
@@ -66,15 +77,27 @@ public class FileUploadController {
             String originalUrl;
             String thumbnailUrl = null;
 
-            if (compress) {
+            if (compress && async) {
+                // 保存原图，由后台任务生成各尺寸图片
+                originalUrl = blobStoreService.store(file).getUrl();
+                ImageProcessingJob job = imageProcessingJobService.enqueue(originalUrl, null);
+                log.info("图片上传成功: {}, 处理任务: {}", originalUrl, job.getId());
+                return ResponseEntity.ok(new ImageUploadResponse(
+                    true,
+                    "图片上传成功，正在后台处理",
+                    originalUrl,
+                    null,
+                    job.getId()
+                ));
+            } else if (compress) {
                 // 压缩并生成缩略图
                 ImageProcessingService.ImageProcessingResult result =
-                    imageProcessingService.processImage(file, generateThumbnail);
+                    blobStoreService.storeProcessed(file, generateThumbnail);
                 originalUrl = result.getOriginalUrl();
                 thumbnailUrl = result.getThumbnailUrl();
             } else {
                 // 直接保存原图
-                originalUrl = fileStorageService.storeFile(file, true);
+                originalUrl = blobStoreService.store(file).getUrl();
             }
 
             log.info("图片上传成功: {}", originalUrl);
@@ -113,55 +136,37 @@ public class FileUploadController {
             @RequestParam(value = "generateThumbnail", defaultValue = "true") boolean generateThumbnail,
 
             @Parameter(description = "是否压缩图片", example = "true")
-            @RequestParam(value = "compress", defaultValue = "true") boolean compress) {
+            @RequestParam(value = "compress", defaultValue = "true") boolean compress,
+
+            @Parameter(description = "是否在后台处理（立即返回原图URL和任务ID，压缩图和缩略图由后台任务生成）", example = "false")
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
 
         log.info("接收到批量图片上传请求: {} 张图片", files.size());
 
+        // 各图片并行处理，总耗时接近最慢的一张
+        List<Supplier<ImageUploadResponse>> tasks = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            tasks.add(() -> uploadOne(file, generateThumbnail, compress, async));
+        }
+        List<CompletableFuture<ImageUploadResponse>> futures = imageProcessingService.submitAll(tasks);
+
         List<ImageUploadResponse> successList = new ArrayList<>();
         List<ImageUploadResponse> failureList = new ArrayList<>();
 
-        for (MultipartFile file : files) {
+        for (int i = 0; i < files.size(); i++) {
+            ImageUploadResponse result;
             try {
-                // 验证是否为有效图片
-                if (!imageProcessingService.isValidImage(file)) {
-                    failureList.add(new ImageUploadResponse(
-                        false,
-                        "无效的图片文件: " + file.getOriginalFilename(),
-                        null,
-                        null
-                    ));
-                    continue;
-                }
-
-                String originalUrl;
-                String thumbnailUrl = null;
-
-                if (compress) {
-                    ImageProcessingService.ImageProcessingResult result =
-                        imageProcessingService.processImage(file, generateThumbnail);
-                    originalUrl = result.getOriginalUrl();
-                    thumbnailUrl = result.getThumbnailUrl();
-                } else {
-                    originalUrl = fileStorageService.storeFile(file, true);
-                }
-
-                successList.add(new ImageUploadResponse(
-                    true,
-                    "上传成功",
-                    originalUrl,
-                    thumbnailUrl
-                ));
-
-                log.info("图片上传成功: {}", originalUrl);
-
-            } catch (Exception ex) {
-                log.error("图片上传失败: {}", file.getOriginalFilename(), ex);
-                failureList.add(new ImageUploadResponse(
-                    false,
-                    "上传失败: " + ex.getMessage(),
-                    null,
-                    null
-                ));
+                result = futures.get(i).join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                log.warn("图片上传失败: {}: {}", files.get(i).getOriginalFilename(), cause.getMessage());
+                result = new ImageUploadResponse(false, "上传失败: " + cause.getMessage(), null, null);
+            }
+            result.setFilename(files.get(i).getOriginalFilename());
+            if (result.isSuccess()) {
+                successList.add(result);
+            } else {
+                failureList.add(result);
             }
         }
 
@@ -175,11 +180,95 @@ public class FileUploadController {
         ));
     }
 
+    /**
+     * 处理批量上传中的一张图片，失败时返回失败结果而不抛出异常
+     */
+    private ImageUploadResponse uploadOne(MultipartFile file, boolean generateThumbnail,
+                                          boolean compress, boolean async) {
+        try {
+            // 验证是否为有效图片
+            if (!imageProcessingService.isValidImage(file)) {
+                return new ImageUploadResponse(
+                    false,
+                    "无效的图片文件: " + file.getOriginalFilename(),
+                    null,
+                    null
+                );
+            }
+
+            String originalUrl;
+            String thumbnailUrl = null;
+            Long jobId = null;
+
+            if (compress && async) {
+                originalUrl = blobStoreService.store(file).getUrl();
+                jobId = imageProcessingJobService.enqueue(originalUrl, null).getId();
+            } else if (compress) {
+                ImageProcessingService.ImageProcessingResult result =
+                    blobStoreService.storeProcessed(file, generateThumbnail);
+                originalUrl = result.getOriginalUrl();
+                thumbnailUrl = result.getThumbnailUrl();
+            } else {
+                originalUrl = blobStoreService.store(file).getUrl();
+            }
+
+            log.info("图片上传成功: {}", originalUrl);
+            return new ImageUploadResponse(
+                true,
+                "上传成功",
+                originalUrl,
+                thumbnailUrl,
+                jobId
+            );
+
+        } catch (Exception ex) {
+            log.error("图片上传失败: {}", file.getOriginalFilename(), ex);
+            return new ImageUploadResponse(
+                false,
+                "上传失败: " + ex.getMessage(),
+                null,
+                null
+            );
+        }
+    }
+
+    /**
+     * 查询图片处理任务
+     */
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "查询图片处理任务", description = "查询后台处理任务的状态和生成的各尺寸图片URL")
+    public ResponseEntity<Map<String, Object>> getJob(
+            @Parameter(description = "任务ID", required = true)
+            @PathVariable Long id) {
+
+        Map<String, Object> response = new HashMap<>();
+        return imageProcessingJobService.getJob(id)
+            .map(job -> {
+                Map<String, Object> data = new HashMap<>();
+                data.put("id", job.getId());
+                data.put("status", job.getStatus());
+                data.put("sourceUrl", job.getSourceUrl());
+                data.put("variants", job.getVariants());
+                data.put("attempts", job.getAttempts());
+                data.put("lastError", job.getLastError());
+                data.put("createdAt", job.getCreatedAt());
+                data.put("completedAt", job.getCompletedAt());
+                response.put("success", true);
+                response.put("data", data);
+                return ResponseEntity.ok(response);
+            })
+            .orElseGet(() -> {
+                response.put("success", false);
+                response.put("message", "任务不存在");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            });
+    }
+
     /**
      * 删除图片
      */
     @DeleteMapping("/image")
-    @Operation(summary = "删除图片", description = "根据图片URL删除图片文件")
+    @Operation(summary = "删除图片", description = "根据图片URL删除图片文件（仍被图片、评价或头像引用的文件不会删除，去重存储的文件在宽限期后由垃圾回收删除）")
     public ResponseEntity<Map<String, Object>> deleteImage(
             @Parameter(description = "图片URL", required = true, example = "/uploads/images/2024/01/15/xxx.jpg")
             @RequestParam("url") String imageUrl) {
@@ -189,7 +278,7 @@ public class FileUploadController {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            boolean deleted = fileStorageService.deleteFile(imageUrl);
+            boolean deleted = blobStoreService.delete(imageUrl);
 
             if (deleted) {
                 response.put("success", true);
@@ -198,7 +287,7 @@ public class FileUploadController {
                 return ResponseEntity.ok(response);
             } else {
                 response.put("success", false);
-                response.put("message", "图片不存在或删除失败");
+                response.put("message", "图片不存在、仍被引用或删除失败");
                 return ResponseEntity.badRequest().body(response);
             }
 
@@ -226,7 +315,7 @@ public class FileUploadController {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            List<String> deletedFiles = fileStorageService.deleteFiles(imageUrls);
+            List<String> deletedFiles = blobStoreService.deleteAll(imageUrls);
 
             response.put("success", true);
             response.put("message", String.format("成功删除 %d 张图片", deletedFiles.size()));
@@ -289,12 +378,19 @@ public class FileUploadController {
         private String message;
         private String url;
         private String thumbnailUrl;
+        private Long jobId;
+        private String filename;
 
         public ImageUploadResponse(boolean success, String message, String url, String thumbnailUrl) {
+            this(success, message, url, thumbnailUrl, null);
+        }
+
+        public ImageUploadResponse(boolean success, String message, String url, String thumbnailUrl, Long jobId) {
             this.success = success;
             this.message = message;
             this.url = url;
             this.thumbnailUrl = thumbnailUrl;
+            this.jobId = jobId;
         }
     }
 
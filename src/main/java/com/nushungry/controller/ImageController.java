@@ -1,13 +1,22 @@
 package com.nushungry.controller;
 
+import com.nushungry.config.ImageRenderProperties;
 import com.nushungry.model.Image;
+import com.nushungry.service.ImageRenderService;
 import com.nushungry.service.ImageService;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/images")
@@ -15,9 +24,15 @@ import java.util.List;
 public class ImageController {
 
     private final ImageService imageService;
+    private final ImageRenderService imageRenderService;
+    private final ImageRenderProperties imageRenderProperties;
 
-    public ImageController(ImageService imageService) {
+    public ImageController(ImageService imageService,
+                           ImageRenderService imageRenderService,
+                           ImageRenderProperties imageRenderProperties) {
         this.imageService = imageService;
+        this.imageRenderService = imageRenderService;
+        this.imageRenderProperties = imageRenderProperties;
     }
 
     @PostMapping("/cafeteria/{cafeteriaId}")
@@ -57,4 +72,52 @@ public class ImageController {
         List<Image> images = imageService.getStallImages(stallId);
         return ResponseEntity.ok(images);
     }
-}
\ No newline at end of file
+
+    /**
+     * 按需缩放图片，如 /api/images/render/images/2024/01/15/xxx.jpg?w=300&h=300&fit=cover
+     * 宽高只能取配置中允许的值；结果缓存在磁盘上，以缓存键作为 ETag
+     */
+    @GetMapping("/render/{*path}")
+    public ResponseEntity<?> renderImage(
+            @PathVariable String path,
+            @RequestParam(value = "w", required = false) Integer width,
+            @RequestParam(value = "h", required = false) Integer height,
+            @RequestParam(value = "fit", required = false) String fit,
+            WebRequest webRequest) throws IOException {
+        String relativePath = path.startsWith("/") ? path.substring(1) : path;
+        if (relativePath.startsWith("uploads/")) {
+            relativePath = relativePath.substring("uploads/".length());
+        }
+
+        // ETag 只取决于原图的文件属性和请求参数，先响应条件请求，缓存已淘汰时也不必重新生成
+        String key;
+        try {
+            key = imageRenderService.key(relativePath, width, height, fit);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+        if (key == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified("\"" + key + "\"")) {
+            return null;
+        }
+
+        ImageRenderService.OpenedImage opened = imageRenderService.open(relativePath, width, height, fit);
+        if (opened == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // 原图在两次读取之间被替换时以实际输出的版本为准
+        String etag = "\"" + opened.image().key() + "\"";
+        // 输出已打开的文件，写完后关闭；期间文件被缓存淘汰也不影响本次响应
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(imageRenderProperties.getCacheSeconds())).cachePublic())
+                .contentType(MediaType.parseMediaType(opened.image().contentType()))
+                .contentLength(opened.size())
+                .body(new InputStreamResource(opened.content()));
+    }
+}
@@ -0,0 +1,29 @@
+package com.nushungry.controller;
+
+import com.nushungry.service.ImageProcessingBusyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 将图片处理繁忙异常转换为 503 响应
+ */
+@RestControllerAdvice
+public class ImageProcessingExceptionHandler {
+
+    @ExceptionHandler(ImageProcessingBusyException.class)
+    public ResponseEntity<Map<String, Object>> handleBusy(ImageProcessingBusyException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        response.put("retryAfterSeconds", e.getRetryAfterSeconds());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+}
@@ -3,6 +3,7 @@ package com.nushungry.controller;
 import com.nushungry.dto.ForgotPasswordRequest;
 import com.nushungry.dto.ResetPasswordRequest;
 import com.nushungry.dto.VerifyResetCodeRequest;
+import com.nushungry.ratelimit.RateLimit;
 import com.nushungry.service.PasswordResetService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -26,6 +27,8 @@ public class PasswordResetController {
 
     @PostMapping("/send-reset-code")
     @Operation(summary = "Send verification code to user's email")
+    @RateLimit(name = "reset-code-ip", key = RateLimit.Key.IP, capacity = 20, periodSeconds = 3600)
+    @RateLimit(name = "reset-code-email", key = RateLimit.Key.EMAIL, capacity = 5, periodSeconds = 3600)
     public ResponseEntity<?> sendResetCode(@RequestBody ForgotPasswordRequest request) {
         if (request == null || !StringUtils.hasText(request.getEmail())) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -54,6 +57,8 @@ public class PasswordResetController {
 
     @PostMapping("/verify-reset-code")
     @Operation(summary = "Verify a password reset code without changing the password")
+    @RateLimit(name = "reset-verify-ip", key = RateLimit.Key.IP, capacity = 30, periodSeconds = 600)
+    @RateLimit(name = "reset-verify-email", key = RateLimit.Key.EMAIL, capacity = 10, periodSeconds = 600)
     public ResponseEntity<?> verifyResetCode(@RequestBody VerifyResetCodeRequest request) {
         if (request == null
                 || !StringUtils.hasText(request.getEmail())
@@ -83,6 +88,8 @@ public class PasswordResetController {
 
     @PostMapping("/reset")
     @Operation(summary = "Reset password after code verification")
+    @RateLimit(name = "reset-verify-ip", key = RateLimit.Key.IP, capacity = 30, periodSeconds = 600)
+    @RateLimit(name = "reset-verify-email", key = RateLimit.Key.EMAIL, capacity = 10, periodSeconds = 600)
     public ResponseEntity<?> resetPassword(@RequestBody ResetPasswordRequest request) {
         if (request == null
                 || !StringUtils.hasText(request.getEmail())
@@ -28,6 +28,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -389,6 +390,54 @@ public class ReviewController {
         return ResponseEntity.ok(reviews);
     }
 
+    /**
+     * 批量删除评价（管理员专用）
+     * 关联记录按集合删除，每个受影响的摊位只重算一次评分和人均价格
+     */
+    @DeleteMapping("/admin/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "Bearer Authentication")
+    @Operation(summary = "批量删除评价 [管理员]", description = "批量删除评价及其举报、点赞和图片（需要管理员权限）")
+    public ResponseEntity<Map<String, Object>> batchDeleteReviews(@RequestBody Map<String, List<Long>> requestBody) {
+        try {
+            List<Long> ids = requestBody.getOrDefault("ids", List.of());
+            log.info("管理员批量删除评价: {} 条", ids.size());
+
+            ReviewService.BulkDeleteResult result = reviewService.deleteReviewsByAdmin(ids);
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (Long id : result.deletedIds()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", id);
+                item.put("success", true);
+                results.add(item);
+            }
+            for (Long id : result.missingIds()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", id);
+                item.put("success", false);
+                item.put("message", "评价不存在");
+                results.add(item);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", result.missingIds().isEmpty());
+            response.put("message", String.format("成功删除 %d 条评价", result.deletedIds().size()));
+            response.put("successCount", result.deletedIds().size());
+            response.put("totalCount", result.deletedIds().size() + result.missingIds().size());
+            response.put("results", results);
+            response.put("deletedRows", result.deletedRows());
+            response.put("recalculatedStalls", result.recalculatedStalls());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error batch deleting reviews: {}", e.getMessage(), e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     /**
      * 获取评价统计信息（管理员专用）
      */
@@ -9,6 +9,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -92,13 +93,16 @@ public class SearchHistoryController {
     /**
      * 获取热门搜索关键词
      * GET /api/search-history/popular?days=7&limit=10
+     * GET /api/search-history/popular?hours=1&limit=10（指定 hours 时忽略 days）
      */
     @GetMapping("/popular")
     public ResponseEntity<List<Map<String, Object>>> getPopularKeywords(
         @RequestParam(defaultValue = "7") int days,
+        @RequestParam(required = false) Integer hours,
         @RequestParam(defaultValue = "10") int limit
     ) {
-        List<Map<String, Object>> keywords = searchHistoryService.getPopularKeywords(days, limit);
+        Duration window = hours != null ? Duration.ofHours(hours) : Duration.ofDays(days);
+        List<Map<String, Object>> keywords = searchHistoryService.getPopularKeywords(window, limit);
         return ResponseEntity.ok(keywords);
     }
 
@@ -104,7 +104,7 @@ public class StallController {
         // 执行搜索
         Page<Stall> pageResult = stallService.searchStalls(request);
 
-        // 记录搜索历史（异步，仅在有关键词时）
+        // 记录搜索历史（放入写缓冲，仅在有关键词时）
         if (StringUtils.hasText(keyword)) {
             Long userId = getUserIdFromRequest(httpRequest);
             log.debug("记录搜索历史: keyword={}, userId={}", keyword, userId);
@@ -422,34 +422,45 @@ public class StallController {
 
     /**
      * 批量删除档口（管理员专用）
+     * 在一个事务内按批校验并级联删除，返回每个ID的处理结果
      */
     @DeleteMapping("/batch")
     @PreAuthorize("hasRole('ADMIN')")
     @SecurityRequirement(name = "Bearer Authentication")
-    @Operation(summary = "批量删除档口 [管理员]", description = "批量删除多个档口（需要管理员权限）")
+    @Operation(summary = "批量删除档口 [管理员]", description = "批量删除多个档口（级联删除关联的评价、图片和收藏）（需要管理员权限）")
     public ResponseEntity<Map<String, Object>> batchDeleteStalls(
             @RequestBody Map<String, List<Long>> requestBody) {
         try {
-            List<Long> ids = requestBody.get("ids");
-            log.info("管理员批量删除档口: {}", ids);
+            List<Long> ids = requestBody.getOrDefault("ids", List.of());
+            log.info("管理员批量删除档口: {} 个", ids.size());
 
-            int successCount = 0;
-            List<String> errors = new ArrayList<>();
+            StallService.BatchDeleteResult result = stallService.deleteAllById(ids);
 
-            for (Long id : ids) {
-                try {
-                    stallService.deleteById(id);
-                    successCount++;
-                } catch (Exception e) {
-                    errors.add("删除档口 " + id + " 失败: " + e.getMessage());
-                }
+            List<Map<String, Object>> results = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            for (Long id : result.deletedIds()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", id);
+                item.put("success", true);
+                results.add(item);
+            }
+            for (Long id : result.missingIds()) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", id);
+                item.put("success", false);
+                item.put("message", "档口不存在");
+                results.add(item);
+                errors.add("删除档口 " + id + " 失败: 档口不存在");
             }
 
+            int successCount = result.deletedIds().size();
             Map<String, Object> response = new HashMap<>();
             response.put("success", errors.isEmpty());
             response.put("message", String.format("成功删除 %d 个档口", successCount));
             response.put("successCount", successCount);
-            response.put("totalCount", ids.size());
+            response.put("totalCount", successCount + result.missingIds().size());
+            response.put("results", results);
+            response.put("deletedRows", result.deletedRows());
             if (!errors.isEmpty()) {
                 response.put("errors", errors);
             }
@@ -4,6 +4,8 @@ import com.nushungry.model.Image;
 import com.nushungry.model.Stall;
 import com.nushungry.repository.ImageRepository;
 import com.nushungry.repository.StallRepository;
+import com.nushungry.service.BlobStoreService;
+import com.nushungry.service.ImageService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -34,11 +36,17 @@ public class StallImageController {
 
     private final StallRepository stallRepository;
     private final ImageRepository imageRepository;
+    private final BlobStoreService blobStoreService;
+    private final ImageService imageService;
 
     public StallImageController(StallRepository stallRepository,
-                               ImageRepository imageRepository) {
+                               ImageRepository imageRepository,
+                               BlobStoreService blobStoreService,
+                               ImageService imageService) {
         this.stallRepository = stallRepository;
         this.imageRepository = imageRepository;
+        this.blobStoreService = blobStoreService;
+        this.imageService = imageService;
     }
 
     /**
@@ -87,7 +95,9 @@ public class StallImageController {
                     image.setThumbnailUrl(request.getThumbnailUrls().get(i));
                 }
 
+                imageService.populateMetadata(image);
                 Image savedImage = imageRepository.save(image);
+                blobStoreService.retain(savedImage.getImageUrl(), savedImage.getThumbnailUrl());
                 savedImages.add(savedImage);
                 log.info("图片已关联到摊位: imageId={}, stallId={}, type={}",
                     savedImage.getId(), stallId, imageType);
@@ -141,8 +151,8 @@ public class StallImageController {
                 throw new RuntimeException("该图片不属于指定摊位");
             }
 
-            // 删除图片记录
-            imageRepository.delete(image);
+            // 删除图片记录，文件由后台线程删除
+            imageService.deleteImages(List.of(imageId));
 
             response.put("success", true);
             response.put("message", "图片删除成功");
@@ -0,0 +1,188 @@
+package com.nushungry.controller;
+
+import com.nushungry.config.FileStorageProperties;
+import com.nushungry.service.UploadResourceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 上传文件访问控制器
+ * 返回强 ETag、Last-Modified 和缓存策略，支持条件请求（304）和单个范围请求（206）。
+ * 文件内容由容器通过 sendfile 直接发送，不经过 JVM 堆；容器不支持时使用 FileChannel.transferTo
+ */
+@Slf4j
+@Controller
+@RequestMapping("/uploads")
+@Tag(name = "上传文件访问", description = "上传的图片文件")
+public class UploadResourceController {
+
+    private static final String PREFIX = "/uploads/";
+
+    // Tomcat 的 sendfile 请求属性（结束位置不包含）
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final UrlPathHelper URL_PATH_HELPER = new UrlPathHelper();
+
+    private final UploadResourceService uploadResourceService;
+    private final FileStorageProperties fileStorageProperties;
+
+    public UploadResourceController(UploadResourceService uploadResourceService,
+                                    FileStorageProperties fileStorageProperties) {
+        this.uploadResourceService = uploadResourceService;
+        this.fileStorageProperties = fileStorageProperties;
+    }
+
+    /**
+     * 获取上传的文件
+     */
+    @RequestMapping(value = "/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+    @Operation(summary = "获取上传的文件", description = "支持 ETag/If-None-Match、If-Modified-Since、Range，并按 Accept 返回 AVIF/WebP 版本")
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = URL_PATH_HELPER.getPathWithinApplication(request);
+        UploadResourceService.UploadResource resource = path.length() > PREFIX.length()
+                ? uploadResourceService.resolve(path.substring(PREFIX.length()), request.getHeader(HttpHeaders.ACCEPT))
+                : null;
+        if (resource == null) {
+            // 直接设置状态码，不转发到 /error
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, resource.etag());
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, resource.lastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, resource.cacheControl());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (resource.varyOnAccept()) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+
+        if (isNotModified(request, resource)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            uploadResourceService.recordNotModified();
+            return;
+        }
+
+        long start = 0;
+        long length = resource.size();
+        boolean ranged = false;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request, resource)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                // 多个范围时返回完整文件（规范允许忽略 Range）
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(resource.size());
+                    long end = ranges.get(0).getRangeEnd(resource.size());
+                    if (start >= resource.size() || end < start) {
+                        throw new IllegalArgumentException("Range not satisfiable: " + rangeHeader);
+                    }
+                    length = end - start + 1;
+                    ranged = true;
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + resource.size());
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + resource.size());
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        response.setContentType(resource.contentType());
+        response.setContentLengthLong(length);
+        if (RequestMethod.HEAD.name().equals(request.getMethod())) {
+            return;
+        }
+
+        boolean sendfile = fileStorageProperties.isZeroCopy()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR));
+        if (sendfile) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, resource.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+        } else {
+            transfer(resource, start, length, response);
+        }
+        uploadResourceService.recordSent(length, ranged, sendfile);
+    }
+
+    /**
+     * 条件请求：If-None-Match 优先，其次 If-Modified-Since（按秒比较）
+     */
+    private static boolean isNotModified(HttpServletRequest request, UploadResourceService.UploadResource resource) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(resource.etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && resource.lastModified() / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * If-Range 与当前文件一致时才按范围返回，否则返回完整文件
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, UploadResourceService.UploadResource resource) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(resource.etag());
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date != -1 && resource.lastModified() / 1000 == date / 1000;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static void transfer(UploadResourceService.UploadResource resource, long start, long length,
+                                 HttpServletResponse response) throws IOException {
+        try (FileChannel file = FileChannel.open(resource.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.nushungry.controller.admin;
+
+import com.nushungry.service.CatalogBulkService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 管理员目录批量导入导出控制器
+ * 支持 JSON 数组和带表头的 CSV，可直接上传请求体或以 multipart 的 file 字段上传
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/catalog")
+@RequiredArgsConstructor
+@Tag(name = "Admin Catalog", description = "餐厅/摊位批量导入导出接口")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminCatalogController {
+
+    private final CatalogBulkService catalogBulkService;
+
+    /**
+     * 批量导入餐厅或摊位
+     * 按自然键插入或更新（餐厅：名称；摊位：所属餐厅名称 + 摊位名称）
+     */
+    @PostMapping("/{entity}/import")
+    @Operation(summary = "批量导入目录", description = "entity 为 cafeterias 或 stalls；dryRun=true 时只校验不写入")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> importCatalog(
+            @PathVariable String entity,
+            @RequestParam(required = false) String format,
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            @RequestPart(value = "file", required = false) MultipartFile file,
+            HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            CatalogBulkService.Entity target = parseEntity(entity);
+            String contentType = file != null ? file.getContentType() : request.getContentType();
+            String filename = file != null ? file.getOriginalFilename() : null;
+            CatalogBulkService.Format inputFormat = resolveFormat(format, contentType, filename);
+            try (InputStream input = file != null ? file.getInputStream() : request.getInputStream()) {
+                response.put("data", catalogBulkService.importCatalog(target, inputFormat, input, dryRun));
+            }
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException | IOException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            log.error("Error importing catalog: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 流式导出餐厅或摊位
+     */
+    @GetMapping("/{entity}/export")
+    @Operation(summary = "导出目录", description = "entity 为 cafeterias 或 stalls；format 为 json（默认）或 csv")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<?> exportCatalog(@PathVariable String entity,
+                                           @RequestParam(defaultValue = "json") String format) {
+        CatalogBulkService.Entity target;
+        CatalogBulkService.Format outputFormat;
+        try {
+            target = parseEntity(entity);
+            outputFormat = resolveFormat(format, null, null);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        boolean csv = outputFormat == CatalogBulkService.Format.CSV;
+        String filename = target.name().toLowerCase(Locale.ROOT) + (csv ? ".csv" : ".json");
+        StreamingResponseBody body = output -> catalogBulkService.exportCatalog(target, outputFormat, output);
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    private static CatalogBulkService.Entity parseEntity(String entity) {
+        try {
+            return CatalogBulkService.Entity.valueOf(entity.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported entity: " + entity + " (expected cafeterias or stalls)");
+        }
+    }
+
+    /**
+     * 优先使用 format 参数，其次根据文件扩展名或 Content-Type 判断，默认 JSON
+     */
+    private static CatalogBulkService.Format resolveFormat(String format, String contentType, String filename) {
+        if (format != null && !format.isBlank()) {
+            try {
+                return CatalogBulkService.Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported format: " + format + " (expected json or csv)");
+            }
+        }
+        if (filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".csv")) {
+            return CatalogBulkService.Format.CSV;
+        }
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("text/csv")) {
+            return CatalogBulkService.Format.CSV;
+        }
+        return CatalogBulkService.Format.JSON;
+    }
+}
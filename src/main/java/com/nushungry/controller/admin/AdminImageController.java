@@ -1,22 +1,25 @@
 package com.nushungry.controller.admin;
 
+import com.nushungry.dto.AdminImageResponse;
 import com.nushungry.model.Image;
 import com.nushungry.repository.ImageRepository;
+import com.nushungry.service.ImageService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import jakarta.persistence.criteria.Predicate;
-import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/admin/images")
@@ -25,13 +28,16 @@ import java.util.Map;
 public class AdminImageController {
 
     private final ImageRepository imageRepository;
+    private final ImageService imageService;
 
-    public AdminImageController(ImageRepository imageRepository) {
+    public AdminImageController(ImageRepository imageRepository, ImageService imageService) {
         this.imageRepository = imageRepository;
+        this.imageService = imageService;
     }
 
     /**
      * 分页查询图片列表
+     * 一次 JOIN 查询得到当前页及所属食堂和摊位名称，另一次查询得到总数
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> getAllImages(
@@ -44,38 +50,19 @@ public class AdminImageController {
         // 创建分页和排序
         Pageable pageable = PageRequest.of(page, size, Sort.by("uploadedAt").descending());
 
-        // 动态构建查询条件
-        Specification<Image> spec = (root, query, cb) -> {
-            List<Predicate> predicates = new ArrayList<>();
-
-            // 按类型筛选
-            if (type != null && !type.isEmpty()) {
-                try {
-                    Image.ImageType imageType = Image.ImageType.valueOf(type.toUpperCase());
-                    predicates.add(cb.equal(root.get("type"), imageType));
-                } catch (IllegalArgumentException e) {
-                    // 忽略无效的类型
-                }
-            }
-
-            // 按上传者筛选
-            if (uploadedBy != null && !uploadedBy.isEmpty()) {
-                predicates.add(cb.like(root.get("uploadedBy"), "%" + uploadedBy + "%"));
-            }
-
-            // 关键词搜索 (搜索图片URL)
-            if (keyword != null && !keyword.isEmpty()) {
-                predicates.add(cb.or(
-                    cb.like(root.get("imageUrl"), "%" + keyword + "%"),
-                    cb.like(root.get("uploadedBy"), "%" + keyword + "%")
-                ));
+        // 按类型筛选（忽略无效的类型）
+        Image.ImageType imageType = null;
+        if (type != null && !type.isEmpty()) {
+            try {
+                imageType = Image.ImageType.valueOf(type.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                // 忽略无效的类型
             }
+        }
 
-            return cb.and(predicates.toArray(new Predicate[0]));
-        };
-
-        // 执行查询
-        Page<Image> imagePage = imageRepository.findAll(spec, pageable);
+        // 执行查询（关键词搜索图片URL和上传者）
+        Page<AdminImageResponse> imagePage = imageRepository.findAdminPage(
+                imageType, likePattern(uploadedBy), likePattern(keyword), pageable);
 
         // 构建返回结果
         Map<String, Object> response = new HashMap<>();
@@ -89,76 +76,104 @@ public class AdminImageController {
     }
 
     /**
-     * 获取图片统计信息
+     * 获取图片统计信息（一次 GROUP BY 查询，按类型和所属对象统计数量和字节数）
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getImageStats() {
-        Map<String, Object> stats = new HashMap<>();
-
-        long totalImages = imageRepository.count();
-        long photoCount = imageRepository.count((root, query, cb) ->
-            cb.equal(root.get("type"), Image.ImageType.PHOTO));
-        long menuCount = imageRepository.count((root, query, cb) ->
-            cb.equal(root.get("type"), Image.ImageType.MENU));
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (Image.ImageType imageType : Image.ImageType.values()) {
+            byType.put(imageType.name(), 0L);
+        }
+        Map<String, Long> byOwner = new LinkedHashMap<>();
+        List<Map<String, Object>> breakdown = new ArrayList<>();
+        long totalImages = 0;
+        long totalBytes = 0;
+
+        for (Object[] row : imageRepository.countByTypeAndOwner()) {
+            String imageType = (String) row[0];
+            String owner = (String) row[1];
+            long count = ((Number) row[2]).longValue();
+            long bytes = ((Number) row[3]).longValue();
+
+            byType.merge(imageType, count, Long::sum);
+            byOwner.merge(owner, count, Long::sum);
+            totalImages += count;
+            totalBytes += bytes;
+
+            Map<String, Object> item = new HashMap<>();
+            item.put("type", imageType);
+            item.put("owner", owner);
+            item.put("count", count);
+            item.put("bytes", bytes);
+            breakdown.add(item);
+        }
 
+        Map<String, Object> stats = new HashMap<>();
         stats.put("totalImages", totalImages);
-        stats.put("photoCount", photoCount);
-        stats.put("menuCount", menuCount);
+        stats.put("photoCount", byType.get(Image.ImageType.PHOTO.name()));
+        stats.put("menuCount", byType.get(Image.ImageType.MENU.name()));
+        stats.put("totalBytes", totalBytes);
+        stats.put("byType", byType);
+        stats.put("byOwner", byOwner);
+        stats.put("breakdown", breakdown);
 
         return ResponseEntity.ok(stats);
     }
 
     /**
-     * 删除单张图片
+     * 为功能上线前保存的图片补全尺寸、字节数和摘要
+     */
+    @PostMapping("/metadata/backfill")
+    public ResponseEntity<Map<String, Object>> backfillMetadata() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "图片元数据补全完成");
+        response.putAll(imageService.backfillMetadata());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 删除单张图片（文件由后台线程删除）
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, String>> deleteImage(@PathVariable Long id) {
-        return imageRepository.findById(id)
-            .map(image -> {
-                // 删除文件系统中的图片文件
-                deleteImageFile(image.getImageUrl());
-                if (image.getThumbnailUrl() != null) {
-                    deleteImageFile(image.getThumbnailUrl());
-                }
-
-                // 删除数据库记录
-                imageRepository.delete(image);
-
-                Map<String, String> response = new HashMap<>();
-                response.put("message", "图片删除成功");
-                return ResponseEntity.ok(response);
-            })
-            .orElse(ResponseEntity.notFound().build());
+        if (imageService.deleteImages(List.of(id)).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "图片删除成功");
+        return ResponseEntity.ok(response);
     }
 
     /**
      * 批量删除图片
+     * 记录在一个事务中删除，文件由后台线程批量删除，接口不等待文件删除完成
      */
     @DeleteMapping("/batch")
     public ResponseEntity<Map<String, Object>> batchDeleteImages(@RequestBody List<Long> imageIds) {
-        int deletedCount = 0;
-        int failedCount = 0;
-
-        for (Long id : imageIds) {
-            try {
-                imageRepository.findById(id).ifPresent(image -> {
-                    deleteImageFile(image.getImageUrl());
-                    if (image.getThumbnailUrl() != null) {
-                        deleteImageFile(image.getThumbnailUrl());
-                    }
-                    imageRepository.delete(image);
-                });
-                deletedCount++;
-            } catch (Exception e) {
-                failedCount++;
-                System.err.println("删除图片失败: " + id + ", 错误: " + e.getMessage());
+        List<Long> requested = imageIds.stream().filter(Objects::nonNull).distinct().toList();
+        Set<Long> deleted = new HashSet<>(imageService.deleteImages(requested));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Long id : requested) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("id", id);
+            item.put("success", deleted.contains(id));
+            if (!deleted.contains(id)) {
+                item.put("message", "图片不存在");
             }
+            results.add(item);
         }
 
+        List<Long> notFound = requested.stream().filter(id -> !deleted.contains(id)).toList();
         Map<String, Object> response = new HashMap<>();
         response.put("message", "批量删除完成");
-        response.put("deletedCount", deletedCount);
-        response.put("failedCount", failedCount);
+        response.put("deletedCount", deleted.size());
+        // 记录在一个事务中删除，失败时整批抛出异常；不存在的图片单独返回
+        response.put("failedCount", 0);
+        response.put("notFoundCount", notFound.size());
+        response.put("notFoundIds", notFound);
+        response.put("results", results);
 
         return ResponseEntity.ok(response);
     }
@@ -168,7 +183,7 @@ public class AdminImageController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, Object>> getImageDetail(@PathVariable Long id) {
-        return imageRepository.findById(id)
+        return imageRepository.findAdminRowById(id)
             .map(image -> ResponseEntity.ok(buildImageResponse(image)))
             .orElse(ResponseEntity.notFound().build());
     }
@@ -178,9 +193,9 @@ public class AdminImageController {
     /**
      * 构建图片响应列表
      */
-    private List<Map<String, Object>> buildImageResponseList(List<Image> images) {
+    private List<Map<String, Object>> buildImageResponseList(List<AdminImageResponse> images) {
         List<Map<String, Object>> result = new ArrayList<>();
-        for (Image image : images) {
+        for (AdminImageResponse image : images) {
             result.add(buildImageResponse(image));
         }
         return result;
@@ -189,7 +204,7 @@ public class AdminImageController {
     /**
      * 构建单个图片响应对象
      */
-    private Map<String, Object> buildImageResponse(Image image) {
+    private Map<String, Object> buildImageResponse(AdminImageResponse image) {
         Map<String, Object> response = new HashMap<>();
         response.put("id", image.getId());
         response.put("imageUrl", image.getImageUrl());
@@ -197,20 +212,25 @@ public class AdminImageController {
         response.put("type", image.getType().name());
         response.put("uploadedAt", image.getUploadedAt());
         response.put("uploadedBy", image.getUploadedBy());
+        response.put("width", image.getWidth());
+        response.put("height", image.getHeight());
+        response.put("sizeBytes", image.getSizeBytes());
+        response.put("sha256", image.getSha256());
+        response.put("format", image.getFormat());
 
         // 关联的食堂或摊位信息
-        if (image.getCafeteria() != null) {
+        if (image.getCafeteriaId() != null) {
             Map<String, Object> cafeteriaInfo = new HashMap<>();
-            cafeteriaInfo.put("id", image.getCafeteria().getId());
-            cafeteriaInfo.put("name", image.getCafeteria().getName());
+            cafeteriaInfo.put("id", image.getCafeteriaId());
+            cafeteriaInfo.put("name", image.getCafeteriaName());
             response.put("cafeteria", cafeteriaInfo);
             response.put("relatedType", "cafeteria");
         }
 
-        if (image.getStall() != null) {
+        if (image.getStallId() != null) {
             Map<String, Object> stallInfo = new HashMap<>();
-            stallInfo.put("id", image.getStall().getId());
-            stallInfo.put("name", image.getStall().getName());
+            stallInfo.put("id", image.getStallId());
+            stallInfo.put("name", image.getStallName());
             response.put("stall", stallInfo);
             response.put("relatedType", "stall");
         }
@@ -218,25 +238,7 @@ public class AdminImageController {
         return response;
     }
 
-    /**
-     * 删除文件系统中的图片文件
-     */
-    private void deleteImageFile(String imageUrl) {
-        try {
-            if (imageUrl != null && !imageUrl.isEmpty()) {
-                // 从URL提取文件路径 (假设格式为 /uploads/xxx.jpg)
-                String filePath = "uploads" + imageUrl.substring(imageUrl.lastIndexOf("/"));
-                File file = new File(filePath);
-                if (file.exists()) {
-                    if (file.delete()) {
-                        System.out.println("文件删除成功: " + filePath);
-                    } else {
-                        System.err.println("文件删除失败: " + filePath);
-                    }
-                }
-            }
-        } catch (Exception e) {
-            System.err.println("删除文件时出错: " + e.getMessage());
-        }
+    private static String likePattern(String value) {
+        return value == null || value.isEmpty() ? null : "%" + value + "%";
     }
 }
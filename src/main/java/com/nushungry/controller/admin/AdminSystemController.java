@@ -0,0 +1,421 @@
+package com.nushungry.controller.admin;
+
+import com.nushungry.config.PasswordHashingProperties;
+import com.nushungry.config.VirtualThreadConfig;
+import com.nushungry.ratelimit.RateLimiter;
+import com.nushungry.search.PopularKeywordTracker;
+import com.nushungry.search.RecentKeywordCache;
+import com.nushungry.security.BcryptCostCalibrator;
+import com.nushungry.security.OffloadingPasswordEncoder;
+import com.nushungry.service.BlobStoreService;
+import com.nushungry.service.EmailOutboxDispatcher;
+import com.nushungry.service.FileDeletionService;
+import com.nushungry.service.ImageProcessingJobService;
+import com.nushungry.service.ImageProcessingService;
+import com.nushungry.service.ImageRenderService;
+import com.nushungry.service.RetentionService;
+import com.nushungry.service.SearchHistoryRollupService;
+import com.nushungry.service.SearchHistoryWriter;
+import com.nushungry.service.UploadResourceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 管理员系统维护控制器
+ * 提供后台任务的运行统计和手动触发接口
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/system")
+@RequiredArgsConstructor
+@Tag(name = "Admin System", description = "系统维护接口")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminSystemController {
+
+    private final RetentionService retentionService;
+    private final RateLimiter rateLimiter;
+    private final EmailOutboxDispatcher emailOutboxDispatcher;
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingProperties passwordHashingProperties;
+    private final VirtualThreadConfig virtualThreadConfig;
+    private final SearchHistoryWriter searchHistoryWriter;
+    private final PopularKeywordTracker popularKeywordTracker;
+    private final RecentKeywordCache recentKeywordCache;
+    private final SearchHistoryRollupService searchHistoryRollupService;
+    private final ImageProcessingService imageProcessingService;
+    private final ImageProcessingJobService imageProcessingJobService;
+    private final BlobStoreService blobStoreService;
+    private final FileDeletionService fileDeletionService;
+    private final UploadResourceService uploadResourceService;
+    private final ImageRenderService imageRenderService;
+
+    /**
+     * 获取数据清理统计
+     */
+    @GetMapping("/retention")
+    @Operation(summary = "获取数据清理统计", description = "各数据表的保留策略、累计清理行数和耗时")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getRetentionStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", retentionService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 手动执行一次数据清理
+     */
+    @PostMapping("/retention/run")
+    @Operation(summary = "执行数据清理", description = "立即执行一次数据清理（若其他节点正在执行则跳过）")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> runRetention() {
+        try {
+            Map<String, Long> purged = retentionService.runCleanup();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("skipped", purged.isEmpty());
+            response.put("data", purged);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error running retention cleanup: {}", e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 获取接口限流统计
+     */
+    @GetMapping("/rate-limit")
+    @Operation(summary = "获取接口限流统计", description = "各限流规则的放行/拒绝次数和当前跟踪的令牌桶数量")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", rateLimiter.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取邮件发件箱统计
+     */
+    @GetMapping("/mail-outbox")
+    @Operation(summary = "获取邮件发件箱统计", description = "待发送、发送中、死信数量以及发送次数统计")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getMailOutboxStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", emailOutboxDispatcher.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 重新投递死信邮件
+     */
+    @PostMapping("/mail-outbox/dead-letters/{id}/requeue")
+    @Operation(summary = "重新投递死信邮件", description = "将发送失败的邮件放回发件箱重新发送")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> requeueDeadLetter(@PathVariable Long id) {
+        Map<String, Object> response = new HashMap<>();
+        if (!emailOutboxDispatcher.requeueDeadLetter(id)) {
+            response.put("success", false);
+            response.put("message", "Dead letter not found");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取密码哈希线程池统计
+     */
+    @GetMapping("/password-hashing")
+    @Operation(summary = "获取密码哈希统计", description = "BCrypt成本因子、线程池队列深度、拒绝次数和平均耗时")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getPasswordHashingStats() {
+        Map<String, Object> response = new HashMap<>();
+        if (!(passwordEncoder instanceof OffloadingPasswordEncoder encoder)) {
+            response.put("success", false);
+            response.put("message", "Password hashing pool is not enabled");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        response.put("success", true);
+        response.put("data", encoder.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 在当前硬件上测定BCrypt成本因子
+     * apply=true 时立即使用推荐值，之后用户登录时会自动重新哈希
+     */
+    @PostMapping("/password-hashing/calibrate")
+    @Operation(summary = "测定BCrypt成本因子", description = "逐级测量哈希耗时，返回不超过目标耗时的最大成本因子")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> calibratePasswordHashing(
+            @RequestParam(required = false) Long targetLatencyMs,
+            @RequestParam(defaultValue = "false") boolean apply) {
+        long target = targetLatencyMs != null ? targetLatencyMs : passwordHashingProperties.getTargetLatencyMs();
+        BcryptCostCalibrator.Calibration calibration = BcryptCostCalibrator.calibrate(
+                target, passwordHashingProperties.getMinStrength(), passwordHashingProperties.getMaxStrength());
+
+        boolean applied = false;
+        if (apply && passwordEncoder instanceof OffloadingPasswordEncoder encoder) {
+            encoder.setStrength(calibration.recommendedStrength());
+            applied = true;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("targetLatencyMs", calibration.targetLatencyMs());
+        data.put("recommendedStrength", calibration.recommendedStrength());
+        data.put("measuredMillis", calibration.measuredMillis());
+        data.put("applied", applied);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取运行模式（平台线程/虚拟线程）和数据库连接池状态
+     */
+    @GetMapping("/runtime")
+    @Operation(summary = "获取运行模式", description = "Java版本、是否启用虚拟线程以及数据库连接池使用情况")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getRuntimeInfo() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", virtualThreadConfig.getRuntimeInfo());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取搜索历史写缓冲统计
+     */
+    @GetMapping("/search-history-buffer")
+    @Operation(summary = "获取搜索历史写缓冲统计", description = "缓冲区积压、丢弃数量、批量写入次数和写入延迟")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getSearchHistoryBufferStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", searchHistoryWriter.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取热门关键词内存统计状态
+     */
+    @GetMapping("/popular-keywords")
+    @Operation(summary = "获取热门关键词统计状态", description = "时间桶数量、跟踪的关键词数、缓存命中和启动重建耗时")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getPopularKeywordStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", popularKeywordTracker.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取用户最近搜索关键词缓存统计
+     */
+    @GetMapping("/recent-keywords")
+    @Operation(summary = "获取最近搜索关键词缓存统计", description = "缓存用户数、估算内存占用、命中/加载/淘汰次数")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getRecentKeywordStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", recentKeywordCache.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取搜索历史每日汇总统计
+     */
+    @GetMapping("/search-history-rollup")
+    @Operation(summary = "获取搜索历史汇总统计", description = "最后汇总日期、汇总表行数、search_history 是否已分区")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getSearchHistoryRollupStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", searchHistoryRollupService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 手动执行一次搜索历史汇总
+     */
+    @PostMapping("/search-history-rollup/run")
+    @Operation(summary = "执行搜索历史汇总", description = "汇总今天之前尚未汇总的日期（若其他节点正在执行则跳过）")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> runSearchHistoryRollup() {
+        try {
+            Map<LocalDate, Integer> written = searchHistoryRollupService.runRollup(LocalDate.now());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", written);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error running search history rollup: {}", e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 获取图片解码内存统计
+     */
+    @GetMapping("/image-processing")
+    @Operation(summary = "获取图片处理统计", description = "像素上限、解码内存预算、当前占用和排队数")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getImageProcessingStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", imageProcessingService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取图片后台处理任务统计
+     */
+    @GetMapping("/image-processing-jobs")
+    @Operation(summary = "获取图片处理任务统计", description = "处理线程数、待处理/处理中/失败任务数和累计处理耗时")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getImageProcessingJobStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", imageProcessingJobService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取上传文件存储统计
+     */
+    @GetMapping("/blob-store")
+    @Operation(summary = "获取上传文件存储统计", description = "文件数、占用空间、引用数、重复上传节省的空间和垃圾回收情况")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getBlobStoreStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", blobStoreService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 手动执行一次上传文件垃圾回收
+     */
+    @PostMapping("/blob-store/gc")
+    @Operation(summary = "执行上传文件垃圾回收", description = "核对引用数并删除超过宽限期的未引用文件（若其他节点正在执行则跳过）")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> runBlobStoreGc() {
+        try {
+            Map<String, Long> result = blobStoreService.collectGarbage();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", result);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error running blob store GC: {}", e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 获取文件删除任务统计
+     */
+    @GetMapping("/file-deletions")
+    @Operation(summary = "获取文件删除任务统计", description = "待删除、删除中、失败的任务数，已删除文件数和孤儿文件扫描情况")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getFileDeletionStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", fileDeletionService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 重试失败的文件删除任务
+     */
+    @PostMapping("/file-deletions/retry-failed")
+    @Operation(summary = "重试失败的文件删除任务", description = "将超过最大重试次数的任务放回待删除队列")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> retryFailedFileDeletions() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("requeued", fileDeletionService.retryFailed());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 手动执行一次孤儿文件扫描
+     */
+    @PostMapping("/file-deletions/orphan-scan")
+    @Operation(summary = "扫描孤儿文件", description = "核对上传目录与各表中的引用，默认只统计（dryRun=false 时写入删除任务）")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> scanOrphanFiles(@RequestParam(defaultValue = "true") boolean dryRun) {
+        try {
+            Map<String, Object> result = fileDeletionService.scanOrphans(dryRun);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("data", result);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error scanning orphan files: {}", e.getMessage());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * 获取上传文件访问统计
+     */
+    @GetMapping("/upload-serving")
+    @Operation(summary = "获取上传文件访问统计", description = "返回次数、304/206 次数、格式协商次数、sendfile 次数和发送字节数")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getUploadServingStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", uploadResourceService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取按需缩放缓存统计
+     */
+    @GetMapping("/image-render")
+    @Operation(summary = "获取按需缩放缓存统计", description = "缓存文件数和字节数、命中/生成/合并请求次数、淘汰次数")
+    @SecurityRequirement(name = "Bearer Authentication")
+    public ResponseEntity<Map<String, Object>> getImageRenderStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", imageRenderService.getStatistics());
+        return ResponseEntity.ok(response);
+    }
+}
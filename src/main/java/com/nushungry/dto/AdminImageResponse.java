@@ -0,0 +1,32 @@
+package com.nushungry.dto;
+
+import com.nushungry.model.Image;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 管理后台图片列表行（一次 JOIN 查询得到，包含所属食堂和摊位的名称）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminImageResponse {
+    private Long id;
+    private String imageUrl;
+    private String thumbnailUrl;
+    private Image.ImageType type;
+    private LocalDateTime uploadedAt;
+    private String uploadedBy;
+    private Integer width;
+    private Integer height;
+    private Long sizeBytes;
+    private String sha256;
+    private String format;
+    private Long cafeteriaId;
+    private String cafeteriaName;
+    private Long stallId;
+    private String stallName;
+}
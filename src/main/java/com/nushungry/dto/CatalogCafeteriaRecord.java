@@ -0,0 +1,25 @@
+package com.nushungry.dto;
+
+import lombok.Data;
+
+/**
+ * 目录批量导入/导出的餐厅行
+ * 以 name 作为自然键；导入时为 null 的字段保留数据库中的原值
+ */
+@Data
+public class CatalogCafeteriaRecord {
+
+    private Long id; // 仅导出时填写，导入时忽略
+    private String name;
+    private String description;
+    private String location;
+    private Double latitude;
+    private Double longitude;
+    private String nearestCarpark;
+    private String nearestBusStop;
+    private String halalInfo;
+    private Integer seatingCapacity;
+    private String imageUrl;
+    private String termTimeOpeningHours;
+    private String vacationOpeningHours;
+}
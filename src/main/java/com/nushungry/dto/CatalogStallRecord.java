@@ -0,0 +1,26 @@
+package com.nushungry.dto;
+
+import lombok.Data;
+
+/**
+ * 目录批量导入/导出的摊位行
+ * 以 (所属餐厅名称, 摊位名称) 作为自然键；导入时为 null 的字段保留数据库中的原值
+ */
+@Data
+public class CatalogStallRecord {
+
+    private Long id; // 仅导出时填写，导入时忽略
+    private String cafeteria; // 所属餐厅名称，可为空
+    private String name;
+    private String cuisineType;
+    private String imageUrl;
+    private String halalInfo;
+    private String contact;
+    private Double latitude;
+    private Double longitude;
+
+    // 以下统计字段仅导出，导入结束后由评价数据统一重算
+    private Double averageRating;
+    private Integer reviewCount;
+    private Double averagePrice;
+}
@@ -35,6 +35,9 @@ public class ReportResponse {
     private String handleNote;
     private LocalDateTime createdAt;
 
+    // 该评价的待处理举报人数（仅审核队列返回）
+    private Integer openReportCount;
+
     @Data
     @Builder
     @NoArgsConstructor
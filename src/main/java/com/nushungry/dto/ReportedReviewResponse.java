@@ -0,0 +1,35 @@
+package com.nushungry.dto;
+
+import com.nushungry.model.ReportReason;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 按评价合并的举报队列项DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportedReviewResponse {
+
+    // 被举报的评价
+    private ReportResponse.ReviewInfo review;
+
+    // 待处理举报数（不同举报人数）
+    private int openReports;
+
+    // 累计举报数
+    private int totalReports;
+
+    // 举报原因分布
+    private Map<ReportReason, Integer> reasonCounts;
+
+    private LocalDateTime firstReportedAt;
+    private LocalDateTime lastReportedAt;
+}
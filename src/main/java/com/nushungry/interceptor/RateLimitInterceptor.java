@@ -0,0 +1,48 @@
+package com.nushungry.interceptor;
+
+import com.nushungry.ratelimit.RateLimit;
+import com.nushungry.ratelimit.RateLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Set;
+
+/**
+ * 按客户端IP限流的拦截器
+ * 在请求体解析和控制器执行之前检查标注了 {@link RateLimit}（key = IP）的接口
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request,
+                             @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+
+        Set<RateLimit> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(
+                handlerMethod.getMethod(), RateLimit.class);
+        if (limits.isEmpty()) {
+            return true;
+        }
+
+        String clientIp = rateLimiter.resolveClientIp(request);
+        for (RateLimit limit : limits) {
+            if (limit.key() == RateLimit.Key.IP) {
+                rateLimiter.check(limit, clientIp);
+            }
+        }
+        return true;
+    }
+}
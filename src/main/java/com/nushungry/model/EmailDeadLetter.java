@@ -0,0 +1,49 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 发送失败邮件实体（死信）
+ * 超过最大重试次数的邮件从发件箱移到此表，供管理员排查或重新投递
+ */
+@Data
+@Entity
+@Table(name = "email_dead_letters", indexes = {
+    @Index(name = "idx_email_dead_letters_failed_at", columnList = "failed_at")
+})
+public class EmailDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 原发件箱记录ID
+     */
+    @Column(name = "outbox_id")
+    private Long outboxId;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+}
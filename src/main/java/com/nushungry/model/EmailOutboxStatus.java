@@ -0,0 +1,26 @@
+package com.nushungry.model;
+
+/**
+ * 待发送邮件状态枚举
+ */
+public enum EmailOutboxStatus {
+    PENDING("待发送", "等待发送或等待重试"),
+    SENDING("发送中", "已被发送线程领取"),
+    SENT("已发送", "邮件已成功投递到SMTP服务器");
+
+    private final String displayName;
+    private final String description;
+
+    EmailOutboxStatus(String displayName, String description) {
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,68 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文件删除任务
+ * 删除图片等记录时在同一事务中写入，由后台线程批量删除磁盘上的文件，删除成功后移除任务
+ */
+@Data
+@Entity
+@Table(name = "file_deletions", indexes = {
+    @Index(name = "idx_file_deletions_status_next_attempt", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_file_deletions_claim_token", columnList = "claim_token")
+})
+public class FileDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 待删除文件的访问路径
+     */
+    @Column(nullable = false, length = 500)
+    private String url;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private FileDeletionStatus status = FileDeletionStatus.PENDING;
+
+    /**
+     * 已尝试删除次数
+     */
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    /**
+     * 下次可删除的时间（用于退避重试）
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 领取该任务的批次标识
+     */
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
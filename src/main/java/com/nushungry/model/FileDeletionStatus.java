@@ -0,0 +1,26 @@
+package com.nushungry.model;
+
+/**
+ * 文件删除任务状态枚举
+ */
+public enum FileDeletionStatus {
+    PENDING("待删除", "等待删除或等待重试"),
+    DELETING("删除中", "已被删除线程领取"),
+    FAILED("失败", "超过最大重试次数，需要人工处理");
+
+    private final String displayName;
+    private final String description;
+
+    FileDeletionStatus(String displayName, String description) {
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
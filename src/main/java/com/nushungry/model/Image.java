@@ -8,7 +8,11 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = {
+    @Index(name = "idx_images_uploaded_at", columnList = "uploaded_at"),
+    @Index(name = "idx_images_type_uploaded_at", columnList = "image_type, uploaded_at"),
+    @Index(name = "idx_images_sha256", columnList = "sha256")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Image {
 
@@ -22,6 +26,24 @@ public class Image {
     @Column(name = "thumbnail_url")
     private String thumbnailUrl;
 
+    @Column(name = "format", length = 16)
+    private String format; // 缩略图和响应式图片的编码格式，如 jpeg
+
+    @Column(name = "alternate_formats", length = 64)
+    private String alternateFormats; // 同时生成的其他格式（逗号分隔），按 Accept 返回
+
+    @Column(name = "width")
+    private Integer width; // 原图宽度（像素）
+
+    @Column(name = "height")
+    private Integer height; // 原图高度（像素）
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes; // 原图字节数
+
+    @Column(name = "sha256", length = 64)
+    private String sha256; // 原图内容的 SHA-256（十六进制）
+
     @Enumerated(EnumType.STRING)
     @Column(name = "image_type", nullable = false)
     private ImageType type = ImageType.PHOTO;
@@ -0,0 +1,87 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 图片处理任务
+ * 上传时只保存原图并写入任务，由后台线程生成各尺寸的图片，完成后回写 Image.thumbnailUrl
+ */
+@Data
+@Entity
+@Table(name = "image_processing_jobs", indexes = {
+    @Index(name = "idx_image_jobs_status_next_attempt", columnList = "status, next_attempt_at"),
+    @Index(name = "idx_image_jobs_claim_token", columnList = "claim_token"),
+    @Index(name = "idx_image_jobs_completed_at", columnList = "completed_at")
+})
+public class ImageProcessingJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 原图访问路径
+     */
+    @Column(name = "source_url", nullable = false, length = 500)
+    private String sourceUrl;
+
+    /**
+     * 关联的图片记录（通用上传接口没有关联记录）
+     */
+    @Column(name = "image_id")
+    private Long imageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ImageProcessingJobStatus status = ImageProcessingJobStatus.PENDING;
+
+    /**
+     * 已尝试处理次数
+     */
+    @Column(nullable = false)
+    private int attempts = 0;
+
+    /**
+     * 下次可处理的时间（用于退避重试）
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 领取该任务的标识
+     */
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    /**
+     * 生成的图片：宽度 -> URL
+     */
+    @Convert(converter = ImageVariantsConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private Map<Integer, String> variants = new TreeMap<>();
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
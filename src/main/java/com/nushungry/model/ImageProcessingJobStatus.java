@@ -0,0 +1,27 @@
+package com.nushungry.model;
+
+/**
+ * 图片处理任务状态枚举
+ */
+public enum ImageProcessingJobStatus {
+    PENDING("待处理", "等待处理或等待重试"),
+    PROCESSING("处理中", "已被处理线程领取"),
+    COMPLETED("已完成", "所有尺寸的图片已生成"),
+    FAILED("失败", "超过最大重试次数或原图无法处理");
+
+    private final String displayName;
+    private final String description;
+
+    ImageProcessingJobStatus(String displayName, String description) {
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
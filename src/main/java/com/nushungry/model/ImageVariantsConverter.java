@@ -0,0 +1,44 @@
+package com.nushungry.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 图片尺寸 -> URL 映射与数据库字符串之间的转换，格式：300=/uploads/a.jpg;800=/uploads/b.jpg
+ */
+@Converter
+public class ImageVariantsConverter implements AttributeConverter<Map<Integer, String>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Map<Integer, String> variants) {
+        if (variants == null || variants.isEmpty()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        new TreeMap<>(variants).forEach((width, url) -> {
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(width).append('=').append(url);
+        });
+        return builder.toString();
+    }
+
+    @Override
+    public Map<Integer, String> convertToEntityAttribute(String value) {
+        Map<Integer, String> variants = new TreeMap<>();
+        if (value == null || value.isBlank()) {
+            return variants;
+        }
+        for (String entry : value.split(";")) {
+            int separator = entry.indexOf('=');
+            if (separator > 0) {
+                variants.put(Integer.parseInt(entry.substring(0, separator)), entry.substring(separator + 1));
+            }
+        }
+        return variants;
+    }
+}
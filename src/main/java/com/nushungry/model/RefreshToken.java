@@ -10,7 +10,9 @@ import java.time.LocalDateTime;
  */
 @Data
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+    @Index(name = "idx_refresh_tokens_expires_at", columnList = "expires_at")
+})
 public class RefreshToken {
 
     @Id
@@ -6,11 +6,13 @@ import java.time.LocalDateTime;
 
 /**
  * 评价举报实体
- * 用户可以举报不当评价内容
+ * 用户可以举报不当评价内容，每个用户对同一评价只能举报一次
  */
 @Data
 @Entity
-@Table(name = "review_reports")
+@Table(name = "review_reports", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_review_reports_review_reporter", columnNames = {"review_id", "reporter_id"})
+})
 public class ReviewReport {
 
     @Id
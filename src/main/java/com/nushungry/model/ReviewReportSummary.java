@@ -0,0 +1,96 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 评价举报汇总（每条被举报的评价一行）
+ * 举报创建时以主键约束原子地插入或累加，处理时增量调整；审核队列按待处理举报人数和最近举报时间排序，
+ * 同一评价的多条举报在队列中合并为一项，不再按举报明细分组统计
+ */
+@Data
+@Entity
+@Table(name = "review_report_summary", indexes = {
+    @Index(name = "idx_review_report_summary_priority", columnList = "open_reports, last_reported_at")
+})
+public class ReviewReportSummary {
+
+    /**
+     * 被举报评价ID
+     */
+    @Id
+    @Column(name = "review_id")
+    private Long reviewId;
+
+    /**
+     * 待处理（PENDING/REVIEWING）举报数，每个用户对同一评价只能举报一次，即待处理的不同举报人数
+     */
+    @Column(name = "open_reports", nullable = false)
+    private int openReports;
+
+    /**
+     * 累计举报数（含已处理）
+     */
+    @Column(name = "total_reports", nullable = false)
+    private int totalReports;
+
+    // 各举报原因的累计次数
+    @Column(name = "spam_reports", nullable = false)
+    private int spamReports;
+
+    @Column(name = "offensive_reports", nullable = false)
+    private int offensiveReports;
+
+    @Column(name = "inappropriate_reports", nullable = false)
+    private int inappropriateReports;
+
+    @Column(name = "false_info_reports", nullable = false)
+    private int falseInfoReports;
+
+    @Column(name = "off_topic_reports", nullable = false)
+    private int offTopicReports;
+
+    @Column(name = "duplicate_reports", nullable = false)
+    private int duplicateReports;
+
+    @Column(name = "other_reports", nullable = false)
+    private int otherReports;
+
+    /**
+     * 首次举报时间
+     */
+    @Column(name = "first_reported_at", nullable = false)
+    private LocalDateTime firstReportedAt;
+
+    /**
+     * 最近一次举报时间
+     */
+    @Column(name = "last_reported_at", nullable = false)
+    private LocalDateTime lastReportedAt;
+
+    /**
+     * 举报原因分布（只包含出现过的原因）
+     */
+    public Map<ReportReason, Integer> getReasonCounts() {
+        Map<ReportReason, Integer> counts = new EnumMap<>(ReportReason.class);
+        for (ReportReason reason : ReportReason.values()) {
+            int count = switch (reason) {
+                case SPAM -> spamReports;
+                case OFFENSIVE -> offensiveReports;
+                case INAPPROPRIATE -> inappropriateReports;
+                case FALSE_INFO -> falseInfoReports;
+                case OFF_TOPIC -> offTopicReports;
+                case DUPLICATE -> duplicateReports;
+                case OTHER -> otherReports;
+            };
+            if (count > 0) {
+                counts.put(reason, count);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,41 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 定时任务锁实体
+ * 多节点部署时保证同一任务同一时间只在一个节点上执行
+ */
+@Data
+@Entity
+@Table(name = "scheduler_locks")
+public class SchedulerLock {
+
+    /**
+     * 任务名称
+     */
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    /**
+     * 锁的过期时间，过期后其他节点可以获取
+     */
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    /**
+     * 获取锁的时间
+     */
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    /**
+     * 持有锁的节点标识
+     */
+    @Column(name = "locked_by", length = 255)
+    private String lockedBy;
+}
@@ -0,0 +1,43 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 搜索关键词按天汇总
+ * 由 SearchHistoryRollupService 每天从 search_history 汇总前一天的数据，
+ * 超过一天的热门关键词统计查询此表，不再扫描原始搜索记录
+ */
+@Data
+@Entity
+@Table(name = "search_keyword_daily", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_search_keyword_daily_date_keyword", columnNames = {"stat_date", "keyword"})
+}, indexes = {
+    @Index(name = "idx_search_keyword_daily_date", columnList = "stat_date")
+})
+public class SearchKeywordDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 统计日期
+     */
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate statDate;
+
+    /**
+     * 搜索关键词
+     */
+    @Column(name = "keyword", nullable = false, length = 255)
+    private String keyword;
+
+    /**
+     * 当天搜索次数
+     */
+    @Column(name = "search_count", nullable = false)
+    private long searchCount;
+}
@@ -0,0 +1,80 @@
+package com.nushungry.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按内容寻址的上传文件
+ * 相同内容（SHA-256）只保存一份，图片、评价图片和头像通过 URL 引用，refCount 记录引用数；
+ * 引用数归零超过宽限期后由垃圾回收删除文件。后台生成的各尺寸图片按内容缓存在 variants 中，
+ * 同步压缩生成的压缩图和缩略图通过 derivedKey 按原图内容查找
+ */
+@Data
+@Entity
+@Table(name = "stored_blobs", indexes = {
+    @Index(name = "uk_stored_blobs_sha256", columnList = "sha256", unique = true),
+    @Index(name = "uk_stored_blobs_url", columnList = "url", unique = true),
+    @Index(name = "uk_stored_blobs_derived_key", columnList = "derived_key", unique = true),
+    @Index(name = "idx_stored_blobs_unreferenced", columnList = "ref_count, unreferenced_since")
+})
+public class StoredBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 内容的 SHA-256（十六进制）
+     */
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    /**
+     * 访问路径
+     */
+    @Column(nullable = false, length = 500)
+    private String url;
+
+    /**
+     * 由原图生成的文件：原图 SHA-256、处理类型和输出格式派生的键（上传的原始文件为 null）
+     */
+    @Column(name = "derived_key", length = 64)
+    private String derivedKey;
+
+    @Column(name = "content_type", nullable = false, length = 32)
+    private String contentType;
+
+    @Column(nullable = false)
+    private long size;
+
+    /**
+     * 引用该文件的记录数
+     */
+    @Column(name = "ref_count", nullable = false)
+    private int refCount = 0;
+
+    /**
+     * 引用数归零的时间（有引用时为 null），垃圾回收从该时间开始计算宽限期
+     */
+    @Column(name = "unreferenced_since")
+    private LocalDateTime unreferencedSince;
+
+    /**
+     * 已生成的图片：宽度 -> URL
+     */
+    @Convert(converter = ImageVariantsConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private Map<Integer, String> variants = new TreeMap<>();
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
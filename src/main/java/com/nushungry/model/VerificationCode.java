@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
  * 用于存储邮箱验证码信息
  */
 @Entity
-@Table(name = "verification_codes")
+@Table(name = "verification_codes", indexes = {
+    @Index(name = "idx_verification_codes_expires_at", columnList = "expires_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -49,7 +51,7 @@ public class VerificationCode {
     /**
      * 过期时间
      */
-    @Column(nullable = false)
+    @Column(name = "expires_at", nullable = false)
     private LocalDateTime expiresAt;
 
     /**
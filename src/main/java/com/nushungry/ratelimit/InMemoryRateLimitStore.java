@@ -0,0 +1,111 @@
+package com.nushungry.ratelimit;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * 内存令牌桶存储
+ * 每个桶的状态是不可变对象，通过CAS更新，热路径上无锁
+ * 规则的容量或周期变化（配置刷新、共用键前缀的不同规则）时替换该键的桶，保留当前剩余的令牌
+ */
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+
+    public InMemoryRateLimitStore() {
+        this(System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock 纳秒时钟（测试时可替换）
+     */
+    public InMemoryRateLimitStore(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public long tryConsume(String key, int capacity, Duration period) {
+        long periodNanos = Math.max(1, period.toNanos());
+        Bucket bucket = buckets.get(key);
+        if (bucket == null || !bucket.matches(capacity, periodNanos)) {
+            bucket = buckets.compute(key, (k, existing) -> {
+                if (existing != null && existing.matches(capacity, periodNanos)) {
+                    return existing;
+                }
+                long now = nanoClock.getAsLong();
+                double tokens = existing != null
+                        ? Math.min(capacity, existing.tokensAt(existing.state.get(), now))
+                        : capacity;
+                return new Bucket(capacity, periodNanos, tokens, now);
+            });
+        }
+
+        while (true) {
+            State current = bucket.state.get();
+            long now = nanoClock.getAsLong();
+            double tokens = bucket.tokensAt(current, now);
+
+            if (tokens < 1.0) {
+                double missing = 1.0 - tokens;
+                long waitNanos = (long) Math.ceil(missing * bucket.periodNanos / bucket.capacity);
+                return Math.max(1, waitNanos / 1_000_000);
+            }
+
+            if (bucket.state.compareAndSet(current, new State(tokens - 1.0, now))) {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public int evictIdle() {
+        long now = nanoClock.getAsLong();
+        int before = buckets.size();
+        buckets.entrySet().removeIf(entry -> {
+            Bucket bucket = entry.getValue();
+            return bucket.tokensAt(bucket.state.get(), now) >= bucket.capacity;
+        });
+        return before - buckets.size();
+    }
+
+    @Override
+    public int size() {
+        return buckets.size();
+    }
+
+    private static final class Bucket {
+        private final int capacity;
+        private final long periodNanos;
+        private final AtomicReference<State> state;
+
+        Bucket(int capacity, long periodNanos, double tokens, long now) {
+            this.capacity = capacity;
+            this.periodNanos = periodNanos;
+            this.state = new AtomicReference<>(new State(tokens, now));
+        }
+
+        boolean matches(int capacity, long periodNanos) {
+            return this.capacity == capacity && this.periodNanos == periodNanos;
+        }
+
+        double tokensAt(State state, long now) {
+            long elapsed = Math.max(0, now - state.updatedAtNanos);
+            double refill = (double) elapsed * capacity / periodNanos;
+            return Math.min(capacity, state.tokens + refill);
+        }
+    }
+
+    private static final class State {
+        private final double tokens;
+        private final long updatedAtNanos;
+
+        State(double tokens, long updatedAtNanos) {
+            this.tokens = tokens;
+            this.updatedAtNanos = updatedAtNanos;
+        }
+    }
+}
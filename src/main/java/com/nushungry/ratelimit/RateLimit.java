@@ -0,0 +1,65 @@
+package com.nushungry.ratelimit;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 接口限流注解（令牌桶）
+ * 每个桶容量为 capacity，每 periodSeconds 秒匀速补满。
+ * 同一接口可叠加多个注解，分别按IP、邮箱、用户名限流。
+ *
+ * <pre>
+ * &#64;RateLimit(name = "login-ip", key = RateLimit.Key.IP, capacity = 20, periodSeconds = 60)
+ * &#64;RateLimit(name = "login-username", key = RateLimit.Key.USERNAME, capacity = 5, periodSeconds = 60)
+ * </pre>
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimits.class)
+public @interface RateLimit {
+
+    /**
+     * 限流规则名称，可通过 app.rate-limit.limits.&lt;name&gt;.* 覆盖容量和周期
+     */
+    String name();
+
+    /**
+     * 限流维度
+     */
+    Key key();
+
+    /**
+     * 桶容量（周期内允许的请求数）
+     */
+    int capacity();
+
+    /**
+     * 补满整个桶所需的秒数
+     */
+    long periodSeconds();
+
+    /**
+     * 限流维度
+     * IP 在进入控制器前按客户端地址检查；EMAIL/USERNAME 在请求体解析后按对应字段检查
+     */
+    enum Key {
+        IP(null),
+        EMAIL("email"),
+        USERNAME("username");
+
+        private final String bodyProperty;
+
+        Key(String bodyProperty) {
+            this.bodyProperty = bodyProperty;
+        }
+
+        public String getBodyProperty() {
+            return bodyProperty;
+        }
+    }
+}
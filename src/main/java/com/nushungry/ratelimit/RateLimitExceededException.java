@@ -0,0 +1,18 @@
+package com.nushungry.ratelimit;
+
+/**
+ * 请求超过限流阈值
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String limitName, long retryAfterSeconds) {
+        super("请求过于频繁，请稍后再试 (" + limitName + ")");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,58 @@
+package com.nushungry.ratelimit;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Set;
+
+/**
+ * 按请求体字段（邮箱、用户名）限流
+ * 在请求体反序列化之后、控制器方法执行之前检查
+ */
+@ControllerAdvice
+@RequiredArgsConstructor
+public class RateLimitRequestBodyAdvice extends RequestBodyAdviceAdapter {
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        Method method = methodParameter.getMethod();
+        return method != null && hasBodyKeyedLimit(method);
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter,
+                                Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        BeanWrapper wrapper = new BeanWrapperImpl(body);
+        for (RateLimit limit : limitsOf(parameter.getMethod())) {
+            String property = limit.key().getBodyProperty();
+            if (property == null || !wrapper.isReadableProperty(property)) {
+                continue;
+            }
+            Object value = wrapper.getPropertyValue(property);
+            if (value != null) {
+                rateLimiter.check(limit, value.toString());
+            }
+        }
+        return body;
+    }
+
+    private static boolean hasBodyKeyedLimit(Method method) {
+        return limitsOf(method).stream().anyMatch(limit -> limit.key() != RateLimit.Key.IP);
+    }
+
+    private static Set<RateLimit> limitsOf(Method method) {
+        return AnnotatedElementUtils.findMergedRepeatableAnnotations(method, RateLimit.class);
+    }
+}
@@ -0,0 +1,30 @@
+package com.nushungry.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * 限流状态存储
+ * 默认使用单机内存实现；多节点部署时可注册共享存储（如Redis）的实现替换默认Bean
+ */
+public interface RateLimitStore {
+
+    /**
+     * 尝试从桶中取出一个令牌
+     * @param key 桶的键（规则名 + 维度值）
+     * @param capacity 桶容量
+     * @param period 补满整个桶所需时间
+     * @return 0 表示放行；否则为需要等待的毫秒数
+     */
+    long tryConsume(String key, int capacity, Duration period);
+
+    /**
+     * 清理长时间空闲（已补满）的桶
+     * @return 清理的数量
+     */
+    int evictIdle();
+
+    /**
+     * 当前跟踪的桶数量
+     */
+    int size();
+}
@@ -0,0 +1,134 @@
+package com.nushungry.ratelimit;
+
+import com.nushungry.config.RateLimitProperties;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 限流器
+ * 在请求到达业务逻辑（数据库查询、BCrypt校验、发邮件）之前拒绝超额请求
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    private final RateLimitStore store;
+    private final RateLimitProperties properties;
+
+    private final ConcurrentMap<String, AtomicLong> allowedCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> rejectedCounts = new ConcurrentHashMap<>();
+
+    public RateLimiter(ObjectProvider<RateLimitStore> storeProvider, RateLimitProperties properties) {
+        // 未注册共享存储时使用单机内存实现
+        this.store = storeProvider.getIfAvailable(InMemoryRateLimitStore::new);
+        this.properties = properties;
+    }
+
+    /**
+     * 按注解规则检查
+     */
+    public void check(RateLimit limit, String value) {
+        check(limit.name(), value, limit.capacity(), Duration.ofSeconds(limit.periodSeconds()));
+    }
+
+    /**
+     * 检查并消耗一个令牌，超限时抛出 {@link RateLimitExceededException}
+     *
+     * @param name 规则名称
+     * @param value 维度值（IP、邮箱或用户名）
+     * @param capacity 默认容量
+     * @param period 默认补满周期
+     */
+    public void check(String name, String value, int capacity, Duration period) {
+        if (!properties.isEnabled() || value == null || value.isBlank()) {
+            return;
+        }
+
+        RateLimitProperties.Limit override = properties.getLimits().get(name);
+        if (override != null) {
+            if (override.getCapacity() != null) {
+                capacity = override.getCapacity();
+            }
+            if (override.getPeriodSeconds() != null) {
+                period = Duration.ofSeconds(override.getPeriodSeconds());
+            }
+        }
+
+        String key = name + ":" + value.trim().toLowerCase(Locale.ROOT);
+        long waitMs = store.tryConsume(key, capacity, period);
+        if (waitMs == 0) {
+            counter(allowedCounts, name).incrementAndGet();
+            return;
+        }
+
+        counter(rejectedCounts, name).incrementAndGet();
+        long retryAfterSeconds = Math.max(1, (waitMs + 999) / 1000);
+        log.warn("Rate limit '{}' exceeded for {}, retry after {}s", name, value, retryAfterSeconds);
+        throw new RateLimitExceededException(name, retryAfterSeconds);
+    }
+
+    /**
+     * 获取客户端IP
+     * 仅在配置信任反向代理时读取 X-Forwarded-For，否则使用连接的远端地址
+     */
+    public String resolveClientIp(HttpServletRequest request) {
+        if (properties.isTrustForwardedFor()) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (StringUtils.hasText(forwardedFor)) {
+                // 取最左侧（原始客户端）地址
+                return forwardedFor.split(",")[0].trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 定期清理已补满的空闲桶，避免内存随IP/邮箱数量无限增长
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval-ms:300000}")
+    public void evictIdleBuckets() {
+        int evicted = store.evictIdle();
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+
+    /**
+     * 获取各规则的放行/拒绝统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> rules = new HashMap<>();
+        allowedCounts.keySet().forEach(name -> rules.put(name, ruleStats(name)));
+        rejectedCounts.keySet().forEach(name -> rules.putIfAbsent(name, ruleStats(name)));
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("store", store.getClass().getSimpleName());
+        stats.put("trackedBuckets", store.size());
+        stats.put("rules", rules);
+        return stats;
+    }
+
+    private Map<String, Long> ruleStats(String name) {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("allowed", counter(allowedCounts, name).get());
+        stats.put("rejected", counter(rejectedCounts, name).get());
+        return stats;
+    }
+
+    private static AtomicLong counter(ConcurrentMap<String, AtomicLong> counters, String name) {
+        return counters.computeIfAbsent(name, k -> new AtomicLong());
+    }
+}
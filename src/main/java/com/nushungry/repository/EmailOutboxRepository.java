@@ -0,0 +1,53 @@
+package com.nushungry.repository;
+
+import com.nushungry.model.EmailOutbox;
+import com.nushungry.model.EmailOutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    /**
+     * 查找已到发送时间的邮件ID
+     */
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = :status AND e.nextAttemptAt <= :now " +
+           "ORDER BY e.nextAttemptAt, e.id")
+    List<Long> findReadyIds(@Param("status") EmailOutboxStatus status,
+                            @Param("now") LocalDateTime now,
+                            Pageable pageable);
+
+    /**
+     * 领取一批邮件（条件更新，多个线程/节点同时领取时每封邮件只会被领取一次）
+     * @return 实际领取的数量
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.nushungry.model.EmailOutboxStatus.SENDING, " +
+           "e.claimToken = :token, e.claimedAt = :now " +
+           "WHERE e.id IN :ids AND e.status = com.nushungry.model.EmailOutboxStatus.PENDING")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    /**
+     * 按批次标识查找已领取的邮件
+     */
+    List<EmailOutbox> findByClaimToken(String claimToken);
+
+    /**
+     * 释放长时间未完成的领取（发送线程所在节点崩溃时）
+     * @return 释放的数量
+     */
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.nushungry.model.EmailOutboxStatus.PENDING, e.claimToken = NULL " +
+           "WHERE e.status = com.nushungry.model.EmailOutboxStatus.SENDING AND e.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff);
+
+    long countByStatus(EmailOutboxStatus status);
+}
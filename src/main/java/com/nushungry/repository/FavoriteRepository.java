@@ -3,8 +3,12 @@ package com.nushungry.repository;
 import com.nushungry.model.Favorite;
 import com.nushungry.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,4 +22,8 @@ public interface FavoriteRepository extends JpaRepository<Favorite, Long> {
     void deleteByUserAndStallId(User user, Long stallId);
     void deleteByIdAndUser(Long id, User user);
     List<Favorite> findByIdInAndUser(List<Long> ids, User user);
+
+    @Modifying
+    @Query("DELETE FROM Favorite f WHERE f.stall.id IN :stallIds")
+    int deleteByStallIdIn(@Param("stallIds") Collection<Long> stallIds);
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.nushungry.repository;
+
+import com.nushungry.model.FileDeletion;
+import com.nushungry.model.FileDeletionStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FileDeletionRepository extends JpaRepository<FileDeletion, Long> {
+
+    /**
+     * 查找已到删除时间的任务ID
+     */
+    @Query("SELECT d.id FROM FileDeletion d WHERE d.status = :status AND d.nextAttemptAt <= :now " +
+           "ORDER BY d.nextAttemptAt, d.id")
+    List<Long> findReadyIds(@Param("status") FileDeletionStatus status,
+                            @Param("now") LocalDateTime now,
+                            Pageable pageable);
+
+    /**
+     * 领取一批任务（条件更新，多个线程/节点同时领取时每个任务只会被领取一次）
+     * @return 实际领取的数量
+     */
+    @Modifying
+    @Query("UPDATE FileDeletion d SET d.status = com.nushungry.model.FileDeletionStatus.DELETING, " +
+           "d.claimToken = :token, d.claimedAt = :now " +
+           "WHERE d.id IN :ids AND d.status = com.nushungry.model.FileDeletionStatus.PENDING")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    /**
+     * 按批次标识查找已领取的任务
+     */
+    List<FileDeletion> findByClaimToken(String claimToken);
+
+    /**
+     * 释放长时间未完成的领取（删除线程所在节点崩溃时）
+     * @return 释放的数量
+     */
+    @Modifying
+    @Query("UPDATE FileDeletion d SET d.status = com.nushungry.model.FileDeletionStatus.PENDING, d.claimToken = NULL " +
+           "WHERE d.status = com.nushungry.model.FileDeletionStatus.DELETING AND d.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * 将失败的任务重新放回待删除队列
+     * @return 重新放回的数量
+     */
+    @Modifying
+    @Query("UPDATE FileDeletion d SET d.status = com.nushungry.model.FileDeletionStatus.PENDING, " +
+           "d.attempts = 0, d.nextAttemptAt = :now " +
+           "WHERE d.status = com.nushungry.model.FileDeletionStatus.FAILED")
+    int retryFailed(@Param("now") LocalDateTime now);
+
+    /**
+     * 已在队列中的路径（孤儿扫描时避免重复写入）
+     */
+    @Query("SELECT d.url FROM FileDeletion d WHERE d.url IN :urls")
+    List<String> findQueuedUrls(@Param("urls") Collection<String> urls);
+
+    long countByStatus(FileDeletionStatus status);
+}
@@ -0,0 +1,66 @@
+package com.nushungry.repository;
+
+import com.nushungry.model.ImageProcessingJob;
+import com.nushungry.model.ImageProcessingJobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ImageProcessingJobRepository extends JpaRepository<ImageProcessingJob, Long> {
+
+    /**
+     * 查找已到处理时间的任务ID
+     */
+    @Query("SELECT j.id FROM ImageProcessingJob j WHERE j.status = :status AND j.nextAttemptAt <= :now " +
+           "ORDER BY j.nextAttemptAt, j.id")
+    List<Long> findReadyIds(@Param("status") ImageProcessingJobStatus status,
+                            @Param("now") LocalDateTime now,
+                            Pageable pageable);
+
+    /**
+     * 领取一个任务（条件更新，多个线程/节点同时领取时每个任务只会被领取一次）
+     * @return 实际领取的数量
+     */
+    @Modifying
+    @Query("UPDATE ImageProcessingJob j SET j.status = com.nushungry.model.ImageProcessingJobStatus.PROCESSING, " +
+           "j.claimToken = :token, j.claimedAt = :now " +
+           "WHERE j.id = :id AND j.status = com.nushungry.model.ImageProcessingJobStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    Optional<ImageProcessingJob> findByClaimToken(String claimToken);
+
+    /**
+     * 释放长时间未完成的领取（处理线程所在节点崩溃时）
+     * @return 释放的数量
+     */
+    @Modifying
+    @Query("UPDATE ImageProcessingJob j SET j.status = com.nushungry.model.ImageProcessingJobStatus.PENDING, " +
+           "j.claimToken = NULL " +
+           "WHERE j.status = com.nushungry.model.ImageProcessingJobStatus.PROCESSING AND j.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff);
+
+    long countByStatus(ImageProcessingJobStatus status);
+
+    /**
+     * 查找图片记录的处理任务（不包括正在处理的任务）
+     */
+    @Query("SELECT j FROM ImageProcessingJob j WHERE j.imageId IN :imageIds " +
+           "AND j.status <> com.nushungry.model.ImageProcessingJobStatus.PROCESSING")
+    List<ImageProcessingJob> findIdleByImageIdIn(@Param("imageIds") Collection<Long> imageIds);
+
+    /**
+     * 图片记录正在处理的任务读取的原图
+     */
+    @Query("SELECT j.sourceUrl FROM ImageProcessingJob j WHERE j.imageId IN :imageIds " +
+           "AND j.status = com.nushungry.model.ImageProcessingJobStatus.PROCESSING")
+    List<String> findProcessingSourceUrlsByImageIdIn(@Param("imageIds") Collection<Long> imageIds);
+}
@@ -1,15 +1,82 @@
 package com.nushungry.repository;
 
+import com.nushungry.dto.AdminImageResponse;
 import com.nushungry.model.Image;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Long>, JpaSpecificationExecutor<Image> {
+
+    String ADMIN_ROW = "SELECT new com.nushungry.dto.AdminImageResponse(i.id, i.imageUrl, i.thumbnailUrl, i.type, " +
+            "i.uploadedAt, i.uploadedBy, i.width, i.height, i.sizeBytes, i.sha256, i.format, " +
+            "c.id, c.name, s.id, s.name) " +
+            "FROM Image i LEFT JOIN i.cafeteria c LEFT JOIN i.stall s ";
+
+    String ADMIN_FILTER = "WHERE (:type IS NULL OR i.type = :type) " +
+            "AND (:uploadedBy IS NULL OR i.uploadedBy LIKE :uploadedBy) " +
+            "AND (:keyword IS NULL OR i.imageUrl LIKE :keyword OR i.uploadedBy LIKE :keyword)";
+
+    String OWNER_TYPE = "CASE WHEN cafeteria_id IS NOT NULL THEN 'cafeteria' " +
+            "WHEN stall_id IS NOT NULL THEN 'stall' ELSE 'none' END";
     List<Image> findByCafeteriaId(Long cafeteriaId);
     List<Image> findByStallId(Long stallId);
     List<Image> findByUploadedBy(String uploadedBy);
+
+    /**
+     * 管理后台图片列表：一次 JOIN 查询得到所属食堂和摊位名称，不加载关联实体
+     * @param uploadedBy 上传者 LIKE 模式，null 表示不过滤
+     * @param keyword 图片路径或上传者 LIKE 模式，null 表示不过滤
+     */
+    @Query(value = ADMIN_ROW + ADMIN_FILTER,
+           countQuery = "SELECT COUNT(i) FROM Image i " + ADMIN_FILTER)
+    Page<AdminImageResponse> findAdminPage(@Param("type") Image.ImageType type,
+                                           @Param("uploadedBy") String uploadedBy,
+                                           @Param("keyword") String keyword,
+                                           Pageable pageable);
+
+    @Query(ADMIN_ROW + "WHERE i.id = :id")
+    Optional<AdminImageResponse> findAdminRowById(@Param("id") Long id);
+
+    /**
+     * 按类型和所属对象（食堂/摊位/无）统计图片数量和字节数
+     * @return [image_type, owner_type, count, bytes]
+     */
+    @Query(value = "SELECT image_type, " + OWNER_TYPE + " AS owner_type, COUNT(*), COALESCE(SUM(size_bytes), 0) " +
+                   "FROM images GROUP BY image_type, " + OWNER_TYPE, nativeQuery = true)
+    List<Object[]> countByTypeAndOwner();
+
+    /**
+     * 查找缺少尺寸、字节数或摘要的图片（按ID分批）
+     */
+    @Query("SELECT i FROM Image i WHERE i.id > :afterId " +
+           "AND (i.sha256 IS NULL OR i.width IS NULL OR i.sizeBytes IS NULL) ORDER BY i.id")
+    List<Image> findMissingMetadataAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 查询图片的文件路径（不加载关联的食堂和摊位）
+     * @return [id, imageUrl, thumbnailUrl]
+     */
+    @Query("SELECT i.id, i.imageUrl, i.thumbnailUrl FROM Image i WHERE i.id IN :ids")
+    List<Object[]> findFileUrlsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 查询属于指定摊位的图片ID
+     */
+    @Query("SELECT i.id FROM Image i WHERE i.stall.id IN :stallIds")
+    List<Long> findIdsByStallIdIn(@Param("stallIds") Collection<Long> stallIds);
+
+    @Modifying
+    @Query("DELETE FROM Image i WHERE i.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -6,7 +6,9 @@ import com.nushungry.model.ReportStatus;
 import com.nushungry.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -22,11 +24,24 @@ public interface ReviewReportRepository extends JpaRepository<ReviewReport, Long
      */
     boolean existsByReviewAndReporter(Review review, User reporter);
 
+    /**
+     * 按ID检查用户是否已举报某评价（不加载评价和用户）
+     */
+    boolean existsByReviewIdAndReporterId(Long reviewId, Long reporterId);
+
     /**
      * 查询某评价的所有举报
      */
+    @EntityGraph(attributePaths = {"review", "review.user", "review.stall", "reporter"})
     List<ReviewReport> findByReview(Review review);
 
+    /**
+     * 分页查询所有举报，评价、评价作者、摊位和举报人随举报一次加载
+     */
+    @Override
+    @EntityGraph(attributePaths = {"review", "review.user", "review.stall", "reporter"})
+    Page<ReviewReport> findAll(Pageable pageable);
+
     /**
      * 按状态查询举报列表
      */
@@ -47,6 +62,41 @@ public interface ReviewReportRepository extends JpaRepository<ReviewReport, Long
      */
     long countByStatus(ReportStatus status);
 
+    /**
+     * 审核队列：按评价的待处理举报人数、最近举报时间排序，同一评价内新举报在前
+     * 评价、评价作者、摊位和举报人通过 fetch join 一次加载
+     * @return [ReviewReport, 该评价的待处理举报数（无汇总行时为 null）]
+     */
+    @Query(value = "SELECT r, s.openReports FROM ReviewReport r " +
+                   "JOIN FETCH r.review rv JOIN FETCH rv.user JOIN FETCH r.reporter LEFT JOIN FETCH rv.stall " +
+                   "LEFT JOIN ReviewReportSummary s ON s.reviewId = rv.id " +
+                   "WHERE r.status IN :statuses " +
+                   "ORDER BY COALESCE(s.openReports, 0) DESC, COALESCE(s.lastReportedAt, r.createdAt) DESC, " +
+                   "r.createdAt DESC, r.id DESC",
+           countQuery = "SELECT COUNT(r) FROM ReviewReport r WHERE r.status IN :statuses")
+    Page<Object[]> findModerationQueue(@Param("statuses") List<ReportStatus> statuses, Pageable pageable);
+
+    /**
+     * 一条语句处理某评价的全部待处理举报
+     * @return 处理的举报数
+     */
+    @Modifying
+    @Query("UPDATE ReviewReport r SET r.status = :status, r.handledBy = :handledBy, r.handledAt = :handledAt, " +
+           "r.handleNote = :handleNote WHERE r.review.id = :reviewId AND r.status IN :openStatuses")
+    int handleOpenReportsOfReview(@Param("reviewId") Long reviewId,
+                                  @Param("openStatuses") List<ReportStatus> openStatuses,
+                                  @Param("status") ReportStatus status,
+                                  @Param("handledBy") String handledBy,
+                                  @Param("handledAt") LocalDateTime handledAt,
+                                  @Param("handleNote") String handleNote);
+
+    /**
+     * 按状态分组统计举报数
+     * @return [status, count]
+     */
+    @Query("SELECT r.status, COUNT(r) FROM ReviewReport r GROUP BY r.status")
+    List<Object[]> countGroupByStatus();
+
     /**
      * 查询某时间段内的举报
      */
@@ -56,5 +106,6 @@ public interface ReviewReportRepository extends JpaRepository<ReviewReport, Long
     /**
      * 查询用户的举报历史
      */
+    @EntityGraph(attributePaths = {"review", "review.user", "review.stall", "reporter"})
     Page<ReviewReport> findByReporter(User reporter, Pageable pageable);
 }
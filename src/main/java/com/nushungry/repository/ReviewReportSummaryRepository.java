@@ -0,0 +1,73 @@
+package com.nushungry.repository;
+
+import com.nushungry.model.ReviewReportSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ReviewReportSummaryRepository extends JpaRepository<ReviewReportSummary, Long> {
+
+    /**
+     * 记录一条新举报：评价没有汇总行时插入，已有时在同一语句中累加（由主键约束保证原子性）
+     * @param reason 举报原因（ReportReason 名称）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO review_report_summary (review_id, open_reports, total_reports, " +
+                   "spam_reports, offensive_reports, inappropriate_reports, false_info_reports, " +
+                   "off_topic_reports, duplicate_reports, other_reports, first_reported_at, last_reported_at) " +
+                   "VALUES (:reviewId, 1, 1, " +
+                   "CASE WHEN :reason = 'SPAM' THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :reason = 'OFFENSIVE' THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :reason = 'INAPPROPRIATE' THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :reason = 'FALSE_INFO' THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :reason = 'OFF_TOPIC' THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :reason = 'DUPLICATE' THEN 1 ELSE 0 END, " +
+                   "CASE WHEN :reason = 'OTHER' THEN 1 ELSE 0 END, " +
+                   ":reportedAt, :reportedAt) " +
+                   "ON DUPLICATE KEY UPDATE open_reports = open_reports + 1, total_reports = total_reports + 1, " +
+                   "spam_reports = spam_reports + VALUES(spam_reports), " +
+                   "offensive_reports = offensive_reports + VALUES(offensive_reports), " +
+                   "inappropriate_reports = inappropriate_reports + VALUES(inappropriate_reports), " +
+                   "false_info_reports = false_info_reports + VALUES(false_info_reports), " +
+                   "off_topic_reports = off_topic_reports + VALUES(off_topic_reports), " +
+                   "duplicate_reports = duplicate_reports + VALUES(duplicate_reports), " +
+                   "other_reports = other_reports + VALUES(other_reports), " +
+                   "last_reported_at = GREATEST(last_reported_at, VALUES(last_reported_at))",
+           nativeQuery = true)
+    int recordReport(@Param("reviewId") Long reviewId,
+                     @Param("reason") String reason,
+                     @Param("reportedAt") LocalDateTime reportedAt);
+
+    /**
+     * 举报在待处理与已处理状态之间变化时调整待处理数
+     */
+    @Modifying
+    @Query("UPDATE ReviewReportSummary s SET s.openReports = s.openReports + :delta " +
+           "WHERE s.reviewId = :reviewId AND s.openReports + :delta >= 0")
+    int adjustOpenReports(@Param("reviewId") Long reviewId, @Param("delta") int delta);
+
+    /**
+     * 某评价的待处理举报全部处理后清零
+     */
+    @Modifying
+    @Query("UPDATE ReviewReportSummary s SET s.openReports = 0 WHERE s.reviewId = :reviewId")
+    int clearOpenReports(@Param("reviewId") Long reviewId);
+
+    /**
+     * 按评价合并的审核队列：每条有待处理举报的评价一项，评价、作者和摊位一次加载
+     * @return [ReviewReportSummary, Review]
+     */
+    @Query(value = "SELECT s, rv FROM ReviewReportSummary s JOIN Review rv ON rv.id = s.reviewId " +
+                   "JOIN FETCH rv.user LEFT JOIN FETCH rv.stall " +
+                   "WHERE s.openReports > 0 " +
+                   "ORDER BY s.openReports DESC, s.lastReportedAt DESC, s.reviewId DESC",
+           countQuery = "SELECT COUNT(s) FROM ReviewReportSummary s WHERE s.openReports > 0")
+    Page<Object[]> findOpenQueue(Pageable pageable);
+}
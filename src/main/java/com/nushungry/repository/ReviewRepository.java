@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -140,4 +141,11 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
     Page<Review> findByStallIdWithSort(@Param("stallId") Long stallId,
                                         @Param("sortBy") String sortBy,
                                         Pageable pageable);
+
+    /**
+     * 批量查询评价是否存在及其所属摊位（批量删除时的校验查询）
+     * @return [id, stallId]
+     */
+    @Query("SELECT r.id, r.stall.id FROM Review r WHERE r.id IN :ids")
+    List<Object[]> findStallIdsByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -33,13 +33,35 @@ public interface SearchHistoryRepository extends JpaRepository<SearchHistory, Lo
 
     /**
      * 查找热门搜索关键词（所有用户）
+     * 关键词按小写、去除首尾空白后分组，与内存统计的归一化一致
      */
-    @Query("SELECT sh.keyword, COUNT(sh.keyword) as count FROM SearchHistory sh " +
+    @Query("SELECT LOWER(TRIM(sh.keyword)), COUNT(sh) as count FROM SearchHistory sh " +
            "WHERE sh.searchTime > :since " +
-           "GROUP BY sh.keyword " +
+           "GROUP BY LOWER(TRIM(sh.keyword)) " +
            "ORDER BY count DESC")
     List<Object[]> findPopularKeywords(@Param("since") LocalDateTime since, Pageable pageable);
 
+    /**
+     * 统计时间段内各关键词的搜索次数（关键词按小写、去除首尾空白后分组）
+     */
+    @Query("SELECT LOWER(TRIM(sh.keyword)), COUNT(sh) FROM SearchHistory sh " +
+           "WHERE sh.searchTime >= :from AND sh.searchTime < :to " +
+           "GROUP BY LOWER(TRIM(sh.keyword))")
+    List<Object[]> countKeywordsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 按关键词和时间桶统计时间段内的搜索次数（一次查询重建内存中的热门关键词统计）
+     * @param bucketMinutes 时间桶长度（分钟），桶从 from 开始编号
+     * @return [keyword, 桶序号（从0开始）, count]
+     */
+    @Query(value = "SELECT t.keyword, t.bucket, COUNT(*) FROM (" +
+                   "SELECT keyword, FLOOR(TIMESTAMPDIFF(MINUTE, :from, search_time) / :bucketMinutes) AS bucket " +
+                   "FROM search_history WHERE search_time >= :from AND search_time < :to) t " +
+                   "GROUP BY t.keyword, t.bucket", nativeQuery = true)
+    List<Object[]> countKeywordsByBucket(@Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to,
+                                         @Param("bucketMinutes") int bucketMinutes);
+
     /**
      * 删除用户的所有搜索历史
      */
@@ -0,0 +1,38 @@
+package com.nushungry.repository;
+
+import com.nushungry.model.SearchKeywordDaily;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SearchKeywordDailyRepository extends JpaRepository<SearchKeywordDaily, Long> {
+
+    /**
+     * 已汇总的最后一天
+     */
+    @Query("SELECT MAX(d.statDate) FROM SearchKeywordDaily d")
+    LocalDate findLastStatDate();
+
+    /**
+     * 汇总日期范围内各关键词的搜索次数（按小写关键词合并）
+     */
+    @Query("SELECT LOWER(d.keyword), SUM(d.searchCount) FROM SearchKeywordDaily d " +
+           "WHERE d.statDate >= :from AND d.statDate <= :to " +
+           "GROUP BY LOWER(d.keyword) " +
+           "ORDER BY SUM(d.searchCount) DESC")
+    List<Object[]> sumKeywordCounts(@Param("from") LocalDate from, @Param("to") LocalDate to, Pageable pageable);
+
+    /**
+     * 删除某一天的汇总（重新汇总前调用）
+     */
+    @Modifying
+    @Query("DELETE FROM SearchKeywordDaily d WHERE d.statDate = :statDate")
+    int deleteByStatDate(@Param("statDate") LocalDate statDate);
+}
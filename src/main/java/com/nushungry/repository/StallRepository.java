@@ -3,10 +3,13 @@ package com.nushungry.repository;
 import com.nushungry.model.Stall;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -23,4 +26,28 @@ public interface StallRepository extends JpaRepository<Stall, Long>, JpaSpecific
      * 统计指定时间范围内创建的摊位数量
      */
     long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
-}
\ No newline at end of file
+
+    /**
+     * 批量查询摊位是否存在及其封面图（批量删除时的校验查询）
+     * @return [id, imageUrl]
+     */
+    @Query("SELECT s.id, s.imageUrl FROM Stall s WHERE s.id IN :ids")
+    List<Object[]> findImageUrlsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Stall s WHERE s.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按评价数据一次性重算一批摊位的平均评分、评价数和人均价格
+     * 取整规则与 RatingCalculationService / PriceCalculationService 一致
+     */
+    @Modifying
+    @Query(value = "UPDATE stall SET " +
+            "average_rating = COALESCE((SELECT ROUND(AVG(r.rating), 1) FROM review r WHERE r.stall_id = stall.id), 0), " +
+            "review_count = (SELECT COUNT(*) FROM review r WHERE r.stall_id = stall.id), " +
+            "average_price = COALESCE((SELECT ROUND(AVG(r.total_cost / r.number_of_people), 2) FROM review r " +
+            "WHERE r.stall_id = stall.id AND r.total_cost > 0 AND r.number_of_people > 0), 0) " +
+            "WHERE id IN (:ids)", nativeQuery = true)
+    int recalculateAggregates(@Param("ids") Collection<Long> ids);
+}
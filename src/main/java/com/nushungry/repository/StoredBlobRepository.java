@@ -0,0 +1,112 @@
+package com.nushungry.repository;
+
+import com.nushungry.model.StoredBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, Long> {
+
+    Optional<StoredBlob> findBySha256(String sha256);
+
+    Optional<StoredBlob> findByUrl(String url);
+
+    Optional<StoredBlob> findByDerivedKey(String derivedKey);
+
+    List<StoredBlob> findByUrlIn(Collection<String> urls);
+
+    /**
+     * 增加引用
+     * @return 更新的行数（URL 不是内容寻址文件时为 0）
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount + 1, b.unreferencedSince = NULL WHERE b.url = :url")
+    int retain(@Param("url") String url);
+
+    /**
+     * 减少引用
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.url = :url AND b.refCount > 0")
+    int release(@Param("url") String url);
+
+    /**
+     * 标记引用数归零的时间（已标记的保持不变）
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.unreferencedSince = :now " +
+           "WHERE b.url = :url AND b.refCount = 0 AND b.unreferencedSince IS NULL")
+    int markUnreferenced(@Param("url") String url, @Param("now") LocalDateTime now);
+
+    /**
+     * 记录生成该文件的原图派生键（相同结果由不同原图生成时保留最后一个）
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.derivedKey = :derivedKey WHERE b.id = :id")
+    int assignDerivedKey(@Param("id") Long id, @Param("derivedKey") String derivedKey);
+
+    /**
+     * 移除其他记录上的派生键（派生键唯一）
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.derivedKey = NULL WHERE b.derivedKey = :derivedKey")
+    int clearDerivedKey(@Param("derivedKey") String derivedKey);
+
+    /**
+     * 重新开始未引用文件的宽限期（重复上传已有内容时），有引用的文件保持不变
+     * @return 更新的行数，0 表示记录已被垃圾回收删除
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.unreferencedSince = " +
+           "CASE WHEN b.refCount = 0 THEN :now ELSE b.unreferencedSince END WHERE b.id = :id")
+    int touch(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 按实际引用数修正（条件更新，期间引用数发生变化时不修改）
+     */
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = :actual, b.unreferencedSince = :unreferencedSince " +
+           "WHERE b.id = :id AND b.refCount = :expected")
+    int correctRefCount(@Param("id") Long id,
+                        @Param("expected") int expected,
+                        @Param("actual") int actual,
+                        @Param("unreferencedSince") LocalDateTime unreferencedSince);
+
+    /**
+     * 查找引用数为零且超过宽限期的文件
+     */
+    @Query("SELECT b FROM StoredBlob b WHERE b.id > :afterId AND b.refCount = 0 AND b.unreferencedSince < :cutoff " +
+           "ORDER BY b.id")
+    List<StoredBlob> findGarbage(@Param("afterId") Long afterId,
+                                 @Param("cutoff") LocalDateTime cutoff,
+                                 Pageable pageable);
+
+    /**
+     * 按ID顺序分批读取（用于核对引用数）
+     */
+    @Query("SELECT b FROM StoredBlob b WHERE b.id > :afterId ORDER BY b.id")
+    List<StoredBlob> findBatchAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 删除仍未被引用的文件记录（条件删除，期间被引用或重新上传时不删除）
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.id = :id AND b.refCount = 0 AND b.unreferencedSince < :cutoff")
+    int deleteIfUnreferenced(@Param("id") Long id, @Param("cutoff") LocalDateTime cutoff);
+
+    @Query("SELECT COALESCE(SUM(b.size), 0) FROM StoredBlob b")
+    long sumSize();
+
+    @Query("SELECT COALESCE(SUM(b.refCount), 0) FROM StoredBlob b")
+    long sumRefCount();
+}
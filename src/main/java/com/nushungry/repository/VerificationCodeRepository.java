@@ -46,18 +46,6 @@ public interface VerificationCodeRepository extends JpaRepository<VerificationCo
     @Query("DELETE FROM VerificationCode vc WHERE vc.expiresAt < :now")
     void deleteExpiredCodes(LocalDateTime now);
 
-    /**
-     * 统计指定邮箱和类型在指定时间段内创建的验证码数量
-     *
-     * @param email 邮箱地址
-     * @param type 验证码类型
-     * @param since 起始时间
-     * @return 验证码数量
-     */
-    @Query("SELECT COUNT(vc) FROM VerificationCode vc WHERE vc.email = :email " +
-           "AND vc.type = :type AND vc.createdAt > :since")
-    long countRecentCodes(String email, String type, LocalDateTime since);
-
     /**
      * 标记验证码为已使用
      *
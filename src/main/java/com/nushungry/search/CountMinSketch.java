@@ -0,0 +1,70 @@
+package com.nushungry.search;
+
+/**
+ * Count-Min Sketch 频率估计
+ * 每个键在 depth 行中各映射到一个计数器，估计值取各行最小值（只会高估，不会低估）。
+ * 误差上限约为 总计数 * e / width，概率 1 - e^-depth。
+ * 非线程安全，由调用方加锁。
+ */
+public class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[][] counters;
+    private long totalCount;
+
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[depth][width];
+    }
+
+    public void add(String key, long count) {
+        int h1 = hash(key);
+        int h2 = mix(h1 ^ 0x9E3779B9);
+        for (int row = 0; row < depth; row++) {
+            counters[row][index(h1, h2, row)] += count;
+        }
+        totalCount += count;
+    }
+
+    public long estimate(String key) {
+        int h1 = hash(key);
+        int h2 = mix(h1 ^ 0x9E3779B9);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row][index(h1, h2, row)]);
+        }
+        return min;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * 双重哈希：第 row 行使用 h1 + row * h2
+     */
+    private int index(int h1, int h2, int row) {
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    private static int hash(String key) {
+        return mix(key.hashCode());
+    }
+
+    /**
+     * murmur3 的 finalizer，打散 String.hashCode 的低位
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,334 @@
+package com.nushungry.search;
+
+import com.nushungry.config.PopularKeywordsProperties;
+import com.nushungry.repository.SearchHistoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 热门搜索关键词流式统计
+ * 按时间桶（默认1小时）统计关键词频率，每个桶由 Count-Min Sketch 估计频率、
+ * Space-Saving 摘要跟踪高频候选。查询任意窗口（1小时/24小时/7天）时按滑动窗口合并各桶的候选：
+ * 窗口覆盖 windowBuckets + 1 个桶，最旧的桶只部分落在窗口内，按落在窗口内的时间比例计入。
+ * 结果按窗口缓存 cacheTtlMs，查询不访问数据库。
+ * 启动时用一次分组查询从 search_history 表重建各桶，重建完成前以及超过 maxWindowHours 的窗口由调用方回退到SQL。
+ */
+@Slf4j
+@Component
+public class PopularKeywordTracker {
+
+    private final PopularKeywordsProperties properties;
+    private final SearchHistoryRepository searchHistoryRepository;
+    private final LongSupplier clock;
+    private final long bucketMillis;
+    private final Bucket[] ring;
+    private final long startedAt;
+
+    private final ConcurrentMap<Long, Ranking> rankingCache = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private volatile long rebuildMillis = -1;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    @Autowired
+    public PopularKeywordTracker(PopularKeywordsProperties properties,
+                                 SearchHistoryRepository searchHistoryRepository) {
+        this(properties, searchHistoryRepository, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock 毫秒时钟（测试时可替换）
+     */
+    public PopularKeywordTracker(PopularKeywordsProperties properties,
+                                 SearchHistoryRepository searchHistoryRepository,
+                                 LongSupplier clock) {
+        this.properties = properties;
+        this.searchHistoryRepository = searchHistoryRepository;
+        this.clock = clock;
+        this.bucketMillis = Duration.ofMinutes(Math.max(1, properties.getBucketMinutes())).toMillis();
+        long windowBuckets = Duration.ofHours(properties.getMaxWindowHours()).toMillis() / bucketMillis;
+        this.ring = new Bucket[(int) Math.max(1, windowBuckets) + 1];
+        this.startedAt = clock.getAsLong();
+        this.ready = !properties.isRebuildOnStartup();
+    }
+
+    /**
+     * 记录一次搜索（在请求线程中调用，只做内存计数）
+     */
+    public void record(String keyword, LocalDateTime searchTime) {
+        if (!properties.isEnabled() || keyword == null) {
+            return;
+        }
+        String normalized = normalize(keyword);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        Bucket bucket = bucketFor(toMillis(searchTime) / bucketMillis);
+        if (bucket != null) {
+            bucket.add(normalized, 1);
+            recorded.incrementAndGet();
+        }
+    }
+
+    /**
+     * 查询窗口内的热门关键词
+     * 返回 empty 表示内存统计不可用（未启用、正在重建或窗口超出范围），调用方应回退到SQL查询
+     */
+    public Optional<List<KeywordCount>> getTopKeywords(Duration window, int limit) {
+        if (!properties.isEnabled() || !ready || window.compareTo(Duration.ofHours(properties.getMaxWindowHours())) > 0) {
+            return Optional.empty();
+        }
+        long windowMillis = Math.max(1, window.toMillis());
+        long now = clock.getAsLong();
+
+        Ranking ranking = rankingCache.get(windowMillis);
+        if (ranking != null && now - ranking.computedAt < properties.getCacheTtlMs()
+                && ranking.bucketIndex == now / bucketMillis) {
+            cacheHits.incrementAndGet();
+        } else {
+            cacheMisses.incrementAndGet();
+            ranking = computeRanking(now, windowMillis);
+            rankingCache.put(windowMillis, ranking);
+        }
+
+        List<KeywordCount> keywords = ranking.keywords;
+        return Optional.of(keywords.subList(0, Math.min(Math.max(0, limit), keywords.size())));
+    }
+
+    /**
+     * 合并滑动窗口 [now - windowMillis, now) 覆盖的各桶
+     * 桶内的搜索按时间均匀分布估计，只部分落在窗口内的桶按重叠时间比例计入
+     */
+    private Ranking computeRanking(long now, long windowMillis) {
+        long currentIndex = now / bucketMillis;
+        long windowStart = now - windowMillis;
+        Map<String, Long> merged = new HashMap<>();
+        for (long index = currentIndex; index >= Math.floorDiv(windowStart, bucketMillis); index--) {
+            Bucket bucket = ring[slot(index)];
+            if (bucket == null || bucket.index != index) {
+                continue;
+            }
+            // 当前桶只包含到 now 为止的数据
+            long bucketStart = index * bucketMillis;
+            long bucketEnd = Math.min(bucketStart + bucketMillis, now);
+            double weight = bucketEnd > bucketStart
+                    ? (double) (bucketEnd - Math.max(bucketStart, windowStart)) / (bucketEnd - bucketStart)
+                    : 1.0;
+            if (weight <= 0) {
+                continue;
+            }
+            bucket.snapshot(index < currentIndex).forEach((key, count) -> {
+                long weighted = weight >= 1.0 ? count : Math.round(count * weight);
+                if (weighted > 0) {
+                    merged.merge(key, weighted, Long::sum);
+                }
+            });
+        }
+
+        List<KeywordCount> keywords = new ArrayList<>(merged.size());
+        merged.forEach((key, count) -> keywords.add(new KeywordCount(key, count)));
+        keywords.sort(Comparator.comparingLong(KeywordCount::count).reversed()
+                .thenComparing(KeywordCount::keyword));
+        List<KeywordCount> top = List.copyOf(keywords.subList(0, Math.min(properties.getTopK(), keywords.size())));
+        return new Ranking(now, currentIndex, top);
+    }
+
+    /**
+     * 取得时间桶，必要时替换环上已过期的旧桶；比环上更旧的时间返回 null
+     */
+    private Bucket bucketFor(long index) {
+        int slot = slot(index);
+        Bucket bucket = ring[slot];
+        if (bucket != null && bucket.index == index) {
+            return bucket;
+        }
+        synchronized (ring) {
+            bucket = ring[slot];
+            if (bucket == null || bucket.index < index) {
+                bucket = new Bucket(index, properties);
+                ring[slot] = bucket;
+            }
+            return bucket.index == index ? bucket : null;
+        }
+    }
+
+    private int slot(long index) {
+        return (int) Math.floorMod(index, (long) ring.length);
+    }
+
+    /**
+     * 启动后在后台线程中重建，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!properties.isEnabled() || !properties.isRebuildOnStartup()) {
+            return;
+        }
+        Thread thread = new Thread(this::rebuild, "popular-keywords-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 从 search_history 按时间桶聚合重建启动前的统计
+     * 只读取启动时间之前的记录，启动后的搜索已由 record 实时计入，不会重复计数
+     */
+    void rebuild() {
+        long started = System.currentTimeMillis();
+        long firstIndex = startedAt / bucketMillis - (ring.length - 1);
+        int bucketMinutes = (int) (bucketMillis / Duration.ofMinutes(1).toMillis());
+        long rows = 0;
+        try {
+            List<Object[]> counts = searchHistoryRepository.countKeywordsByBucket(
+                    toLocalDateTime(firstIndex * bucketMillis), toLocalDateTime(startedAt), bucketMinutes);
+            for (Object[] row : counts) {
+                String normalized = row[0] == null ? "" : normalize((String) row[0]);
+                if (normalized.isEmpty()) {
+                    continue;
+                }
+                Bucket bucket = bucketFor(firstIndex + ((Number) row[1]).longValue());
+                if (bucket == null) {
+                    continue;
+                }
+                long count = ((Number) row[2]).longValue();
+                bucket.add(normalized, count);
+                rows += count;
+            }
+            rebuildMillis = System.currentTimeMillis() - started;
+            log.info("Popular keyword statistics rebuilt from {} search history rows in {}ms", rows, rebuildMillis);
+        } catch (Exception e) {
+            log.error("Failed to rebuild popular keyword statistics, continuing with live data only: {}",
+                    e.getMessage());
+        } finally {
+            rankingCache.clear();
+            ready = true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 获取统计运行状态
+     */
+    public Map<String, Object> getStatistics() {
+        int buckets = 0;
+        int trackedKeywords = 0;
+        for (Bucket bucket : ring) {
+            if (bucket != null) {
+                buckets++;
+                trackedKeywords += bucket.size();
+            }
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("ready", ready);
+        stats.put("bucketMinutes", properties.getBucketMinutes());
+        stats.put("maxWindowHours", properties.getMaxWindowHours());
+        stats.put("activeBuckets", buckets);
+        stats.put("trackedKeywords", trackedKeywords);
+        stats.put("recorded", recorded.get());
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("cacheMisses", cacheMisses.get());
+        stats.put("rebuildMillis", rebuildMillis);
+        stats.put("sketchBytesPerBucket", (long) properties.getSketchWidth() * properties.getSketchDepth() * Long.BYTES);
+        return stats;
+    }
+
+    /**
+     * 关键词归一化：去除首尾空白、合并连续空白、转小写
+     */
+    public static String normalize(String keyword) {
+        return keyword.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 关键词及其在窗口内的估计搜索次数
+     */
+    public record KeywordCount(String keyword, long count) {
+    }
+
+    private record Ranking(long computedAt, long bucketIndex, List<KeywordCount> keywords) {
+    }
+
+    /**
+     * 一个时间桶的统计
+     * 已结束的桶在第一次查询时生成快照，之后的查询直接复用
+     */
+    private static final class Bucket {
+        private final long index;
+        private final CountMinSketch sketch;
+        private final SpaceSavingSummary summary;
+        private volatile Map<String, Long> frozen;
+
+        Bucket(long index, PopularKeywordsProperties properties) {
+            this.index = index;
+            this.sketch = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+            this.summary = new SpaceSavingSummary(properties.getTopK());
+        }
+
+        synchronized void add(String keyword, long count) {
+            sketch.add(keyword, count);
+            summary.offer(keyword, count);
+            frozen = null;
+        }
+
+        Map<String, Long> snapshot(boolean closed) {
+            Map<String, Long> snapshot = frozen;
+            if (snapshot != null) {
+                return snapshot;
+            }
+            synchronized (this) {
+                snapshot = counts();
+                if (closed) {
+                    frozen = snapshot;
+                }
+                return snapshot;
+            }
+        }
+
+        /**
+         * Space-Saving 与 Count-Min 都只会高估，取两者较小值
+         */
+        private Map<String, Long> counts() {
+            Map<String, Long> counts = new HashMap<>(summary.size() * 2);
+            for (SpaceSavingSummary.Counter counter : summary.getCounters().values()) {
+                counts.put(counter.getKey(), Math.min(counter.getCount(), sketch.estimate(counter.getKey())));
+            }
+            return counts;
+        }
+
+        synchronized int size() {
+            return summary.size();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.nushungry.search;
+
+import com.nushungry.config.RecentKeywordCacheProperties;
+import com.nushungry.repository.SearchHistoryRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 用户最近搜索关键词缓存
+ * 每个用户保留最近 perUserCapacity 个去重后的关键词（最新在前），搜索时直接更新，
+ * 未命中时从数据库加载一次。所有用户共享一个内存预算，超出时淘汰最久未访问的用户。
+ * 搜索历史是批量异步写库的，加载时会把尚未写入的内存记录合并到数据库结果之前。
+ */
+@Component
+public class RecentKeywordCache {
+
+    /**
+     * 每个用户条目和每个关键词的固定开销估算（对象头、引用、链表节点）
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+    private static final long KEYWORD_OVERHEAD_BYTES = 56;
+
+    private final RecentKeywordCacheProperties properties;
+    private final SearchHistoryRepository searchHistoryRepository;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long loads;
+    private long evictions;
+
+    public RecentKeywordCache(RecentKeywordCacheProperties properties,
+                              SearchHistoryRepository searchHistoryRepository) {
+        this.properties = properties;
+        this.searchHistoryRepository = searchHistoryRepository;
+    }
+
+    /**
+     * 记录用户的一次搜索
+     * 用户不在缓存中时只保存这条记录，读取时再与数据库合并
+     */
+    public void record(Long userId, String keyword) {
+        if (!properties.isEnabled() || userId == null || keyword == null || keyword.isBlank()) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                entry = new Entry(false);
+                entries.put(userId, entry);
+                totalBytes += ENTRY_OVERHEAD_BYTES;
+            }
+            totalBytes += entry.push(keyword, properties.getPerUserCapacity());
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * 获取用户最近的关键词（最新在前）
+     */
+    public List<String> getRecentKeywords(Long userId, int limit) {
+        if (!properties.isEnabled()) {
+            return searchHistoryRepository.findDistinctKeywordsByUserId(userId, limit);
+        }
+
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.loaded) {
+                hits++;
+                return entry.head(limit);
+            }
+        }
+
+        // 在锁外查询数据库，期间到达的新搜索会在合并时保留
+        List<String> stored = searchHistoryRepository.findDistinctKeywordsByUserId(
+                userId, properties.getPerUserCapacity());
+
+        synchronized (entries) {
+            loads++;
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                entry = new Entry(true);
+                entries.put(userId, entry);
+                totalBytes += ENTRY_OVERHEAD_BYTES;
+            } else if (!entry.loaded) {
+                entry.loaded = true;
+            } else {
+                return entry.head(limit);
+            }
+            totalBytes += entry.appendOlder(stored, properties.getPerUserCapacity());
+            List<String> result = entry.head(limit);
+            evictOverBudget();
+            return result;
+        }
+    }
+
+    /**
+     * 用户删除搜索历史后移除缓存，下次读取时重新加载
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.remove(userId);
+            if (entry != null) {
+                totalBytes -= ENTRY_OVERHEAD_BYTES + entry.bytes;
+            }
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStatistics() {
+        synchronized (entries) {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("enabled", properties.isEnabled());
+            stats.put("users", entries.size());
+            stats.put("estimatedBytes", totalBytes);
+            stats.put("maxMemoryBytes", properties.getMaxMemoryBytes());
+            stats.put("hits", hits);
+            stats.put("loads", loads);
+            stats.put("evictions", evictions);
+            return stats;
+        }
+    }
+
+    private void evictOverBudget() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > properties.getMaxMemoryBytes() && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= ENTRY_OVERHEAD_BYTES + eldest.bytes;
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(String keyword) {
+        return KEYWORD_OVERHEAD_BYTES + 2L * keyword.length();
+    }
+
+    /**
+     * 单个用户的关键词列表（最新在前，忽略大小写去重，与 MySQL 的 GROUP BY 一致）
+     */
+    private static final class Entry {
+        private final List<String> keywords = new ArrayList<>();
+        private boolean loaded;
+        private long bytes;
+
+        Entry(boolean loaded) {
+            this.loaded = loaded;
+        }
+
+        /**
+         * 放到最前面，已存在则移动，返回内存变化量
+         */
+        long push(String keyword, int capacity) {
+            long before = bytes;
+            remove(keyword);
+            keywords.add(0, keyword);
+            bytes += sizeOf(keyword);
+            trim(capacity);
+            return bytes - before;
+        }
+
+        /**
+         * 把数据库中较早的关键词追加到末尾（跳过已存在的），返回内存变化量
+         */
+        long appendOlder(List<String> older, int capacity) {
+            long before = bytes;
+            for (String keyword : older) {
+                if (keywords.size() >= capacity) {
+                    break;
+                }
+                if (indexOf(keyword) < 0) {
+                    keywords.add(keyword);
+                    bytes += sizeOf(keyword);
+                }
+            }
+            return bytes - before;
+        }
+
+        List<String> head(int limit) {
+            return List.copyOf(keywords.subList(0, Math.min(Math.max(0, limit), keywords.size())));
+        }
+
+        private void remove(String keyword) {
+            int index = indexOf(keyword);
+            if (index >= 0) {
+                bytes -= sizeOf(keywords.remove(index));
+            }
+        }
+
+        private void trim(int capacity) {
+            while (keywords.size() > capacity) {
+                bytes -= sizeOf(keywords.remove(keywords.size() - 1));
+            }
+        }
+
+        private int indexOf(String keyword) {
+            String key = keyword.toLowerCase(Locale.ROOT);
+            for (int i = 0; i < keywords.size(); i++) {
+                if (keywords.get(i).toLowerCase(Locale.ROOT).equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.nushungry.search;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving 高频项摘要
+ * 最多跟踪 capacity 个键；新键到来且已满时替换计数最小的键，并继承其计数作为误差上限。
+ * 真实频率超过 总计数 / capacity 的键一定会被保留。
+ * 非线程安全，由调用方加锁。
+ */
+public class SpaceSavingSummary {
+
+    private static final Comparator<Counter> BY_COUNT = Comparator
+            .comparingLong((Counter counter) -> counter.count)
+            .thenComparing(counter -> counter.key);
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> ordered = new TreeSet<>(BY_COUNT);
+
+    public SpaceSavingSummary(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public void offer(String key, long increment) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            ordered.remove(counter);
+            counter.count += increment;
+            ordered.add(counter);
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            counter = new Counter(key, increment, 0);
+        } else {
+            Counter smallest = ordered.pollFirst();
+            counters.remove(smallest.key);
+            counter = new Counter(key, smallest.count + increment, smallest.count);
+        }
+        counters.put(key, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * 当前跟踪的键及其计数（计数为上限估计，误差不超过 error）
+     */
+    public Map<String, Counter> getCounters() {
+        return counters;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public static final class Counter {
+        private final String key;
+        private long count;
+        private final long error;
+
+        Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nushungry.security;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BCrypt 成本因子测定
+ * 在当前硬件上逐级测量哈希耗时，选出不超过目标耗时的最大成本因子
+ */
+public final class BcryptCostCalibrator {
+
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-Pa55word!";
+
+    private BcryptCostCalibrator() {
+    }
+
+    /**
+     * @param targetLatencyMs 单次哈希的目标耗时
+     * @param minStrength 成本因子下限
+     * @param maxStrength 成本因子上限
+     */
+    public static Calibration calibrate(long targetLatencyMs, int minStrength, int maxStrength) {
+        int min = Math.max(4, minStrength);
+        int max = Math.min(31, Math.max(min, maxStrength));
+
+        Map<Integer, Long> measuredMillis = new LinkedHashMap<>();
+        int recommended = min;
+
+        for (int strength = min; strength <= max; strength++) {
+            long millis = measure(strength);
+            measuredMillis.put(strength, millis);
+            if (millis <= targetLatencyMs) {
+                recommended = strength;
+            }
+            // 每提高一级耗时翻倍，超过目标后无需继续测量
+            if (millis > targetLatencyMs) {
+                break;
+            }
+        }
+        return new Calibration(recommended, targetLatencyMs, measuredMillis);
+    }
+
+    /**
+     * 测量指定成本因子的哈希耗时（取中位数）
+     */
+    private static long measure(int strength) {
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw(SAMPLE_PASSWORD, BCrypt.gensalt(strength));
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+
+    /**
+     * 测定结果
+     * @param recommendedStrength 推荐的成本因子
+     * @param targetLatencyMs 目标耗时
+     * @param measuredMillis 各成本因子的实测耗时
+     */
+    public record Calibration(int recommendedStrength, long targetLatencyMs, Map<Integer, Long> measuredMillis) {
+    }
+}
@@ -0,0 +1,614 @@
+package com.nushungry.service;
+
+import com.nushungry.config.BlobStoreProperties;
+import com.nushungry.model.StoredBlob;
+import com.nushungry.repository.StoredBlobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按内容寻址的上传文件存储
+ * 上传先流式写入暂存目录并计算 SHA-256，相同内容只保留一份文件和一条记录，重复上传直接返回已有 URL。
+ * 图片、评价图片和头像保存或删除时增减引用数；后台生成的各尺寸图片按内容缓存，重复内容不再重新处理。
+ * 同步压缩的结果同样保存为内容寻址文件，并按原图 SHA-256 派生的键查找，相同原图再次上传时不再解码和压缩。
+ * 垃圾回收只删除引用数为零且超过宽限期的文件，删除前重新统计各表中的实际引用，
+ * 没有维护引用数的删除路径（如级联删除）只会延迟回收，不会误删仍被引用的文件。
+ */
+@Slf4j
+@Service
+public class BlobStoreService {
+
+    private static final String GC_LOCK_NAME = "blob-store-gc";
+    private static final Duration GC_LOCK_LEASE = Duration.ofMinutes(30);
+
+    /**
+     * 同一内容的写入和回收互斥（按 SHA-256 分段加锁）
+     * 使用 ReentrantLock 而不是 synchronized，持锁期间的数据库和文件操作不会固定虚拟线程
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * 统计各表中对指定 URL 的实际引用数
+     */
+    static final String REFERENCE_COUNT_SQL = "SELECT url, COUNT(*) AS refs FROM ("
+            + "SELECT image_url AS url FROM images WHERE image_url IN (:urls) "
+            + "UNION ALL SELECT thumbnail_url FROM images WHERE thumbnail_url IN (:urls) "
+            + "UNION ALL SELECT image_url FROM review_images WHERE image_url IN (:urls) "
+            + "UNION ALL SELECT avatar_url FROM users WHERE avatar_url IN (:urls) "
+            + "UNION ALL SELECT image_url FROM cafeteria WHERE image_url IN (:urls) "
+            + "UNION ALL SELECT image_url FROM stall WHERE image_url IN (:urls)"
+            + ") refs GROUP BY url";
+
+    private final StoredBlobRepository storedBlobRepository;
+    private final FileStorageService fileStorageService;
+    private final ImageProcessingService imageProcessingService;
+    private final BlobStoreProperties properties;
+    private final SchedulerLockService schedulerLockService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong deduplicatedUploads = new AtomicLong();
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+    private final AtomicLong variantCacheHits = new AtomicLong();
+    private final AtomicLong processedCacheHits = new AtomicLong();
+    private final AtomicLong gcRuns = new AtomicLong();
+    private final AtomicLong blobsCollected = new AtomicLong();
+    private final AtomicLong bytesCollected = new AtomicLong();
+    private final AtomicLong refCountCorrections = new AtomicLong();
+    private volatile LocalDateTime lastGcAt;
+
+    public BlobStoreService(StoredBlobRepository storedBlobRepository,
+                            FileStorageService fileStorageService,
+                            ImageProcessingService imageProcessingService,
+                            BlobStoreProperties properties,
+                            SchedulerLockService schedulerLockService,
+                            NamedParameterJdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager) {
+        this.storedBlobRepository = storedBlobRepository;
+        this.fileStorageService = fileStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.properties = properties;
+        this.schedulerLockService = schedulerLockService;
+        this.jdbcTemplate = jdbcTemplate;
+        // 记录在独立事务中提交，其他请求能立即看到；唯一约束冲突也不会影响调用方的事务
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 保存上传的图片，内容已存在时复用已有文件
+     * 新文件的引用数为零，调用方保存引用记录时需要调用 {@link #retain(String...)}
+     */
+    public StoredBlob store(MultipartFile file) {
+        FileStorageService.StoredUpload staged;
+        try {
+            staged = fileStorageService.stage(file);
+        } catch (IOException ex) {
+            log.error("文件存储失败", ex);
+            throw new RuntimeException("文件存储失败: " + file.getOriginalFilename(), ex);
+        }
+
+        uploads.incrementAndGet();
+        Lock lock = lockFor(staged.sha256());
+        lock.lock();
+        try {
+            return storeStaged(staged);
+        } catch (IOException ex) {
+            log.error("文件存储失败", ex);
+            throw new RuntimeException("文件存储失败: " + file.getOriginalFilename(), ex);
+        } finally {
+            lock.unlock();
+            deleteQuietly(staged.path());
+        }
+    }
+
+    /**
+     * 压缩上传的图片并生成缩略图，处理结果按原图内容缓存
+     * 上传流写入暂存文件时已计算 SHA-256，先按它查找已保存的压缩图和缩略图，都存在时直接返回，不再解码；
+     * 否则处理暂存文件，并把结果保存为内容寻址文件，记录由原图派生的键。
+     * 新文件的引用数为零，调用方保存引用记录时需要调用 {@link #retain(String...)}
+     */
+    public ImageProcessingService.ImageProcessingResult storeProcessed(MultipartFile file, boolean generateThumbnail)
+            throws IOException {
+        FileStorageService.StoredUpload staged = fileStorageService.stage(file);
+        uploads.incrementAndGet();
+        try {
+            boolean thumbnail = imageProcessingService.thumbnailEnabled(generateThumbnail);
+            String compressedKey = derivedKey(staged.sha256(), "compressed");
+            String thumbnailKey = derivedKey(staged.sha256(), "thumbnail");
+            StoredBlob compressed = findDerived(compressedKey);
+            StoredBlob thumbnailBlob = thumbnail ? findDerived(thumbnailKey) : null;
+            if (compressed != null && (!thumbnail || thumbnailBlob != null)) {
+                processedCacheHits.incrementAndGet();
+                log.info("重复上传，复用已有处理结果: {} (sha256={})", compressed.getUrl(), staged.sha256());
+                return new ImageProcessingService.ImageProcessingResult(
+                        compressed.getUrl(), thumbnailBlob != null ? thumbnailBlob.getUrl() : null);
+            }
+
+            ImageProcessingService.ImageProcessingResult result =
+                    imageProcessingService.processStaged(file, staged.path(), generateThumbnail);
+            String thumbnailUrl = result.getThumbnailUrl() != null
+                    ? storeDerived(result.getThumbnailUrl(), thumbnailKey) : null;
+            return new ImageProcessingService.ImageProcessingResult(
+                    storeDerived(result.getOriginalUrl(), compressedKey), thumbnailUrl);
+        } finally {
+            deleteQuietly(staged.path());
+        }
+    }
+
+    /**
+     * 按派生键查找仍然存在的处理结果，并重新开始宽限期
+     */
+    private StoredBlob findDerived(String derivedKey) {
+        StoredBlob blob = newTransaction.execute(status ->
+                storedBlobRepository.findByDerivedKey(derivedKey).orElse(null));
+        if (blob == null || !exists(blob.getUrl())) {
+            return null;
+        }
+        Long blobId = blob.getId();
+        Integer touched = newTransaction.execute(status -> storedBlobRepository.touch(blobId, LocalDateTime.now()));
+        return touched != null && touched > 0 ? blob : null;
+    }
+
+    /**
+     * 把处理生成的文件保存为内容寻址文件并记录派生键
+     * @return 内容寻址文件的 URL（相同内容已存在时为已有文件）
+     */
+    private String storeDerived(String producedUrl, String derivedKey) throws IOException {
+        Path produced = fileStorageService.resolveFileUrl(producedUrl);
+        if (produced == null) {
+            return producedUrl;
+        }
+        String sha256 = fileStorageService.sha256(produced);
+        StoredBlob blob;
+        Lock lock = lockFor(sha256);
+        lock.lock();
+        try {
+            blob = storeContent(sha256, fileStorageService.contentTypeOf(produced), Files.size(produced),
+                    () -> fileStorageService.promote(produced, sha256));
+        } finally {
+            lock.unlock();
+        }
+        if (Files.exists(produced)) {
+            // 相同内容已存在，未使用生成的文件
+            fileStorageService.deleteFile(producedUrl);
+        }
+        if (!derivedKey.equals(blob.getDerivedKey())) {
+            Long blobId = blob.getId();
+            try {
+                newTransaction.executeWithoutResult(status -> {
+                    // 文件已丢失的旧记录可能仍持有该键
+                    storedBlobRepository.clearDerivedKey(derivedKey);
+                    storedBlobRepository.assignDerivedKey(blobId, derivedKey);
+                });
+            } catch (DataIntegrityViolationException ex) {
+                // 并发处理相同原图的请求已记录该键
+                log.debug("派生键已被其他记录使用: {}", derivedKey);
+            }
+        }
+        return blob.getUrl();
+    }
+
+    /**
+     * 原图 SHA-256、处理类型和输出格式派生的键，输出格式变化后重新处理
+     */
+    private String derivedKey(String sourceSha256, String kind) {
+        String source = sourceSha256 + ":" + kind + ":" + imageProcessingService.outputEncoder().format();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private StoredBlob storeStaged(FileStorageService.StoredUpload staged) throws IOException {
+        return storeContent(staged.sha256(), staged.contentType(), staged.size(),
+                () -> fileStorageService.promote(staged));
+    }
+
+    /**
+     * 保存内容，已存在时复用已有文件（调用方持有该内容的锁）
+     * @param promote 把文件移动到内容寻址位置，内容已存在时不调用
+     */
+    private StoredBlob storeContent(String sha256, String contentType, long size, ContentPromotion promote)
+            throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        StoredBlob existing = newTransaction.execute(status ->
+                storedBlobRepository.findBySha256(sha256).orElse(null));
+
+        if (existing != null && exists(existing.getUrl())) {
+            // 重新开始宽限期，避免刚上传的内容被回收
+            Long existingId = existing.getId();
+            Integer touched = newTransaction.execute(status -> storedBlobRepository.touch(existingId, now));
+            if (touched != null && touched > 0) {
+                deduplicatedUploads.incrementAndGet();
+                deduplicatedBytes.addAndGet(size);
+                log.info("重复上传，复用已有文件: {} (sha256={})", existing.getUrl(), sha256);
+                return existing;
+            }
+            // 查询之后记录已被其他节点的垃圾回收删除，按新内容重新保存
+            log.info("已有文件刚被回收，重新保存: {} (sha256={})", existing.getUrl(), sha256);
+            existing = null;
+        }
+
+        FileStorageService.StoredFile target = promote.promote();
+        StoredBlob blob = existing != null ? existing : new StoredBlob();
+        blob.setSha256(sha256);
+        blob.setUrl(target.url());
+        blob.setContentType(contentType);
+        blob.setSize(size);
+        // 记录存在但文件已丢失时，缓存的各尺寸图片也不再可信
+        blob.setVariants(new TreeMap<>());
+        if (blob.getRefCount() == 0) {
+            blob.setUnreferencedSince(now);
+        }
+
+        try {
+            StoredBlob saved = newTransaction.execute(status -> storedBlobRepository.save(blob));
+            log.info("文件上传成功: {} ({} bytes, sha256={})", saved.getUrl(), saved.getSize(), saved.getSha256());
+            return saved;
+        } catch (DataIntegrityViolationException ex) {
+            // 其他节点同时写入了相同内容
+            return newTransaction.execute(status -> storedBlobRepository.findBySha256(sha256))
+                    .orElseThrow(() -> ex);
+        }
+    }
+
+    /**
+     * 增加引用（加入调用方的事务），不是内容寻址文件的 URL 会被忽略
+     */
+    @Transactional
+    public void retain(String... urls) {
+        retainAll(Arrays.asList(urls));
+    }
+
+    @Transactional
+    public void retainAll(Collection<String> urls) {
+        if (urls == null) {
+            return;
+        }
+        for (String url : urls) {
+            if (fileStorageService.isContentAddressed(url)) {
+                storedBlobRepository.retain(url);
+            }
+        }
+    }
+
+    /**
+     * 减少引用（加入调用方的事务），引用数归零时开始计算宽限期
+     */
+    @Transactional
+    public void release(String... urls) {
+        releaseAll(Arrays.asList(urls));
+    }
+
+    @Transactional
+    public void releaseAll(Collection<String> urls) {
+        if (urls == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (String url : urls) {
+            if (fileStorageService.isContentAddressed(url) && storedBlobRepository.release(url) > 0) {
+                storedBlobRepository.markUnreferenced(url, now);
+            }
+        }
+    }
+
+    /**
+     * 按访问路径查找内容寻址文件
+     */
+    public Optional<StoredBlob> findByUrl(String url) {
+        if (!fileStorageService.isContentAddressed(url)) {
+            return Optional.empty();
+        }
+        return storedBlobRepository.findByUrl(url);
+    }
+
+    /**
+     * 查找已缓存的各尺寸图片
+     * @return 宽度 -> URL；原图不是内容寻址文件或缓存不完整时返回 null
+     */
+    public Map<Integer, String> findCachedVariants(String sourceUrl, List<Integer> widths) {
+        if (!fileStorageService.isContentAddressed(sourceUrl)) {
+            return null;
+        }
+        StoredBlob blob = storedBlobRepository.findByUrl(sourceUrl).orElse(null);
+        if (blob == null) {
+            return null;
+        }
+        Map<Integer, String> cached = new TreeMap<>();
+        for (Integer width : widths) {
+            String url = blob.getVariants().get(width);
+            if (url == null || !exists(url)) {
+                return null;
+            }
+            cached.put(width, url);
+        }
+        variantCacheHits.incrementAndGet();
+        return cached;
+    }
+
+    /**
+     * 缓存原图生成的各尺寸图片，相同内容再次上传时直接复用
+     */
+    @Transactional
+    public void recordVariants(String sourceUrl, Map<Integer, String> variants) {
+        if (!fileStorageService.isContentAddressed(sourceUrl)) {
+            return;
+        }
+        storedBlobRepository.findByUrl(sourceUrl).ifPresent(blob -> {
+            Map<Integer, String> merged = new TreeMap<>(blob.getVariants());
+            merged.putAll(variants);
+            blob.setVariants(merged);
+            storedBlobRepository.save(blob);
+        });
+    }
+
+    /**
+     * 删除图片文件
+     * 内容寻址文件不直接删除：只释放调用方持有的一个引用（记录中的引用不受影响），
+     * 没有引用后由垃圾回收在宽限期结束后删除
+     * @return 是否已删除或已交给垃圾回收；仍被记录引用时返回 false
+     */
+    public boolean delete(String url) {
+        if (!fileStorageService.isContentAddressed(url)) {
+            return fileStorageService.deleteFile(url);
+        }
+        StoredBlob blob = storedBlobRepository.findByUrl(url).orElse(null);
+        if (blob == null) {
+            return fileStorageService.deleteFile(url);
+        }
+        int references = countReferences(List.of(url)).getOrDefault(url, 0);
+        // 只有引用数多于记录中的实际引用时，多出的引用才可能属于调用方
+        if (blob.getRefCount() > references) {
+            newTransaction.executeWithoutResult(status -> releaseAll(List.of(url)));
+        }
+        if (references > 0) {
+            log.warn("文件仍被 {} 条记录引用，未删除: {}", references, url);
+            return false;
+        }
+        log.info("文件已无引用，将在宽限期后回收: {}", url);
+        return true;
+    }
+
+    /**
+     * 批量删除图片文件
+     * @return 删除成功的URL
+     */
+    public List<String> deleteAll(List<String> urls) {
+        List<String> deleted = new ArrayList<>();
+        for (String url : urls) {
+            if (delete(url)) {
+                deleted.add(url);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 定时垃圾回收
+     */
+    @Scheduled(cron = "${app.blob-store.gc-cron:0 30 3 * * *}")
+    public void scheduledCollect() {
+        if (!properties.isGcEnabled()) {
+            return;
+        }
+        collectGarbage();
+    }
+
+    /**
+     * 核对所有文件的引用数，然后删除引用数为零且超过宽限期的文件
+     * @return 修正的引用数、删除的文件数和释放的字节数；未获取到锁时返回空
+     */
+    public Map<String, Long> collectGarbage() {
+        if (!schedulerLockService.tryLock(GC_LOCK_NAME, GC_LOCK_LEASE)) {
+            log.info("文件垃圾回收正在其他节点执行，跳过本次执行");
+            return Map.of();
+        }
+
+        long startNanos = System.nanoTime();
+        long corrected;
+        long collected = 0;
+        long freed = 0;
+        try {
+            corrected = reconcile();
+
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(properties.getGcGraceHours());
+            long afterId = 0;
+            List<StoredBlob> batch;
+            while (!(batch = storedBlobRepository.findGarbage(
+                    afterId, cutoff, PageRequest.of(0, properties.getBatchSize()))).isEmpty()) {
+                Map<String, Integer> references = countReferences(batch.stream().map(StoredBlob::getUrl).toList());
+                for (StoredBlob blob : batch) {
+                    int actual = references.getOrDefault(blob.getUrl(), 0);
+                    if (actual > 0) {
+                        corrected += correctRefCount(blob, actual) ? 1 : 0;
+                    } else if (collect(blob, cutoff)) {
+                        collected++;
+                        freed += blob.getSize();
+                    }
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } finally {
+            schedulerLockService.unlock(GC_LOCK_NAME);
+            gcRuns.incrementAndGet();
+            lastGcAt = LocalDateTime.now();
+        }
+
+        blobsCollected.addAndGet(collected);
+        bytesCollected.addAndGet(freed);
+        if (collected > 0 || corrected > 0) {
+            log.info("文件垃圾回收完成: 删除 {} 个文件 ({} bytes), 修正 {} 个引用数, 耗时 {} ms",
+                    collected, freed, corrected, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("refCountsCorrected", corrected);
+        result.put("blobsCollected", collected);
+        result.put("bytesFreed", freed);
+        return result;
+    }
+
+    /**
+     * 获取存储统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("gcEnabled", properties.isGcEnabled());
+        stats.put("gcGraceHours", properties.getGcGraceHours());
+        stats.put("blobs", storedBlobRepository.count());
+        stats.put("storedBytes", storedBlobRepository.sumSize());
+        stats.put("references", storedBlobRepository.sumRefCount());
+        stats.put("uploads", uploads.get());
+        stats.put("deduplicatedUploads", deduplicatedUploads.get());
+        stats.put("deduplicatedBytes", deduplicatedBytes.get());
+        stats.put("variantCacheHits", variantCacheHits.get());
+        stats.put("processedCacheHits", processedCacheHits.get());
+        stats.put("gcRuns", gcRuns.get());
+        stats.put("lastGcAt", lastGcAt);
+        stats.put("blobsCollected", blobsCollected.get());
+        stats.put("bytesCollected", bytesCollected.get());
+        stats.put("refCountCorrections", refCountCorrections.get());
+        return stats;
+    }
+
+    /**
+     * 按各表中的实际引用修正引用数
+     * @return 修正的数量
+     */
+    private long reconcile() {
+        long corrected = 0;
+        long afterId = 0;
+        List<StoredBlob> batch;
+        while (!(batch = storedBlobRepository.findBatchAfter(
+                afterId, PageRequest.of(0, properties.getBatchSize()))).isEmpty()) {
+            Map<String, Integer> references = countReferences(batch.stream().map(StoredBlob::getUrl).toList());
+            for (StoredBlob blob : batch) {
+                int actual = references.getOrDefault(blob.getUrl(), 0);
+                if (actual != blob.getRefCount() && correctRefCount(blob, actual)) {
+                    corrected++;
+                }
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        return corrected;
+    }
+
+    private boolean correctRefCount(StoredBlob blob, int actual) {
+        if (actual == blob.getRefCount()) {
+            return false;
+        }
+        LocalDateTime unreferencedSince = actual > 0 ? null
+                : blob.getUnreferencedSince() != null ? blob.getUnreferencedSince() : LocalDateTime.now();
+        Integer updated = newTransaction.execute(status -> storedBlobRepository.correctRefCount(
+                blob.getId(), blob.getRefCount(), actual, unreferencedSince));
+        if (updated == null || updated == 0) {
+            return false;
+        }
+        log.warn("修正文件引用数: {} {} -> {}", blob.getUrl(), blob.getRefCount(), actual);
+        blob.setRefCount(actual);
+        blob.setUnreferencedSince(unreferencedSince);
+        refCountCorrections.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 删除记录和文件（包括缓存的各尺寸图片）
+     * @param cutoff 只删除在该时间之前就已没有引用的文件，期间重新上传或被引用时保留
+     */
+    private boolean collect(StoredBlob blob, LocalDateTime cutoff) {
+        Lock lock = lockFor(blob.getSha256());
+        lock.lock();
+        try {
+            Integer deleted = newTransaction.execute(status ->
+                    storedBlobRepository.deleteIfUnreferenced(blob.getId(), cutoff));
+            if (deleted == null || deleted == 0) {
+                return false;
+            }
+            fileStorageService.deleteFile(blob.getUrl());
+            for (String variantUrl : blob.getVariants().values()) {
+                fileStorageService.deleteFile(variantUrl);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 统计各表中对指定 URL 的实际引用数
+     * @return URL -> 引用数（没有引用的 URL 不在结果中）
+     */
+    Map<String, Integer> countReferences(List<String> urls) {
+        Map<String, Integer> references = new HashMap<>();
+        if (urls.isEmpty()) {
+            return references;
+        }
+        jdbcTemplate.query(REFERENCE_COUNT_SQL, Map.of("urls", urls),
+                (RowCallbackHandler) rs -> references.put(rs.getString("url"), rs.getInt("refs")));
+        return references;
+    }
+
+    private boolean exists(String url) {
+        Path path = fileStorageService.resolveImageUrl(url);
+        return path != null && Files.exists(path);
+    }
+
+    private Lock lockFor(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+    }
+
+    @FunctionalInterface
+    private interface ContentPromotion {
+        FileStorageService.StoredFile promote() throws IOException;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("暂存文件删除失败: {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,872 @@
+package com.nushungry.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nushungry.config.CatalogBulkProperties;
+import com.nushungry.dto.CatalogCafeteriaRecord;
+import com.nushungry.dto.CatalogStallRecord;
+import com.nushungry.repository.StallRepository;
+import com.nushungry.util.CsvReader;
+import com.nushungry.util.CsvWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 餐厅/摊位目录批量导入导出服务
+ * 导入：流式解析 JSON 数组或 CSV，逐行校验后按批处理，每批一次自然键查询 + 一次 JDBC 批量插入/更新，
+ * 整个导入在一个事务内完成；试运行模式只校验并统计将要插入/更新的行数，不写入任何数据。
+ * 摊位统计字段在导入结束后统一重算一次。
+ * 导出：以只进游标逐行读取并直接写入输出流，不在内存中保留整张表。
+ */
+@Slf4j
+@Service
+public class CatalogBulkService {
+
+    /**
+     * 导入导出的实体类型
+     */
+    public enum Entity {
+        CAFETERIAS, STALLS
+    }
+
+    /**
+     * 数据格式
+     */
+    public enum Format {
+        JSON, CSV
+    }
+
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    private static final String[] CAFETERIA_COLUMNS = {"id", "name", "description", "location", "latitude",
+            "longitude", "nearestCarpark", "nearestBusStop", "halalInfo", "seatingCapacity", "imageUrl",
+            "termTimeOpeningHours", "vacationOpeningHours"};
+
+    private static final String[] STALL_COLUMNS = {"id", "cafeteria", "name", "cuisineType", "imageUrl",
+            "halalInfo", "contact", "latitude", "longitude", "averageRating", "reviewCount", "averagePrice"};
+
+    private static final String CAFETERIA_INSERT_SQL = "INSERT INTO cafeteria (name, description, location, " +
+            "latitude, longitude, nearest_carpark, nearest_bus_stop, halal_info, seating_capacity, image_url, " +
+            "term_time_opening_hours, vacation_opening_hours) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // 导入行中为 null 的字段保留原值
+    private static final String CAFETERIA_UPDATE_SQL = "UPDATE cafeteria SET " +
+            "description = COALESCE(?, description), location = COALESCE(?, location), " +
+            "latitude = COALESCE(?, latitude), longitude = COALESCE(?, longitude), " +
+            "nearest_carpark = COALESCE(?, nearest_carpark), nearest_bus_stop = COALESCE(?, nearest_bus_stop), " +
+            "halal_info = COALESCE(?, halal_info), seating_capacity = COALESCE(?, seating_capacity), " +
+            "image_url = COALESCE(?, image_url), term_time_opening_hours = COALESCE(?, term_time_opening_hours), " +
+            "vacation_opening_hours = COALESCE(?, vacation_opening_hours) WHERE id = ?";
+
+    private static final String STALL_INSERT_SQL = "INSERT INTO stall (name, cuisine_type, image_url, halal_info, " +
+            "contact, cafeteria_id, latitude, longitude, average_rating, review_count, average_price, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, ?, ?)";
+
+    private static final String STALL_UPDATE_SQL = "UPDATE stall SET " +
+            "cuisine_type = COALESCE(?, cuisine_type), image_url = COALESCE(?, image_url), " +
+            "halal_info = COALESCE(?, halal_info), contact = COALESCE(?, contact), " +
+            "latitude = COALESCE(?, latitude), longitude = COALESCE(?, longitude), updated_at = ? WHERE id = ?";
+
+    private static final String CAFETERIA_EXPORT_SQL = "SELECT id, name, description, location, latitude, " +
+            "longitude, nearest_carpark, nearest_bus_stop, halal_info, seating_capacity, image_url, " +
+            "term_time_opening_hours, vacation_opening_hours FROM cafeteria ORDER BY id";
+
+    private static final String STALL_EXPORT_SQL = "SELECT s.id, c.name AS cafeteria_name, s.name, " +
+            "s.cuisine_type, s.image_url, s.halal_info, s.contact, s.latitude, s.longitude, s.average_rating, " +
+            "s.review_count, s.average_price FROM stall s LEFT JOIN cafeteria c ON c.id = s.cafeteria_id " +
+            "ORDER BY s.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StallRepository stallRepository;
+    private final ObjectMapper objectMapper;
+    private final CatalogBulkProperties properties;
+
+    public CatalogBulkService(JdbcTemplate jdbcTemplate,
+                              NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              StallRepository stallRepository,
+                              ObjectMapper objectMapper,
+                              CatalogBulkProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stallRepository = stallRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * 批量导入
+     * 校验失败的行被跳过并写入结果的 errors；文件格式错误或写入失败时整个导入回滚。
+     * 同一自然键出现多次时以最后一行为准。
+     *
+     * @param dryRun 为 true 时只校验和统计，不写入
+     * @return 导入结果统计
+     * @throws IOException 输入无法解析
+     */
+    public Map<String, Object> importCatalog(Entity entity, Format format, InputStream input, boolean dryRun)
+            throws IOException {
+        long startNanos = System.nanoTime();
+        ImportReport report = new ImportReport(properties.getMaxReportedErrors());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Importer<?> importer = entity == Entity.CAFETERIAS
+                        ? new CafeteriaImporter(report, dryRun)
+                        : new StallImporter(report, dryRun);
+                try {
+                    read(format, input, importer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                importer.finish();
+                if (dryRun) {
+                    status.setRollbackOnly();
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        log.info("目录导入完成: entity={}, format={}, dryRun={}, rows={}, inserted={}, updated={}, rejected={}, 耗时 {} ms",
+                entity, format, dryRun, report.rows, report.inserted, report.updated, report.rejected, elapsedMillis);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entity", entity.name().toLowerCase(Locale.ROOT));
+        result.put("format", format.name().toLowerCase(Locale.ROOT));
+        result.put("dryRun", dryRun);
+        result.put("rows", report.rows);
+        result.put("inserted", report.inserted);
+        result.put("updated", report.updated);
+        result.put("duplicates", report.duplicates);
+        result.put("rejected", report.rejected);
+        result.put("aggregatesRecalculated", report.recalculated);
+        result.put("elapsedMillis", elapsedMillis);
+        result.put("errors", report.errors);
+        return result;
+    }
+
+    /**
+     * 流式导出
+     * 导出的字段与导入格式一致（另含 id 和摊位统计字段，导入时忽略），可直接再导入。
+     */
+    public void exportCatalog(Entity entity, Format format, OutputStream output) throws IOException {
+        boolean cafeterias = entity == Entity.CAFETERIAS;
+        String[] columns = cafeterias ? CAFETERIA_COLUMNS : STALL_COLUMNS;
+        String sql = cafeterias ? CAFETERIA_EXPORT_SQL : STALL_EXPORT_SQL;
+        RecordWriter writer = format == Format.CSV ? new CsvRecordWriter(output, columns) : new JsonRecordWriter(output);
+
+        PreparedStatementCreator cursor = connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(exportFetchSize(connection));
+            return statement;
+        };
+
+        long startNanos = System.nanoTime();
+        long[] rows = new long[1];
+        try {
+            writer.start();
+            jdbcTemplate.query(cursor, rs -> {
+                try {
+                    if (cafeterias) {
+                        CatalogCafeteriaRecord record = mapCafeteria(rs);
+                        writer.write(record, cafeteriaValues(record));
+                    } else {
+                        CatalogStallRecord record = mapStall(rs);
+                        writer.write(record, stallValues(record));
+                    }
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("目录导出完成: entity={}, format={}, rows={}, 耗时 {} ms",
+                entity, format, rows[0], (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    /**
+     * MySQL 驱动默认一次读取全部结果，只有 fetchSize 为 Integer.MIN_VALUE 时才逐行流式读取
+     */
+    private int exportFetchSize(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        if ("MySQL".equalsIgnoreCase(product)) {
+            return Integer.MIN_VALUE;
+        }
+        return properties.getExportFetchSize();
+    }
+
+    // ==================== 读取 ====================
+
+    private <T> void read(Format format, InputStream input, Importer<T> importer) throws IOException {
+        if (format == Format.CSV) {
+            readCsv(input, importer);
+        } else {
+            readJson(input, importer);
+        }
+        importer.flush();
+    }
+
+    /**
+     * 用流式解析器逐个读取数组元素，每次只在内存中保留一个对象
+     */
+    private <T> void readJson(InputStream input, Importer<T> importer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("JSON import must be an array of objects");
+            }
+            long row = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IOException("Unexpected end of JSON input");
+                }
+                row++;
+                importer.report.rows++;
+                JsonNode node = objectMapper.readTree(parser);
+                if (node == null || !node.isObject()) {
+                    importer.report.reject(row, "Expected a JSON object");
+                    continue;
+                }
+                T record;
+                try {
+                    record = objectMapper.treeToValue(node, importer.type());
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    importer.report.reject(row, "Invalid value: " + bindingMessage(e));
+                    continue;
+                }
+                importer.accept(row, record);
+            }
+        }
+    }
+
+    /**
+     * 首行为表头（字段名与 JSON 属性名一致），空字段视为 null
+     */
+    private <T> void readCsv(InputStream input, Importer<T> importer) throws IOException {
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        List<String> header = reader.readRecord();
+        if (header == null) {
+            return;
+        }
+        List<String> columns = header.stream().map(String::trim).toList();
+        if (!columns.contains("name")) {
+            throw new IOException("CSV header must contain a name column");
+        }
+
+        long row = 0;
+        List<String> fields;
+        while ((fields = reader.readRecord()) != null) {
+            row++;
+            importer.report.rows++;
+            if (fields.size() != columns.size()) {
+                importer.report.reject(row, "Expected " + columns.size() + " columns but found " + fields.size());
+                continue;
+            }
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                String value = fields.get(i).trim();
+                values.put(columns.get(i), value.isEmpty() ? null : value);
+            }
+            T record;
+            try {
+                record = objectMapper.convertValue(values, importer.type());
+            } catch (IllegalArgumentException e) {
+                importer.report.reject(row, "Invalid value: " + bindingMessage(e));
+                continue;
+            }
+            importer.accept(row, record);
+        }
+    }
+
+    private static String bindingMessage(Exception e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof JsonProcessingException jsonException) {
+            return jsonException.getOriginalMessage();
+        }
+        return cause.getMessage();
+    }
+
+    // ==================== 导入 ====================
+
+    private record Row<T>(long number, T record) {
+    }
+
+    /**
+     * 导入统计，errors 只保留前若干条
+     */
+    private static class ImportReport {
+        private final int maxErrors;
+        private final List<Map<String, Object>> errors = new ArrayList<>();
+        private long rows;
+        private long inserted;
+        private long updated;
+        private long duplicates;
+        private long rejected;
+        private long recalculated;
+
+        ImportReport(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        void reject(long row, String message) {
+            rejected++;
+            if (errors.size() < maxErrors) {
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("row", row);
+                error.put("message", message);
+                errors.add(error);
+            }
+        }
+    }
+
+    /**
+     * 按批缓冲已通过校验的行
+     */
+    private abstract class Importer<T> {
+        final ImportReport report;
+        final boolean dryRun;
+        private final List<Row<T>> buffer = new ArrayList<>();
+        // 已处理过的自然键，用于统计重复行以及试运行时区分插入/更新
+        final Set<String> seenKeys = new HashSet<>();
+        final Set<String> plannedInserts = new HashSet<>();
+
+        Importer(ImportReport report, boolean dryRun) {
+            this.report = report;
+            this.dryRun = dryRun;
+        }
+
+        abstract Class<T> type();
+
+        /**
+         * 校验并规范化一行
+         * @return 错误信息，校验通过返回 null
+         */
+        abstract String validate(T record);
+
+        abstract void writeChunk(List<Row<T>> rows);
+
+        void finish() {
+        }
+
+        void accept(long row, T record) {
+            String error = validate(record);
+            if (error != null) {
+                report.reject(row, error);
+                return;
+            }
+            buffer.add(new Row<>(row, record));
+            if (buffer.size() >= Math.max(1, properties.getBatchSize())) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            writeChunk(new ArrayList<>(buffer));
+            buffer.clear();
+        }
+
+        /**
+         * 按自然键去重（保留最后一行）
+         */
+        Map<String, Row<T>> dedupe(List<Row<T>> rows, Function<Row<T>, String> keyOf) {
+            Map<String, Row<T>> unique = new LinkedHashMap<>();
+            for (Row<T> row : rows) {
+                String key = keyOf.apply(row);
+                if (!seenKeys.add(key)) {
+                    report.duplicates++;
+                }
+                unique.put(key, row);
+            }
+            return unique;
+        }
+
+        /**
+         * 试运行时同一批次之前计划插入的键在之后按更新统计
+         */
+        boolean plannedInsert(String key) {
+            return dryRun && !plannedInserts.add(key);
+        }
+    }
+
+    private class CafeteriaImporter extends Importer<CatalogCafeteriaRecord> {
+
+        CafeteriaImporter(ImportReport report, boolean dryRun) {
+            super(report, dryRun);
+        }
+
+        @Override
+        Class<CatalogCafeteriaRecord> type() {
+            return CatalogCafeteriaRecord.class;
+        }
+
+        @Override
+        String validate(CatalogCafeteriaRecord record) {
+            record.setName(trimToNull(record.getName()));
+            if (record.getName() == null) {
+                return "name is required";
+            }
+            String error = firstTooLong(
+                    "name", record.getName(), "description", record.getDescription(),
+                    "location", record.getLocation(), "nearestCarpark", record.getNearestCarpark(),
+                    "nearestBusStop", record.getNearestBusStop(), "halalInfo", record.getHalalInfo(),
+                    "imageUrl", record.getImageUrl(), "termTimeOpeningHours", record.getTermTimeOpeningHours(),
+                    "vacationOpeningHours", record.getVacationOpeningHours());
+            if (error != null) {
+                return error;
+            }
+            if (record.getSeatingCapacity() != null && record.getSeatingCapacity() < 0) {
+                return "seatingCapacity must not be negative";
+            }
+            return checkCoordinates(record.getLatitude(), record.getLongitude());
+        }
+
+        @Override
+        void writeChunk(List<Row<CatalogCafeteriaRecord>> rows) {
+            Map<String, Row<CatalogCafeteriaRecord>> unique = dedupe(rows, row -> naturalKey(row.record().getName()));
+            Map<String, Long> existing = findCafeteriaIds(
+                    unique.values().stream().map(row -> row.record().getName()).toList());
+
+            List<CatalogCafeteriaRecord> inserts = new ArrayList<>();
+            List<Object[]> updates = new ArrayList<>();
+            for (Map.Entry<String, Row<CatalogCafeteriaRecord>> entry : unique.entrySet()) {
+                Long id = existing.get(entry.getKey());
+                if (id != null || plannedInsert(entry.getKey())) {
+                    updates.add(new Object[]{entry.getValue().record(), id});
+                } else {
+                    inserts.add(entry.getValue().record());
+                }
+            }
+            report.inserted += inserts.size();
+            report.updated += updates.size();
+            if (dryRun) {
+                return;
+            }
+
+            jdbcTemplate.batchUpdate(CAFETERIA_INSERT_SQL, inserts, inserts.size(), (ps, record) -> {
+                ps.setString(1, record.getName());
+                setCafeteriaFields(ps, 2, record, true);
+            });
+            jdbcTemplate.batchUpdate(CAFETERIA_UPDATE_SQL, updates, updates.size(), (ps, update) -> {
+                CatalogCafeteriaRecord record = (CatalogCafeteriaRecord) update[0];
+                setCafeteriaFields(ps, 1, record, false);
+                ps.setLong(12, (Long) update[1]);
+            });
+        }
+
+        private void setCafeteriaFields(PreparedStatement ps, int start, CatalogCafeteriaRecord record,
+                                        boolean insert) throws SQLException {
+            setNullable(ps, start, record.getDescription(), Types.VARCHAR);
+            setNullable(ps, start + 1, record.getLocation(), Types.VARCHAR);
+            // 经纬度列不可为空，新建时缺省为 0
+            setNullable(ps, start + 2, insert ? orZero(record.getLatitude()) : record.getLatitude(), Types.DOUBLE);
+            setNullable(ps, start + 3, insert ? orZero(record.getLongitude()) : record.getLongitude(), Types.DOUBLE);
+            setNullable(ps, start + 4, record.getNearestCarpark(), Types.VARCHAR);
+            setNullable(ps, start + 5, record.getNearestBusStop(), Types.VARCHAR);
+            setNullable(ps, start + 6, record.getHalalInfo(), Types.VARCHAR);
+            setNullable(ps, start + 7, record.getSeatingCapacity(), Types.INTEGER);
+            setNullable(ps, start + 8, record.getImageUrl(), Types.VARCHAR);
+            setNullable(ps, start + 9, record.getTermTimeOpeningHours(), Types.VARCHAR);
+            setNullable(ps, start + 10, record.getVacationOpeningHours(), Types.VARCHAR);
+        }
+    }
+
+    private class StallImporter extends Importer<CatalogStallRecord> {
+
+        // 餐厅名称（自然键）到ID的缓存，整个导入期间共享
+        private final Map<String, Long> cafeteriaIds = new HashMap<>();
+        private final Set<String> unknownCafeterias = new HashSet<>();
+        // 被更新的已有摊位，导入结束后统一重算统计字段
+        private final Set<Long> updatedStallIds = new LinkedHashSet<>();
+
+        StallImporter(ImportReport report, boolean dryRun) {
+            super(report, dryRun);
+        }
+
+        @Override
+        Class<CatalogStallRecord> type() {
+            return CatalogStallRecord.class;
+        }
+
+        @Override
+        String validate(CatalogStallRecord record) {
+            record.setName(trimToNull(record.getName()));
+            record.setCafeteria(trimToNull(record.getCafeteria()));
+            if (record.getName() == null) {
+                return "name is required";
+            }
+            String error = firstTooLong(
+                    "name", record.getName(), "cafeteria", record.getCafeteria(),
+                    "cuisineType", record.getCuisineType(), "imageUrl", record.getImageUrl(),
+                    "halalInfo", record.getHalalInfo(), "contact", record.getContact());
+            if (error != null) {
+                return error;
+            }
+            return checkCoordinates(record.getLatitude(), record.getLongitude());
+        }
+
+        @Override
+        void writeChunk(List<Row<CatalogStallRecord>> rows) {
+            resolveCafeterias(rows);
+
+            List<Row<CatalogStallRecord>> resolved = new ArrayList<>();
+            Map<Row<CatalogStallRecord>, Long> owners = new HashMap<>();
+            for (Row<CatalogStallRecord> row : rows) {
+                String cafeteria = row.record().getCafeteria();
+                Long cafeteriaId = cafeteria != null ? cafeteriaIds.get(naturalKey(cafeteria)) : null;
+                if (cafeteria != null && cafeteriaId == null) {
+                    report.reject(row.number(), "Unknown cafeteria: " + cafeteria);
+                    continue;
+                }
+                owners.put(row, cafeteriaId);
+                resolved.add(row);
+            }
+
+            Map<String, Row<CatalogStallRecord>> unique = dedupe(resolved,
+                    row -> stallKey(owners.get(row), row.record().getName()));
+            Map<String, Long> existing = findStallIds(
+                    unique.values().stream().map(row -> row.record().getName()).toList());
+
+            List<Row<CatalogStallRecord>> inserts = new ArrayList<>();
+            List<Object[]> updates = new ArrayList<>();
+            for (Map.Entry<String, Row<CatalogStallRecord>> entry : unique.entrySet()) {
+                Long id = existing.get(entry.getKey());
+                if (id != null) {
+                    updates.add(new Object[]{entry.getValue().record(), id});
+                    updatedStallIds.add(id);
+                } else if (plannedInsert(entry.getKey())) {
+                    updates.add(new Object[]{entry.getValue().record(), null});
+                } else {
+                    inserts.add(entry.getValue());
+                }
+            }
+            report.inserted += inserts.size();
+            report.updated += updates.size();
+            if (dryRun) {
+                return;
+            }
+
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(STALL_INSERT_SQL, inserts, inserts.size(), (ps, row) -> {
+                CatalogStallRecord record = row.record();
+                ps.setString(1, record.getName());
+                setNullable(ps, 2, record.getCuisineType(), Types.VARCHAR);
+                setNullable(ps, 3, record.getImageUrl(), Types.VARCHAR);
+                setNullable(ps, 4, record.getHalalInfo(), Types.VARCHAR);
+                setNullable(ps, 5, record.getContact(), Types.VARCHAR);
+                setNullable(ps, 6, owners.get(row), Types.BIGINT);
+                setNullable(ps, 7, record.getLatitude(), Types.DOUBLE);
+                setNullable(ps, 8, record.getLongitude(), Types.DOUBLE);
+                ps.setTimestamp(9, now);
+                ps.setTimestamp(10, now);
+            });
+            jdbcTemplate.batchUpdate(STALL_UPDATE_SQL, updates, updates.size(), (ps, update) -> {
+                CatalogStallRecord record = (CatalogStallRecord) update[0];
+                setNullable(ps, 1, record.getCuisineType(), Types.VARCHAR);
+                setNullable(ps, 2, record.getImageUrl(), Types.VARCHAR);
+                setNullable(ps, 3, record.getHalalInfo(), Types.VARCHAR);
+                setNullable(ps, 4, record.getContact(), Types.VARCHAR);
+                setNullable(ps, 5, record.getLatitude(), Types.DOUBLE);
+                setNullable(ps, 6, record.getLongitude(), Types.DOUBLE);
+                ps.setTimestamp(7, now);
+                ps.setLong(8, (Long) update[1]);
+            });
+        }
+
+        /**
+         * 导入中新出现的餐厅名称一次查询解析
+         */
+        private void resolveCafeterias(List<Row<CatalogStallRecord>> rows) {
+            Set<String> missing = new LinkedHashSet<>();
+            for (Row<CatalogStallRecord> row : rows) {
+                String cafeteria = row.record().getCafeteria();
+                if (cafeteria != null && !cafeteriaIds.containsKey(naturalKey(cafeteria))
+                        && !unknownCafeterias.contains(naturalKey(cafeteria))) {
+                    missing.add(cafeteria);
+                }
+            }
+            if (missing.isEmpty()) {
+                return;
+            }
+            Map<String, Long> found = findCafeteriaIds(missing);
+            cafeteriaIds.putAll(found);
+            for (String name : missing) {
+                if (!found.containsKey(naturalKey(name))) {
+                    unknownCafeterias.add(naturalKey(name));
+                }
+            }
+        }
+
+        @Override
+        void finish() {
+            if (dryRun || updatedStallIds.isEmpty()) {
+                return;
+            }
+            // 新建的摊位没有评价，统计字段已为 0；只需重算被更新的已有摊位
+            List<Long> ids = new ArrayList<>(updatedStallIds);
+            int chunkSize = Math.max(1, properties.getBatchSize());
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                report.recalculated += stallRepository.recalculateAggregates(
+                        ids.subList(from, Math.min(from + chunkSize, ids.size())));
+            }
+        }
+    }
+
+    // ==================== 自然键查询 ====================
+
+    /**
+     * 按自然键（去掉首尾空白的小写名称）查询，不依赖数据库排序规则是否区分大小写
+     * @return 小写名称到ID的映射，同名多条时取ID最小的一条
+     */
+    private Map<String, Long> findCafeteriaIds(Collection<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        if (names.isEmpty()) {
+            return ids;
+        }
+        namedParameterJdbcTemplate.query(
+                "SELECT id, name FROM cafeteria WHERE LOWER(TRIM(name)) IN (:keys) ORDER BY id",
+                Map.of("keys", naturalKeys(names)),
+                rs -> {
+                    ids.putIfAbsent(naturalKey(rs.getString("name")), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    /**
+     * @return (餐厅ID, 小写摊位名称) 到摊位ID的映射
+     */
+    private Map<String, Long> findStallIds(List<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        if (names.isEmpty()) {
+            return ids;
+        }
+        namedParameterJdbcTemplate.query(
+                "SELECT id, cafeteria_id, name FROM stall WHERE LOWER(TRIM(name)) IN (:keys) ORDER BY id",
+                Map.of("keys", naturalKeys(names)),
+                rs -> {
+                    Long cafeteriaId = rs.getObject("cafeteria_id", Long.class);
+                    ids.putIfAbsent(stallKey(cafeteriaId, rs.getString("name")), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    private static String naturalKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> naturalKeys(Collection<String> names) {
+        Set<String> keys = new HashSet<>();
+        for (String name : names) {
+            keys.add(naturalKey(name));
+        }
+        return keys;
+    }
+
+    private static String stallKey(Long cafeteriaId, String name) {
+        return (cafeteriaId != null ? cafeteriaId : "") + "|" + naturalKey(name);
+    }
+
+    // ==================== 校验 ====================
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * @param fieldsAndValues 字段名与取值交替排列
+     */
+    private static String firstTooLong(String... fieldsAndValues) {
+        for (int i = 0; i < fieldsAndValues.length; i += 2) {
+            String value = fieldsAndValues[i + 1];
+            if (value != null && value.length() > MAX_TEXT_LENGTH) {
+                return fieldsAndValues[i] + " must be at most " + MAX_TEXT_LENGTH + " characters";
+            }
+        }
+        return null;
+    }
+
+    private static String checkCoordinates(Double latitude, Double longitude) {
+        if (latitude != null && (latitude < -90 || latitude > 90)) {
+            return "latitude must be between -90 and 90";
+        }
+        if (longitude != null && (longitude < -180 || longitude > 180)) {
+            return "longitude must be between -180 and 180";
+        }
+        return null;
+    }
+
+    private static Double orZero(Double value) {
+        return value != null ? value : Double.valueOf(0);
+    }
+
+    private static void setNullable(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, sqlType);
+        } else {
+            ps.setObject(index, value, sqlType);
+        }
+    }
+
+    // ==================== 导出 ====================
+
+    private static CatalogCafeteriaRecord mapCafeteria(ResultSet rs) throws SQLException {
+        CatalogCafeteriaRecord record = new CatalogCafeteriaRecord();
+        record.setId(rs.getLong("id"));
+        record.setName(rs.getString("name"));
+        record.setDescription(rs.getString("description"));
+        record.setLocation(rs.getString("location"));
+        record.setLatitude(rs.getObject("latitude", Double.class));
+        record.setLongitude(rs.getObject("longitude", Double.class));
+        record.setNearestCarpark(rs.getString("nearest_carpark"));
+        record.setNearestBusStop(rs.getString("nearest_bus_stop"));
+        record.setHalalInfo(rs.getString("halal_info"));
+        record.setSeatingCapacity(rs.getObject("seating_capacity", Integer.class));
+        record.setImageUrl(rs.getString("image_url"));
+        record.setTermTimeOpeningHours(rs.getString("term_time_opening_hours"));
+        record.setVacationOpeningHours(rs.getString("vacation_opening_hours"));
+        return record;
+    }
+
+    private static CatalogStallRecord mapStall(ResultSet rs) throws SQLException {
+        CatalogStallRecord record = new CatalogStallRecord();
+        record.setId(rs.getLong("id"));
+        record.setCafeteria(rs.getString("cafeteria_name"));
+        record.setName(rs.getString("name"));
+        record.setCuisineType(rs.getString("cuisine_type"));
+        record.setImageUrl(rs.getString("image_url"));
+        record.setHalalInfo(rs.getString("halal_info"));
+        record.setContact(rs.getString("contact"));
+        record.setLatitude(rs.getObject("latitude", Double.class));
+        record.setLongitude(rs.getObject("longitude", Double.class));
+        record.setAverageRating(rs.getObject("average_rating", Double.class));
+        record.setReviewCount(rs.getObject("review_count", Integer.class));
+        record.setAveragePrice(rs.getObject("average_price", Double.class));
+        return record;
+    }
+
+    private static Object[] cafeteriaValues(CatalogCafeteriaRecord r) {
+        return new Object[]{r.getId(), r.getName(), r.getDescription(), r.getLocation(), r.getLatitude(),
+                r.getLongitude(), r.getNearestCarpark(), r.getNearestBusStop(), r.getHalalInfo(),
+                r.getSeatingCapacity(), r.getImageUrl(), r.getTermTimeOpeningHours(), r.getVacationOpeningHours()};
+    }
+
+    private static Object[] stallValues(CatalogStallRecord r) {
+        return new Object[]{r.getId(), r.getCafeteria(), r.getName(), r.getCuisineType(), r.getImageUrl(),
+                r.getHalalInfo(), r.getContact(), r.getLatitude(), r.getLongitude(), r.getAverageRating(),
+                r.getReviewCount(), r.getAveragePrice()};
+    }
+
+    private interface RecordWriter {
+        void start() throws IOException;
+
+        void write(Object record, Object[] values) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private class JsonRecordWriter implements RecordWriter {
+        private final JsonGenerator generator;
+        // 每行写完不刷新，由生成器缓冲后批量写出
+        private final ObjectWriter objectWriter = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        JsonRecordWriter(OutputStream output) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(output);
+        }
+
+        @Override
+        public void start() throws IOException {
+            generator.writeStartArray();
+        }
+
+        @Override
+        public void write(Object record, Object[] values) throws IOException {
+            objectWriter.writeValue(generator, record);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.writeEndArray();
+            generator.flush();
+        }
+    }
+
+    private static class CsvRecordWriter implements RecordWriter {
+        private final CsvWriter writer;
+        private final String[] columns;
+
+        CsvRecordWriter(OutputStream output, String[] columns) {
+            this.writer = new CsvWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+            this.columns = columns;
+        }
+
+        @Override
+        public void start() throws IOException {
+            writer.writeRecord((Object[]) columns);
+        }
+
+        @Override
+        public void write(Object record, Object[] values) throws IOException {
+            writer.writeRecord(values);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
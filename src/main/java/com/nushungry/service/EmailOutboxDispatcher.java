@@ -0,0 +1,347 @@
+package com.nushungry.service;
+
+import com.nushungry.config.MailOutboxProperties;
+import com.nushungry.model.EmailDeadLetter;
+import com.nushungry.model.EmailOutbox;
+import com.nushungry.model.EmailOutboxStatus;
+import com.nushungry.repository.EmailDeadLetterRepository;
+import com.nushungry.repository.EmailOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱邮件发送服务
+ * 固定大小的线程池从发件箱领取邮件，同一批邮件复用一个SMTP连接发送；
+ * 失败的邮件按指数退避重试，超过最大次数后移入死信表
+ */
+@Slf4j
+@Service
+public class EmailOutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailDeadLetterRepository emailDeadLetterRepository;
+    private final JavaMailSender mailSender;
+    private final TransactionTemplate transactionTemplate;
+    private final MailOutboxProperties properties;
+
+    @Value("${spring.mail.username:no-reply@nushungry.com}")
+    private String defaultFromAddress;
+
+    private ThreadPoolTaskExecutor executor;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+    private final AtomicLong deadLetterCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong totalBatchMillis = new AtomicLong();
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 EmailDeadLetterRepository emailDeadLetterRepository,
+                                 JavaMailSender mailSender,
+                                 TransactionTemplate transactionTemplate,
+                                 MailOutboxProperties properties) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailDeadLetterRepository = emailDeadLetterRepository;
+        this.mailSender = mailSender;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        int workers = Math.max(1, properties.getWorkers());
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(workers);
+        executor.setThreadNamePrefix("mail-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 唤醒发送线程（新邮件提交后调用）
+     * 空闲线程数已满时直接返回，正在运行的线程会继续领取新邮件
+     */
+    public void wakeUp() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int active = activeWorkers.get();
+        while (active < properties.getWorkers()) {
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                try {
+                    executor.execute(this::runWorker);
+                } catch (TaskRejectedException e) {
+                    activeWorkers.decrementAndGet();
+                }
+                return;
+            }
+            active = activeWorkers.get();
+        }
+    }
+
+    /**
+     * 定时轮询：回收超时的领取，并处理到期的重试
+     */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(properties.getClaimTimeoutMinutes());
+        Integer released = transactionTemplate.execute(status -> emailOutboxRepository.releaseStaleClaims(cutoff));
+        if (released != null && released > 0) {
+            log.warn("Released {} stale email outbox claims", released);
+        }
+        wakeUp();
+    }
+
+    /**
+     * 在当前线程中发送所有已到期的邮件
+     * @return 处理的邮件数量
+     */
+    public int dispatchPending() {
+        int processed = 0;
+        while (true) {
+            List<EmailOutbox> batch = claimBatch();
+            if (batch == null) {
+                return processed;
+            }
+            if (!batch.isEmpty()) {
+                deliver(batch);
+                processed += batch.size();
+            }
+        }
+    }
+
+    /**
+     * 将死信重新放回发件箱
+     * @return 死信是否存在
+     */
+    public boolean requeueDeadLetter(Long deadLetterId) {
+        Boolean requeued = transactionTemplate.execute(status ->
+                emailDeadLetterRepository.findById(deadLetterId).map(deadLetter -> {
+                    EmailOutbox message = new EmailOutbox();
+                    message.setRecipient(deadLetter.getRecipient());
+                    message.setSubject(deadLetter.getSubject());
+                    message.setBody(deadLetter.getBody());
+                    emailOutboxRepository.save(message);
+                    emailDeadLetterRepository.delete(deadLetter);
+                    return true;
+                }).orElse(false));
+        if (Boolean.TRUE.equals(requeued)) {
+            wakeUp();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 获取发件箱统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("workers", properties.getWorkers());
+        stats.put("activeWorkers", activeWorkers.get());
+        stats.put("pending", emailOutboxRepository.countByStatus(EmailOutboxStatus.PENDING));
+        stats.put("sending", emailOutboxRepository.countByStatus(EmailOutboxStatus.SENDING));
+        stats.put("deadLetters", emailDeadLetterRepository.count());
+        stats.put("sent", sentCount.get());
+        stats.put("failedAttempts", failedAttemptCount.get());
+        stats.put("deadLettered", deadLetterCount.get());
+        stats.put("batches", batchCount.get());
+        stats.put("totalBatchMillis", totalBatchMillis.get());
+        return stats;
+    }
+
+    private void runWorker() {
+        try {
+            dispatchPending();
+        } catch (Exception e) {
+            log.error("Email outbox worker failed: {}", e.getMessage(), e);
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 领取一批到期邮件
+     * @return null 表示没有到期邮件；空列表表示这批邮件已被其他线程领取
+     */
+    private List<EmailOutbox> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = emailOutboxRepository.findReadyIds(
+                    EmailOutboxStatus.PENDING, now, PageRequest.of(0, properties.getBatchSize()));
+            if (ids.isEmpty()) {
+                return null;
+            }
+            String token = UUID.randomUUID().toString();
+            if (emailOutboxRepository.claim(ids, token, now) == 0) {
+                return new ArrayList<>();
+            }
+            return emailOutboxRepository.findByClaimToken(token);
+        });
+    }
+
+    private void deliver(List<EmailOutbox> batch) {
+        long start = System.currentTimeMillis();
+
+        Map<SimpleMailMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        for (EmailOutbox outbox : batch) {
+            byMessage.put(toMailMessage(outbox), outbox);
+        }
+        SimpleMailMessage[] messages = byMessage.keySet().toArray(new SimpleMailMessage[0]);
+
+        // 发送失败的邮件及原因
+        Map<EmailOutbox, String> failures = new IdentityHashMap<>();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                batch.forEach(outbox -> failures.put(outbox, e.getMessage()));
+            } else {
+                e.getFailedMessages().forEach((message, cause) -> {
+                    EmailOutbox outbox = byMessage.get(message);
+                    if (outbox != null) {
+                        failures.put(outbox, cause.getMessage());
+                    }
+                });
+            }
+        } catch (MailException e) {
+            batch.forEach(outbox -> failures.put(outbox, e.getMessage()));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> complete(batch, failures));
+
+        batchCount.incrementAndGet();
+        totalBatchMillis.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    private void complete(List<EmailOutbox> batch, Map<EmailOutbox, String> failures) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmailOutbox> updated = new ArrayList<>();
+        List<EmailOutbox> exhausted = new ArrayList<>();
+
+        for (EmailOutbox outbox : batch) {
+            outbox.setClaimToken(null);
+            outbox.setClaimedAt(null);
+
+            if (!failures.containsKey(outbox)) {
+                outbox.setStatus(EmailOutboxStatus.SENT);
+                outbox.setSentAt(now);
+                updated.add(outbox);
+                sentCount.incrementAndGet();
+                continue;
+            }
+
+            failedAttemptCount.incrementAndGet();
+            outbox.setAttempts(outbox.getAttempts() + 1);
+            outbox.setLastError(truncate(failures.get(outbox)));
+
+            if (outbox.getAttempts() >= properties.getMaxAttempts()) {
+                exhausted.add(outbox);
+            } else {
+                outbox.setStatus(EmailOutboxStatus.PENDING);
+                outbox.setNextAttemptAt(now.plus(Duration.ofMillis(backoffMillis(outbox.getAttempts()))));
+                updated.add(outbox);
+                log.warn("Email {} to {} failed (attempt {}), will retry at {}",
+                        outbox.getId(), outbox.getRecipient(), outbox.getAttempts(), outbox.getNextAttemptAt());
+            }
+        }
+
+        emailOutboxRepository.saveAll(updated);
+
+        if (!exhausted.isEmpty()) {
+            List<EmailDeadLetter> deadLetters = new ArrayList<>();
+            for (EmailOutbox outbox : exhausted) {
+                deadLetters.add(toDeadLetter(outbox, now));
+                log.error("Email {} to {} moved to dead letters after {} attempts: {}",
+                        outbox.getId(), outbox.getRecipient(), outbox.getAttempts(), outbox.getLastError());
+            }
+            emailDeadLetterRepository.saveAll(deadLetters);
+            emailOutboxRepository.deleteAllInBatch(exhausted);
+            deadLetterCount.addAndGet(exhausted.size());
+        }
+    }
+
+    /**
+     * 指数退避，附加最多20%的随机抖动，避免大量失败邮件同时重试
+     */
+    private long backoffMillis(int attempts) {
+        long base = properties.getInitialBackoffMs();
+        if (base <= 0) {
+            return 0;
+        }
+        long delay = attempts >= 31 ? properties.getMaxBackoffMs() : base << (attempts - 1);
+        if (delay <= 0 || delay > properties.getMaxBackoffMs()) {
+            delay = properties.getMaxBackoffMs();
+        }
+        long jitter = delay / 5;
+        return jitter > 0 ? delay + ThreadLocalRandom.current().nextLong(jitter) : delay;
+    }
+
+    private SimpleMailMessage toMailMessage(EmailOutbox outbox) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(outbox.getRecipient());
+        message.setFrom(defaultFromAddress);
+        message.setSubject(outbox.getSubject());
+        message.setText(outbox.getBody());
+        return message;
+    }
+
+    private EmailDeadLetter toDeadLetter(EmailOutbox outbox, LocalDateTime now) {
+        EmailDeadLetter deadLetter = new EmailDeadLetter();
+        deadLetter.setOutboxId(outbox.getId());
+        deadLetter.setRecipient(outbox.getRecipient());
+        deadLetter.setSubject(outbox.getSubject());
+        deadLetter.setBody(outbox.getBody());
+        deadLetter.setAttempts(outbox.getAttempts());
+        deadLetter.setLastError(outbox.getLastError());
+        deadLetter.setCreatedAt(outbox.getCreatedAt());
+        deadLetter.setFailedAt(now);
+        return deadLetter;
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
@@ -1,35 +1,55 @@
 package com.nushungry.service;
 
+import com.nushungry.model.EmailOutbox;
+import com.nushungry.repository.EmailOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
-    private final JavaMailSender mailSender;
-
-    @Value("${spring.mail.username:no-reply@nushungry.com}")
-    private String defaultFromAddress;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailOutboxDispatcher emailOutboxDispatcher;
 
+    @Transactional
     public void sendPasswordResetCode(String to, String code) {
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
-        mailMessage.setTo(to);
-        mailMessage.setFrom(defaultFromAddress);
-        mailMessage.setSubject("NUSHungry Password Reset Verification Code");
-        mailMessage.setText(buildPasswordResetBody(code));
+        enqueue(to, "NUSHungry Password Reset Verification Code", buildPasswordResetBody(code));
+    }
+
+    /**
+     * 将邮件写入发件箱，由后台线程异步发送
+     * 在调用方事务中执行：事务回滚时邮件不会发出，事务提交后立即唤醒发送线程
+     */
+    @Transactional
+    public void enqueue(String to, String subject, String body) {
+        EmailOutbox message = new EmailOutbox();
+        message.setRecipient(to);
+        message.setSubject(subject);
+        message.setBody(body);
 
         try {
-            mailSender.send(mailMessage);
+            emailOutboxRepository.save(message);
         } catch (Exception ex) {
-            log.error("Failed to send password reset email to {}", to, ex);
+            log.error("Failed to queue email to {}", to, ex);
             throw new IllegalStateException("Failed to send verification email. Please try again later.");
         }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    emailOutboxDispatcher.wakeUp();
+                }
+            });
+        } else {
+            emailOutboxDispatcher.wakeUp();
+        }
     }
 
     private String buildPasswordResetBody(String code) {
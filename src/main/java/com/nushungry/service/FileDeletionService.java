@@ -0,0 +1,553 @@
+package com.nushungry.service;
+
+import com.nushungry.config.FileDeletionProperties;
+import com.nushungry.model.FileDeletion;
+import com.nushungry.model.FileDeletionStatus;
+import com.nushungry.model.ImageVariantsConverter;
+import com.nushungry.repository.FileDeletionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件异步删除
+ * 删除图片等记录时只在同一事务中写入删除任务，请求立即返回；后台线程批量领取任务，
+ * 删除原图、缩略图、各尺寸图片及其 WebP/AVIF 同名文件，失败时按指数退避重试，超过最大次数后标记为失败。
+ * 内容寻址文件可能被多条记录共享，不写入任务而是减少引用数，由 BlobStoreService 的垃圾回收删除。
+ * 删除前重新统计各表中的引用，仍被引用的文件不会删除。
+ * 孤儿扫描核对上传目录与各表中的引用，把超过宽限期且没有任何记录引用的文件写入删除任务
+ */
+@Slf4j
+@Service
+public class FileDeletionService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int ORPHAN_SAMPLE_SIZE = 50;
+
+    private static final String ORPHAN_SCAN_LOCK_NAME = "file-orphan-scan";
+    private static final Duration ORPHAN_SCAN_LOCK_LEASE = Duration.ofMinutes(30);
+
+    private static final String INSERT_SQL = "INSERT INTO file_deletions "
+            + "(url, status, attempts, next_attempt_at, created_at) VALUES (?, ?, 0, ?, ?)";
+
+    /**
+     * 后台生成的各尺寸图片（只记录在任务和内容寻址文件中）
+     * 图片记录已删除的任务不算引用：删除时仍在处理的任务完成后，生成的文件由孤儿扫描回收
+     */
+    private static final String VARIANTS_SQL = "SELECT j.variants FROM image_processing_jobs j "
+            + "WHERE j.variants IS NOT NULL "
+            + "AND (j.image_id IS NULL OR EXISTS (SELECT 1 FROM images i WHERE i.id = j.image_id)) "
+            + "UNION ALL SELECT variants FROM stored_blobs WHERE variants IS NOT NULL";
+
+    private final FileDeletionRepository fileDeletionRepository;
+    private final FileStorageService fileStorageService;
+    private final BlobStoreService blobStoreService;
+    private final SchedulerLockService schedulerLockService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FileDeletionProperties properties;
+
+    private ThreadPoolTaskExecutor executor;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong releasedBlobCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong missingCount = new AtomicLong();
+    private final AtomicLong stillReferencedCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong totalBatchMillis = new AtomicLong();
+    private final AtomicLong orphanScanRuns = new AtomicLong();
+    private final AtomicLong orphansFound = new AtomicLong();
+    private volatile LocalDateTime lastOrphanScanAt;
+
+    public FileDeletionService(FileDeletionRepository fileDeletionRepository,
+                               FileStorageService fileStorageService,
+                               BlobStoreService blobStoreService,
+                               SchedulerLockService schedulerLockService,
+                               JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               FileDeletionProperties properties) {
+        this.fileDeletionRepository = fileDeletionRepository;
+        this.fileStorageService = fileStorageService;
+        this.blobStoreService = blobStoreService;
+        this.schedulerLockService = schedulerLockService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 删除受磁盘 IO 限制，一个线程按批处理即可
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("file-deletion-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 写入删除任务（加入调用方的事务），事务提交后唤醒删除线程
+     * 内容寻址文件只减少引用数；调用方回滚时任务和引用数变化一起回滚，文件不会被删除
+     * @param urls 待删除文件的访问路径，null 和重复的路径会被忽略
+     * @return 写入的任务数
+     */
+    @Transactional
+    public int enqueue(Collection<String> urls) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String url : urls) {
+            if (url != null && !url.isBlank()) {
+                distinct.add(url);
+            }
+        }
+        List<String> contentAddressed = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (String url : distinct) {
+            (fileStorageService.isContentAddressed(url) ? contentAddressed : files).add(url);
+        }
+
+        if (!contentAddressed.isEmpty()) {
+            blobStoreService.releaseAll(contentAddressed);
+            releasedBlobCount.addAndGet(contentAddressed.size());
+        }
+        if (files.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, files, properties.getBatchSize(), (ps, url) -> {
+            ps.setString(1, url);
+            ps.setString(2, FileDeletionStatus.PENDING.name());
+            ps.setTimestamp(3, now);
+            ps.setTimestamp(4, now);
+        });
+        enqueuedCount.addAndGet(files.size());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+        return files.size();
+    }
+
+    /**
+     * 唤醒删除线程（新任务提交后调用），线程已在运行时直接返回
+     */
+    public void wakeUp() {
+        if (!properties.isEnabled() || !activeWorkers.compareAndSet(0, 1)) {
+            return;
+        }
+        try {
+            executor.execute(this::runWorker);
+        } catch (TaskRejectedException e) {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 定时轮询：回收超时的领取，并处理到期的重试
+     */
+    @Scheduled(fixedDelayString = "${app.file-deletion.poll-interval-ms:10000}")
+    public void poll() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(properties.getClaimTimeoutMinutes());
+        Integer released = transactionTemplate.execute(status -> fileDeletionRepository.releaseStaleClaims(cutoff));
+        if (released != null && released > 0) {
+            log.warn("Released {} stale file deletion claims", released);
+        }
+        wakeUp();
+    }
+
+    /**
+     * 在当前线程中处理所有已到期的删除任务
+     * @return 处理的任务数量
+     */
+    public int deletePending() {
+        int processed = 0;
+        while (true) {
+            List<FileDeletion> batch = claimBatch();
+            if (batch == null) {
+                return processed;
+            }
+            if (!batch.isEmpty()) {
+                purge(batch);
+                processed += batch.size();
+            }
+        }
+    }
+
+    /**
+     * 将失败的任务重新放回待删除队列
+     * @return 重新放回的数量
+     */
+    public int retryFailed() {
+        Integer requeued = transactionTemplate.execute(status ->
+                fileDeletionRepository.retryFailed(LocalDateTime.now()));
+        wakeUp();
+        return requeued == null ? 0 : requeued;
+    }
+
+    /**
+     * 定时孤儿文件扫描
+     */
+    @Scheduled(cron = "${app.file-deletion.orphan-scan-cron:0 30 4 * * *}")
+    public void scheduledOrphanScan() {
+        if (!properties.isOrphanScanEnabled()) {
+            return;
+        }
+        scanOrphans(false);
+    }
+
+    /**
+     * 扫描上传目录中没有任何记录引用的文件（不包括内容寻址文件，它们由引用数和垃圾回收管理）
+     * @param dryRun 为 true 时只统计，不写入删除任务
+     * @return 扫描的文件数、孤儿文件数和字节数、写入的任务数以及部分孤儿文件路径；未获取到锁时返回空
+     */
+    public Map<String, Object> scanOrphans(boolean dryRun) {
+        if (!schedulerLockService.tryLock(ORPHAN_SCAN_LOCK_NAME, ORPHAN_SCAN_LOCK_LEASE)) {
+            log.info("孤儿文件扫描正在其他节点执行，跳过本次执行");
+            return Map.of();
+        }
+
+        long startNanos = System.nanoTime();
+        OrphanScan scan = new OrphanScan(dryRun, loadVariantUrls(),
+                Instant.now().minus(Duration.ofHours(properties.getOrphanGraceHours())));
+        try {
+            for (Path root : List.of(fileStorageService.getImageStorageLocation(),
+                    fileStorageService.getThumbnailStorageLocation(),
+                    fileStorageService.getAvatarStorageLocation())) {
+                walk(root, scan);
+            }
+            scan.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("孤儿文件扫描失败: " + e.getMessage(), e);
+        } finally {
+            schedulerLockService.unlock(ORPHAN_SCAN_LOCK_NAME);
+            orphanScanRuns.incrementAndGet();
+            lastOrphanScanAt = LocalDateTime.now();
+        }
+
+        if (!dryRun) {
+            orphansFound.addAndGet(scan.orphans);
+        }
+        log.info("孤儿文件扫描完成{}: 扫描 {} 个文件, 孤儿文件 {} 个 ({} bytes), 写入删除任务 {} 个, 耗时 {} ms",
+                dryRun ? "（试运行）" : "", scan.scanned, scan.orphans, scan.orphanBytes, scan.enqueued,
+                (System.nanoTime() - startNanos) / 1_000_000);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("dryRun", dryRun);
+        result.put("scannedFiles", scan.scanned);
+        result.put("orphanFiles", scan.orphans);
+        result.put("orphanBytes", scan.orphanBytes);
+        result.put("enqueued", scan.enqueued);
+        result.put("sample", scan.sample);
+        return result;
+    }
+
+    /**
+     * 获取删除任务统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("activeWorkers", activeWorkers.get());
+        stats.put("pending", fileDeletionRepository.countByStatus(FileDeletionStatus.PENDING));
+        stats.put("deleting", fileDeletionRepository.countByStatus(FileDeletionStatus.DELETING));
+        stats.put("failed", fileDeletionRepository.countByStatus(FileDeletionStatus.FAILED));
+        stats.put("enqueued", enqueuedCount.get());
+        stats.put("releasedBlobs", releasedBlobCount.get());
+        stats.put("deleted", deletedCount.get());
+        stats.put("alreadyMissing", missingCount.get());
+        stats.put("stillReferenced", stillReferencedCount.get());
+        stats.put("failedAttempts", failedAttemptCount.get());
+        stats.put("markedFailed", failedCount.get());
+        stats.put("batches", batchCount.get());
+        stats.put("totalBatchMillis", totalBatchMillis.get());
+        stats.put("orphanScanEnabled", properties.isOrphanScanEnabled());
+        stats.put("orphanGraceHours", properties.getOrphanGraceHours());
+        stats.put("orphanScanRuns", orphanScanRuns.get());
+        stats.put("orphansFound", orphansFound.get());
+        stats.put("lastOrphanScanAt", lastOrphanScanAt);
+        return stats;
+    }
+
+    private void runWorker() {
+        try {
+            deletePending();
+        } catch (Exception e) {
+            log.error("File deletion worker failed: {}", e.getMessage(), e);
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 领取一批到期任务
+     * @return null 表示没有到期任务；空列表表示这批任务已被其他节点领取
+     */
+    private List<FileDeletion> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = fileDeletionRepository.findReadyIds(
+                    FileDeletionStatus.PENDING, now, PageRequest.of(0, properties.getBatchSize()));
+            if (ids.isEmpty()) {
+                return null;
+            }
+            String token = UUID.randomUUID().toString();
+            if (fileDeletionRepository.claim(ids, token, now) == 0) {
+                return new ArrayList<>();
+            }
+            return fileDeletionRepository.findByClaimToken(token);
+        });
+    }
+
+    private void purge(List<FileDeletion> batch) {
+        long start = System.currentTimeMillis();
+
+        // 删除任务写入后又被引用（例如同一个文件被重新保存）的文件不删除
+        Map<String, Integer> references = blobStoreService.countReferences(
+                batch.stream().map(FileDeletion::getUrl).distinct().toList());
+
+        Map<FileDeletion, String> failures = new IdentityHashMap<>();
+        for (FileDeletion deletion : batch) {
+            if (references.getOrDefault(deletion.getUrl(), 0) > 0) {
+                stillReferencedCount.incrementAndGet();
+                log.warn("文件仍被引用，跳过删除: {}", deletion.getUrl());
+                continue;
+            }
+            try {
+                if (fileStorageService.purge(deletion.getUrl())) {
+                    deletedCount.incrementAndGet();
+                } else {
+                    missingCount.incrementAndGet();
+                }
+            } catch (IOException | RuntimeException e) {
+                failures.put(deletion, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> complete(batch, failures));
+
+        batchCount.incrementAndGet();
+        totalBatchMillis.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    private void complete(List<FileDeletion> batch, Map<FileDeletion, String> failures) {
+        LocalDateTime now = LocalDateTime.now();
+        List<FileDeletion> done = new ArrayList<>();
+        List<FileDeletion> updated = new ArrayList<>();
+
+        for (FileDeletion deletion : batch) {
+            if (!failures.containsKey(deletion)) {
+                done.add(deletion);
+                continue;
+            }
+
+            failedAttemptCount.incrementAndGet();
+            deletion.setClaimToken(null);
+            deletion.setClaimedAt(null);
+            deletion.setAttempts(deletion.getAttempts() + 1);
+            deletion.setLastError(truncate(failures.get(deletion)));
+
+            if (deletion.getAttempts() >= properties.getMaxAttempts()) {
+                deletion.setStatus(FileDeletionStatus.FAILED);
+                failedCount.incrementAndGet();
+                log.error("File deletion {} for {} failed after {} attempts: {}",
+                        deletion.getId(), deletion.getUrl(), deletion.getAttempts(), deletion.getLastError());
+            } else {
+                deletion.setStatus(FileDeletionStatus.PENDING);
+                deletion.setNextAttemptAt(now.plus(Duration.ofMillis(backoffMillis(deletion.getAttempts()))));
+                log.warn("File deletion {} for {} failed (attempt {}), will retry at {}",
+                        deletion.getId(), deletion.getUrl(), deletion.getAttempts(), deletion.getNextAttemptAt());
+            }
+            updated.add(deletion);
+        }
+
+        fileDeletionRepository.deleteAllInBatch(done);
+        fileDeletionRepository.saveAll(updated);
+    }
+
+    /**
+     * 遍历目录，跳过内容寻址目录，把超过宽限期的文件交给扫描批次
+     */
+    private void walk(Path root, OrphanScan scan) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Path contentAddressed = fileStorageService.getContentAddressedLocation();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.equals(contentAddressed) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.getFileName().toString().endsWith(".part")
+                        && attrs.lastModifiedTime().toInstant().isBefore(scan.cutoff)) {
+                    scan.add(file, attrs.size());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                log.warn("孤儿文件扫描无法读取: {}", file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * 加载任务和内容寻址文件中记录的各尺寸图片路径
+     */
+    private Set<String> loadVariantUrls() {
+        ImageVariantsConverter converter = new ImageVariantsConverter();
+        Set<String> urls = new HashSet<>();
+        jdbcTemplate.query(VARIANTS_SQL,
+                (RowCallbackHandler) rs -> urls.addAll(converter.convertToEntityAttribute(rs.getString(1)).values()));
+        return urls;
+    }
+
+    /**
+     * 指数退避，附加最多20%的随机抖动
+     */
+    private long backoffMillis(int attempts) {
+        long base = properties.getInitialBackoffMs();
+        if (base <= 0) {
+            return 0;
+        }
+        long delay = attempts >= 31 ? properties.getMaxBackoffMs() : base << (attempts - 1);
+        if (delay <= 0 || delay > properties.getMaxBackoffMs()) {
+            delay = properties.getMaxBackoffMs();
+        }
+        long jitter = delay / 5;
+        return jitter > 0 ? delay + ThreadLocalRandom.current().nextLong(jitter) : delay;
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * 一次孤儿扫描的状态，文件按批次核对引用
+     */
+    private final class OrphanScan {
+
+        private final boolean dryRun;
+        private final Set<String> variantUrls;
+        private final Instant cutoff;
+        private final Map<String, Long> pending = new LinkedHashMap<>();
+        private final List<String> sample = new ArrayList<>();
+        private long scanned;
+        private long orphans;
+        private long orphanBytes;
+        private long enqueued;
+
+        private OrphanScan(boolean dryRun, Set<String> variantUrls, Instant cutoff) {
+            this.dryRun = dryRun;
+            this.variantUrls = variantUrls;
+            this.cutoff = cutoff;
+        }
+
+        private void add(Path file, long size) {
+            scanned++;
+            // WebP/AVIF 同名文件随主文件一起删除
+            if (fileStorageService.isAlternateFile(file)) {
+                return;
+            }
+            String url = fileStorageService.toUploadUrl(file);
+            if (variantUrls.contains(url)) {
+                return;
+            }
+            pending.put(url, size);
+            if (pending.size() >= properties.getBatchSize()) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<String> urls = new ArrayList<>(pending.keySet());
+            Map<String, Integer> references = blobStoreService.countReferences(urls);
+            Set<String> queued = new HashSet<>(fileDeletionRepository.findQueuedUrls(urls));
+
+            List<String> found = new ArrayList<>();
+            for (String url : urls) {
+                if (references.getOrDefault(url, 0) == 0 && !queued.contains(url)) {
+                    found.add(url);
+                    orphanBytes += pending.get(url);
+                    if (sample.size() < ORPHAN_SAMPLE_SIZE) {
+                        sample.add(url);
+                    }
+                }
+            }
+            orphans += found.size();
+            if (!dryRun && !found.isEmpty()) {
+                Integer written = transactionTemplate.execute(status -> enqueue(found));
+                enqueued += written == null ? 0 : written;
+            }
+            pending.clear();
+        }
+    }
+}
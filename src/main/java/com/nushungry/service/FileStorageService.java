@@ -2,43 +2,93 @@ package com.nushungry.service;
 
 import com.nushungry.config.FileStorageProperties;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FilenameUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
  * 文件存储服务
+ * 所有上传都经过同一条流式写入路径：分块读取上传流，边读边计算 SHA-256、按文件头识别真实格式、
+ * 校验实际字节数，通过 FileChannel 写入临时文件后原子重命名，内存占用与文件大小无关。
  */
 @Slf4j
 @Service
 public class FileStorageService {
 
+    /**
+     * 识别格式需要的文件头字节数
+     */
+    private static final int SNIFF_BYTES = 12;
+
+    /**
+     * 按内容寻址的文件所在子目录（位于图片目录下）
+     */
+    private static final String CONTENT_ADDRESSED_DIR = "cas";
+
+    /**
+     * 编码时可能与主文件同时写入的其他格式
+     */
+    private static final List<String> ALTERNATE_EXTENSIONS = List.of("webp", "avif");
+
+    /**
+     * 可能作为主文件的格式（用于识别 WebP/AVIF 同名文件）
+     */
+    private static final List<String> SIBLING_EXTENSIONS = List.of("jpg", "jpeg", "png", "gif", "webp", "avif");
+
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp");
+
     private final FileStorageProperties fileStorageProperties;
+    private final Path uploadRoot;
     private final Path imageStorageLocation;
     private final Path thumbnailStorageLocation;
+    private final Path avatarStorageLocation;
+    private final Path stagingLocation;
+    private final Path renderCacheLocation;
 
     public FileStorageService(FileStorageProperties fileStorageProperties) {
         this.fileStorageProperties = fileStorageProperties;
+        this.uploadRoot = Paths.get(fileStorageProperties.getUploadDir()).toAbsolutePath().normalize();
         this.imageStorageLocation = Paths.get(fileStorageProperties.getImageUploadPath())
                 .toAbsolutePath().normalize();
         this.thumbnailStorageLocation = Paths.get(fileStorageProperties.getThumbnailUploadPath())
                 .toAbsolutePath().normalize();
+        this.avatarStorageLocation = Paths.get(fileStorageProperties.getAvatarUploadPath())
+                .toAbsolutePath().normalize();
+        this.stagingLocation = Paths.get(fileStorageProperties.getStagingUploadPath())
+                .toAbsolutePath().normalize();
+        this.renderCacheLocation = Paths.get(fileStorageProperties.getRenderCacheUploadPath())
+                .toAbsolutePath().normalize();
 
         try {
             Files.createDirectories(this.imageStorageLocation);
             Files.createDirectories(this.thumbnailStorageLocation);
+            Files.createDirectories(this.avatarStorageLocation);
+            Files.createDirectories(this.stagingLocation);
+            Files.createDirectories(this.renderCacheLocation);
             log.info("文件存储目录创建成功: {}", this.imageStorageLocation);
             log.info("缩略图存储目录创建成功: {}", this.thumbnailStorageLocation);
         } catch (IOException ex) {
@@ -61,35 +111,30 @@ public class FileStorageService {
      * @return 文件的访问路径
      */
     public String storeFile(MultipartFile file, boolean organizeByDate) {
+        return ingest(file, organizeByDate).url();
+    }
+
+    /**
+     * 存储上传的图片并返回内容摘要
+     * @param file 上传的文件
+     * @param organizeByDate 是否按日期组织文件
+     */
+    public StoredUpload ingest(MultipartFile file, boolean organizeByDate) {
         // 验证文件
         validateFile(file);
 
         try {
-            // 获取原始文件名和扩展名
-            String originalFilename = file.getOriginalFilename();
-            String extension = FilenameUtils.getExtension(originalFilename);
-
-            // 生成唯一文件名
-            String filename = generateUniqueFilename(extension);
-
-            // 确定存储路径
-            Path targetLocation = imageStorageLocation;
+            Path directory = imageStorageLocation;
             String urlPath = "/uploads/images/";
-
             if (organizeByDate) {
-                // 按日期组织文件：uploads/images/2024/01/15/xxx.jpg
                 String datePath = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
-                targetLocation = imageStorageLocation.resolve(datePath);
-                Files.createDirectories(targetLocation);
+                directory = imageStorageLocation.resolve(datePath);
                 urlPath = "/uploads/images/" + datePath + "/";
             }
 
-            // 保存文件
-            Path destinationFile = targetLocation.resolve(filename);
-            Files.copy(file.getInputStream(), destinationFile, StandardCopyOption.REPLACE_EXISTING);
-
-            log.info("文件上传成功: {}", destinationFile);
-            return urlPath + filename;
+            StoredUpload upload = write(file, directory, urlPath);
+            log.info("文件上传成功: {} ({} bytes, sha256={})", upload.path(), upload.size(), upload.sha256());
+            return upload;
 
         } catch (IOException ex) {
             log.error("文件存储失败", ex);
@@ -97,6 +142,252 @@ public class FileStorageService {
         }
     }
 
+    /**
+     * 把上传的图片写入临时目录，供解码处理使用，调用方处理完成后删除
+     * 返回结果的 url 为 null
+     */
+    public StoredUpload stage(MultipartFile file) throws IOException {
+        validateFile(file);
+        return write(file, stagingLocation, null);
+    }
+
+    /**
+     * 把暂存文件移动到按内容寻址的位置：/uploads/images/cas/ab/{sha256}.ext
+     * 目标已存在时直接替换（内容相同）
+     */
+    public StoredFile promote(StoredUpload staged) throws IOException {
+        String filename = CONTENT_ADDRESSED_DIR + "/" + staged.sha256().substring(0, 2) + "/"
+                + staged.sha256() + "." + EXTENSIONS.get(staged.contentType());
+        Path destination = imageStorageLocation.resolve(filename);
+        Files.createDirectories(destination.getParent());
+        Files.move(staged.path(), destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new StoredFile(destination, "/uploads/images/" + filename);
+    }
+
+    /**
+     * 把处理生成的图片（连同 WebP/AVIF 同名文件）移动到按内容寻址的位置：/uploads/images/cas/ab/{sha256}.ext
+     * 目标已存在时直接替换（内容相同）
+     */
+    public StoredFile promote(Path file, String sha256) throws IOException {
+        String name = file.getFileName().toString();
+        String filename = CONTENT_ADDRESSED_DIR + "/" + sha256.substring(0, 2) + "/"
+                + sha256 + name.substring(name.lastIndexOf('.'));
+        Path destination = imageStorageLocation.resolve(filename);
+        Files.createDirectories(destination.getParent());
+        for (Path alternate : alternatesOf(file)) {
+            if (Files.exists(alternate)) {
+                String alternateName = alternate.getFileName().toString();
+                Files.move(alternate, destination.resolveSibling(sha256 + alternateName.substring(alternateName.lastIndexOf('.'))),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.move(file, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new StoredFile(destination, "/uploads/images/" + filename);
+    }
+
+    /**
+     * 按扩展名判断已保存图片的 MIME 类型
+     */
+    public String contentTypeOf(Path file) {
+        String name = file.getFileName().toString();
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        if (extension.equals("jpeg")) {
+            return "image/jpeg";
+        }
+        return EXTENSIONS.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(extension))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse("application/octet-stream");
+    }
+
+    /**
+     * 为新头像分配存储路径
+     */
+    public StoredFile newAvatarFile(String extension) {
+        String filename = generateUniqueFilename(extension);
+        return new StoredFile(avatarStorageLocation.resolve(filename), "/uploads/avatars/" + filename);
+    }
+
+    /**
+     * 流式写入：分块读取上传流，同时计算摘要、识别格式、统计字节数，写完后原子重命名为正式文件名
+     * @param urlPrefix 访问路径前缀，null 表示临时文件
+     */
+    private StoredUpload write(MultipartFile file, Path directory, String urlPrefix) throws IOException {
+        Files.createDirectories(directory);
+        Path partial = directory.resolve(UUID.randomUUID() + ".part");
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(SNIFF_BYTES, fileStorageProperties.getIngestBufferBytes()));
+        byte[] head = new byte[SNIFF_BYTES];
+        int headLength = 0;
+        long size = 0;
+
+        try {
+            try (ReadableByteChannel in = Channels.newChannel(file.getInputStream());
+                 FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    size += buffer.remaining();
+                    if (size > fileStorageProperties.getMaxFileSize()) {
+                        throw new IllegalArgumentException(String.format("文件大小超过限制: %d MB",
+                                fileStorageProperties.getMaxFileSize() / (1024 * 1024)));
+                    }
+                    if (headLength < SNIFF_BYTES) {
+                        int n = Math.min(SNIFF_BYTES - headLength, buffer.remaining());
+                        buffer.get(buffer.position(), head, headLength, n);
+                        headLength += n;
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+
+            String contentType = sniffImageType(head, headLength);
+            if (contentType == null || !isAllowedImageType(contentType)) {
+                throw new IllegalArgumentException("文件内容不是支持的图片格式: " + file.getOriginalFilename());
+            }
+
+            String filename = generateUniqueFilename(EXTENSIONS.get(contentType));
+            Path destination = directory.resolve(filename);
+            Files.move(partial, destination, StandardCopyOption.ATOMIC_MOVE);
+            return new StoredUpload(destination, urlPrefix != null ? urlPrefix + filename : null,
+                    contentType, HexFormat.of().formatHex(digest.digest()), size);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * 按文件头识别图片格式
+     * @return MIME 类型，无法识别时返回 null
+     */
+    static String sniffImageType(byte[] head, int length) {
+        if (length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return "image/jpeg";
+        }
+        if (length >= 8 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G'
+                && head[4] == 0x0D && head[5] == 0x0A && head[6] == 0x1A && head[7] == 0x0A) {
+            return "image/png";
+        }
+        if (length >= 6 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8'
+                && (head[4] == '7' || head[4] == '9') && head[5] == 'a') {
+            return "image/gif";
+        }
+        if (length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P') {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    /**
+     * 计算文件内容的 SHA-256（流式读取）
+     * @return 十六进制摘要
+     */
+    public String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocate(fileStorageProperties.getIngestBufferBytes());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 为新图片分配存储路径（只创建目录，不写入内容），调用方直接把处理结果写入该路径
+     * @param extension 文件扩展名
+     * @param organizeByDate 是否按日期组织文件
+     */
+    public StoredFile newImageFile(String extension, boolean organizeByDate) throws IOException {
+        // 生成唯一文件名
+        String filename = generateUniqueFilename(extension);
+
+        // 确定存储路径
+        Path targetLocation = imageStorageLocation;
+        String urlPath = "/uploads/images/";
+
+        if (organizeByDate) {
+            // 按日期组织文件：uploads/images/2024/01/15/xxx.jpg
+            String datePath = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd"));
+            targetLocation = imageStorageLocation.resolve(datePath);
+            Files.createDirectories(targetLocation);
+            urlPath = "/uploads/images/" + datePath + "/";
+        }
+
+        return new StoredFile(targetLocation.resolve(filename), urlPath + filename);
+    }
+
+    /**
+     * 为新缩略图分配存储路径
+     */
+    public StoredFile newThumbnailFile(String extension) {
+        String filename = generateUniqueFilename(extension);
+        return new StoredFile(thumbnailStorageLocation.resolve(filename), "/uploads/thumbnails/" + filename);
+    }
+
+    /**
+     * 将图片访问路径转换为磁盘路径
+     * @return 磁盘路径；URL 无效或不在图片目录内时返回 null
+     */
+    public Path resolveImageUrl(String fileUrl) {
+        String filename = extractFilenameFromUrl(fileUrl);
+        if (filename == null) {
+            return null;
+        }
+        Path filePath = imageStorageLocation.resolve(filename).normalize();
+        return filePath.startsWith(imageStorageLocation) ? filePath : null;
+    }
+
+    /**
+     * 将 /uploads/ 下任意文件（图片、缩略图等）的访问 URL 转换为磁盘路径
+     * @return 磁盘路径；不是上传文件 URL 或文件不存在时返回 null
+     */
+    public Path resolveFileUrl(String fileUrl) {
+        String prefix = "/uploads/";
+        if (fileUrl == null || !fileUrl.startsWith(prefix)) {
+            return null;
+        }
+        return resolveUploadPath(fileUrl.substring(prefix.length()));
+    }
+
+    /**
+     * 将上传根目录下的相对路径转换为磁盘路径（用于文件访问）
+     * @return 磁盘路径；路径越界、位于临时目录或缩放缓存目录、不是普通文件时返回 null
+     */
+    public Path resolveUploadPath(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty()) {
+            return null;
+        }
+        Path filePath = uploadRoot.resolve(relativePath).normalize();
+        if (!filePath.startsWith(uploadRoot) || filePath.startsWith(stagingLocation)
+                || filePath.startsWith(renderCacheLocation) || !Files.isRegularFile(filePath)) {
+            return null;
+        }
+        return filePath;
+    }
+
+    /**
+     * 是否为按内容寻址保存的文件
+     */
+    public boolean isContentAddressed(String fileUrl) {
+        return fileUrl != null && fileUrl.startsWith("/uploads/images/" + CONTENT_ADDRESSED_DIR + "/");
+    }
+
     /**
      * 批量存储文件
      */
@@ -130,36 +421,11 @@ public class FileStorageService {
      */
     public boolean deleteFile(String fileUrl) {
         try {
-            // 从URL中提取文件路径
-            String filename = extractFilenameFromUrl(fileUrl);
-            if (filename == null) {
-                log.warn("无效的文件URL: {}", fileUrl);
-                return false;
-            }
-
-            // 构建文件路径
-            Path filePath = imageStorageLocation.resolve(filename).normalize();
-
-            // 安全检查：确保文件在允许的目录内
-            if (!filePath.startsWith(imageStorageLocation)) {
-                log.warn("试图删除不安全的文件路径: {}", filePath);
-                return false;
-            }
-
-            // 删除文件
-            boolean deleted = Files.deleteIfExists(filePath);
-
-            if (deleted) {
-                log.info("文件删除成功: {}", filePath);
-
-                // 尝试删除对应的缩略图
-                deleteThumbnail(filename);
-            } else {
-                log.warn("文件不存在: {}", filePath);
+            boolean deleted = purge(fileUrl);
+            if (!deleted) {
+                log.warn("文件不存在或URL无效: {}", fileUrl);
             }
-
             return deleted;
-
         } catch (IOException ex) {
             log.error("文件删除失败: {}", fileUrl, ex);
             return false;
@@ -167,16 +433,90 @@ public class FileStorageService {
     }
 
     /**
-     * 删除缩略图
+     * 删除文件及其同名的缩略图和 WebP/AVIF 文件，任意一个删除失败时抛出异常（供重试）
+     * 重复调用是安全的：原文件已不存在时仍会清理剩余的同名文件
+     * @param fileUrl 上传目录下文件的访问路径（图片、缩略图或头像）
+     * @return 原文件是否存在并已删除；URL 无效时返回 false
      */
-    private void deleteThumbnail(String filename) {
-        try {
-            Path thumbnailPath = thumbnailStorageLocation.resolve(filename).normalize();
-            Files.deleteIfExists(thumbnailPath);
-            log.info("缩略图删除成功: {}", thumbnailPath);
-        } catch (IOException ex) {
-            log.warn("缩略图删除失败: {}", filename, ex);
+    public boolean purge(String fileUrl) throws IOException {
+        Path filePath = resolveDeletablePath(fileUrl);
+        if (filePath == null) {
+            return false;
         }
+        boolean deleted = Files.deleteIfExists(filePath);
+        if (deleted) {
+            log.debug("文件删除成功: {}", filePath);
+        }
+        if (filePath.startsWith(imageStorageLocation)) {
+            // 旧版本上传时按原图文件名生成的缩略图
+            Files.deleteIfExists(thumbnailStorageLocation
+                    .resolve(imageStorageLocation.relativize(filePath)).normalize());
+        }
+        for (Path alternate : alternatesOf(filePath)) {
+            Files.deleteIfExists(alternate);
+        }
+        return deleted;
+    }
+
+    /**
+     * 是否为编码时写入的 WebP/AVIF 同名文件（同一目录下存在同名的其他格式文件）
+     * 这类文件随主文件一起删除，不单独判断是否被引用
+     */
+    public boolean isAlternateFile(Path file) {
+        String filename = file.getFileName().toString();
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0 || !ALTERNATE_EXTENSIONS.contains(filename.substring(dot + 1))) {
+            return false;
+        }
+        String stem = filename.substring(0, dot);
+        for (String extension : SIBLING_EXTENSIONS) {
+            Path sibling = file.resolveSibling(stem + "." + extension);
+            if (!sibling.equals(file) && Files.exists(sibling)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 将上传目录下的磁盘路径转换为访问路径
+     */
+    public String toUploadUrl(Path file) {
+        return "/uploads/" + uploadRoot.relativize(file.toAbsolutePath().normalize()).toString()
+                .replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    /**
+     * 将待删除文件的访问路径转换为磁盘路径
+     * @return 磁盘路径；URL 无效、越界或位于临时目录和缩放缓存目录时返回 null
+     */
+    private Path resolveDeletablePath(String fileUrl) {
+        if (fileUrl == null || !fileUrl.startsWith("/uploads/")) {
+            return null;
+        }
+        Path filePath = uploadRoot.resolve(fileUrl.substring("/uploads/".length())).normalize();
+        if (!filePath.startsWith(uploadRoot) || filePath.equals(uploadRoot) || filePath.startsWith(stagingLocation)
+                || filePath.startsWith(renderCacheLocation)) {
+            log.warn("试图删除不安全的文件路径: {}", fileUrl);
+            return null;
+        }
+        return filePath;
+    }
+
+    private static List<Path> alternatesOf(Path filePath) {
+        String filename = filePath.getFileName().toString();
+        int dot = filename.lastIndexOf('.');
+        if (dot < 0) {
+            return List.of();
+        }
+        List<Path> alternates = new ArrayList<>();
+        for (String extension : ALTERNATE_EXTENSIONS) {
+            Path alternate = filePath.resolveSibling(filename.substring(0, dot) + "." + extension);
+            if (!alternate.equals(filePath)) {
+                alternates.add(alternate);
+            }
+        }
+        return alternates;
     }
 
     /**
@@ -195,9 +535,9 @@ public class FileStorageService {
     }
 
     /**
-     * 验证文件
+     * 验证文件（大小、类型、文件名）
      */
-    private void validateFile(MultipartFile file) {
+    public void validateFile(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("文件不能为空");
         }
@@ -272,4 +612,44 @@ public class FileStorageService {
     public Path getThumbnailStorageLocation() {
         return thumbnailStorageLocation;
     }
+
+    /**
+     * 获取头像存储位置
+     */
+    public Path getAvatarStorageLocation() {
+        return avatarStorageLocation;
+    }
+
+    /**
+     * 获取按内容寻址文件的存储位置
+     */
+    public Path getContentAddressedLocation() {
+        return imageStorageLocation.resolve(CONTENT_ADDRESSED_DIR);
+    }
+
+    /**
+     * 获取按需缩放缓存目录
+     */
+    public Path getRenderCacheLocation() {
+        return renderCacheLocation;
+    }
+
+    /**
+     * 已分配的存储位置
+     * @param path 磁盘路径
+     * @param url 访问路径
+     */
+    public record StoredFile(Path path, String url) {
+    }
+
+    /**
+     * 已写入磁盘的上传文件
+     * @param path 磁盘路径
+     * @param url 访问路径（临时文件为 null）
+     * @param contentType 按文件头识别的 MIME 类型
+     * @param sha256 内容的 SHA-256（十六进制）
+     * @param size 字节数
+     */
+    public record StoredUpload(Path path, String url, String contentType, String sha256, long size) {
+    }
 }
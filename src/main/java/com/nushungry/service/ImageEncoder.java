@@ -0,0 +1,38 @@
+package com.nushungry.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 图片编码器
+ * 默认编码器由 ImageEncoderRegistry 按 ImageIO 中可用的写入器注册，声明为 Bean 的实现会覆盖同一格式的默认编码器
+ */
+public interface ImageEncoder {
+
+    /**
+     * 格式名称，如 jpeg、webp、avif
+     */
+    String format();
+
+    /**
+     * 文件扩展名（不含点）
+     */
+    String extension();
+
+    /**
+     * MIME 类型
+     */
+    String contentType();
+
+    /**
+     * 是否支持按质量有损压缩（不支持时忽略 quality 参数）
+     */
+    boolean supportsQuality();
+
+    /**
+     * 编码图片
+     * @param image 待编码的图片
+     * @param quality 压缩质量（0.0-1.0）
+     */
+    byte[] encode(BufferedImage image, float quality) throws IOException;
+}
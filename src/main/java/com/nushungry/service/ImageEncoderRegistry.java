@@ -0,0 +1,401 @@
+package com.nushungry.service;
+
+import com.nushungry.config.ImageEncodingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图片编码器注册表
+ * 启动时按 ImageIO 中可用的写入器注册 JPEG、WebP、AVIF 编码器（WebP/AVIF 需要在类路径中加入对应的 ImageIO 插件），
+ * 声明为 Bean 的 ImageEncoder 覆盖同一格式的默认编码器。
+ * 编码时在质量区间内二分搜索：先找到 SSIM 达到目标的最低质量，再在超出字节预算时继续降低质量；
+ * 调用方配置的质量（如压缩质量、缩略图质量）作为搜索上限，每个输出的试编码次数有上限
+ */
+@Slf4j
+@Service
+public class ImageEncoderRegistry {
+
+    /**
+     * 计算 SSIM 的窗口边长
+     */
+    private static final int SSIM_WINDOW = 8;
+
+    /**
+     * 计算 SSIM 时最多采样的窗口数，大图按间隔取窗口
+     */
+    private static final int SSIM_MAX_WINDOWS = 16384;
+
+    private static final double SSIM_C1 = Math.pow(0.01 * 255, 2);
+    private static final double SSIM_C2 = Math.pow(0.03 * 255, 2);
+
+    /**
+     * 默认编码器：格式 -> {扩展名, MIME 类型}
+     */
+    private static final Map<String, String[]> BUILT_IN_FORMATS = new LinkedHashMap<>();
+
+    static {
+        BUILT_IN_FORMATS.put("jpeg", new String[]{"jpg", "image/jpeg"});
+        BUILT_IN_FORMATS.put("webp", new String[]{"webp", "image/webp"});
+        BUILT_IN_FORMATS.put("avif", new String[]{"avif", "image/avif"});
+    }
+
+    private final ImageEncodingProperties properties;
+    private final Map<String, ImageEncoder> encoders = new LinkedHashMap<>();
+    private final ImageEncoder primary;
+    private final List<ImageEncoder> alternates = new ArrayList<>();
+
+    private final AtomicLong encodedImages = new AtomicLong();
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private final AtomicLong trialEncodes = new AtomicLong();
+    private final AtomicLong qualityPermille = new AtomicLong();
+
+    @Autowired
+    public ImageEncoderRegistry(ImageEncodingProperties properties, ObjectProvider<ImageEncoder> customEncoders) {
+        this(properties, customEncoders.orderedStream().toList());
+    }
+
+    public ImageEncoderRegistry(ImageEncodingProperties properties, List<ImageEncoder> customEncoders) {
+        this.properties = properties;
+        BUILT_IN_FORMATS.forEach((format, info) -> {
+            if (ImageIO.getImageWritersByMIMEType(info[1]).hasNext()) {
+                encoders.put(format, new ImageIOEncoder(format, info[0], info[1]));
+            }
+        });
+        for (ImageEncoder encoder : customEncoders) {
+            encoders.put(encoder.format(), encoder);
+        }
+
+        this.primary = encoders.get(properties.getPrimaryFormat());
+        if (primary == null) {
+            throw new IllegalStateException("没有可用的主格式编码器: " + properties.getPrimaryFormat());
+        }
+        for (String format : properties.getAlternateFormats()) {
+            ImageEncoder encoder = encoders.get(format);
+            if (encoder != null && encoder != primary) {
+                alternates.add(encoder);
+            }
+        }
+        log.info("图片编码器: 可用 {}, 主格式 {}, 额外格式 {}", encoders.keySet(), primary.format(),
+                alternates.stream().map(ImageEncoder::format).toList());
+    }
+
+    /**
+     * 主格式编码器
+     */
+    public ImageEncoder primary() {
+        return primary;
+    }
+
+    /**
+     * 额外格式编码器（只包含已注册的格式）
+     */
+    public List<ImageEncoder> alternates() {
+        return alternates;
+    }
+
+    /**
+     * 按扩展名查找编码器
+     * @return 编码器；没有对应格式时返回 null
+     */
+    public ImageEncoder findByExtension(String extension) {
+        for (ImageEncoder encoder : encoders.values()) {
+            if (encoder.extension().equalsIgnoreCase(extension)) {
+                return encoder;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 编码图片，按配置选择质量
+     * 关闭 SSIM 和字节预算时使用 defaultQuality；编码器不支持质量时只编码一次
+     * @param defaultQuality 不调整质量时使用的固定质量，调整质量时作为上限
+     */
+    public EncodedImage encode(BufferedImage image, ImageEncoder encoder, float defaultQuality) throws IOException {
+        EncodedImage result;
+        boolean tune = properties.getTargetSsim() > 0 || properties.getMaxBytesPerPixel() > 0;
+        if (!encoder.supportsQuality() || !tune) {
+            result = new EncodedImage(encoder, encoder.encode(image, defaultQuality), defaultQuality);
+            trialEncodes.incrementAndGet();
+        } else {
+            result = searchQuality(image, encoder, defaultQuality);
+        }
+        encodedImages.incrementAndGet();
+        encodedBytes.addAndGet(result.bytes().length);
+        qualityPermille.addAndGet(Math.round(result.quality() * 1000));
+        return result;
+    }
+
+    /**
+     * 获取编码统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("formats", List.copyOf(encoders.keySet()));
+        stats.put("primaryFormat", primary.format());
+        stats.put("alternateFormats", alternates.stream().map(ImageEncoder::format).toList());
+        stats.put("targetSsim", properties.getTargetSsim());
+        stats.put("maxBytesPerPixel", properties.getMaxBytesPerPixel());
+        long images = encodedImages.get();
+        stats.put("encodedImages", images);
+        stats.put("encodedBytes", encodedBytes.get());
+        stats.put("trialEncodes", trialEncodes.get());
+        stats.put("averageQuality", images == 0 ? 0.0 : qualityPermille.get() / 1000.0 / images);
+        return stats;
+    }
+
+    private EncodedImage searchQuality(BufferedImage image, ImageEncoder encoder, float defaultQuality)
+            throws IOException {
+        Map<Float, byte[]> trials = new TreeMap<>();
+        float low = properties.getMinQuality();
+        float high = Math.max(low, Math.min(properties.getMaxQuality(), defaultQuality));
+        // 为预算检查和最终结果各留一次编码
+        int limit = Math.max(2, properties.getMaxTrialEncodes());
+
+        // 1. SSIM 达到目标的最低质量（无法解码该格式时跳过）
+        float chosen = high;
+        if (properties.getTargetSsim() > 0) {
+            int[] reference = luma(image);
+            for (int step = 0; step < properties.getSearchSteps() && trials.size() < limit - 2; step++) {
+                float mid = (low + high) / 2;
+                double ssim = ssim(image, reference, trial(image, encoder, mid, trials));
+                if (Double.isNaN(ssim)) {
+                    break;
+                }
+                if (ssim >= properties.getTargetSsim()) {
+                    high = mid;
+                } else {
+                    low = mid;
+                }
+            }
+            chosen = high;
+        }
+
+        // 2. 超出字节预算时降低质量，直到不超过预算或达到下限
+        long budget = (long) (properties.getMaxBytesPerPixel() * image.getWidth() * image.getHeight());
+        if (budget > 0 && trial(image, encoder, chosen, trials).length > budget) {
+            low = properties.getMinQuality();
+            high = chosen;
+            for (int step = 0; step < properties.getSearchSteps() && trials.size() < limit - 1; step++) {
+                float mid = (low + high) / 2;
+                if (trial(image, encoder, mid, trials).length <= budget) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+            chosen = low;
+        }
+        return new EncodedImage(encoder, trial(image, encoder, chosen, trials), chosen);
+    }
+
+    private byte[] trial(BufferedImage image, ImageEncoder encoder, float quality, Map<Float, byte[]> trials)
+            throws IOException {
+        byte[] bytes = trials.get(quality);
+        if (bytes == null) {
+            bytes = encoder.encode(image, quality);
+            trials.put(quality, bytes);
+            trialEncodes.incrementAndGet();
+        }
+        return bytes;
+    }
+
+    /**
+     * 计算编码结果与原图亮度的平均 SSIM
+     * @return SSIM；无法解码编码结果时返回 NaN
+     */
+    private static double ssim(BufferedImage original, int[] reference, byte[] encoded) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (decoded == null || decoded.getWidth() != original.getWidth()
+                || decoded.getHeight() != original.getHeight()) {
+            return Double.NaN;
+        }
+        return meanSsim(reference, luma(decoded), original.getWidth(), original.getHeight());
+    }
+
+    static double meanSsim(int[] a, int[] b, int width, int height) {
+        int columns = width / SSIM_WINDOW;
+        int rows = height / SSIM_WINDOW;
+        if (columns == 0 || rows == 0) {
+            return 1.0;
+        }
+        int stride = (int) Math.max(1, Math.ceil(Math.sqrt((double) columns * rows / SSIM_MAX_WINDOWS)));
+        double total = 0;
+        int windows = 0;
+        int n = SSIM_WINDOW * SSIM_WINDOW;
+        for (int row = 0; row < rows; row += stride) {
+            for (int column = 0; column < columns; column += stride) {
+                long sumA = 0;
+                long sumB = 0;
+                long sumAA = 0;
+                long sumBB = 0;
+                long sumAB = 0;
+                for (int y = row * SSIM_WINDOW; y < (row + 1) * SSIM_WINDOW; y++) {
+                    int offset = y * width + column * SSIM_WINDOW;
+                    for (int x = 0; x < SSIM_WINDOW; x++) {
+                        int pa = a[offset + x];
+                        int pb = b[offset + x];
+                        sumA += pa;
+                        sumB += pb;
+                        sumAA += pa * pa;
+                        sumBB += pb * pb;
+                        sumAB += pa * pb;
+                    }
+                }
+                double meanA = (double) sumA / n;
+                double meanB = (double) sumB / n;
+                double varA = (double) sumAA / n - meanA * meanA;
+                double varB = (double) sumBB / n - meanB * meanB;
+                double covariance = (double) sumAB / n - meanA * meanB;
+                total += ((2 * meanA * meanB + SSIM_C1) * (2 * covariance + SSIM_C2))
+                        / ((meanA * meanA + meanB * meanB + SSIM_C1) * (varA + varB + SSIM_C2));
+                windows++;
+            }
+        }
+        return total / windows;
+    }
+
+    /**
+     * 亮度（BT.601），透明像素按白色背景计算
+     */
+    static int[] luma(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        int[] luma = new int[argb.length];
+        boolean hasAlpha = image.getColorModel().hasAlpha();
+        for (int i = 0; i < argb.length; i++) {
+            int pixel = argb[i];
+            int alpha = hasAlpha ? pixel >>> 24 : 255;
+            int r = blend((pixel >> 16) & 0xFF, alpha);
+            int g = blend((pixel >> 8) & 0xFF, alpha);
+            int b = blend(pixel & 0xFF, alpha);
+            luma[i] = (299 * r + 587 * g + 114 * b) / 1000;
+        }
+        return luma;
+    }
+
+    private static int blend(int channel, int alpha) {
+        return (channel * alpha + 255 * (255 - alpha)) / 255;
+    }
+
+    /**
+     * 不支持透明通道的格式先绘制到白色背景上
+     */
+    static BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * 编码结果
+     * @param encoder 使用的编码器
+     * @param bytes 编码后的字节
+     * @param quality 使用的质量
+     */
+    public record EncodedImage(ImageEncoder encoder, byte[] bytes, float quality) {
+    }
+
+    /**
+     * 基于 ImageIO 写入器的编码器
+     */
+    static class ImageIOEncoder implements ImageEncoder {
+
+        private final String format;
+        private final String extension;
+        private final String contentType;
+
+        ImageIOEncoder(String format, String extension, String contentType) {
+            this.format = format;
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public String format() {
+            return format;
+        }
+
+        @Override
+        public String extension() {
+            return extension;
+        }
+
+        @Override
+        public String contentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean supportsQuality() {
+            ImageWriter writer = newWriter();
+            try {
+                return writer.getDefaultWriteParam().canWriteCompressed();
+            } finally {
+                writer.dispose();
+            }
+        }
+
+        @Override
+        public byte[] encode(BufferedImage image, float quality) throws IOException {
+            ImageWriter writer = newWriter();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && types.length > 0 && param.getCompressionType() == null) {
+                    param.setCompressionType(types[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            BufferedImage source = "jpeg".equals(format) ? toRgb(image) : image;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(source, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return bytes.toByteArray();
+        }
+
+        private ImageWriter newWriter() {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(contentType);
+            if (!writers.hasNext()) {
+                throw new IllegalStateException("没有可用的图片写入器: " + contentType);
+            }
+            return writers.next();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.nushungry.service;
+
+/**
+ * 图片解码内存已用满，等待超时
+ */
+public class ImageProcessingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ImageProcessingBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
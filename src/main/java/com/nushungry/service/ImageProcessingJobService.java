@@ -0,0 +1,336 @@
+package com.nushungry.service;
+
+import com.nushungry.config.ImageProcessingProperties;
+import com.nushungry.model.ImageProcessingJob;
+import com.nushungry.model.ImageProcessingJobStatus;
+import com.nushungry.repository.ImageProcessingJobRepository;
+import com.nushungry.repository.ImageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图片后台处理任务
+ * 上传请求只保存原图并在同一事务中写入任务，按 CPU 核数配置的线程池领取任务生成各尺寸的图片，
+ * 完成后回写关联图片的缩略图地址。失败的任务按指数退避重试，超过最大次数或原图无法处理时标记为失败。
+ * 生成结果按原图内容缓存，重复上传的图片直接复用
+ */
+@Slf4j
+@Service
+public class ImageProcessingJobService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ImageProcessingJobRepository imageProcessingJobRepository;
+    private final ImageRepository imageRepository;
+    private final ImageProcessingService imageProcessingService;
+    private final FileStorageService fileStorageService;
+    private final BlobStoreService blobStoreService;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageProcessingProperties properties;
+
+    private ThreadPoolTaskExecutor executor;
+    private int workers;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong totalProcessingMillis = new AtomicLong();
+
+    public ImageProcessingJobService(ImageProcessingJobRepository imageProcessingJobRepository,
+                                     ImageRepository imageRepository,
+                                     ImageProcessingService imageProcessingService,
+                                     FileStorageService fileStorageService,
+                                     BlobStoreService blobStoreService,
+                                     TransactionTemplate transactionTemplate,
+                                     ImageProcessingProperties properties) {
+        this.imageProcessingJobRepository = imageProcessingJobRepository;
+        this.imageRepository = imageRepository;
+        this.imageProcessingService = imageProcessingService;
+        this.fileStorageService = fileStorageService;
+        this.blobStoreService = blobStoreService;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        workers = properties.resolveWorkers();
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(workers);
+        executor.setThreadNamePrefix("image-processing-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 写入处理任务（加入调用方的事务），事务提交后唤醒处理线程
+     * @param sourceUrl 已保存的原图访问路径
+     * @param imageId 处理完成后需要回写缩略图的图片记录，可为 null
+     */
+    public ImageProcessingJob enqueue(String sourceUrl, Long imageId) {
+        ImageProcessingJob job = new ImageProcessingJob();
+        job.setSourceUrl(sourceUrl);
+        job.setImageId(imageId);
+        job = imageProcessingJobRepository.save(job);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+        return job;
+    }
+
+    /**
+     * 查询任务
+     */
+    public Optional<ImageProcessingJob> getJob(Long id) {
+        return imageProcessingJobRepository.findById(id);
+    }
+
+    /**
+     * 唤醒处理线程（新任务提交后调用）
+     * 线程数已满时直接返回，正在运行的线程会继续领取新任务
+     */
+    public void wakeUp() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int active = activeWorkers.get();
+        while (active < workers) {
+            if (activeWorkers.compareAndSet(active, active + 1)) {
+                try {
+                    executor.execute(this::runWorker);
+                } catch (TaskRejectedException e) {
+                    activeWorkers.decrementAndGet();
+                }
+                return;
+            }
+            active = activeWorkers.get();
+        }
+    }
+
+    /**
+     * 定时轮询：回收超时的领取，并处理到期的重试
+     */
+    @Scheduled(fixedDelayString = "${app.image-processing.poll-interval-ms:5000}")
+    public void poll() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(properties.getClaimTimeoutMinutes());
+        Integer released = transactionTemplate.execute(status -> imageProcessingJobRepository.releaseStaleClaims(cutoff));
+        if (released != null && released > 0) {
+            log.warn("Released {} stale image processing claims", released);
+        }
+        wakeUp();
+    }
+
+    /**
+     * 在当前线程中处理所有已到期的任务
+     * @return 处理的任务数量
+     */
+    public int processPending() {
+        int processed = 0;
+        Optional<ImageProcessingJob> job;
+        while ((job = claimNext()) != null) {
+            if (job.isPresent()) {
+                process(job.get());
+                processed++;
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * 获取任务统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("workers", workers);
+        stats.put("activeWorkers", activeWorkers.get());
+        stats.put("variantWidths", properties.getVariantWidths());
+        stats.put("pending", imageProcessingJobRepository.countByStatus(ImageProcessingJobStatus.PENDING));
+        stats.put("processing", imageProcessingJobRepository.countByStatus(ImageProcessingJobStatus.PROCESSING));
+        stats.put("failed", imageProcessingJobRepository.countByStatus(ImageProcessingJobStatus.FAILED));
+        stats.put("completed", completedCount.get());
+        stats.put("failedAttempts", failedAttemptCount.get());
+        stats.put("markedFailed", failedCount.get());
+        stats.put("totalProcessingMillis", totalProcessingMillis.get());
+        return stats;
+    }
+
+    private void runWorker() {
+        try {
+            processPending();
+        } catch (Exception e) {
+            log.error("Image processing worker failed: {}", e.getMessage(), e);
+        } finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 领取一个到期任务
+     * @return null 表示没有到期任务；空值表示该任务已被其他线程领取
+     */
+    private Optional<ImageProcessingJob> claimNext() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = imageProcessingJobRepository.findReadyIds(
+                    ImageProcessingJobStatus.PENDING, now, PageRequest.of(0, 1));
+            if (ids.isEmpty()) {
+                return null;
+            }
+            String token = UUID.randomUUID().toString();
+            if (imageProcessingJobRepository.claim(ids.get(0), token, now) == 0) {
+                return Optional.empty();
+            }
+            return imageProcessingJobRepository.findByClaimToken(token);
+        });
+    }
+
+    private void process(ImageProcessingJob job) {
+        long start = System.currentTimeMillis();
+        Map<Integer, String> variants = null;
+        String error = null;
+        boolean retryable = true;
+
+        try {
+            Path source = fileStorageService.resolveImageUrl(job.getSourceUrl());
+            if (source == null || !Files.exists(source)) {
+                retryable = false;
+                error = "原图不存在: " + job.getSourceUrl();
+            } else {
+                // 相同内容已处理过时直接复用
+                variants = blobStoreService.findCachedVariants(job.getSourceUrl(), properties.getVariantWidths());
+                if (variants == null) {
+                    variants = imageProcessingService.generateVariants(source, properties.getVariantWidths());
+                    blobStoreService.recordVariants(job.getSourceUrl(), variants);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // 尺寸超过上限等无法通过重试解决的错误
+            retryable = false;
+            error = e.getMessage();
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        Map<Integer, String> result = variants;
+        String failure = error;
+        boolean canRetry = retryable;
+        transactionTemplate.executeWithoutResult(status -> complete(job, result, failure, canRetry));
+        totalProcessingMillis.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    private void complete(ImageProcessingJob job, Map<Integer, String> variants, String error, boolean retryable) {
+        LocalDateTime now = LocalDateTime.now();
+        job.setClaimToken(null);
+        job.setClaimedAt(null);
+        job.setAttempts(job.getAttempts() + 1);
+
+        if (error == null) {
+            job.setStatus(ImageProcessingJobStatus.COMPLETED);
+            job.setVariants(variants);
+            job.setLastError(null);
+            job.setCompletedAt(now);
+            imageProcessingJobRepository.save(job);
+            updateThumbnail(job, variants);
+            completedCount.incrementAndGet();
+            return;
+        }
+
+        failedAttemptCount.incrementAndGet();
+        job.setLastError(truncate(error));
+        if (!retryable || job.getAttempts() >= properties.getMaxAttempts()) {
+            job.setStatus(ImageProcessingJobStatus.FAILED);
+            job.setCompletedAt(now);
+            failedCount.incrementAndGet();
+            log.error("Image processing job {} for {} failed after {} attempts: {}",
+                    job.getId(), job.getSourceUrl(), job.getAttempts(), job.getLastError());
+        } else {
+            job.setStatus(ImageProcessingJobStatus.PENDING);
+            job.setNextAttemptAt(now.plus(Duration.ofMillis(backoffMillis(job.getAttempts()))));
+            log.warn("Image processing job {} for {} failed (attempt {}), will retry at {}",
+                    job.getId(), job.getSourceUrl(), job.getAttempts(), job.getNextAttemptAt());
+        }
+        imageProcessingJobRepository.save(job);
+    }
+
+    /**
+     * 最小尺寸作为关联图片的缩略图，并记录生成的图片格式
+     */
+    private void updateThumbnail(ImageProcessingJob job, Map<Integer, String> variants) {
+        if (job.getImageId() == null || variants.isEmpty()) {
+            return;
+        }
+        String thumbnailUrl = variants.get(variants.keySet().stream().min(Integer::compare).orElseThrow());
+        Path thumbnail = fileStorageService.resolveImageUrl(thumbnailUrl);
+        imageRepository.findById(job.getImageId()).ifPresent(image -> {
+            image.setThumbnailUrl(thumbnailUrl);
+            imageProcessingService.applyFormats(image, thumbnail);
+            imageRepository.save(image);
+        });
+    }
+
+    /**
+     * 指数退避，附加最多20%的随机抖动
+     */
+    private long backoffMillis(int attempts) {
+        long base = properties.getInitialBackoffMs();
+        if (base <= 0) {
+            return 0;
+        }
+        long delay = attempts >= 31 ? properties.getMaxBackoffMs() : base << (attempts - 1);
+        if (delay <= 0 || delay > properties.getMaxBackoffMs()) {
+            delay = properties.getMaxBackoffMs();
+        }
+        long jitter = delay / 5;
+        return jitter > 0 ? delay + ThreadLocalRandom.current().nextLong(jitter) : delay;
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
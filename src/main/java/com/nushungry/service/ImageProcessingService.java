@@ -1,33 +1,128 @@
 package com.nushungry.service;
 
 import com.nushungry.config.FileStorageProperties;
+import com.nushungry.model.Image;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
+import net.coobird.thumbnailator.geometry.Positions;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * 图片处理服务
  * 提供图片压缩、缩略图生成、格式转换等功能
+ * 每次上传只解码一次：校验和图片信息只读取文件头，上传流经 FileStorageService 写入磁盘后从文件解码，
+ * 压缩图和缩略图都从同一个解码结果生成，并直接写入最终存储位置。
+ * 大图按文件头中的尺寸选择降采样倍数直接解码到接近目标尺寸，所有并发上传共享一个解码内存预算，
+ * 像素数超过上限的图片（解压炸弹）在解码前就被拒绝。
+ * 批量上传的图片在所有请求共享的线程池中并行处理，线程数即全局并发上限。
+ * 输出图片通过 ImageEncoderRegistry 编码：主格式写入 URL 指向的文件，WebP/AVIF 等额外格式在更小时写入同名文件供按 Accept 返回。
  */
 @Slf4j
 @Service
 public class ImageProcessingService {
 
+    /**
+     * 压缩后原图的最大边长
+     */
+    private static final int MAX_DIMENSION = 2048;
+
+    private static final float THUMBNAIL_QUALITY = 0.8f;
+
+    /**
+     * 解码内存信号量的单位（1 个许可 = 1KB）
+     */
+    private static final int PERMIT_BYTES = 1024;
+
+    /**
+     * 解码后像素按 4 字节（INT_ARGB）估算
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
     private final FileStorageProperties fileStorageProperties;
     private final FileStorageService fileStorageService;
+    private final ImageEncoderRegistry imageEncoderRegistry;
+    private final Semaphore decodeMemory;
+    private final int totalDecodePermits;
+    private final ThreadPoolTaskExecutor uploadExecutor;
 
     public ImageProcessingService(FileStorageProperties fileStorageProperties,
-                                 FileStorageService fileStorageService) {
+                                 FileStorageService fileStorageService,
+                                 ImageEncoderRegistry imageEncoderRegistry) {
         this.fileStorageProperties = fileStorageProperties;
         this.fileStorageService = fileStorageService;
+        this.imageEncoderRegistry = imageEncoderRegistry;
+        this.totalDecodePermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                fileStorageProperties.getMaxDecodeMemoryBytes() / PERMIT_BYTES));
+        this.decodeMemory = new Semaphore(totalDecodePermits, true);
+
+        int concurrency = fileStorageProperties.getUploadConcurrency() > 0
+                ? fileStorageProperties.getUploadConcurrency()
+                : Runtime.getRuntime().availableProcessors();
+        this.uploadExecutor = new ThreadPoolTaskExecutor();
+        uploadExecutor.setCorePoolSize(concurrency);
+        uploadExecutor.setMaxPoolSize(concurrency);
+        uploadExecutor.setQueueCapacity(Math.max(0, fileStorageProperties.getUploadQueueCapacity()));
+        uploadExecutor.setThreadNamePrefix("image-upload-");
+        uploadExecutor.setWaitForTasksToCompleteOnShutdown(true);
+        uploadExecutor.setAwaitTerminationSeconds(30);
+        uploadExecutor.initialize();
+        // 从上传流读取文件头只需要很少的字节，不需要 ImageIO 为输入流创建磁盘缓存文件
+        ImageIO.setUseCache(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+
+    /**
+     * 在共享的上传线程池中并行执行一批任务，返回的结果顺序与输入一致
+     * 只有一个任务时直接在调用线程执行；线程池队列已满的任务以 ImageProcessingBusyException 结束
+     */
+    public <T> List<CompletableFuture<T>> submitAll(List<Supplier<T>> tasks) {
+        if (tasks.size() == 1) {
+            try {
+                return List.of(CompletableFuture.completedFuture(tasks.get(0).get()));
+            } catch (RuntimeException ex) {
+                return List.of(CompletableFuture.failedFuture(ex));
+            }
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            try {
+                futures.add(CompletableFuture.supplyAsync(task, uploadExecutor));
+            } catch (TaskRejectedException ex) {
+                futures.add(CompletableFuture.failedFuture(
+                        new ImageProcessingBusyException("图片处理繁忙，请稍后重试", 1)));
+            }
+        }
+        return futures;
     }
 
     /**
@@ -37,123 +132,270 @@ public class ImageProcessingService {
      * @return 包含原图URL和缩略图URL的结果
      */
     public ImageProcessingResult processImage(MultipartFile file, boolean generateThumbnail) throws IOException {
-        // 1. 压缩并保存原图
-        String originalUrl = compressAndSave(file);
-
-        // 2. 生成缩略图（如果需要）
-        String thumbnailUrl = null;
-        if (generateThumbnail && fileStorageProperties.isGenerateThumbnail()) {
-            thumbnailUrl = generateThumbnail(file);
+        // 上传流先写入临时文件（校验大小和真实格式），之后的解码都从该文件随机读取
+        FileStorageService.StoredUpload staged = fileStorageService.stage(file);
+        try {
+            return processStaged(file, staged.path(), generateThumbnail);
+        } finally {
+            Files.deleteIfExists(staged.path());
         }
-
-        return new ImageProcessingResult(originalUrl, thumbnailUrl);
     }
 
     /**
-     * 压缩并保存图片
+     * 处理已写入临时文件的上传图片（调用方负责删除临时文件）
      */
-    private String compressAndSave(MultipartFile file) throws IOException {
+    ImageProcessingResult processStaged(MultipartFile file, Path source, boolean generateThumbnail)
+            throws IOException {
+        ImageHeader header;
         try {
-            // 读取图片
-            BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(file.getBytes()));
-            if (originalImage == null) {
-                throw new IOException("无法读取图片文件");
-            }
-
-            // 获取原始尺寸
-            int originalWidth = originalImage.getWidth();
-            int originalHeight = originalImage.getHeight();
-
-            // 如果图片太大，进行等比例缩放（最大宽度2048px）
-            int maxWidth = 2048;
-            int maxHeight = 2048;
-
-            int targetWidth = originalWidth;
-            int targetHeight = originalHeight;
+            header = readHeader(source);
+        } catch (IOException ex) {
+            log.error("无法读取图片文件头", ex);
+            // 如果无法识别图片，直接保存原图
+            return new ImageProcessingResult(fileStorageService.storeFile(file, true), null);
+        }
+        checkDimensions(header);
 
-            if (originalWidth > maxWidth || originalHeight > maxHeight) {
-                double scale = Math.min((double) maxWidth / originalWidth, (double) maxHeight / originalHeight);
-                targetWidth = (int) (originalWidth * scale);
-                targetHeight = (int) (originalHeight * scale);
+        int subsampling = subsamplingFor(header, MAX_DIMENSION);
+        int permits = acquireDecodeMemory(header, subsampling, MAX_DIMENSION);
+        try {
+            BufferedImage decoded;
+            try {
+                decoded = decode(source, subsampling);
+            } catch (IOException ex) {
+                log.error("图片解码失败", ex);
+                // 如果解码失败，直接保存原图
+                return new ImageProcessingResult(fileStorageService.storeFile(file, true), null);
             }
 
-            // 创建临时文件用于存储压缩后的图片
-            Path tempFile = Files.createTempFile("compressed_", ".jpg");
+            // 1. 压缩并保存原图
+            BufferedImage compressed = resizeWithin(decoded, MAX_DIMENSION);
+            String originalUrl = saveCompressed(compressed, header.width(), header.height());
 
-            // 使用 Thumbnailator 进行压缩
-            Thumbnails.of(originalImage)
-                    .size(targetWidth, targetHeight)
-                    .outputQuality(fileStorageProperties.getCompressionQuality())
-                    .outputFormat("jpg")
-                    .toFile(tempFile.toFile());
-
-            // 将压缩后的文件转换为 MultipartFile 并保存
-            byte[] compressedBytes = Files.readAllBytes(tempFile);
-
-            // 使用 FileStorageService 保存文件
-            String url = fileStorageService.storeFile(
-                new ByteArrayMultipartFile(compressedBytes, file.getOriginalFilename()),
-                true // 按日期组织
-            );
+            // 2. 生成缩略图（如果需要），从已缩小的图片生成，避免再次处理原始尺寸的像素
+            String thumbnailUrl = null;
+            if (thumbnailEnabled(generateThumbnail)) {
+                thumbnailUrl = generateThumbnail(compressed);
+            }
 
-            // 删除临时文件
-            Files.deleteIfExists(tempFile);
+            return new ImageProcessingResult(originalUrl, thumbnailUrl);
+        } finally {
+            decodeMemory.release(permits);
+        }
+    }
 
-            log.info("图片压缩成功: 原始尺寸 {}x{}, 压缩后尺寸 {}x{}, URL: {}",
-                    originalWidth, originalHeight, targetWidth, targetHeight, url);
+    /**
+     * 请求生成缩略图且配置允许时才生成
+     */
+    boolean thumbnailEnabled(boolean generateThumbnail) {
+        return generateThumbnail && fileStorageProperties.isGenerateThumbnail();
+    }
 
-            return url;
+    /**
+     * 从已保存的原图生成多个宽度的响应式图片（供后台任务调用）
+     * 只解码一次，从大到小依次缩放，每个尺寸都从上一个尺寸生成；原图比目标宽度窄时不放大
+     * @param source 原图文件
+     * @param widths 目标宽度
+     * @return 宽度 -> URL（按宽度升序）
+     */
+    public Map<Integer, String> generateVariants(Path source, List<Integer> widths) throws IOException {
+        List<Integer> descending = widths.stream().distinct().sorted(Comparator.reverseOrder()).toList();
+        if (descending.isEmpty()) {
+            return Map.of();
+        }
+        ImageHeader header = readHeader(source);
+        checkDimensions(header);
 
-        } catch (IOException ex) {
-            log.error("图片压缩失败", ex);
-            // 如果压缩失败，直接保存原图
-            return fileStorageService.storeFile(file, true);
+        int largest = descending.get(0);
+        int subsampling = Math.max(1, header.width() / largest);
+        int permits = acquireDecodeMemory(header, subsampling, largest);
+        try {
+            BufferedImage current = decode(source, subsampling);
+            Map<Integer, String> urls = new TreeMap<>();
+            for (int width : descending) {
+                current = resizeToWidth(current, Math.min(width, header.width()));
+                FileStorageService.StoredFile destination = fileStorageService.newImageFile(
+                        imageEncoderRegistry.primary().extension(), true);
+                writeImage(current, destination.path(), fileStorageProperties.getCompressionQuality());
+                urls.put(width, destination.url());
+            }
+            log.info("响应式图片生成成功: {}, 原始尺寸 {}x{}, 尺寸 {}", source.getFileName(),
+                    header.width(), header.height(), urls.keySet());
+            return urls;
+        } finally {
+            decodeMemory.release(permits);
         }
     }
 
     /**
-     * 生成缩略图
+     * 按指定尺寸生成一张图片（供按需缩放调用）
+     * 按目标尺寸选择降采样倍数解码，不放大超过原图的尺寸；宽高都指定时 cover 居中裁剪填满，否则等比例缩放到框内
+     * @param source 原图文件
+     * @param width 目标宽度，0 表示按高度等比例缩放
+     * @param height 目标高度，0 表示按宽度等比例缩放
+     * @param cover 宽高都指定时是否裁剪填满
+     * @param destination 输出文件（主格式）
      */
-    private String generateThumbnail(MultipartFile file) throws IOException {
+    public void renderVariant(Path source, int width, int height, boolean cover, Path destination) throws IOException {
+        ImageHeader header = readHeader(source);
+        checkDimensions(header);
+
+        double scaleX = width > 0 ? (double) width / header.width() : 0;
+        double scaleY = height > 0 ? (double) height / header.height() : 0;
+        double scale;
+        if (scaleX > 0 && scaleY > 0) {
+            scale = cover ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+        } else {
+            scale = Math.max(scaleX, scaleY);
+        }
+        scale = Math.min(1.0, scale);
+        int subsampling = Math.max(1, (int) (1 / scale));
+        int targetWidth = Math.max(1, (int) Math.round(header.width() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(header.height() * scale));
+
+        int permits = acquireDecodeMemory(header, subsampling, Math.max(targetWidth, targetHeight));
         try {
-            // 读取图片
-            BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(file.getBytes()));
-            if (originalImage == null) {
-                throw new IOException("无法读取图片文件");
+            BufferedImage decoded = decode(source, subsampling);
+            BufferedImage rendered;
+            if (cover && width > 0 && height > 0) {
+                rendered = Thumbnails.of(decoded)
+                        .size(Math.min(width, targetWidth), Math.min(height, targetHeight))
+                        .crop(Positions.CENTER)
+                        .asBufferedImage();
+            } else {
+                rendered = Thumbnails.of(decoded).forceSize(targetWidth, targetHeight).asBufferedImage();
             }
+            write(rendered, imageEncoderRegistry.primary(), destination, fileStorageProperties.getCompressionQuality());
+        } finally {
+            decodeMemory.release(permits);
+        }
+    }
 
-            int thumbnailWidth = fileStorageProperties.getThumbnailWidth();
-            int thumbnailHeight = fileStorageProperties.getThumbnailHeight();
-
-            // 创建临时文件用于存储缩略图
-            Path tempFile = Files.createTempFile("thumbnail_", ".jpg");
+    /**
+     * 裁剪并缩放到 size x size 以内（头像裁剪）
+     * 只解码裁剪区域，并按裁剪区域长边与目标尺寸的比例降采样；像素数超过上限的图片在解码前就被拒绝，
+     * 解码内存按裁剪区域计算并从共享预算中申请
+     * @param source 原图文件
+     * @param x 裁剪起始X坐标
+     * @param y 裁剪起始Y坐标
+     * @param width 裁剪宽度
+     * @param height 裁剪高度
+     * @param size 输出的最大边长
+     * @param destination 输出文件（JPEG）
+     */
+    public void cropImage(Path source, int x, int y, int width, int height, int size, Path destination)
+            throws IOException {
+        ImageHeader header = readHeader(source);
+        checkDimensions(header);
+
+        Rectangle region = new Rectangle(x, y, width, height)
+                .intersection(new Rectangle(0, 0, header.width(), header.height()));
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException(String.format("裁剪区域超出图片范围: %dx%d", header.width(), header.height()));
+        }
 
-            // 使用 Thumbnailator 生成缩略图（保持宽高比，裁剪中心部分）
-            Thumbnails.of(originalImage)
-                    .size(thumbnailWidth, thumbnailHeight)
-                    .crop(net.coobird.thumbnailator.geometry.Positions.CENTER)
-                    .outputQuality(0.8f)
+        ImageHeader cropped = new ImageHeader(header.format(), region.width, region.height);
+        int subsampling = subsamplingFor(cropped, size);
+        int permits = acquireDecodeMemory(cropped, subsampling, size);
+        try {
+            BufferedImage decoded = decode(source, subsampling, region);
+            Thumbnails.of(decoded)
+                    .size(size, size)
                     .outputFormat("jpg")
-                    .toFile(tempFile.toFile());
+                    .outputQuality(0.9)
+                    .toFile(destination.toFile());
+        } finally {
+            decodeMemory.release(permits);
+        }
+    }
+
+    /**
+     * 输出图片使用的主格式编码器
+     */
+    public ImageEncoder outputEncoder() {
+        return imageEncoderRegistry.primary();
+    }
 
-            // 将缩略图文件转换为 MultipartFile
-            byte[] thumbnailBytes = Files.readAllBytes(tempFile);
+    /**
+     * 已写入的图片有哪些格式
+     * @param file 主格式文件
+     * @return 第一个为文件本身的格式，其余为存在同名文件的其他格式；无法识别扩展名时返回空列表
+     */
+    public List<String> formatsOf(Path file) {
+        String filename = file.getFileName().toString();
+        int dot = filename.lastIndexOf('.');
+        ImageEncoder encoder = dot < 0 ? null : imageEncoderRegistry.findByExtension(filename.substring(dot + 1));
+        if (encoder == null) {
+            return List.of();
+        }
+        List<String> formats = new ArrayList<>();
+        formats.add(encoder.format());
+        for (ImageEncoder alternate : imageEncoderRegistry.alternates()) {
+            if (alternate != encoder
+                    && Files.exists(file.resolveSibling(filename.substring(0, dot) + "." + alternate.extension()))) {
+                formats.add(alternate.format());
+            }
+        }
+        return formats;
+    }
 
-            // 保存到缩略图目录
-            Path thumbnailStorageLocation = fileStorageService.getThumbnailStorageLocation();
-            String filename = java.util.UUID.randomUUID().toString() + ".jpg";
-            Path targetLocation = thumbnailStorageLocation.resolve(filename);
+    /**
+     * 把已写入图片的格式记录到图片记录：format 为主格式，alternateFormats 为同时写入的其他格式
+     * @param file 已写入的主格式文件，为 null 或无法识别时清空格式
+     */
+    public void applyFormats(Image image, Path file) {
+        List<String> formats = file != null ? formatsOf(file) : List.of();
+        image.setFormat(formats.isEmpty() ? null : formats.get(0));
+        image.setAlternateFormats(formats.size() > 1 ? String.join(",", formats.subList(1, formats.size())) : null);
+    }
 
-            Files.write(targetLocation, thumbnailBytes);
+    /**
+     * 获取解码内存使用情况和编码统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxImagePixels", fileStorageProperties.getMaxImagePixels());
+        stats.put("maxDecodeMemoryBytes", (long) totalDecodePermits * PERMIT_BYTES);
+        stats.put("decodeMemoryInUseBytes", (long) (totalDecodePermits - decodeMemory.availablePermits()) * PERMIT_BYTES);
+        stats.put("queuedDecodes", decodeMemory.getQueueLength());
+        stats.put("uploadConcurrency", uploadExecutor.getMaxPoolSize());
+        stats.put("activeUploads", uploadExecutor.getActiveCount());
+        stats.put("queuedUploads", uploadExecutor.getThreadPoolExecutor().getQueue().size());
+        stats.put("encoding", imageEncoderRegistry.getStatistics());
+        return stats;
+    }
 
-            // 删除临时文件
-            Files.deleteIfExists(tempFile);
+    /**
+     * 保存压缩后的图片
+     */
+    private String saveCompressed(BufferedImage image, int originalWidth, int originalHeight) throws IOException {
+        FileStorageService.StoredFile destination = fileStorageService.newImageFile(
+                imageEncoderRegistry.primary().extension(), true);
+        writeImage(image, destination.path(), fileStorageProperties.getCompressionQuality());
+
+        log.info("图片压缩成功: 原始尺寸 {}x{}, 压缩后尺寸 {}x{}, URL: {}",
+                originalWidth, originalHeight, image.getWidth(), image.getHeight(), destination.url());
+        return destination.url();
+    }
 
-            String thumbnailUrl = "/uploads/thumbnails/" + filename;
-            log.info("缩略图生成成功: {}x{}, URL: {}", thumbnailWidth, thumbnailHeight, thumbnailUrl);
+    /**
+     * 生成缩略图（保持宽高比，裁剪中心部分）
+     */
+    private String generateThumbnail(BufferedImage source) {
+        int thumbnailWidth = fileStorageProperties.getThumbnailWidth();
+        int thumbnailHeight = fileStorageProperties.getThumbnailHeight();
+        try {
+            BufferedImage thumbnail = Thumbnails.of(source)
+                    .size(thumbnailWidth, thumbnailHeight)
+                    .crop(Positions.CENTER)
+                    .asBufferedImage();
 
-            return thumbnailUrl;
+            FileStorageService.StoredFile destination = fileStorageService.newThumbnailFile(
+                    imageEncoderRegistry.primary().extension());
+            writeImage(thumbnail, destination.path(), THUMBNAIL_QUALITY);
 
+            log.info("缩略图生成成功: {}x{}, URL: {}", thumbnailWidth, thumbnailHeight, destination.url());
+            return destination.url();
         } catch (IOException ex) {
             log.error("缩略图生成失败", ex);
             return null;
@@ -161,34 +403,233 @@ public class ImageProcessingService {
     }
 
     /**
-     * 验证是否为有效的图片文件
+     * 验证是否为有效的图片文件（只读取文件头中的格式和尺寸，不解码像素）
+     * 像素数超过上限的图片视为无效
      */
     public boolean isValidImage(MultipartFile file) {
         try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(file.getBytes()));
-            return image != null;
-        } catch (IOException ex) {
+            checkDimensions(readHeader(file));
+            return true;
+        } catch (IOException | IllegalArgumentException ex) {
+            log.warn("无效的图片文件 {}: {}", file.getOriginalFilename(), ex.getMessage());
             return false;
         }
     }
 
     /**
-     * 获取图片信息（尺寸、格式等）
+     * 获取图片信息（尺寸、格式等），只读取文件头
      */
     public ImageInfo getImageInfo(MultipartFile file) throws IOException {
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(file.getBytes()));
-        if (image == null) {
-            throw new IOException("无法读取图片文件");
-        }
-
+        ImageHeader header = readHeader(file);
         return new ImageInfo(
-            image.getWidth(),
-            image.getHeight(),
+            header.width(),
+            header.height(),
             file.getContentType(),
             file.getSize()
         );
     }
 
+    /**
+     * 获取已保存图片的信息（尺寸、格式、字节数），只读取文件头
+     */
+    public ImageInfo getImageInfo(Path file) throws IOException {
+        ImageHeader header = readHeader(file);
+        return new ImageInfo(
+            header.width(),
+            header.height(),
+            "image/" + header.format().toLowerCase(),
+            Files.size(file)
+        );
+    }
+
+    /**
+     * 读取上传图片的文件头
+     */
+    private ImageHeader readHeader(MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream();
+             ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            return readHeader(stream);
+        }
+    }
+
+    /**
+     * 读取图片文件的文件头
+     */
+    private ImageHeader readHeader(Path path) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(path.toFile())) {
+            return readHeader(stream);
+        }
+    }
+
+    private ImageHeader readHeader(ImageInputStream stream) throws IOException {
+        ImageReader reader = openReader(stream);
+        try {
+            return new ImageHeader(reader.getFormatName(), reader.getWidth(0), reader.getHeight(0));
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * 解码第一帧，subsampling 大于 1 时每隔 subsampling 个像素取一个（解码时即缩小，不分配原始尺寸的像素）
+     */
+    private BufferedImage decode(Path path, int subsampling) throws IOException {
+        return decode(path, subsampling, null);
+    }
+
+    /**
+     * 解码第一帧中 region 范围内的像素（region 为 null 时解码整张图片）
+     */
+    private BufferedImage decode(Path path, int subsampling, Rectangle region) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(path.toFile())) {
+            ImageReader reader = openReader(stream);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (region != null) {
+                    param.setSourceRegion(region);
+                }
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 拒绝宽高无效或像素数超过上限的图片
+     */
+    private void checkDimensions(ImageHeader header) {
+        if (header.width() <= 0 || header.height() <= 0) {
+            throw new IllegalArgumentException("无效的图片尺寸");
+        }
+        if ((long) header.width() * header.height() > fileStorageProperties.getMaxImagePixels()) {
+            throw new IllegalArgumentException(String.format("图片尺寸过大: %dx%d，最多允许 %d 像素",
+                    header.width(), header.height(), fileStorageProperties.getMaxImagePixels()));
+        }
+    }
+
+    /**
+     * 选择最大的降采样倍数，使解码后的长边仍不小于目标边长（之后再高质量缩放到目标尺寸）
+     */
+    static int subsamplingFor(ImageHeader header, int maxDimension) {
+        int longest = Math.max(header.width(), header.height());
+        return Math.max(1, longest / maxDimension);
+    }
+
+    /**
+     * 按解码后的像素、输出图及其 RGB 副本、缩略图估算内存并申请许可
+     * 单张图片需要的内存超过总预算时按总预算申请，保证它最终能够执行
+     * @return 申请到的许可数，处理完成后释放
+     */
+    private int acquireDecodeMemory(ImageHeader header, int subsampling, int maxDimension) {
+        long decodedPixels = (long) ceilDiv(header.width(), subsampling) * ceilDiv(header.height(), subsampling);
+        long outputPixels = Math.min(decodedPixels, (long) maxDimension * maxDimension);
+        long thumbnailPixels = (long) fileStorageProperties.getThumbnailWidth() * fileStorageProperties.getThumbnailHeight();
+        long bytes = (decodedPixels + 2 * outputPixels + thumbnailPixels) * BYTES_PER_PIXEL;
+        int permits = (int) Math.min(totalDecodePermits, Math.max(1, bytes / PERMIT_BYTES));
+
+        try {
+            if (!decodeMemory.tryAcquire(permits, fileStorageProperties.getDecodeWaitTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                log.warn("图片解码内存不足，等待 {} ms 超时: 需要 {} KB, 可用 {} KB",
+                        fileStorageProperties.getDecodeWaitTimeoutMs(), permits, decodeMemory.availablePermits());
+                throw new ImageProcessingBusyException("图片处理繁忙，请稍后重试", 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingBusyException("图片处理被中断，请稍后重试", 1);
+        }
+        return permits;
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    private ImageReader openReader(ImageInputStream stream) throws IOException {
+        if (stream == null) {
+            throw new IOException("无法读取图片文件");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            throw new IOException("无法读取图片文件");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(stream, true, true);
+        return reader;
+    }
+
+    /**
+     * 等比例缩小到最大边长以内，已经足够小时直接返回原图
+     */
+    private BufferedImage resizeWithin(BufferedImage image, int maxDimension) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width <= maxDimension && height <= maxDimension) {
+            return image;
+        }
+        double scale = Math.min((double) maxDimension / width, (double) maxDimension / height);
+        return Thumbnails.of(image)
+                .size(Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)))
+                .asBufferedImage();
+    }
+
+    /**
+     * 等比例缩放到指定宽度，宽度相同时直接返回
+     */
+    private BufferedImage resizeToWidth(BufferedImage image, int width) throws IOException {
+        if (image.getWidth() == width) {
+            return image;
+        }
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        return Thumbnails.of(image).forceSize(width, height).asBufferedImage();
+    }
+
+    /**
+     * 以主格式写入文件，额外格式的编码结果比主格式小时写入同名的该格式文件
+     * 额外格式写入失败不影响主文件
+     * @param defaultQuality 不按 SSIM/字节预算选择质量时使用的固定质量
+     */
+    private void writeImage(BufferedImage image, Path destination, float defaultQuality) throws IOException {
+        long primaryBytes = write(image, imageEncoderRegistry.primary(), destination, defaultQuality);
+        String filename = destination.getFileName().toString();
+        String basename = filename.substring(0, filename.lastIndexOf('.'));
+        for (ImageEncoder alternate : imageEncoderRegistry.alternates()) {
+            try {
+                ImageEncoderRegistry.EncodedImage encoded = imageEncoderRegistry.encode(image, alternate, defaultQuality);
+                if (encoded.bytes().length < primaryBytes) {
+                    Files.write(destination.resolveSibling(basename + "." + alternate.extension()), encoded.bytes());
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.warn("{} 格式编码失败: {}", alternate.format(), destination.getFileName(), ex);
+            }
+        }
+    }
+
+    /**
+     * 用指定编码器写入文件
+     * @return 写入的字节数
+     */
+    private long write(BufferedImage image, ImageEncoder encoder, Path destination, float defaultQuality)
+            throws IOException {
+        ImageEncoderRegistry.EncodedImage encoded = imageEncoderRegistry.encode(image, encoder, defaultQuality);
+        try {
+            Files.write(destination, encoded.bytes());
+        } catch (IOException ex) {
+            Files.deleteIfExists(destination);
+            throw ex;
+        }
+        return encoded.bytes().length;
+    }
+
+    /**
+     * 图片文件头信息
+     */
+    record ImageHeader(String format, int width, int height) {
+    }
+
     /**
      * 图片处理结果
      */
@@ -242,57 +683,4 @@ public class ImageProcessingService {
             return size;
         }
     }
-
-    /**
-     * 字节数组转 MultipartFile
-     */
-    private static class ByteArrayMultipartFile implements MultipartFile {
-        private final byte[] content;
-        private final String name;
-
-        public ByteArrayMultipartFile(byte[] content, String name) {
-            this.content = content;
-            this.name = name;
-        }
-
-        @Override
-        public String getName() {
-            return name;
-        }
-
-        @Override
-        public String getOriginalFilename() {
-            return name;
-        }
-
-        @Override
-        public String getContentType() {
-            return "image/jpeg";
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return content == null || content.length == 0;
-        }
-
-        @Override
-        public long getSize() {
-            return content.length;
-        }
-
-        @Override
-        public byte[] getBytes() {
-            return content;
-        }
-
-        @Override
-        public java.io.InputStream getInputStream() {
-            return new ByteArrayInputStream(content);
-        }
-
-        @Override
-        public void transferTo(java.io.File dest) throws IOException {
-            Files.write(dest.toPath(), content);
-        }
-    }
 }
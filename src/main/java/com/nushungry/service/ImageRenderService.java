@@ -0,0 +1,384 @@
+package com.nushungry.service;
+
+import com.nushungry.config.ImageRenderProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 按需缩放图片服务
+ * 客户端按显示尺寸请求图片，第一次请求时从原图生成并写入磁盘缓存，之后直接返回缓存文件。
+ * 缓存键包含原图路径、大小、修改时间、请求参数和输出格式，原图变化后自动生成新的缓存；
+ * 缓存按总字节数做 LRU 淘汰，同一尺寸的并发请求只解码一次，其他请求等待同一个结果。
+ * 输出时先打开文件再返回，打开后即使被淘汰删除仍可读完；查找和打开之间被淘汰时重新生成。
+ */
+@Slf4j
+@Service
+public class ImageRenderService {
+
+    /**
+     * 缩放方式：cover 居中裁剪填满宽高，contain 等比例缩放到宽高以内
+     */
+    public enum Fit {
+        COVER, CONTAIN
+    }
+
+    private final FileStorageService fileStorageService;
+    private final ImageProcessingService imageProcessingService;
+    private final ImageRenderProperties properties;
+
+    /**
+     * 缓存键 -> 缓存文件，按访问顺序排列（最早的最先淘汰），访问时加锁
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ImageRenderService(FileStorageService fileStorageService,
+                              ImageProcessingService imageProcessingService,
+                              ImageRenderProperties properties) {
+        this.fileStorageService = fileStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.properties = properties;
+    }
+
+    /**
+     * 启动时加载已有的缓存文件（按修改时间作为最近访问顺序）
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Path root = fileStorageService.getRenderCacheLocation();
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).toList();
+        }
+        List<CacheEntry> loaded = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".part")) {
+                // 生成中断留下的临时文件
+                Files.deleteIfExists(file);
+                continue;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            loaded.add(new CacheEntry(name.substring(0, name.indexOf('.')), file, attributes.size(),
+                    attributes.lastModifiedTime().toMillis()));
+        }
+        loaded.sort(Comparator.comparingLong(CacheEntry::createdAt));
+        for (CacheEntry entry : loaded) {
+            deleteQuietly(admit(entry));
+        }
+        log.info("按需缩放缓存已加载: {} 个文件, {} 字节", entries.size(), totalBytes);
+    }
+
+    /**
+     * 获取指定尺寸的图片，缓存中没有时生成
+     * @param relativePath 相对上传根目录的原图路径，如 images/2024/01/15/xxx.jpg
+     * @param width 宽度，null 表示按高度等比例缩放
+     * @param height 高度，null 表示按宽度等比例缩放
+     * @param fit 缩放方式（cover/contain），null 表示 cover
+     * @return 缩放后的图片；原图不存在时返回 null
+     * @throws IllegalArgumentException 尺寸不在白名单中或缩放方式无效
+     */
+    public RenderedImage render(String relativePath, Integer width, Integer height, String fit) throws IOException {
+        Fit mode = parseFit(fit);
+        validateSize(width, height);
+        Path source = fileStorageService.resolveUploadPath(relativePath);
+        if (source == null) {
+            return null;
+        }
+
+        String key = cacheKey(relativePath, source, width, height, mode);
+        Path cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return rendered(cached, key);
+        }
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return rendered(await(existing), key);
+        }
+        try {
+            // 成为生成者之前，上一个生成者可能刚刚完成
+            Path path = lookup(key);
+            if (path == null) {
+                misses.incrementAndGet();
+                path = generate(source, key, width, height, mode);
+            } else {
+                hits.incrementAndGet();
+            }
+            created.complete(path);
+            return rendered(path, key);
+        } catch (IOException | RuntimeException ex) {
+            created.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    /**
+     * 计算缩放结果的缓存键（即 ETag），只读取原图的文件属性，不解码也不查找缓存
+     * 与 {@link #render} 返回的 key 相同，可在生成之前响应条件请求
+     * @return 缓存键；原图不存在时返回 null
+     * @throws IllegalArgumentException 尺寸不在白名单中或缩放方式无效
+     */
+    public String key(String relativePath, Integer width, Integer height, String fit) throws IOException {
+        Fit mode = parseFit(fit);
+        validateSize(width, height);
+        Path source = fileStorageService.resolveUploadPath(relativePath);
+        if (source == null) {
+            return null;
+        }
+        return cacheKey(relativePath, source, width, height, mode);
+    }
+
+    /**
+     * 获取并打开指定尺寸的图片，用于直接输出到响应
+     * 已打开的文件被淘汰删除后仍可读完，只有查找和打开之间被淘汰时才重新生成一次
+     * @return 已打开的图片（调用方负责关闭）；原图不存在时返回 null
+     * @throws IllegalArgumentException 尺寸不在白名单中或缩放方式无效
+     */
+    public OpenedImage open(String relativePath, Integer width, Integer height, String fit) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            RenderedImage rendered = render(relativePath, width, height, fit);
+            if (rendered == null) {
+                return null;
+            }
+            try {
+                FileChannel channel = FileChannel.open(rendered.path(), StandardOpenOption.READ);
+                return new OpenedImage(rendered, channel.size(), Channels.newInputStream(channel));
+            } catch (NoSuchFileException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+                // 下一次 render 发现文件缺失后会移除缓存项并重新生成
+                log.debug("缩放缓存文件打开前已被淘汰，重新生成: {}", rendered.path());
+            }
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+            stats.put("cacheBytes", totalBytes);
+        }
+        stats.put("maxCacheBytes", properties.getMaxCacheBytes());
+        stats.put("allowedWidths", properties.getAllowedWidths());
+        stats.put("allowedHeights", properties.getAllowedHeights());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("evictions", evictions.get());
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+
+    private Path generate(Path source, String key, Integer width, Integer height, Fit fit) throws IOException {
+        Path destination = fileStorageService.getRenderCacheLocation()
+                .resolve(key.substring(0, 2)).resolve(key + "." + imageProcessingService.outputEncoder().extension());
+        Files.createDirectories(destination.getParent());
+        // 先写临时文件再改名，其他请求不会读到写了一半的文件
+        Path temp = destination.resolveSibling(key + "." + UUID.randomUUID() + ".part");
+        try {
+            imageProcessingService.renderVariant(source, width == null ? 0 : width, height == null ? 0 : height,
+                    fit == Fit.COVER, temp);
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        long size = Files.size(destination);
+        deleteQuietly(admit(new CacheEntry(key, destination, size, System.currentTimeMillis())));
+        log.debug("按需缩放图片已生成: {} -> {} ({} 字节)", source.getFileName(), destination.getFileName(), size);
+        return destination;
+    }
+
+    private RenderedImage rendered(Path path, String key) {
+        return new RenderedImage(path, key, imageProcessingService.outputEncoder().contentType());
+    }
+
+    /**
+     * 查找缓存文件，文件状态在锁外检查，避免一次慢的 stat 阻塞所有查找
+     */
+    private Path lookup(String key) {
+        CacheEntry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (Files.isRegularFile(entry.path())) {
+            return entry.path();
+        }
+        synchronized (entries) {
+            // 检查期间可能已被替换为新生成的文件，只移除同一个缓存项
+            if (entries.remove(key, entry)) {
+                totalBytes -= entry.size();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 加入缓存并按总大小淘汰最久未访问的文件（至少保留刚加入的文件）
+     * @return 需要删除的文件，在锁外删除
+     */
+    private List<Path> admit(CacheEntry entry) {
+        List<Path> evicted = new ArrayList<>();
+        synchronized (entries) {
+            CacheEntry previous = entries.put(entry.key(), entry);
+            if (previous != null) {
+                totalBytes -= previous.size();
+            }
+            totalBytes += entry.size();
+            Iterator<CacheEntry> eldest = entries.values().iterator();
+            while (totalBytes > properties.getMaxCacheBytes() && entries.size() > 1) {
+                CacheEntry victim = eldest.next();
+                if (victim == entry) {
+                    break;
+                }
+                eldest.remove();
+                totalBytes -= victim.size();
+                evicted.add(victim.path());
+            }
+        }
+        evictions.addAndGet(evicted.size());
+        return evicted;
+    }
+
+    private static void deleteQuietly(List<Path> paths) {
+        for (Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除缩放缓存文件失败: {}", path, e);
+            }
+        }
+    }
+
+    private void validateSize(Integer width, Integer height) {
+        if (width == null && height == null) {
+            throw new IllegalArgumentException("必须指定宽度或高度");
+        }
+        if (width != null && !properties.getAllowedWidths().contains(width)) {
+            throw new IllegalArgumentException("不支持的宽度: " + width + "，允许: " + properties.getAllowedWidths());
+        }
+        if (height != null && !properties.getAllowedHeights().contains(height)) {
+            throw new IllegalArgumentException("不支持的高度: " + height + "，允许: " + properties.getAllowedHeights());
+        }
+    }
+
+    private static Fit parseFit(String fit) {
+        if (fit == null || fit.isBlank()) {
+            return Fit.COVER;
+        }
+        try {
+            return Fit.valueOf(fit.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不支持的缩放方式: " + fit + "，允许: cover, contain");
+        }
+    }
+
+    private String cacheKey(String relativePath, Path source, Integer width, Integer height, Fit fit)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        return cacheKey(relativePath, attributes, width, height, fit, imageProcessingService.outputEncoder().format());
+    }
+
+    private static String cacheKey(String relativePath, BasicFileAttributes source,
+                                   Integer width, Integer height, Fit fit, String format) {
+        String material = relativePath + "|" + source.size() + "|" + source.lastModifiedTime().toMillis()
+                + "|" + width + "|" + height + "|" + fit + "|" + format;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(material.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+
+    private record CacheEntry(String key, Path path, long size, long createdAt) {
+    }
+
+    /**
+     * 缩放后的图片
+     * @param path 缓存文件
+     * @param key 缓存键（可作为 ETag）
+     * @param contentType MIME 类型
+     */
+    public record RenderedImage(Path path, String key, String contentType) {
+    }
+
+    /**
+     * 已打开的缩放图片
+     * @param image 缩放后的图片
+     * @param size 文件字节数
+     * @param content 文件内容，读完后由调用方关闭
+     */
+    public record OpenedImage(RenderedImage image, long size, InputStream content) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            content.close();
+        }
+    }
+}
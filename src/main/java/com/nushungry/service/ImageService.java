@@ -2,37 +2,70 @@ package com.nushungry.service;
 
 import com.nushungry.model.Cafeteria;
 import com.nushungry.model.Image;
+import com.nushungry.model.ImageProcessingJob;
 import com.nushungry.model.Stall;
+import com.nushungry.model.StoredBlob;
 import com.nushungry.repository.CafeteriaRepository;
+import com.nushungry.repository.ImageProcessingJobRepository;
 import com.nushungry.repository.ImageRepository;
 import com.nushungry.repository.StallRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
 
+@Slf4j
 @Service
 public class ImageService {
 
+    /**
+     * 批量删除时每条 IN 查询的ID数量
+     */
+    private static final int DELETE_CHUNK_SIZE = 500;
+
+    /**
+     * 补全元数据时每批处理的图片数量
+     */
+    private static final int BACKFILL_BATCH_SIZE = 200;
+
     private final ImageRepository imageRepository;
     private final CafeteriaRepository cafeteriaRepository;
     private final StallRepository stallRepository;
-
-    // 图片上传目录，可以通过配置文件设置
-    private static final String UPLOAD_DIR = "uploads/images/";
+    private final BlobStoreService blobStoreService;
+    private final ImageProcessingJobService imageProcessingJobService;
+    private final ImageProcessingJobRepository imageProcessingJobRepository;
+    private final FileStorageService fileStorageService;
+    private final FileDeletionService fileDeletionService;
+    private final ImageProcessingService imageProcessingService;
 
     public ImageService(ImageRepository imageRepository,
                        CafeteriaRepository cafeteriaRepository,
-                       StallRepository stallRepository) {
+                       StallRepository stallRepository,
+                       BlobStoreService blobStoreService,
+                       ImageProcessingJobService imageProcessingJobService,
+                       ImageProcessingJobRepository imageProcessingJobRepository,
+                       FileStorageService fileStorageService,
+                       FileDeletionService fileDeletionService,
+                       ImageProcessingService imageProcessingService) {
         this.imageRepository = imageRepository;
         this.cafeteriaRepository = cafeteriaRepository;
         this.stallRepository = stallRepository;
+        this.blobStoreService = blobStoreService;
+        this.imageProcessingJobService = imageProcessingJobService;
+        this.imageProcessingJobRepository = imageProcessingJobRepository;
+        this.fileStorageService = fileStorageService;
+        this.fileDeletionService = fileDeletionService;
+        this.imageProcessingService = imageProcessingService;
     }
 
     @Transactional
@@ -47,7 +80,7 @@ public class ImageService {
         image.setUploadedBy(userId);
         image.setCafeteria(cafeteria);
 
-        return imageRepository.save(image);
+        return saveAndEnqueue(image);
     }
 
     @Transactional
@@ -62,7 +95,7 @@ public class ImageService {
         image.setUploadedBy(userId);
         image.setStall(stall);
 
-        return imageRepository.save(image);
+        return saveAndEnqueue(image);
     }
 
     public List<Image> getCafeteriaImages(Long cafeteriaId) {
@@ -73,24 +106,128 @@ public class ImageService {
         return imageRepository.findByStallId(stallId);
     }
 
-    private String saveFile(MultipartFile file) throws IOException {
-        // 创建上传目录
-        Path uploadPath = Paths.get(UPLOAD_DIR);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    /**
+     * 读取原图的尺寸、字节数和 SHA-256 写入记录（尺寸只读取文件头，内容寻址文件直接使用已保存的摘要）
+     * 同时按缩略图（没有时按原图）记录已写入的编码格式，同步压缩上传的图片也有格式
+     * 管理后台按这些字段展示图片，不再访问文件
+     * @return 原图文件是否存在并已读取
+     */
+    public boolean populateMetadata(Image image) {
+        Path file = fileStorageService.resolveImageUrl(image.getImageUrl());
+        if (file == null) {
+            return false;
         }
+        try {
+            ImageProcessingService.ImageInfo info = imageProcessingService.getImageInfo(file);
+            image.setWidth(info.getWidth());
+            image.setHeight(info.getHeight());
+            image.setSizeBytes(info.getSize());
+            StoredBlob blob = blobStoreService.findByUrl(image.getImageUrl()).orElse(null);
+            image.setSha256(blob != null ? blob.getSha256() : fileStorageService.sha256(file));
+            Path thumbnail = fileStorageService.resolveFileUrl(image.getThumbnailUrl());
+            imageProcessingService.applyFormats(image, thumbnail != null ? thumbnail : file);
+            return true;
+        } catch (IOException e) {
+            log.warn("读取图片元数据失败: {} ({})", image.getImageUrl(), e.getMessage());
+            return false;
+        }
+    }
 
-        // 生成唯一文件名
-        String originalFilename = file.getOriginalFilename();
-        String extension = originalFilename != null ?
-            originalFilename.substring(originalFilename.lastIndexOf(".")) : ".jpg";
-        String filename = UUID.randomUUID().toString() + extension;
+    /**
+     * 为缺少元数据的图片（功能上线前保存的记录）补全尺寸、字节数和摘要
+     * @return 补全的数量和原图无法读取的数量
+     */
+    public Map<String, Long> backfillMetadata() {
+        long updated = 0;
+        long unreadable = 0;
+        long afterId = 0;
+        List<Image> batch;
+        while (!(batch = imageRepository.findMissingMetadataAfter(
+                afterId, PageRequest.of(0, BACKFILL_BATCH_SIZE))).isEmpty()) {
+            List<Image> changed = new ArrayList<>();
+            for (Image image : batch) {
+                if (populateMetadata(image)) {
+                    changed.add(image);
+                } else {
+                    unreadable++;
+                }
+            }
+            imageRepository.saveAll(changed);
+            updated += changed.size();
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        log.info("图片元数据补全完成: 更新 {} 条, 无法读取 {} 条", updated, unreadable);
 
-        // 保存文件
-        Path filePath = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), filePath);
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("updated", updated);
+        result.put("unreadable", unreadable);
+        return result;
+    }
 
-        // 返回访问路径
-        return "/uploads/images/" + filename;
+    /**
+     * 批量删除图片记录，文件在事务提交后由后台线程删除
+     * 内容寻址的原图可能被其他记录共享，只减少引用数；它的各尺寸图片按内容缓存，由垃圾回收随原图一起删除。
+     * 其他原图连同缩略图和处理任务生成的各尺寸图片写入删除任务；
+     * 正在处理的任务还在读取原图，原图和之后生成的各尺寸图片不再被引用，由孤儿扫描在宽限期后回收
+     * @param ids 图片ID，不存在的ID会被忽略
+     * @return 实际删除的图片ID
+     */
+    @Transactional
+    public List<Long> deleteImages(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<Long> deleted = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + DELETE_CHUNK_SIZE, distinct.size()));
+
+            List<Object[]> rows = imageRepository.findFileUrlsByIdIn(chunk);
+            if (rows.isEmpty()) {
+                continue;
+            }
+            List<Long> existing = new ArrayList<>();
+            List<String> urls = new ArrayList<>();
+            for (Object[] row : rows) {
+                existing.add((Long) row[0]);
+                String imageUrl = (String) row[1];
+                String thumbnailUrl = (String) row[2];
+                urls.add(imageUrl);
+                if (!fileStorageService.isContentAddressed(imageUrl) || fileStorageService.isContentAddressed(thumbnailUrl)) {
+                    urls.add(thumbnailUrl);
+                }
+            }
+            // 正在处理的任务保留，它读取的原图暂不删除
+            urls.removeAll(imageProcessingJobRepository.findProcessingSourceUrlsByImageIdIn(existing).stream()
+                    .filter(url -> !fileStorageService.isContentAddressed(url))
+                    .toList());
+            List<ImageProcessingJob> jobs = imageProcessingJobRepository.findIdleByImageIdIn(existing);
+            for (ImageProcessingJob job : jobs) {
+                if (!fileStorageService.isContentAddressed(job.getSourceUrl())) {
+                    urls.addAll(job.getVariants().values());
+                }
+            }
+
+            imageProcessingJobRepository.deleteAllInBatch(jobs);
+            imageRepository.deleteByIds(existing);
+            fileDeletionService.enqueue(urls);
+            deleted.addAll(existing);
+        }
+        return deleted;
+    }
+
+    /**
+     * 保存图片记录（引用原图）并写入后台处理任务，缩略图生成后回写到该记录
+     */
+    private Image saveAndEnqueue(Image image) {
+        populateMetadata(image);
+        Image saved = imageRepository.save(image);
+        blobStoreService.retain(saved.getImageUrl());
+        imageProcessingJobService.enqueue(saved.getImageUrl(), saved.getId());
+        return saved;
+    }
+
+    /**
+     * 保存原图（相同内容只保存一份），缩放和缩略图由后台任务完成
+     */
+    private String saveFile(MultipartFile file) throws IOException {
+        return blobStoreService.store(file).getUrl();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,294 @@
+package com.nushungry.service;
+
+import com.nushungry.config.RetentionProperties;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 数据保留服务
+ * 统一调度过期令牌、验证码、搜索历史等数据的清理。
+ * 按主键范围分批删除，每批在独立事务中执行，批次之间休眠，避免一次大DELETE长时间锁表。
+ * 每批之后续租任务锁，续租失败（锁已被其他节点接管）时停止本次清理。
+ * search_history 已按天分区时改为整分区删除。
+ */
+@Slf4j
+@Service
+public class RetentionService {
+
+    private static final String LOCK_NAME = "retention-cleanup";
+
+    private final RetentionProperties retentionProperties;
+    private final SchedulerLockService schedulerLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchHistoryPartitionManager searchHistoryPartitionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<String, PurgeStats> stats = new ConcurrentHashMap<>();
+
+    public RetentionService(RetentionProperties retentionProperties,
+                            SchedulerLockService schedulerLockService,
+                            TransactionTemplate transactionTemplate,
+                            SearchHistoryPartitionManager searchHistoryPartitionManager) {
+        this.retentionProperties = retentionProperties;
+        this.schedulerLockService = schedulerLockService;
+        this.transactionTemplate = transactionTemplate;
+        this.searchHistoryPartitionManager = searchHistoryPartitionManager;
+    }
+
+    /**
+     * 定时执行清理任务
+     */
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void scheduledCleanup() {
+        if (!retentionProperties.isEnabled()) {
+            return;
+        }
+        runCleanup();
+    }
+
+    /**
+     * 执行一次清理（持有分布式锁）
+     * @return 每张表本次删除的行数；未获取到锁时返回空
+     */
+    public Map<String, Long> runCleanup() {
+        Duration lease = Duration.ofMinutes(retentionProperties.getLockLeaseMinutes());
+        if (!schedulerLockService.tryLock(LOCK_NAME, lease)) {
+            log.info("数据清理任务正在其他节点执行，跳过本次执行");
+            return Collections.emptyMap();
+        }
+
+        Map<String, Long> purged = new LinkedHashMap<>();
+        try {
+            for (PurgeTarget target : targets()) {
+                if (!target.policy().isEnabled()) {
+                    continue;
+                }
+                try {
+                    purged.put(target.name(), purge(target, lease));
+                } catch (LeaseLostException e) {
+                    log.warn("数据清理任务锁已失效，停止本次清理: {} 已删除 {} 行", target.name(), e.purged);
+                    purged.put(target.name(), e.purged);
+                    break;
+                } catch (Exception e) {
+                    log.error("清理 {} 失败: {}", target.name(), e.getMessage(), e);
+                }
+            }
+        } finally {
+            schedulerLockService.unlock(LOCK_NAME);
+        }
+
+        log.info("数据清理完成: {}", purged);
+        return purged;
+    }
+
+    /**
+     * 获取清理统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (PurgeTarget target : targets()) {
+            PurgeStats targetStats = stats.get(target.name());
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("enabled", target.policy().isEnabled());
+            item.put("retentionDays", target.policy().getRetentionDays());
+            item.put("runs", targetStats != null ? targetStats.runs.get() : 0L);
+            item.put("totalRowsPurged", targetStats != null ? targetStats.rowsPurged.get() : 0L);
+            item.put("totalMillis", targetStats != null ? targetStats.millis.get() : 0L);
+            item.put("lastRunRows", targetStats != null ? targetStats.lastRunRows.get() : 0L);
+            item.put("lastRunMillis", targetStats != null ? targetStats.lastRunMillis.get() : 0L);
+            item.put("lastRunAt", targetStats != null ? targetStats.lastRunAt.get() : null);
+            result.put(target.name(), item);
+        }
+        return result;
+    }
+
+    /**
+     * 分批清理单张表
+     * 先按主键顺序取出一批过期记录的ID，再按该批的主键范围删除（同时重新校验时间条件）
+     * @param lease 每批之后续租的租期
+     * @throws LeaseLostException 续租失败
+     */
+    private long purge(PurgeTarget target, Duration lease) {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(target.policy().getRetentionDays());
+        if (target.partitioned() && searchHistoryPartitionManager.isPartitioned()) {
+            return dropPartitions(target, cutoff);
+        }
+        Object cutoffValue = target.dateColumn() ? cutoff.toLocalDate() : cutoff;
+        int chunkSize = retentionProperties.getChunkSize();
+
+        String selectJpql = "SELECT e.id FROM " + target.entityName() + " e " +
+                "WHERE e." + target.timeField() + " < :cutoff AND e.id > :afterId ORDER BY e.id";
+        String deleteJpql = "DELETE FROM " + target.entityName() + " e " +
+                "WHERE e.id BETWEEN :minId AND :maxId AND e." + target.timeField() + " < :cutoff";
+
+        long startNanos = System.nanoTime();
+        long total = 0;
+        long afterId = 0;
+        int chunks = 0;
+        boolean leaseLost = false;
+
+        while (chunks < retentionProperties.getMaxChunksPerRun()) {
+            long lowerBound = afterId;
+            long[] result = transactionTemplate.execute(status -> {
+                List<Long> ids = entityManager.createQuery(selectJpql, Long.class)
+                        .setParameter("cutoff", cutoffValue)
+                        .setParameter("afterId", lowerBound)
+                        .setMaxResults(chunkSize)
+                        .getResultList();
+                if (ids.isEmpty()) {
+                    return null;
+                }
+                long minId = ids.get(0);
+                long maxId = ids.get(ids.size() - 1);
+                int deleted = entityManager.createQuery(deleteJpql)
+                        .setParameter("minId", minId)
+                        .setParameter("maxId", maxId)
+                        .setParameter("cutoff", cutoffValue)
+                        .executeUpdate();
+                return new long[]{deleted, maxId, ids.size()};
+            });
+
+            if (result == null) {
+                break;
+            }
+
+            total += result[0];
+            afterId = result[1];
+            chunks++;
+
+            if (!schedulerLockService.extend(LOCK_NAME, lease)) {
+                leaseLost = true;
+                break;
+            }
+
+            if (result[2] < chunkSize || !pause()) {
+                break;
+            }
+        }
+
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        stats.computeIfAbsent(target.name(), key -> new PurgeStats()).record(total, elapsedMillis);
+
+        log.info("清理 {} 完成: 删除 {} 行, {} 批, 耗时 {} ms", target.name(), total, chunks, elapsedMillis);
+        if (leaseLost) {
+            throw new LeaseLostException(total);
+        }
+        return total;
+    }
+
+    /**
+     * 整分区删除早于保留期的数据（只删除全部数据都已过期的分区，保留期边界所在的分区留到第二天）
+     */
+    private long dropPartitions(PurgeTarget target, LocalDateTime cutoff) {
+        long startNanos = System.nanoTime();
+        long rows = searchHistoryPartitionManager.dropPartitionsBefore(cutoff.toLocalDate());
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        stats.computeIfAbsent(target.name(), key -> new PurgeStats()).record(rows, elapsedMillis);
+        log.info("清理 {} 完成: 删除分区约 {} 行, 耗时 {} ms", target.name(), rows, elapsedMillis);
+        return rows;
+    }
+
+    /**
+     * 批次之间休眠
+     * @return 线程被中断时返回false
+     */
+    private boolean pause() {
+        long pauseMs = retentionProperties.getPauseBetweenChunksMs();
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 需要清理的表及其时间列
+     */
+    private List<PurgeTarget> targets() {
+        List<PurgeTarget> targets = new ArrayList<>();
+        targets.add(new PurgeTarget("refreshTokens", "RefreshToken", "expiresAt",
+                retentionProperties.getRefreshTokens()));
+        targets.add(new PurgeTarget("verificationCodes", "VerificationCode", "expiresAt",
+                retentionProperties.getVerificationCodes()));
+        targets.add(new PurgeTarget("passwordResetTokens", "PasswordResetToken", "expiresAt",
+                retentionProperties.getPasswordResetTokens()));
+        targets.add(new PurgeTarget("searchHistory", "SearchHistory", "searchTime",
+                retentionProperties.getSearchHistory(), false, true));
+        targets.add(new PurgeTarget("searchKeywordDaily", "SearchKeywordDaily", "statDate",
+                retentionProperties.getSearchKeywordDaily(), true, false));
+        targets.add(new PurgeTarget("emailOutbox", "EmailOutbox", "sentAt",
+                retentionProperties.getEmailOutbox()));
+        targets.add(new PurgeTarget("emailDeadLetters", "EmailDeadLetter", "failedAt",
+                retentionProperties.getEmailDeadLetters()));
+        targets.add(new PurgeTarget("imageProcessingJobs", "ImageProcessingJob", "completedAt",
+                retentionProperties.getImageProcessingJobs()));
+        return targets;
+    }
+
+    /**
+     * @param dateColumn 时间列是日期类型（LocalDate）
+     * @param partitioned 表可能按天分区，分区后整分区删除
+     */
+    private record PurgeTarget(String name, String entityName, String timeField,
+                               RetentionProperties.Policy policy, boolean dateColumn, boolean partitioned) {
+
+        PurgeTarget(String name, String entityName, String timeField, RetentionProperties.Policy policy) {
+            this(name, entityName, timeField, policy, false, false);
+        }
+    }
+
+    /**
+     * 清理过程中任务锁已过期或被其他节点接管
+     */
+    private static class LeaseLostException extends RuntimeException {
+        private final long purged;
+
+        LeaseLostException(long purged) {
+            super("任务锁已失效");
+            this.purged = purged;
+        }
+    }
+
+    /**
+     * 单张表的清理统计
+     */
+    private static class PurgeStats {
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong rowsPurged = new AtomicLong();
+        private final AtomicLong millis = new AtomicLong();
+        private final AtomicLong lastRunRows = new AtomicLong();
+        private final AtomicLong lastRunMillis = new AtomicLong();
+        private final AtomicReference<LocalDateTime> lastRunAt = new AtomicReference<>();
+
+        void record(long rows, long elapsedMillis) {
+            runs.incrementAndGet();
+            rowsPurged.addAndGet(rows);
+            millis.addAndGet(elapsedMillis);
+            lastRunRows.set(rows);
+            lastRunMillis.set(elapsedMillis);
+            lastRunAt.set(LocalDateTime.now());
+        }
+    }
+}
@@ -3,19 +3,25 @@ package com.nushungry.service;
 import com.nushungry.dto.CreateReportRequest;
 import com.nushungry.dto.HandleReportRequest;
 import com.nushungry.dto.ReportResponse;
+import com.nushungry.dto.ReportedReviewResponse;
 import com.nushungry.model.*;
 import com.nushungry.repository.ReviewReportRepository;
+import com.nushungry.repository.ReviewReportSummaryRepository;
 import com.nushungry.repository.ReviewRepository;
 import com.nushungry.repository.UserRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 评价举报服务
@@ -23,42 +29,58 @@ import java.util.List;
 @Service
 public class ReviewReportService {
 
+    /**
+     * 待处理状态（进入审核队列、计入汇总的待处理数）
+     */
+    private static final List<ReportStatus> OPEN_STATUSES = List.of(ReportStatus.PENDING, ReportStatus.REVIEWING);
+
     @Autowired
     private ReviewReportRepository reportRepository;
 
+    @Autowired
+    private ReviewReportSummaryRepository summaryRepository;
+
     @Autowired
     private ReviewRepository reviewRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
      * 创建举报
+     * 不预先加载评价和举报人：直接插入举报，重复举报由 (review_id, reporter_id) 唯一约束拒绝，
+     * 随后一条语句插入或累加该评价的举报汇总；只在插入失败时查询失败原因
      */
-    @Transactional
     public ReportResponse createReport(Long reviewId, Long reporterId, CreateReportRequest request) {
-        Review review = reviewRepository.findById(reviewId)
-                .orElseThrow(() -> new RuntimeException("评价不存在"));
-
-        User reporter = userRepository.findById(reporterId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-
-        // 检查是否已经举报过
-        if (reportRepository.existsByReviewAndReporter(review, reporter)) {
-            throw new RuntimeException("您已经举报过此评价");
+        try {
+            ReviewReport savedReport = transactionTemplate.execute(status -> {
+                ReviewReport report = new ReviewReport();
+                report.setReview(reviewRepository.getReferenceById(reviewId));
+                report.setReporter(userRepository.getReferenceById(reporterId));
+                report.setReason(request.getReason());
+                report.setDescription(request.getDescription());
+                report.setStatus(ReportStatus.PENDING);
+                ReviewReport saved = reportRepository.save(report);
+
+                summaryRepository.recordReport(reviewId, saved.getReason().name(), saved.getCreatedAt());
+                return saved;
+            });
+            return buildCreatedReportResponse(savedReport, reviewId, reporterId);
+        } catch (DataIntegrityViolationException e) {
+            if (reportRepository.existsByReviewIdAndReporterId(reviewId, reporterId)) {
+                throw new RuntimeException("您已经举报过此评价");
+            }
+            if (!reviewRepository.existsById(reviewId)) {
+                throw new RuntimeException("评价不存在");
+            }
+            if (!userRepository.existsById(reporterId)) {
+                throw new RuntimeException("用户不存在");
+            }
+            throw e;
         }
-
-        // 创建举报记录
-        ReviewReport report = new ReviewReport();
-        report.setReview(review);
-        report.setReporter(reporter);
-        report.setReason(request.getReason());
-        report.setDescription(request.getDescription());
-        report.setStatus(ReportStatus.PENDING);
-
-        ReviewReport savedReport = reportRepository.save(report);
-
-        return buildReportResponse(savedReport);
     }
 
     /**
@@ -69,6 +91,12 @@ public class ReviewReportService {
         ReviewReport report = reportRepository.findById(reportId)
                 .orElseThrow(() -> new RuntimeException("举报记录不存在"));
 
+        boolean wasOpen = OPEN_STATUSES.contains(report.getStatus());
+        boolean open = OPEN_STATUSES.contains(request.getStatus());
+        if (wasOpen != open) {
+            summaryRepository.adjustOpenReports(report.getReview().getId(), open ? 1 : -1);
+        }
+
         report.setStatus(request.getStatus());
         report.setHandledBy(adminUsername);
         report.setHandledAt(LocalDateTime.now());
@@ -80,13 +108,51 @@ public class ReviewReportService {
     }
 
     /**
-     * 获取待处理的举报列表
+     * 批量处理某评价的全部待处理举报（管理员），举报明细一条语句更新
+     * @return 处理的举报数
      */
-    public Page<ReportResponse> getPendingReports(Pageable pageable) {
-        List<ReportStatus> pendingStatuses = Arrays.asList(ReportStatus.PENDING, ReportStatus.REVIEWING);
-        Page<ReviewReport> reports = reportRepository.findByStatusIn(pendingStatuses, pageable);
+    @Transactional
+    public int handleReportsOfReview(Long reviewId, String adminUsername, HandleReportRequest request) {
+        int handled = reportRepository.handleOpenReportsOfReview(reviewId, OPEN_STATUSES, request.getStatus(),
+                adminUsername, LocalDateTime.now(), request.getHandleNote());
+        if (handled > 0 && !OPEN_STATUSES.contains(request.getStatus())) {
+            summaryRepository.clearOpenReports(reviewId);
+        }
+        return handled;
+    }
 
-        return reports.map(this::buildReportResponse);
+    /**
+     * 按评价合并的审核队列：同一评价的多条举报合并为一项，附举报次数、原因分布和首末举报时间
+     * 按待处理举报人数、最近举报时间排序，忽略 pageable 中的排序
+     */
+    public Page<ReportedReviewResponse> getReportedReviews(Pageable pageable) {
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        return summaryRepository.findOpenQueue(page).map(row -> {
+            ReviewReportSummary summary = (ReviewReportSummary) row[0];
+            return ReportedReviewResponse.builder()
+                    .review(buildReviewInfo((Review) row[1]))
+                    .openReports(summary.getOpenReports())
+                    .totalReports(summary.getTotalReports())
+                    .reasonCounts(summary.getReasonCounts())
+                    .firstReportedAt(summary.getFirstReportedAt())
+                    .lastReportedAt(summary.getLastReportedAt())
+                    .build();
+        });
+    }
+
+    /**
+     * 获取审核队列（待处理和处理中的举报）
+     * 按评价的待处理举报人数、最近举报时间排序，忽略 pageable 中的排序；每页一次查询加载全部关联数据
+     */
+    public Page<ReportResponse> getPendingReports(Pageable pageable) {
+        Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+        Page<Object[]> rows = reportRepository.findModerationQueue(OPEN_STATUSES, page);
+
+        return rows.map(row -> {
+            ReportResponse response = buildReportResponse((ReviewReport) row[0]);
+            response.setOpenReportCount(row[1] != null ? (Integer) row[1] : 0);
+            return response;
+        });
     }
 
     /**
@@ -127,17 +193,16 @@ public class ReviewReportService {
      * 获取举报统计
      */
     public ReportStatistics getStatistics() {
-        long total = reportRepository.count();
-        long pending = reportRepository.countByStatus(ReportStatus.PENDING);
-        long reviewing = reportRepository.countByStatus(ReportStatus.REVIEWING);
-        long resolved = reportRepository.countByStatus(ReportStatus.RESOLVED);
-        long rejected = reportRepository.countByStatus(ReportStatus.REJECTED);
+        Map<ReportStatus, Long> counts = new EnumMap<>(ReportStatus.class);
+        for (Object[] row : reportRepository.countGroupByStatus()) {
+            counts.put((ReportStatus) row[0], (Long) row[1]);
+        }
 
         ReportStatistics stats = new ReportStatistics();
-        stats.setTotalCount(total);
-        stats.setPendingCount(pending);
-        stats.setProcessedCount(resolved);  // resolved映射到processedCount
-        stats.setRejectedCount(rejected);
+        stats.setTotalCount(counts.values().stream().mapToLong(Long::longValue).sum());
+        stats.setPendingCount(counts.getOrDefault(ReportStatus.PENDING, 0L));
+        stats.setProcessedCount(counts.getOrDefault(ReportStatus.RESOLVED, 0L));  // resolved映射到processedCount
+        stats.setRejectedCount(counts.getOrDefault(ReportStatus.REJECTED, 0L));
 
         return stats;
     }
@@ -146,12 +211,38 @@ public class ReviewReportService {
      * 构建举报响应DTO
      */
     private ReportResponse buildReportResponse(ReviewReport report) {
-        Review review = report.getReview();
-        User reviewer = review.getUser();
+        ReportResponse.ReviewInfo reviewInfo = buildReviewInfo(report.getReview());
         User reporter = report.getReporter();
 
-        // 构建ReviewInfo
-        ReportResponse.ReviewInfo reviewInfo = ReportResponse.ReviewInfo.builder()
+        // 构建ReporterInfo
+        ReportResponse.UserInfo reporterInfo = ReportResponse.UserInfo.builder()
+                .id(reporter.getId())
+                .username(reporter.getUsername())
+                .avatarUrl(reporter.getAvatarUrl())
+                .build();
+
+        return ReportResponse.builder()
+                .id(report.getId())
+                .review(reviewInfo)
+                .reporter(reporterInfo)
+                .reason(report.getReason())
+                .reasonDisplayName(report.getReason().getDisplayName())
+                .description(report.getDescription())
+                .status(report.getStatus())
+                .statusDisplayName(report.getStatus().getDisplayName())
+                .handledBy(report.getHandledBy())
+                .handledAt(report.getHandledAt())
+                .handleNote(report.getHandleNote())
+                .createdAt(report.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * 构建被举报评价的信息
+     */
+    private ReportResponse.ReviewInfo buildReviewInfo(Review review) {
+        User reviewer = review.getUser();
+        return ReportResponse.ReviewInfo.builder()
                 .id(review.getId())
                 .comment(review.getComment())
                 .rating(review.getRating())
@@ -165,26 +256,21 @@ public class ReviewReportService {
                         .name(review.getStall().getName())
                         .build() : null)
                 .build();
+    }
 
-        // 构建ReporterInfo
-        ReportResponse.UserInfo reporterInfo = ReportResponse.UserInfo.builder()
-                .id(reporter.getId())
-                .username(reporter.getUsername())
-                .avatarUrl(reporter.getAvatarUrl())
-                .build();
-
+    /**
+     * 新建举报的响应，只包含评价和举报人ID，避免为响应再加载评价和用户
+     */
+    private ReportResponse buildCreatedReportResponse(ReviewReport report, Long reviewId, Long reporterId) {
         return ReportResponse.builder()
                 .id(report.getId())
-                .review(reviewInfo)
-                .reporter(reporterInfo)
+                .review(ReportResponse.ReviewInfo.builder().id(reviewId).build())
+                .reporter(ReportResponse.UserInfo.builder().id(reporterId).build())
                 .reason(report.getReason())
                 .reasonDisplayName(report.getReason().getDisplayName())
                 .description(report.getDescription())
                 .status(report.getStatus())
                 .statusDisplayName(report.getStatus().getDisplayName())
-                .handledBy(report.getHandledBy())
-                .handledAt(report.getHandledAt())
-                .handleNote(report.getHandleNote())
                 .createdAt(report.getCreatedAt())
                 .build();
     }
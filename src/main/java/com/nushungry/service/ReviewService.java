@@ -12,13 +12,24 @@ import com.nushungry.repository.UserRepository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +39,8 @@ import java.util.stream.Collectors;
 @Service
 public class ReviewService {
 
+    private static final int DELETE_CHUNK_SIZE = 500;
+
     @Autowired
     private ReviewRepository reviewRepository;
 
@@ -46,9 +59,29 @@ public class ReviewService {
     @Autowired
     private ReviewLikeService reviewLikeService;
 
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private FileDeletionService fileDeletionService;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    // moderation_log 由外部审核系统创建，部分环境中不存在
+    private volatile Boolean moderationLogPresent;
+
+    /**
+     * 批量删除结果
+     * @param deletedIds 已删除的评价ID
+     * @param missingIds 不存在的评价ID
+     * @param deletedRows 各表删除的行数
+     * @param recalculatedStalls 重算统计字段的摊位数
+     */
+    public record BulkDeleteResult(List<Long> deletedIds, List<Long> missingIds,
+                                   Map<String, Integer> deletedRows, int recalculatedStalls) {
+    }
+
     /**
      * 创建评价
      */
@@ -81,6 +114,7 @@ public class ReviewService {
         review.setNumberOfPeople(request.getNumberOfPeople());
 
         review = reviewRepository.save(review);
+        blobStoreService.retainAll(review.getImageUrls());
 
         // 重新计算摊位评分
         ratingCalculationService.recalculateStallRating(request.getStallId());
@@ -111,6 +145,8 @@ public class ReviewService {
         review.setRating(request.getRating());
         review.setComment(request.getComment());
         if (request.getImageUrls() != null) {
+            blobStoreService.releaseAll(review.getImageUrls());
+            blobStoreService.retainAll(request.getImageUrls());
             review.setImageUrls(request.getImageUrls());
         }
         review.setTotalCost(request.getTotalCost());
@@ -144,6 +180,7 @@ public class ReviewService {
         }
 
         Long stallId = review.getStall().getId();
+        blobStoreService.releaseAll(review.getImageUrls());
         reviewRepository.delete(review);
 
         // 重新计算摊位评分
@@ -328,56 +365,120 @@ public class ReviewService {
     @Transactional
     public void deleteReviewByAdmin(Long reviewId) {
         log.info("Admin deleting review {}", reviewId);
+        if (deleteReviewsByAdmin(List.of(reviewId)).deletedIds().isEmpty()) {
+            throw new RuntimeException("评价不存在");
+        }
+        log.info("Review deleted by admin successfully: {}", reviewId);
+    }
 
-        Review review = reviewRepository.findById(reviewId)
-                .orElseThrow(() -> new RuntimeException("评价不存在"));
+    /**
+     * 管理员批量删除评价
+     * 每批先用一次查询校验ID并取得所属摊位，关联表（审核日志、举报、举报汇总、点赞、评价图片）各用一条 IN 语句删除，
+     * 评价图片写入文件删除任务；全部批次完成后每个受影响的摊位只重算一次统计字段
+     * @param reviewIds 评价ID，不存在的ID记入 missingIds
+     */
+    @Transactional
+    public BulkDeleteResult deleteReviewsByAdmin(Collection<Long> reviewIds) {
+        List<Long> distinct = reviewIds.stream().filter(Objects::nonNull).distinct().toList();
+        List<Long> deletedIds = new ArrayList<>();
+        Set<Long> stallIds = new LinkedHashSet<>();
+        Map<String, Integer> deletedRows = new LinkedHashMap<>();
+
+        for (int from = 0; from < distinct.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + DELETE_CHUNK_SIZE, distinct.size()));
+            List<Long> existing = new ArrayList<>();
+            for (Object[] row : reviewRepository.findStallIdsByIdIn(chunk)) {
+                existing.add((Long) row[0]);
+                stallIds.add((Long) row[1]);
+            }
+            if (existing.isEmpty()) {
+                continue;
+            }
+            cascadeDelete(":reviewIds", "id IN (:reviewIds)", "reviewIds", existing)
+                    .forEach((table, count) -> deletedRows.merge(table, count, Integer::sum));
+            deletedIds.addAll(existing);
+        }
 
-        Long stallId = review.getStall().getId();
-        
-        // 先删除所有相关表的记录，避免外键约束问题
-        try {
-            // 1. 删除 moderation_log
-            int deletedLogs = entityManager.createNativeQuery(
-                "DELETE FROM moderation_log WHERE review_id = :reviewId")
-                .setParameter("reviewId", reviewId)
-                .executeUpdate();
-            log.info("Deleted {} moderation_log entries for review {}", deletedLogs, reviewId);
-            
-            // 2. 删除 review_reports (举报记录)
-            int deletedReports = entityManager.createNativeQuery(
-                "DELETE FROM review_reports WHERE review_id = :reviewId")
-                .setParameter("reviewId", reviewId)
-                .executeUpdate();
-            log.info("Deleted {} review_reports entries for review {}", deletedReports, reviewId);
-            
-            // 3. 删除 review_likes (点赞记录)
-            int deletedLikes = entityManager.createNativeQuery(
-                "DELETE FROM review_likes WHERE review_id = :reviewId")
-                .setParameter("reviewId", reviewId)
-                .executeUpdate();
-            log.info("Deleted {} review_likes entries for review {}", deletedLikes, reviewId);
-            
-            // 4. 删除 review_images (评价图片关联)
-            int deletedImages = entityManager.createNativeQuery(
-                "DELETE FROM review_images WHERE review_id = :reviewId")
-                .setParameter("reviewId", reviewId)
-                .executeUpdate();
-            log.info("Deleted {} review_images entries for review {}", deletedImages, reviewId);
-            
-        } catch (Exception e) {
-            log.error("Failed to delete related records for review {}: {}", reviewId, e.getMessage());
-            throw new RuntimeException("删除评价相关记录失败: " + e.getMessage());
+        int recalculated = 0;
+        List<Long> affected = new ArrayList<>(stallIds);
+        for (int from = 0; from < affected.size(); from += DELETE_CHUNK_SIZE) {
+            recalculated += stallRepository.recalculateAggregates(
+                    affected.subList(from, Math.min(from + DELETE_CHUNK_SIZE, affected.size())));
         }
-        
-        // 删除评价
-        reviewRepository.delete(review);
 
-        // 重新计算摊位评分
-        ratingCalculationService.recalculateStallRating(stallId);
-        
-        // 重新计算摊位人均价格
-        priceCalculationService.recalculateStallAveragePrice(stallId);
+        Set<Long> deletedSet = new HashSet<>(deletedIds);
+        List<Long> missingIds = distinct.stream().filter(id -> !deletedSet.contains(id)).toList();
+        log.info("Admin bulk deleted {} reviews ({} missing), recalculated {} stalls: {}",
+                deletedIds.size(), missingIds.size(), recalculated, deletedRows);
+        return new BulkDeleteResult(deletedIds, missingIds, deletedRows, recalculated);
+    }
 
-        log.info("Review deleted by admin successfully: {}", reviewId);
+    /**
+     * 删除指定摊位下的全部评价（摊位批量删除时使用，摊位本身随后删除，不重算统计字段）
+     * @return 每张表删除的行数
+     */
+    @Transactional
+    public Map<String, Integer> deleteReviewsOfStalls(Collection<Long> stallIds) {
+        if (stallIds.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        return cascadeDelete("SELECT r.id FROM review r WHERE r.stall_id IN (:stallIds)",
+                "stall_id IN (:stallIds)", "stallIds", stallIds);
+    }
+
+    /**
+     * 按集合删除评价及其关联记录，每张表一条语句，不加载评价实体
+     * @param reviewIdsSql 被删除评价ID的子查询或参数占位符，用于关联表
+     * @param reviewCondition 评价表本身的删除条件
+     * @param parameter 以上两者使用的参数名
+     * @return 每张表删除的行数
+     */
+    private Map<String, Integer> cascadeDelete(String reviewIdsSql, String reviewCondition,
+                                               String parameter, Collection<Long> values) {
+        Map<String, Integer> deleted = new LinkedHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        List<String> imageUrls = entityManager.createNativeQuery(
+                "SELECT image_url FROM review_images WHERE review_id IN (" + reviewIdsSql + ")")
+                .setParameter(parameter, values)
+                .getResultList();
+
+        String childCondition = "review_id IN (" + reviewIdsSql + ")";
+        if (isModerationLogPresent()) {
+            deleted.put("moderation_log", deleteWhere("moderation_log", childCondition, parameter, values));
+        }
+        deleted.put("review_reports", deleteWhere("review_reports", childCondition, parameter, values));
+        deleted.put("review_report_summary", deleteWhere("review_report_summary", childCondition, parameter, values));
+        deleted.put("review_likes", deleteWhere("review_likes", childCondition, parameter, values));
+        deleted.put("review_images", deleteWhere("review_images", childCondition, parameter, values));
+        deleted.put("review", deleteWhere("review", reviewCondition, parameter, values));
+
+        fileDeletionService.enqueue(imageUrls);
+        return deleted;
+    }
+
+    private int deleteWhere(String table, String condition, String parameter, Collection<Long> values) {
+        return entityManager.createNativeQuery("DELETE FROM " + table + " WHERE " + condition)
+                .setParameter(parameter, values)
+                .executeUpdate();
+    }
+
+    private boolean isModerationLogPresent() {
+        Boolean present = moderationLogPresent;
+        if (present == null) {
+            present = entityManager.unwrap(Session.class).doReturningWork(connection -> {
+                DatabaseMetaData metaData = connection.getMetaData();
+                for (String name : new String[]{"moderation_log", "MODERATION_LOG"}) {
+                    try (ResultSet tables = metaData.getTables(connection.getCatalog(), null, name, null)) {
+                        if (tables.next()) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            });
+            moderationLogPresent = present;
+        }
+        return present;
     }
 }
@@ -0,0 +1,115 @@
+package com.nushungry.service;
+
+import com.nushungry.model.SchedulerLock;
+import com.nushungry.repository.SchedulerLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 定时任务锁服务
+ * 基于数据库行的租约锁，保证多节点部署时同一任务只在一个节点上运行
+ */
+@Slf4j
+@Service
+public class SchedulerLockService {
+
+    private static final LocalDateTime UNLOCKED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId;
+
+    public SchedulerLockService(SchedulerLockRepository schedulerLockRepository,
+                                TransactionTemplate transactionTemplate) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nodeId = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * 尝试获取锁
+     * @param name 任务名称
+     * @param lease 租期，超过租期未释放的锁可被其他节点接管
+     * @return 是否获取成功
+     */
+    public boolean tryLock(String name, Duration lease) {
+        ensureLockRow(name);
+
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = transactionTemplate.execute(status ->
+                schedulerLockRepository.tryAcquire(name, nodeId, now, now.plus(lease)));
+
+        boolean acquired = updated != null && updated == 1;
+        if (acquired) {
+            log.debug("节点 {} 获取任务锁: {}", nodeId, name);
+        }
+        return acquired;
+    }
+
+    /**
+     * 延长自己持有的锁的租期，长时间运行的任务在每个批次之后调用
+     * @param lease 从现在起的新租期
+     * @return 是否续租成功；锁已过期或已被其他节点接管时返回 false，调用方应停止执行
+     */
+    public boolean extend(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = transactionTemplate.execute(status ->
+                schedulerLockRepository.extend(name, nodeId, now, now.plus(lease)));
+        boolean extended = updated != null && updated == 1;
+        if (!extended) {
+            log.warn("节点 {} 续租任务锁失败: {}", nodeId, name);
+        }
+        return extended;
+    }
+
+    /**
+     * 释放锁
+     */
+    public void unlock(String name) {
+        transactionTemplate.execute(status ->
+                schedulerLockRepository.release(name, nodeId, LocalDateTime.now()));
+        log.debug("节点 {} 释放任务锁: {}", nodeId, name);
+    }
+
+    /**
+     * 当前节点标识
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 确保锁记录存在，并发插入时由主键约束保证只有一条
+     */
+    private void ensureLockRow(String name) {
+        if (schedulerLockRepository.existsById(name)) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                SchedulerLock lock = new SchedulerLock();
+                lock.setName(name);
+                lock.setLockedUntil(UNLOCKED);
+                schedulerLockRepository.save(lock);
+            });
+        } catch (DataIntegrityViolationException ex) {
+            // 其他节点已插入该锁记录
+            log.debug("任务锁记录已存在: {}", name);
+        }
+    }
+
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
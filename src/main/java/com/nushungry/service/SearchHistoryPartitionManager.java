@@ -0,0 +1,135 @@
+package com.nushungry.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * search_history 按天分区维护（仅 MySQL）
+ * 表按 db/partition_search_history.sql 转换为 RANGE COLUMNS(search_time) 分区后，
+ * 每天提前拆分出未来几天的分区，过期数据整分区删除（DROP PARTITION），不再逐行 DELETE。
+ * 表未分区或不是 MySQL 时所有操作为空操作，数据清理回退到 RetentionService 的分批删除。
+ */
+@Slf4j
+@Service
+public class SearchHistoryPartitionManager {
+
+    static final String TABLE_NAME = "search_history";
+    private static final String MAX_PARTITION = "pmax";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Boolean mysql;
+
+    public SearchHistoryPartitionManager(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * search_history 是否已按天分区
+     */
+    public boolean isPartitioned() {
+        return isMysql() && !listDailyPartitions().isEmpty();
+    }
+
+    /**
+     * 确保今天起 daysAhead 天的分区存在（从 pmax 中拆分，pmax 正常为空，拆分很快）
+     * @return 新建的分区数
+     */
+    public int ensureFuturePartitions(LocalDate today, int daysAhead) {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        LocalDate latest = listDailyPartitions().stream()
+                .map(SearchHistoryPartitionManager::dayOf)
+                .max(LocalDate::compareTo)
+                .orElse(today.minusDays(1));
+
+        List<String> definitions = new ArrayList<>();
+        for (LocalDate day = latest.plusDays(1); !day.isAfter(today.plusDays(daysAhead)); day = day.plusDays(1)) {
+            definitions.add("PARTITION " + PARTITION_NAME.format(day)
+                    + " VALUES LESS THAN ('" + day.plusDays(1) + "')");
+        }
+        if (definitions.isEmpty()) {
+            return 0;
+        }
+        definitions.add("PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " REORGANIZE PARTITION " + MAX_PARTITION
+                + " INTO (" + String.join(", ", definitions) + ")");
+        log.info("Created {} search_history partitions up to {}", definitions.size() - 1, today.plusDays(daysAhead));
+        return definitions.size() - 1;
+    }
+
+    /**
+     * 删除所有数据都早于 cutoff 的分区（分区 pYYYYMMDD 保存当天及之前的数据）
+     * @return 被删除分区的估算行数
+     */
+    public long dropPartitionsBefore(LocalDate cutoff) {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        List<String> expired = listDailyPartitions().stream()
+                .filter(name -> dayOf(name).isBefore(cutoff))
+                .toList();
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        long rows = estimateRows(expired);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE_NAME + " DROP PARTITION " + String.join(", ", expired));
+        log.info("Dropped {} search_history partitions before {} (~{} rows)", expired.size(), cutoff, rows);
+        return rows;
+    }
+
+    private List<String> listDailyPartitions() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, TABLE_NAME);
+        return names.stream()
+                .filter(name -> dayOf(name) != null)
+                .toList();
+    }
+
+    private long estimateRows(List<String> partitions) {
+        String placeholders = partitions.stream().map(name -> "?").collect(Collectors.joining(", "));
+        List<Object> args = new ArrayList<>();
+        args.add(TABLE_NAME);
+        args.addAll(partitions);
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(TABLE_ROWS), 0) FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IN (" + placeholders + ")",
+                Long.class, args.toArray());
+        return rows != null ? rows : 0;
+    }
+
+    private boolean isMysql() {
+        Boolean result = mysql;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            result = product != null && product.toLowerCase().contains("mysql");
+            mysql = result;
+        }
+        return result;
+    }
+
+    private static LocalDate dayOf(String partitionName) {
+        if (partitionName == null || partitionName.length() != 9) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partitionName, PARTITION_NAME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.nushungry.service;
+
+import com.nushungry.config.SearchHistoryRollupProperties;
+import com.nushungry.repository.SearchHistoryRepository;
+import com.nushungry.repository.SearchKeywordDailyRepository;
+import com.nushungry.search.PopularKeywordTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索历史每日汇总
+ * 每天把前一天的 search_history 按关键词汇总到 search_keyword_daily（INSERT ... SELECT，单条语句完成），
+ * 超过一天的热门关键词查询读取汇总表，只有尚未汇总的最近几小时读取原始记录。
+ * 同一任务负责维护 search_history 的未来分区（表已分区时）。
+ */
+@Slf4j
+@Service
+public class SearchHistoryRollupService {
+
+    private static final String LOCK_NAME = "search-history-rollup";
+    private static final Duration LOCK_LEASE = Duration.ofMinutes(30);
+
+    /**
+     * 从汇总表取出的候选数量（相对请求的 limit），用于与未汇总的原始记录合并后重新排序
+     */
+    private static final int CANDIDATE_FACTOR = 4;
+
+    /**
+     * 关键词按小写、去除首尾空白后汇总，与内存统计的归一化一致
+     */
+    static final String ROLLUP_SQL = "INSERT INTO search_keyword_daily (stat_date, keyword, search_count) "
+            + "SELECT ?, LOWER(TRIM(keyword)), COUNT(*) FROM search_history "
+            + "WHERE search_time >= ? AND search_time < ? GROUP BY LOWER(TRIM(keyword))";
+
+    private final SearchHistoryRollupProperties properties;
+    private final SearchKeywordDailyRepository searchKeywordDailyRepository;
+    private final SearchHistoryRepository searchHistoryRepository;
+    private final SearchHistoryPartitionManager partitionManager;
+    private final SchedulerLockService schedulerLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong daysRolledUp = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+
+    public SearchHistoryRollupService(SearchHistoryRollupProperties properties,
+                                      SearchKeywordDailyRepository searchKeywordDailyRepository,
+                                      SearchHistoryRepository searchHistoryRepository,
+                                      SearchHistoryPartitionManager partitionManager,
+                                      SchedulerLockService schedulerLockService,
+                                      TransactionTemplate transactionTemplate,
+                                      JdbcTemplate jdbcTemplate) {
+        this.properties = properties;
+        this.searchKeywordDailyRepository = searchKeywordDailyRepository;
+        this.searchHistoryRepository = searchHistoryRepository;
+        this.partitionManager = partitionManager;
+        this.schedulerLockService = schedulerLockService;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 定时汇总
+     */
+    @Scheduled(cron = "${app.search-history.rollup.cron:0 10 0 * * *}")
+    public void scheduledRollup() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        runRollup(LocalDate.now());
+    }
+
+    /**
+     * 汇总 today 之前所有尚未汇总的日期（最多 maxDaysPerRun 天），并维护分区
+     * @return 每个汇总日期写入的关键词行数；未获取到锁时返回空
+     */
+    public Map<LocalDate, Integer> runRollup(LocalDate today) {
+        if (!schedulerLockService.tryLock(LOCK_NAME, LOCK_LEASE)) {
+            log.info("搜索历史汇总任务正在其他节点执行，跳过本次执行");
+            return Map.of();
+        }
+
+        long startNanos = System.nanoTime();
+        Map<LocalDate, Integer> written = new LinkedHashMap<>();
+        try {
+            try {
+                partitionManager.ensureFuturePartitions(today, properties.getPartitionDaysAhead());
+            } catch (Exception e) {
+                log.error("维护 search_history 分区失败: {}", e.getMessage(), e);
+            }
+
+            LocalDate from = firstPendingDay(today);
+            if (from == null) {
+                return written;
+            }
+            for (LocalDate day = from; day.isBefore(today) && written.size() < properties.getMaxDaysPerRun();
+                 day = day.plusDays(1)) {
+                int rows = rollupDay(day);
+                written.put(day, rows);
+                rowsWritten.addAndGet(rows);
+                daysRolledUp.incrementAndGet();
+            }
+        } finally {
+            schedulerLockService.unlock(LOCK_NAME);
+            runs.incrementAndGet();
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        if (!written.isEmpty()) {
+            log.info("搜索历史汇总完成: {} 天, {} 行, 耗时 {} ms",
+                    written.size(), written.values().stream().mapToInt(Integer::intValue).sum(), lastRunMillis);
+        }
+        return written;
+    }
+
+    /**
+     * 重新汇总某一天（先删除旧汇总，可重复执行）
+     */
+    public int rollupDay(LocalDate day) {
+        Integer rows = transactionTemplate.execute(status -> {
+            searchKeywordDailyRepository.deleteByStatDate(day);
+            return jdbcTemplate.update(ROLLUP_SQL,
+                    Date.valueOf(day),
+                    Timestamp.valueOf(day.atStartOfDay()),
+                    Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+        });
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * 查询热门关键词：已汇总的日期读取汇总表，之后的时间读取原始记录，合并后排序
+     * 窗口起点按天对齐（包含 since 当天的全部搜索）
+     * 关键词按 {@link PopularKeywordTracker#normalize} 合并，返回的关键词与内存统计一致
+     * @return [keyword, count] 列表
+     */
+    public List<Object[]> findPopularKeywords(LocalDateTime since, int limit) {
+        LocalDate lastRolled = searchKeywordDailyRepository.findLastStatDate();
+        LocalDate sinceDay = since.toLocalDate();
+        if (lastRolled == null || lastRolled.isBefore(sinceDay)) {
+            return mergeNormalized(searchHistoryRepository.findPopularKeywords(since, PageRequest.of(0, limit)), limit);
+        }
+
+        List<Object[]> rows = new ArrayList<>(searchKeywordDailyRepository.sumKeywordCounts(
+                sinceDay, lastRolled, PageRequest.of(0, limit * CANDIDATE_FACTOR)));
+        LocalDateTime rawFrom = lastRolled.plusDays(1).atStartOfDay();
+        rows.addAll(searchHistoryRepository.countKeywordsBetween(rawFrom, LocalDateTime.now().plusMinutes(1)));
+        return mergeNormalized(rows, limit);
+    }
+
+    /**
+     * 按归一化关键词合并 [keyword, count] 行（SQL 只能按小写和首尾空白分组，中间的连续空白在这里合并），
+     * 按次数降序取前 limit 个
+     */
+    static List<Object[]> mergeNormalized(List<Object[]> rows, int limit) {
+        Map<String, Long> merged = new HashMap<>();
+        for (Object[] row : rows) {
+            if (row[0] == null) {
+                continue;
+            }
+            merged.merge(PopularKeywordTracker.normalize((String) row[0]), ((Number) row[1]).longValue(), Long::sum);
+        }
+
+        List<Object[]> results = new ArrayList<>(merged.size());
+        merged.forEach((keyword, count) -> results.add(new Object[]{keyword, count}));
+        results.sort((a, b) -> Long.compare((Long) b[1], (Long) a[1]));
+        return results.subList(0, Math.min(limit, results.size()));
+    }
+
+    /**
+     * 获取汇总任务统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("lastRolledUpDay", searchKeywordDailyRepository.findLastStatDate());
+        stats.put("rollupRows", searchKeywordDailyRepository.count());
+        stats.put("partitioned", partitionManager.isPartitioned());
+        stats.put("runs", runs.get());
+        stats.put("daysRolledUp", daysRolledUp.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+
+    /**
+     * 第一个尚未汇总的日期：最后汇总日的下一天；从未汇总过时从最早的搜索记录开始
+     * 最多回溯 maxDaysPerRun 天（没有搜索的日期不产生汇总行，不限制回溯会反复扫描同一段空白日期）
+     */
+    private LocalDate firstPendingDay(LocalDate today) {
+        LocalDate oldestAllowed = today.minusDays(properties.getMaxDaysPerRun());
+        LocalDate lastRolled = searchKeywordDailyRepository.findLastStatDate();
+        LocalDate first;
+        if (lastRolled != null) {
+            first = lastRolled.plusDays(1);
+        } else {
+            LocalDateTime earliest = jdbcTemplate.queryForObject(
+                    "SELECT MIN(search_time) FROM search_history", LocalDateTime.class);
+            if (earliest == null) {
+                return null;
+            }
+            first = earliest.toLocalDate();
+        }
+        return first.isBefore(oldestAllowed) ? oldestAllowed : first;
+    }
+}
@@ -2,66 +2,93 @@ package com.nushungry.service;
 
 import com.nushungry.model.SearchHistory;
 import com.nushungry.repository.SearchHistoryRepository;
+import com.nushungry.search.PopularKeywordTracker;
+import com.nushungry.search.RecentKeywordCache;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @Transactional
 public class SearchHistoryService {
 
+    private static final int MAX_KEYWORD_LENGTH = 255;
+    private static final int MAX_IP_LENGTH = 50;
+
     @Autowired
     private SearchHistoryRepository searchHistoryRepository;
 
+    @Autowired
+    private SearchHistoryWriter searchHistoryWriter;
+
+    @Autowired
+    private PopularKeywordTracker popularKeywordTracker;
+
+    @Autowired
+    private RecentKeywordCache recentKeywordCache;
+
+    @Autowired
+    private SearchHistoryRollupService searchHistoryRollupService;
+
     /**
-     * 异步记录搜索历史
+     * 记录搜索历史
+     * 请求线程中只提取IP并放入写缓冲，由 SearchHistoryWriter 批量写入；
+     * 关闭写缓冲时直接写库
      */
-    @Async
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void recordSearch(Long userId, String keyword, String searchType,
                             Integer resultCount, HttpServletRequest request) {
-        try {
-            System.out.println("====== 开始记录搜索历史 ======");
-            System.out.println("userId: " + userId);
-            System.out.println("keyword: " + keyword);
-            System.out.println("searchType: " + searchType);
-            System.out.println("resultCount: " + resultCount);
+        if (!StringUtils.hasText(keyword)) {
+            return;
+        }
 
-            if (!StringUtils.hasText(keyword)) {
-                System.out.println("关键词为空，不记录");
-                return;
-            }
+        // 截断到列长度，避免一条超长记录导致整批插入失败
+        SearchHistoryWriter.SearchEvent event = new SearchHistoryWriter.SearchEvent(
+                userId,
+                truncate(keyword.trim(), MAX_KEYWORD_LENGTH),
+                searchType,
+                resultCount,
+                request != null ? truncate(getClientIpAddress(request), MAX_IP_LENGTH) : null,
+                LocalDateTime.now());
+        log.debug("记录搜索历史: userId={}, keyword={}, type={}, results={}",
+                userId, event.keyword(), searchType, resultCount);
+        popularKeywordTracker.record(event.keyword(), event.searchTime());
+        recentKeywordCache.record(userId, event.keyword());
 
+        if (searchHistoryWriter.isEnabled()) {
+            searchHistoryWriter.submit(event);
+            return;
+        }
+
+        try {
             SearchHistory history = new SearchHistory();
-            history.setUserId(userId);
-            history.setKeyword(keyword.trim());
-            history.setSearchType(searchType);
-            history.setResultCount(resultCount);
-
-            // 获取用户IP
-            if (request != null) {
-                history.setIpAddress(getClientIpAddress(request));
-                System.out.println("ipAddress: " + history.getIpAddress());
-            }
-
-            SearchHistory saved = searchHistoryRepository.save(history);
-            System.out.println("搜索历史保存成功，ID: " + saved.getId());
-            System.out.println("====== 记录搜索历史完成 ======");
+            history.setUserId(event.userId());
+            history.setKeyword(event.keyword());
+            history.setSearchType(event.searchType());
+            history.setResultCount(event.resultCount());
+            history.setIpAddress(event.ipAddress());
+            history.setSearchTime(event.searchTime());
+            searchHistoryRepository.save(history);
         } catch (Exception e) {
-            System.err.println("====== 记录搜索历史失败 ======");
-            System.err.println("错误信息: " + e.getMessage());
-            e.printStackTrace();
+            log.error("记录搜索历史失败: {}", e.getMessage());
         }
     }
 
@@ -81,36 +108,54 @@ public class SearchHistoryService {
             limit = 10;
         }
         Pageable pageable = PageRequest.of(0, limit);
-        return searchHistoryRepository.findTop10ByUserIdOrderBySearchTimeDesc(userId);
+        return searchHistoryRepository.findByUserIdOrderBySearchTimeDesc(userId, pageable).getContent();
     }
 
     /**
      * 获取用户最近的唯一搜索关键词（去重）
+     * 由内存缓存返回，只有用户首次查询（或被淘汰后）才查询数据库
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<String> getUserRecentKeywords(Long userId, int limit) {
         if (limit <= 0 || limit > 50) {
             limit = 10;
         }
-        System.out.println(">>> getUserRecentKeywords 被调用");
-        System.out.println(">>> userId: " + userId);
-        System.out.println(">>> limit: " + limit);
-
-        List<String> keywords = searchHistoryRepository.findDistinctKeywordsByUserId(userId, limit);
-
-        System.out.println(">>> 查询结果: " + keywords);
-        System.out.println(">>> 结果数量: " + (keywords != null ? keywords.size() : 0));
-
+        List<String> keywords = recentKeywordCache.getRecentKeywords(userId, limit);
+        log.debug("getUserRecentKeywords: userId={}, limit={}, results={}", userId, limit, keywords.size());
         return keywords;
     }
 
     /**
-     * 获取热门搜索关键词
+     * 获取指定时间窗口内的热门搜索关键词
+     * 优先使用内存统计；统计不可用时回退到SQL，两条路径的关键词都按
+     * {@link PopularKeywordTracker#normalize} 归一化，返回的关键词和次数一致：
+     * - 启动重建完成前：一天以内的窗口聚合原始记录
+     * - 超过一天的窗口：查询每日汇总表。内存只保留 maxWindowHours（默认7天）的时间桶，
+     *   更长的窗口（如30天）只能由汇总表回答；重建期间也避免为多天窗口扫描原始记录
+     * 不开启事务，命中内存统计时不占用数据库连接
      */
-    public List<Map<String, Object>> getPopularKeywords(int days, int limit) {
-        LocalDateTime since = LocalDateTime.now().minusDays(days);
-        Pageable pageable = PageRequest.of(0, limit);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<Map<String, Object>> getPopularKeywords(Duration window, int limit) {
+        Optional<List<PopularKeywordTracker.KeywordCount>> tracked = popularKeywordTracker.getTopKeywords(window, limit);
+        if (tracked.isPresent()) {
+            return tracked.get().stream()
+                .map(keywordCount -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("keyword", keywordCount.keyword());
+                    map.put("count", keywordCount.count());
+                    return map;
+                })
+                .collect(Collectors.toList());
+        }
 
-        List<Object[]> results = searchHistoryRepository.findPopularKeywords(since, pageable);
+        LocalDateTime since = LocalDateTime.now().minus(window);
+        List<Object[]> results;
+        if (window.compareTo(Duration.ofDays(1)) > 0) {
+            results = searchHistoryRollupService.findPopularKeywords(since, limit);
+        } else {
+            results = SearchHistoryRollupService.mergeNormalized(
+                    searchHistoryRepository.findPopularKeywords(since, PageRequest.of(0, limit)), limit);
+        }
 
         return results.stream()
             .map(result -> {
@@ -127,6 +172,7 @@ public class SearchHistoryService {
      */
     public void clearUserSearchHistory(Long userId) {
         searchHistoryRepository.deleteByUserId(userId);
+        invalidateRecentKeywords(userId);
     }
 
     /**
@@ -136,6 +182,7 @@ public class SearchHistoryService {
         SearchHistory history = searchHistoryRepository.findById(id).orElse(null);
         if (history != null && history.getUserId().equals(userId)) {
             searchHistoryRepository.delete(history);
+            invalidateRecentKeywords(userId);
         }
     }
 
@@ -191,4 +238,26 @@ public class SearchHistoryService {
         }
         return ip;
     }
+
+    /**
+     * 提交后再次移除缓存，避免提交前的并发读取把已删除的关键词重新加载进缓存
+     */
+    private void invalidateRecentKeywords(Long userId) {
+        recentKeywordCache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentKeywordCache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    private static String truncate(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value;
+        }
+        return value.substring(0, maxLength);
+    }
 }
@@ -0,0 +1,253 @@
+package com.nushungry.service;
+
+import com.nushungry.config.SearchHistoryBufferProperties;
+import com.nushungry.util.BoundedRingBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 搜索历史写缓冲
+ * 请求线程只把搜索事件放入无锁环形缓冲区，由单独的写入线程每隔 flushIntervalMs
+ * 或积压达到 batchSize 时用 JDBC 批量插入。缓冲区满时按配置丢弃或短暂等待，
+ * 搜索请求不会等待数据库写入。应用关闭时（Web服务器停止接收请求之后）写完剩余事件。
+ */
+@Slf4j
+@Service
+public class SearchHistoryWriter implements SmartLifecycle {
+
+    static final String INSERT_SQL = "INSERT INTO search_history "
+            + "(user_id, keyword, search_time, search_type, result_count, ip_address) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 在Web服务器（DEFAULT_PHASE - 1024/2048）之后停止，保证停止时不再有新的搜索请求
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final long SHUTDOWN_WAIT_MS = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchHistoryBufferProperties properties;
+    private final BoundedRingBuffer<SearchEvent> buffer;
+
+    private volatile boolean running;
+    private volatile Thread flusher;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blockedWaits = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicInteger peakDepth = new AtomicInteger();
+    private volatile long lastFlushLagMs;
+    private volatile LocalDateTime lastFlushAt;
+
+    public SearchHistoryWriter(JdbcTemplate jdbcTemplate, SearchHistoryBufferProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.buffer = new BoundedRingBuffer<>(properties.getCapacity());
+    }
+
+    /**
+     * 是否启用写缓冲
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 提交一条搜索事件，返回 false 表示缓冲区已满被丢弃
+     */
+    public boolean submit(SearchEvent event) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (offer(event)) {
+            return true;
+        }
+
+        if (properties.getOverflowPolicy() == SearchHistoryBufferProperties.OverflowPolicy.BLOCK) {
+            blockedWaits.incrementAndGet();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getBlockTimeoutMs());
+            while (System.nanoTime() < deadline) {
+                wakeFlusher();
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+                if (offer(event)) {
+                    return true;
+                }
+            }
+        }
+
+        long total = dropped.incrementAndGet();
+        if (total == 1 || total % 1000 == 0) {
+            log.warn("Search history buffer full (capacity {}), {} events dropped so far",
+                    buffer.capacity(), total);
+        }
+        return false;
+    }
+
+    private boolean offer(SearchEvent event) {
+        if (!buffer.offer(event)) {
+            wakeFlusher();
+            return false;
+        }
+        enqueued.incrementAndGet();
+        int depth = buffer.size();
+        peakDepth.accumulateAndGet(depth, Math::max);
+        if (depth >= properties.getBatchSize()) {
+            wakeFlusher();
+        }
+        return true;
+    }
+
+    private void wakeFlusher() {
+        Thread thread = flusher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * 写入缓冲区中当前的所有事件，返回写入行数
+     * 只由写入线程调用（停止时由停止线程在写入线程结束后调用）
+     */
+    int flush() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<SearchEvent> batch = new ArrayList<>(batchSize);
+        int written = 0;
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            written += writeBatch(batch);
+            batch.clear();
+        }
+        return written;
+    }
+
+    private int writeBatch(List<SearchEvent> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                ps.setObject(1, event.userId(), Types.BIGINT);
+                ps.setString(2, event.keyword());
+                ps.setTimestamp(3, Timestamp.valueOf(event.searchTime()));
+                ps.setString(4, event.searchType());
+                ps.setObject(5, event.resultCount(), Types.INTEGER);
+                ps.setString(6, event.ipAddress());
+            });
+            flushedRows.addAndGet(batch.size());
+            batches.incrementAndGet();
+            lastFlushAt = LocalDateTime.now();
+            lastFlushLagMs = Duration.between(batch.get(0).searchTime(), lastFlushAt).toMillis();
+            log.debug("Flushed {} search history rows", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            // 搜索历史只用于统计和推荐，写入失败时丢弃本批，不阻塞后续写入
+            failedRows.addAndGet(batch.size());
+            log.error("Failed to write {} search history rows: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    private void runFlusher() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getFlushIntervalMs()));
+        while (running) {
+            // 到达间隔或被生产者提前唤醒（积压达到批量大小）
+            LockSupport.parkNanos(this, intervalNanos);
+            flush();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::runFlusher, "search-history-flusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+        log.info("Search history buffer started: capacity {}, batch size {}, flush interval {}ms, overflow {}",
+                buffer.capacity(), properties.getBatchSize(), properties.getFlushIntervalMs(),
+                properties.getOverflowPolicy());
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = flusher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(SHUTDOWN_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Search history flusher did not finish within {}ms", SHUTDOWN_WAIT_MS);
+                return;
+            }
+        }
+        flusher = null;
+        int remaining = flush();
+        log.info("Search history buffer stopped, {} rows written during shutdown", remaining);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * 获取写缓冲统计
+     */
+    public Map<String, Object> getStatistics() {
+        long batchCount = batches.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("running", running);
+        stats.put("capacity", buffer.capacity());
+        stats.put("depth", buffer.size());
+        stats.put("peakDepth", peakDepth.get());
+        stats.put("overflowPolicy", properties.getOverflowPolicy().name());
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("blockedWaits", blockedWaits.get());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("failedRows", failedRows.get());
+        stats.put("batches", batchCount);
+        stats.put("avgBatchSize", batchCount == 0 ? 0 : (double) flushedRows.get() / batchCount);
+        stats.put("lastFlushAt", lastFlushAt);
+        stats.put("lastFlushLagMs", lastFlushLagMs);
+        return stats;
+    }
+
+    /**
+     * 搜索事件（在请求线程中生成，不引用请求对象）
+     */
+    public record SearchEvent(Long userId, String keyword, String searchType, Integer resultCount,
+                              String ipAddress, LocalDateTime searchTime) {
+    }
+}
@@ -3,6 +3,8 @@ package com.nushungry.service;
 import com.nushungry.dto.StallSearchRequest;
 import com.nushungry.model.Cafeteria;
 import com.nushungry.model.Stall;
+import com.nushungry.repository.FavoriteRepository;
+import com.nushungry.repository.ImageRepository;
 import com.nushungry.repository.StallRepository;
 import com.nushungry.specification.StallSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,18 +17,51 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Transactional
 @Service
 public class StallService {
 
+    private static final int DELETE_CHUNK_SIZE = 500;
+
     @Autowired
     private StallRepository stallRepository;
 
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private FileDeletionService fileDeletionService;
+
+    /**
+     * 批量删除结果
+     * @param deletedIds 已删除的摊位ID
+     * @param missingIds 不存在的摊位ID
+     * @param deletedRows 级联删除的各表行数
+     */
+    public record BatchDeleteResult(List<Long> deletedIds, List<Long> missingIds, Map<String, Integer> deletedRows) {
+    }
+
     public List<Stall> findAll() {
         return stallRepository.findAll();
     }
@@ -65,10 +100,46 @@ public class StallService {
     }
 
     public void deleteById(Long id) {
-        if (!stallRepository.existsById(id)) {
+        if (deleteAllById(List.of(id)).deletedIds().isEmpty()) {
             throw new IllegalArgumentException("Stall not found with id: " + id);
         }
-        stallRepository.deleteById(id);
+    }
+
+    /**
+     * 批量删除摊位
+     * 每批先用一次查询校验ID并取出封面图，再按表依次执行集合删除：
+     * 图片（含处理任务）、评价及其点赞/举报/图片、收藏，最后删除摊位本身；文件写入删除任务由后台清理
+     * @param ids 摊位ID，不存在的ID记入 missingIds
+     */
+    public BatchDeleteResult deleteAllById(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<Long> deletedIds = new ArrayList<>();
+        Map<String, Integer> deletedRows = new LinkedHashMap<>();
+        for (int from = 0; from < distinct.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + DELETE_CHUNK_SIZE, distinct.size()));
+
+            List<Long> existing = new ArrayList<>();
+            List<String> coverUrls = new ArrayList<>();
+            for (Object[] row : stallRepository.findImageUrlsByIdIn(chunk)) {
+                existing.add((Long) row[0]);
+                coverUrls.add((String) row[1]);
+            }
+            if (existing.isEmpty()) {
+                continue;
+            }
+
+            deletedRows.merge("images", imageService.deleteImages(imageRepository.findIdsByStallIdIn(existing)).size(),
+                    Integer::sum);
+            reviewService.deleteReviewsOfStalls(existing).forEach((table, count) -> deletedRows.merge(table, count, Integer::sum));
+            deletedRows.merge("favorites", favoriteRepository.deleteByStallIdIn(existing), Integer::sum);
+            deletedRows.merge("stall", stallRepository.deleteByIds(existing), Integer::sum);
+            fileDeletionService.enqueue(coverUrls);
+            deletedIds.addAll(existing);
+        }
+
+        Set<Long> deletedSet = new HashSet<>(deletedIds);
+        List<Long> missingIds = distinct.stream().filter(id -> !deletedSet.contains(id)).toList();
+        return new BatchDeleteResult(deletedIds, missingIds, deletedRows);
     }
 
     public List<Stall> findByCafeteriaId(Long cafeteriaId) {
@@ -0,0 +1,197 @@
+package com.nushungry.service;
+
+import com.nushungry.config.FileStorageProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 上传文件访问
+ * 按请求路径定位上传目录中的文件，客户端明确接受 AVIF/WebP 且存在同名的该格式文件时改为返回该文件；
+ * UUID 或 SHA-256 命名的文件写入后不会再修改，以文件名作为强 ETag 并允许长期缓存，其他文件按大小和修改时间生成 ETag
+ */
+@Slf4j
+@Service
+public class UploadResourceService {
+
+    private static final Pattern IMMUTABLE_NAME = Pattern.compile(
+            "([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9a-f]{64})\\.[a-z0-9]+");
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp",
+            "avif", "image/avif");
+
+    /**
+     * 可按 Accept 替换为其他格式的原始格式
+     */
+    private static final Set<String> NEGOTIABLE_FORMATS = Set.of("jpg", "jpeg", "png");
+
+    /**
+     * 可替换的格式（按优先顺序）
+     */
+    private static final List<String> ALTERNATE_FORMATS = List.of("avif", "webp");
+
+    private final FileStorageService fileStorageService;
+    private final FileStorageProperties properties;
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong partial = new AtomicLong();
+    private final AtomicLong negotiated = new AtomicLong();
+    private final AtomicLong zeroCopy = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public UploadResourceService(FileStorageService fileStorageService, FileStorageProperties properties) {
+        this.fileStorageService = fileStorageService;
+        this.properties = properties;
+    }
+
+    /**
+     * 定位请求的文件
+     * @param relativePath 相对上传根目录的路径，如 images/2024/01/15/xxx.jpg
+     * @param accept 请求的 Accept 头，可为 null
+     * @return 文件信息；文件不存在或路径无效时返回 null
+     */
+    public UploadResource resolve(String relativePath, String accept) throws IOException {
+        Path path = fileStorageService.resolveUploadPath(relativePath);
+        if (path == null) {
+            return null;
+        }
+
+        String filename = path.getFileName().toString();
+        boolean negotiable = NEGOTIABLE_FORMATS.contains(extensionOf(filename));
+        if (negotiable && accept != null) {
+            Path alternate = findAlternate(path, accept);
+            if (alternate != null) {
+                path = alternate;
+                filename = alternate.getFileName().toString();
+                negotiated.incrementAndGet();
+            }
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        boolean immutable = IMMUTABLE_NAME.matcher(filename).matches();
+
+        String etag = immutable
+                ? "\"" + filename + "\""
+                : "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        String cacheControl = immutable
+                ? "public, max-age=" + properties.getImmutableCacheSeconds() + ", immutable"
+                : "public, max-age=" + properties.getCacheSeconds();
+
+        return new UploadResource(path, contentTypeOf(filename), size, lastModified, etag, cacheControl, negotiable);
+    }
+
+    public void recordNotModified() {
+        notModified.incrementAndGet();
+    }
+
+    /**
+     * 记录一次文件发送
+     * @param bytes 发送的字节数
+     * @param ranged 是否为范围请求
+     * @param sendfile 是否由容器直接从文件发送
+     */
+    public void recordSent(long bytes, boolean ranged, boolean sendfile) {
+        served.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+        if (ranged) {
+            partial.incrementAndGet();
+        }
+        if (sendfile) {
+            zeroCopy.incrementAndGet();
+        }
+    }
+
+    /**
+     * 获取文件访问统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("zeroCopyEnabled", properties.isZeroCopy());
+        stats.put("immutableCacheSeconds", properties.getImmutableCacheSeconds());
+        stats.put("cacheSeconds", properties.getCacheSeconds());
+        stats.put("served", served.get());
+        stats.put("notModified", notModified.get());
+        stats.put("partial", partial.get());
+        stats.put("negotiated", negotiated.get());
+        stats.put("sendfile", zeroCopy.get());
+        stats.put("bytesSent", bytesSent.get());
+        return stats;
+    }
+
+    /**
+     * 查找客户端明确接受的同名替代格式文件（通配符不算）
+     */
+    private static Path findAlternate(Path path, String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+
+        String filename = path.getFileName().toString();
+        String basename = filename.substring(0, filename.lastIndexOf('.'));
+        for (String format : ALTERNATE_FORMATS) {
+            MediaType type = MediaType.parseMediaType(CONTENT_TYPES.get(format));
+            boolean acceptable = accepted.stream().anyMatch(candidate -> !candidate.isWildcardType()
+                    && !candidate.isWildcardSubtype()
+                    && candidate.includes(type)
+                    && candidate.getQualityValue() > 0);
+            if (acceptable) {
+                Path alternate = path.resolveSibling(basename + "." + format);
+                if (Files.isRegularFile(alternate)) {
+                    return alternate;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String contentTypeOf(String filename) {
+        String contentType = CONTENT_TYPES.get(extensionOf(filename));
+        if (contentType != null) {
+            return contentType;
+        }
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
+    private static String extensionOf(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1).toLowerCase() : "";
+    }
+
+    /**
+     * 待返回的上传文件
+     * @param path 磁盘路径
+     * @param contentType MIME 类型
+     * @param size 字节数
+     * @param lastModified 修改时间（毫秒）
+     * @param etag 强 ETag（含引号）
+     * @param cacheControl Cache-Control 响应头
+     * @param varyOnAccept 返回的格式是否取决于 Accept 请求头
+     */
+    public record UploadResource(Path path, String contentType, long size, long lastModified,
+                                 String etag, String cacheControl, boolean varyOnAccept) {
+    }
+}
@@ -16,18 +16,10 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import net.coobird.thumbnailator.Thumbnails;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -38,6 +30,9 @@ public class UserService {
     private final JwtUtil jwtUtil;
     private final AuthenticationManager authenticationManager;
     private final RefreshTokenService refreshTokenService;
+    private final FileStorageService fileStorageService;
+    private final BlobStoreService blobStoreService;
+    private final ImageProcessingService imageProcessingService;
 
     public AuthResponse register(RegisterRequest request) {
         return register(request, null, null);
@@ -168,28 +163,15 @@ public class UserService {
     public String uploadAvatar(MultipartFile file) throws IOException {
         User user = getCurrentUser();
 
-        // Create upload directory if it doesn't exist
-        String uploadDir = "uploads/avatars/";
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        // Generate unique filename
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = originalFilename != null && originalFilename.contains(".")
-            ? originalFilename.substring(originalFilename.lastIndexOf("."))
-            : ".jpg";
-        String filename = UUID.randomUUID().toString() + fileExtension;
-
-        // Save file
-        Path filePath = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), filePath);
+        // Identical images are stored once and shared by reference
+        String previousUrl = user.getAvatarUrl();
+        String avatarUrl = blobStoreService.store(file).getUrl();
 
         // Update user avatar URL
-        String avatarUrl = "/uploads/avatars/" + filename;
         user.setAvatarUrl(avatarUrl);
         userRepository.save(user);
+        blobStoreService.retain(avatarUrl);
+        blobStoreService.release(previousUrl);
 
         return avatarUrl;
     }
@@ -207,32 +189,25 @@ public class UserService {
     public String uploadAvatarWithCrop(MultipartFile file, int x, int y, int width, int height) throws IOException {
         User user = getCurrentUser();
 
-        // Create upload directory if it doesn't exist
-        String uploadDir = "uploads/avatars/";
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        // Stage the upload on disk, then decode only the crop region from the file
+        FileStorageService.StoredUpload staged = fileStorageService.stage(file);
+        FileStorageService.StoredFile destination = fileStorageService.newAvatarFile("jpg");
+        try {
+            // Crop and resize to 200x200 (standard avatar size)
+            imageProcessingService.cropImage(staged.path(), x, y, width, height, 200, destination.path());
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(destination.path());
+            throw ex;
+        } finally {
+            Files.deleteIfExists(staged.path());
         }
 
-        // Generate unique filename
-        String filename = UUID.randomUUID().toString() + ".jpg";
-        Path filePath = uploadPath.resolve(filename);
-
-        // Read the original image
-        BufferedImage originalImage = ImageIO.read(file.getInputStream());
-
-        // Crop and resize to 200x200 (standard avatar size)
-        Thumbnails.of(originalImage)
-                .sourceRegion(x, y, width, height)
-                .size(200, 200)
-                .outputFormat("jpg")
-                .outputQuality(0.9)
-                .toFile(filePath.toFile());
-
         // Update user avatar URL
-        String avatarUrl = "/uploads/avatars/" + filename;
+        String previousUrl = user.getAvatarUrl();
+        String avatarUrl = destination.url();
         user.setAvatarUrl(avatarUrl);
         userRepository.save(user);
+        blobStoreService.release(previousUrl);
 
         return avatarUrl;
     }
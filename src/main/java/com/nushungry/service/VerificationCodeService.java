@@ -1,6 +1,7 @@
 package com.nushungry.service;
 
 import com.nushungry.model.VerificationCode;
+import com.nushungry.ratelimit.RateLimiter;
 import com.nushungry.repository.VerificationCodeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
@@ -22,6 +24,7 @@ public class VerificationCodeService {
 
     private final VerificationCodeRepository verificationCodeRepository;
     private final EmailService emailService;
+    private final RateLimiter rateLimiter;
 
     @Value("${app.verification.code.expiration:300000}") // 默认5分钟
     private long codeExpirationMs;
@@ -33,6 +36,11 @@ public class VerificationCodeService {
     private static final String CODE_TYPE_EMAIL_VERIFY = "EMAIL_VERIFY";
     private static final int MAX_CODES_PER_HOUR = 5; // 每小时最多发送5次
 
+    /**
+     * 本服务发送验证码的限流规则，与密码重置接口的 reset-code-email 规则分开计数
+     */
+    private static final String RATE_LIMIT_RULE = "verification-code-email";
+
     private final SecureRandom random = new SecureRandom();
 
     /**
@@ -55,17 +63,10 @@ public class VerificationCodeService {
      */
     @Transactional
     public boolean sendPasswordResetCode(String email, String ipAddress) {
-        try {
-            // 检查发送频率
-            LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-            long recentCount = verificationCodeRepository.countRecentCodes(
-                    email, CODE_TYPE_PASSWORD_RESET, oneHourAgo);
-
-            if (recentCount >= MAX_CODES_PER_HOUR) {
-                log.warn("邮箱 {} 发送验证码过于频繁", email);
-                throw new RuntimeException("发送验证码过于频繁,请稍后再试");
-            }
+        // 检查发送频率（内存令牌桶，超限时不再访问数据库）
+        rateLimiter.check(RATE_LIMIT_RULE, email, MAX_CODES_PER_HOUR, Duration.ofHours(1));
 
+        try {
             // 生成验证码
             String code = generateCode();
             LocalDateTime now = LocalDateTime.now();
@@ -0,0 +1,19 @@
+-- 创建评价举报汇总表并按现有举报回填（ddl-auto 只建表，不回填数据）
+-- 审核队列按 open_reports、last_reported_at 排序，缺少汇总行的评价排在最后
+
+CREATE TABLE IF NOT EXISTS review_report_summary (
+    review_id BIGINT NOT NULL PRIMARY KEY,
+    open_reports INT NOT NULL,
+    last_reported_at DATETIME(6) NOT NULL,
+    INDEX idx_review_report_summary_priority (open_reports, last_reported_at)
+);
+
+INSERT INTO review_report_summary (review_id, open_reports, last_reported_at)
+SELECT review_id,
+       SUM(CASE WHEN status IN ('PENDING', 'REVIEWING') THEN 1 ELSE 0 END),
+       COALESCE(MAX(created_at), NOW())
+FROM review_reports
+GROUP BY review_id
+ON DUPLICATE KEY UPDATE
+    open_reports = VALUES(open_reports),
+    last_reported_at = VALUES(last_reported_at);
@@ -0,0 +1,19 @@
+-- 将 search_history 转换为按天分区（MySQL 8）
+-- 转换后数据清理按整分区删除（DROP PARTITION），每日汇总任务会提前创建之后几天的分区
+-- 注意：转换会重建整张表，请在低峰期执行；未执行本脚本时应用回退到分批 DELETE
+
+-- 分区列必须包含在主键中
+ALTER TABLE search_history DROP PRIMARY KEY, ADD PRIMARY KEY (id, search_time);
+
+-- 第一个分区以昨天命名，保存昨天及之前的全部历史数据；之后每天一个分区，pmax 兜底
+SET @today = CURDATE();
+SET @ddl = CONCAT(
+    'ALTER TABLE search_history PARTITION BY RANGE COLUMNS(search_time) (',
+    'PARTITION p', DATE_FORMAT(@today - INTERVAL 1 DAY, '%Y%m%d'),
+    ' VALUES LESS THAN (''', DATE_FORMAT(@today, '%Y-%m-%d'), '''), ',
+    'PARTITION p', DATE_FORMAT(@today, '%Y%m%d'),
+    ' VALUES LESS THAN (''', DATE_FORMAT(@today + INTERVAL 1 DAY, '%Y-%m-%d'), '''), ',
+    'PARTITION pmax VALUES LESS THAN (MAXVALUE))');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
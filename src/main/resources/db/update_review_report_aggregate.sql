@@ -0,0 +1,54 @@
+-- 举报去重约束与举报汇总的原因分布、首次举报时间
+-- 在 create_review_report_summary.sql 之后执行
+
+-- 1. 删除重复举报（同一用户对同一评价只保留最早的一条），再添加唯一约束
+DELETE r1 FROM review_reports r1
+JOIN review_reports r2 ON r1.review_id = r2.review_id AND r1.reporter_id = r2.reporter_id AND r1.id > r2.id;
+
+ALTER TABLE review_reports
+    ADD CONSTRAINT uk_review_reports_review_reporter UNIQUE (review_id, reporter_id);
+
+-- 2. 汇总表新增累计数、各原因次数和首次举报时间
+ALTER TABLE review_report_summary
+    ADD COLUMN total_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN spam_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN offensive_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN inappropriate_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN false_info_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN off_topic_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN duplicate_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN other_reports INT NOT NULL DEFAULT 0,
+    ADD COLUMN first_reported_at DATETIME(6) NULL;
+
+-- 3. 按现有举报重新回填
+INSERT INTO review_report_summary (review_id, open_reports, total_reports,
+    spam_reports, offensive_reports, inappropriate_reports, false_info_reports,
+    off_topic_reports, duplicate_reports, other_reports, first_reported_at, last_reported_at)
+SELECT review_id,
+       SUM(CASE WHEN status IN ('PENDING', 'REVIEWING') THEN 1 ELSE 0 END),
+       COUNT(*),
+       SUM(CASE WHEN reason = 'SPAM' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN reason = 'OFFENSIVE' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN reason = 'INAPPROPRIATE' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN reason = 'FALSE_INFO' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN reason = 'OFF_TOPIC' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN reason = 'DUPLICATE' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN reason = 'OTHER' THEN 1 ELSE 0 END),
+       COALESCE(MIN(created_at), NOW()),
+       COALESCE(MAX(created_at), NOW())
+FROM review_reports
+GROUP BY review_id
+ON DUPLICATE KEY UPDATE
+    open_reports = VALUES(open_reports),
+    total_reports = VALUES(total_reports),
+    spam_reports = VALUES(spam_reports),
+    offensive_reports = VALUES(offensive_reports),
+    inappropriate_reports = VALUES(inappropriate_reports),
+    false_info_reports = VALUES(false_info_reports),
+    off_topic_reports = VALUES(off_topic_reports),
+    duplicate_reports = VALUES(duplicate_reports),
+    other_reports = VALUES(other_reports),
+    first_reported_at = VALUES(first_reported_at),
+    last_reported_at = VALUES(last_reported_at);
+
+ALTER TABLE review_report_summary MODIFY COLUMN first_reported_at DATETIME(6) NOT NULL;
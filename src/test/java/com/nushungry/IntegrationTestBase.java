@@ -1,8 +1,15 @@
 package com.nushungry;
 
+import com.nushungry.config.FileDeletionProperties;
+import com.nushungry.config.ImageProcessingProperties;
+import com.nushungry.config.MailOutboxProperties;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 
+import java.util.function.Supplier;
+
 /**
  * Shared integration test configuration to force an embedded H2 database,
  * bypassing any environment-provided datasource settings.
@@ -12,6 +19,15 @@ public abstract class IntegrationTestBase {
     private static final String H2_URL = "jdbc:h2:mem:nushungry_test;" +
             "MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
 
+    @Autowired
+    private FileDeletionProperties fileDeletionProperties;
+
+    @Autowired
+    private ImageProcessingProperties imageProcessingProperties;
+
+    @Autowired
+    private MailOutboxProperties mailOutboxProperties;
+
     @DynamicPropertySource
     static void configureDataSource(DynamicPropertyRegistry registry) {
         registry.add("spring.datasource.url", () -> H2_URL);
@@ -22,6 +38,8 @@ public abstract class IntegrationTestBase {
         registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
         registry.add("spring.jpa.show-sql", () -> "false");
         registry.add("spring.jpa.properties.hibernate.dialect", () -> "org.hibernate.dialect.H2Dialect");
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                () -> StatementCounter.class.getName());
         registry.add("spring.jpa.defer-datasource-initialization", () -> "true");
         registry.add("spring.sql.init.mode", () -> "always");
 
@@ -31,5 +49,60 @@ public abstract class IntegrationTestBase {
         registry.add("spring.mail.port", () -> "2525");
 
         registry.add("file.storage.upload-dir", () -> "build/uploads");
+        registry.add("app.rate-limit.enabled", () -> "false");
+    }
+
+    /**
+     * Runs the action and counts the SQL statements Hibernate prepares for it on the calling thread.
+     * Background pollers sharing the SessionFactory run on other threads and are not counted.
+     */
+    protected static <T> Counted<T> countStatements(Supplier<T> action) {
+        long[] count = new long[1];
+        StatementCounter.COUNT.set(count);
+        try {
+            T result = action.get();
+            return new Counted<>(result, count[0]);
+        } finally {
+            StatementCounter.COUNT.remove();
+        }
+    }
+
+    /**
+     * Stops the background pollers (file deletion, image processing, mail outbox) so they do not
+     * consume rows the test is about to assert on. Pair with {@link #resumePollers()} in teardown.
+     */
+    protected void quiescePollers() {
+        fileDeletionProperties.setEnabled(false);
+        imageProcessingProperties.setEnabled(false);
+        mailOutboxProperties.setEnabled(false);
+    }
+
+    protected void resumePollers() {
+        fileDeletionProperties.setEnabled(true);
+        imageProcessingProperties.setEnabled(true);
+        mailOutboxProperties.setEnabled(true);
+    }
+
+    /**
+     * Result of an action together with the number of statements it prepared.
+     */
+    protected record Counted<T>(T result, long statements) {
+    }
+
+    /**
+     * Counts statements only on threads inside {@link #countStatements(Supplier)}.
+     */
+    public static class StatementCounter implements StatementInspector {
+
+        private static final ThreadLocal<long[]> COUNT = new ThreadLocal<>();
+
+        @Override
+        public String inspect(String sql) {
+            long[] count = COUNT.get();
+            if (count != null) {
+                count[0]++;
+            }
+            return sql;
+        }
     }
 }
@@ -0,0 +1,266 @@
+package com.nushungry;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 独立工具类: 对运行中的后端做闭环压测，比较平台线程与虚拟线程模式的吞吐量和延迟
+ * 不使用 @SpringBootApplication，也不会被 surefire 当作测试执行
+ *
+ * <pre>
+ * 压测:  --url=http://localhost:8080 --label=virtual --levels=1000,2000,5000,10000
+ *        --paths=/api/cafeterias,/api/stalls --warmup=5 --duration=30 --csv=load.csv
+ * 对比:  --compare=load.csv
+ * </pre>
+ *
+ * 每个并发级别启动对应数量的客户端，每个客户端收到响应后立即发下一个请求；
+ * 请求通过 HttpClient 异步发送，压测端本身不需要为每个客户端占用一个线程。
+ * 10k 并发需要足够的文件描述符（ulimit -n）。
+ */
+public class LoadTestHarness {
+
+    private static final String CSV_HEADER = "label,clients,requests,errors,rps,p50_ms,p95_ms,p99_ms,max_ms";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        if (options.containsKey("compare")) {
+            compare(Path.of(options.get("compare")));
+            return;
+        }
+
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        String label = options.getOrDefault("label", "run");
+        int[] levels = Arrays.stream(options.getOrDefault("levels", "1000,2000,5000,10000").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+        List<URI> targets = new ArrayList<>();
+        for (String path : options.getOrDefault("paths", "/api/cafeterias,/api/stalls").split(",")) {
+            targets.add(URI.create(baseUrl + path.trim()));
+        }
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        Path csv = options.containsKey("csv") ? Path.of(options.get("csv")) : null;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        System.out.println("=================================");
+        System.out.println("Target:   " + targets);
+        System.out.println("Label:    " + label);
+        System.out.println("Warmup:   " + warmup.toSeconds() + "s, duration: " + duration.toSeconds() + "s per level");
+        System.out.println("=================================");
+        System.out.printf("%8s %10s %8s %10s %9s %9s %9s %9s%n",
+                "clients", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+
+        for (int level : levels) {
+            LevelResult result = runLevel(client, targets, level, warmup, duration);
+            System.out.printf("%8d %10d %8d %10.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    level, result.requests, result.errors, result.throughput,
+                    result.p50, result.p95, result.p99, result.max);
+            if (csv != null) {
+                appendCsv(csv, label, level, result);
+            }
+        }
+    }
+
+    private static LevelResult runLevel(HttpClient client, List<URI> targets, int clients,
+                                        Duration warmup, Duration duration) {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+
+        List<ClosedLoopClient> loops = new ArrayList<>(clients);
+        CompletableFuture<?>[] finished = new CompletableFuture<?>[clients];
+        for (int i = 0; i < clients; i++) {
+            ClosedLoopClient loop = new ClosedLoopClient(client, targets, i, measureFrom, measureUntil);
+            loops.add(loop);
+            finished[i] = loop.start();
+        }
+        CompletableFuture.allOf(finished).join();
+
+        int total = loops.stream().mapToInt(loop -> loop.count).sum();
+        long[] latencies = new long[total];
+        int offset = 0;
+        long errors = 0;
+        for (ClosedLoopClient loop : loops) {
+            System.arraycopy(loop.latencies, 0, latencies, offset, loop.count);
+            offset += loop.count;
+            errors += loop.errors;
+        }
+        Arrays.sort(latencies);
+
+        LevelResult result = new LevelResult();
+        result.requests = total;
+        result.errors = errors;
+        result.throughput = total / (duration.toNanos() / 1e9);
+        result.p50 = percentileMillis(latencies, 0.50);
+        result.p95 = percentileMillis(latencies, 0.95);
+        result.p99 = percentileMillis(latencies, 0.99);
+        result.max = latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6;
+        return result;
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static void appendCsv(Path csv, String label, int clients, LevelResult result) throws IOException {
+        if (!Files.exists(csv)) {
+            Files.writeString(csv, CSV_HEADER + System.lineSeparator(), StandardCharsets.UTF_8);
+        }
+        String line = String.format("%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                label, clients, result.requests, result.errors, result.throughput,
+                result.p50, result.p95, result.p99, result.max);
+        Files.writeString(csv, line, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 按并发级别对比各次压测的吞吐量和 p99（以CSV中第一个标签为基准）
+     */
+    private static void compare(Path csv) throws IOException {
+        Map<Integer, Map<String, String[]>> byLevel = new TreeMap<>();
+        List<String> labels = new ArrayList<>();
+        for (String line : Files.readAllLines(csv, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("label,")) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            if (!labels.contains(columns[0])) {
+                labels.add(columns[0]);
+            }
+            byLevel.computeIfAbsent(Integer.parseInt(columns[1]), k -> new LinkedHashMap<>())
+                    .put(columns[0], columns);
+        }
+        if (labels.isEmpty()) {
+            System.out.println("No results in " + csv);
+            return;
+        }
+
+        String baseline = labels.get(0);
+        System.out.println("Baseline: " + baseline);
+        for (Map.Entry<Integer, Map<String, String[]>> entry : byLevel.entrySet()) {
+            System.out.println("--- " + entry.getKey() + " clients ---");
+            String[] base = entry.getValue().get(baseline);
+            for (String label : labels) {
+                String[] row = entry.getValue().get(label);
+                if (row == null) {
+                    continue;
+                }
+                double rps = Double.parseDouble(row[4]);
+                double p99 = Double.parseDouble(row[7]);
+                String delta = "";
+                if (base != null && !label.equals(baseline)) {
+                    delta = String.format("  (req/s x%.2f, p99 x%.2f)",
+                            rps / Math.max(Double.parseDouble(base[4]), 0.001),
+                            p99 / Math.max(Double.parseDouble(base[7]), 0.001));
+                }
+                System.out.printf("%-12s req/s %10.1f  p99 %9.1f ms  errors %s%s%n",
+                        label, rps, p99, row[3], delta);
+            }
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int separator = arg.indexOf('=');
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 闭环客户端：上一个请求完成后才发下一个请求
+     * 同一客户端的回调依次执行，延迟数组不需要同步
+     */
+    private static final class ClosedLoopClient {
+        private final HttpClient client;
+        private final List<URI> targets;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private int sequence;
+
+        ClosedLoopClient(HttpClient client, List<URI> targets, int id, long measureFrom, long measureUntil) {
+            this.client = client;
+            this.targets = targets;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.sequence = id;
+        }
+
+        CompletableFuture<Void> start() {
+            next();
+            return finished;
+        }
+
+        private void next() {
+            long startedAt = System.nanoTime();
+            if (startedAt >= measureUntil) {
+                finished.complete(null);
+                return;
+            }
+            HttpRequest request = HttpRequest.newBuilder(targets.get(sequence++ % targets.size()))
+                    .timeout(Duration.ofSeconds(60))
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long completedAt = System.nanoTime();
+                        if (startedAt >= measureFrom && completedAt <= measureUntil) {
+                            if (error != null || response.statusCode() >= 500) {
+                                errors++;
+                            } else {
+                                record(completedAt - startedAt);
+                            }
+                        }
+                        next();
+                    });
+        }
+
+        private void record(long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+        }
+    }
+
+    private static final class LevelResult {
+        private long requests;
+        private long errors;
+        private double throughput;
+        private double p50;
+        private double p95;
+        private double p99;
+        private double max;
+    }
+}
@@ -40,6 +40,9 @@ class CafeteriaControllerUnitTest {
     @MockBean
     private com.nushungry.service.UserService userService;
 
+    @MockBean
+    private com.nushungry.ratelimit.RateLimiter rateLimiter;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -51,6 +51,9 @@ class StallControllerUnitTest {
     @MockBean
     private com.nushungry.service.CafeteriaService cafeteriaService;
 
+    @MockBean
+    private com.nushungry.ratelimit.RateLimiter rateLimiter;
+
     @Autowired
     private ObjectMapper objectMapper;
 
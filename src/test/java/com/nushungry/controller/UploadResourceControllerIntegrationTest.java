@@ -0,0 +1,139 @@
+package com.nushungry.controller;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.FileStorageProperties;
+import com.nushungry.service.ImageRenderService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UploadResourceControllerIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private FileStorageProperties fileStorageProperties;
+
+    @Autowired
+    private ImageRenderService imageRenderService;
+
+    private String name;
+    private byte[] content;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        name = UUID.randomUUID().toString();
+        content = new byte[200_000];
+        new Random(42).nextBytes(content);
+        file = Paths.get(fileStorageProperties.getImageUploadPath()).resolve(name + ".jpg");
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(name + ".webp"));
+    }
+
+    @Test
+    void servesImmutableFilesWithStrongEtagAndRevalidates() {
+        byte[] body = webTestClient.get().uri("/uploads/images/" + name + ".jpg")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + name + ".jpg\"")
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable")
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_TYPE, "image/jpeg")
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectHeader().contentLength(content.length)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertThat(body).isEqualTo(content);
+
+        webTestClient.get().uri("/uploads/images/" + name + ".jpg")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + name + ".jpg\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void revalidatesRenderedVariantsWithoutRenderingThem() throws IOException {
+        // 文件内容不是有效图片：只有不解码就响应 304 才能通过
+        String etag = "\"" + imageRenderService.key("images/" + name + ".jpg", 300, null, null) + "\"";
+        long misses = (long) imageRenderService.getStatistics().get("misses");
+
+        webTestClient.get().uri("/api/images/render/images/" + name + ".jpg?w=300")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        assertThat(imageRenderService.getStatistics().get("misses")).isEqualTo(misses);
+    }
+
+    @Test
+    void servesSingleByteRanges() {
+        byte[] body = webTestClient.get().uri("/uploads/images/" + name + ".jpg")
+                .header(HttpHeaders.RANGE, "bytes=1000-1999")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 1000-1999/" + content.length)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertThat(body).isEqualTo(Arrays.copyOfRange(content, 1000, 2000));
+
+        webTestClient.get().uri("/uploads/images/" + name + ".jpg")
+                .header(HttpHeaders.RANGE, "bytes=" + (content.length + 10) + "-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */" + content.length);
+    }
+
+    @Test
+    void negotiatesWebpAlternateOnlyWhenExplicitlyAccepted() throws IOException {
+        Files.write(file.resolveSibling(name + ".webp"), new byte[]{1, 2, 3});
+
+        webTestClient.get().uri("/uploads/images/" + name + ".jpg")
+                .header(HttpHeaders.ACCEPT, "image/avif,image/webp,image/*;q=0.8")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_TYPE, "image/webp")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + name + ".webp\"")
+                .expectBody(byte[].class).isEqualTo(new byte[]{1, 2, 3});
+
+        webTestClient.get().uri("/uploads/images/" + name + ".jpg")
+                .header(HttpHeaders.ACCEPT, "image/*")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_TYPE, "image/jpeg");
+    }
+
+    @Test
+    void hidesStagingFilesAndMissingFiles() throws IOException {
+        Path staged = Paths.get(fileStorageProperties.getStagingUploadPath()).resolve(name + ".part");
+        Files.createDirectories(staged.getParent());
+        Files.write(staged, content);
+        try {
+            webTestClient.get().uri("/uploads/tmp/" + name + ".part").exchange().expectStatus().isNotFound();
+            webTestClient.get().uri("/uploads/images/missing.jpg").exchange().expectStatus().isNotFound();
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.nushungry.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryRateLimitStoreTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore(clock::get);
+
+    @Test
+    void rejectsOnceCapacityIsExhausted() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(store.tryConsume("login:alice", 3, Duration.ofSeconds(60))).isZero();
+        }
+
+        long waitMs = store.tryConsume("login:alice", 3, Duration.ofSeconds(60));
+        assertThat(waitMs).isEqualTo(20_000);
+
+        // 其他键不受影响
+        assertThat(store.tryConsume("login:bob", 3, Duration.ofSeconds(60))).isZero();
+    }
+
+    @Test
+    void refillsGraduallyOverThePeriod() {
+        for (int i = 0; i < 3; i++) {
+            store.tryConsume("code:a@u.nus.edu", 3, Duration.ofSeconds(60));
+        }
+        assertThat(store.tryConsume("code:a@u.nus.edu", 3, Duration.ofSeconds(60))).isPositive();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        assertThat(store.tryConsume("code:a@u.nus.edu", 3, Duration.ofSeconds(60))).isZero();
+        assertThat(store.tryConsume("code:a@u.nus.edu", 3, Duration.ofSeconds(60))).isPositive();
+    }
+
+    @Test
+    void appliesChangedRuleToExistingKeyKeepingRemainingTokens() {
+        for (int i = 0; i < 3; i++) {
+            store.tryConsume("login:carol", 5, Duration.ofSeconds(60));
+        }
+
+        // 容量调低后剩余 2 个令牌仍然有效，之后按新规则补充
+        assertThat(store.tryConsume("login:carol", 2, Duration.ofSeconds(60))).isZero();
+        assertThat(store.tryConsume("login:carol", 2, Duration.ofSeconds(60))).isZero();
+        assertThat(store.tryConsume("login:carol", 2, Duration.ofSeconds(60))).isEqualTo(30_000);
+
+        // 周期变化同样生效
+        assertThat(store.tryConsume("login:carol", 2, Duration.ofSeconds(10))).isEqualTo(5_000);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOnlyFullyRefilledBuckets() {
+        store.tryConsume("ip:1.1.1.1", 2, Duration.ofSeconds(10));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(8));
+        store.tryConsume("ip:2.2.2.2", 2, Duration.ofSeconds(10));
+
+        // 第一个桶已补满，第二个桶仍缺少令牌
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertThat(store.evictIdle()).isEqualTo(1);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void neverGrantsMoreThanCapacityUnderContention() throws InterruptedException {
+        int threads = 16;
+        int attemptsPerThread = 100;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    if (store.tryConsume("login:shared", 50, Duration.ofHours(1)) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(granted.get()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,146 @@
+package com.nushungry.search;
+
+import com.nushungry.config.PopularKeywordsProperties;
+import com.nushungry.repository.SearchHistoryRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PopularKeywordTrackerTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    /**
+     * 整点后30分钟，避免窗口边界落在记录时间上
+     */
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L / HOUR * HOUR + HOUR / 2);
+
+    @Test
+    void answersEachWindowFromItsOwnBuckets() {
+        PopularKeywordTracker tracker = newTracker(liveOnly(), mock(SearchHistoryRepository.class));
+        record(tracker, "chicken rice", 10, clock.get());
+        record(tracker, "laksa", 20, clock.get() - 3 * HOUR);
+        record(tracker, "mala", 3, clock.get() - 48 * HOUR);
+
+        assertThat(tracker.getTopKeywords(Duration.ofHours(1), 10)).hasValueSatisfying(top ->
+                assertThat(top).containsExactly(new PopularKeywordTracker.KeywordCount("chicken rice", 10)));
+        assertThat(tracker.getTopKeywords(Duration.ofHours(24), 10)).hasValueSatisfying(top ->
+                assertThat(top).extracting(PopularKeywordTracker.KeywordCount::keyword)
+                        .containsExactly("laksa", "chicken rice"));
+        assertThat(tracker.getTopKeywords(Duration.ofDays(7), 2)).hasValueSatisfying(top ->
+                assertThat(top).extracting(PopularKeywordTracker.KeywordCount::keyword)
+                        .containsExactly("laksa", "chicken rice"));
+        assertThat(tracker.getTopKeywords(Duration.ofDays(7), 10)).hasValueSatisfying(top ->
+                assertThat(top).hasSize(3));
+        assertThat(tracker.getTopKeywords(Duration.ofDays(8), 10)).isEmpty();
+    }
+
+    @Test
+    void keepsHeavyHittersAmongManyRareKeywords() {
+        PopularKeywordsProperties properties = liveOnly();
+        properties.setTopK(10);
+        PopularKeywordTracker tracker = newTracker(properties, mock(SearchHistoryRepository.class));
+
+        for (int i = 0; i < 1200; i++) {
+            record(tracker, "rare keyword " + i, 1, clock.get());
+            if (i % 4 == 0) {
+                record(tracker, "Nasi  Lemak", 1, clock.get());
+            }
+        }
+
+        assertThat(tracker.getTopKeywords(Duration.ofHours(1), 1)).hasValueSatisfying(top ->
+                assertThat(top).containsExactly(new PopularKeywordTracker.KeywordCount("nasi lemak", 300)));
+    }
+
+    @Test
+    void servesCachedRankingUntilTtlExpires() {
+        PopularKeywordTracker tracker = newTracker(liveOnly(), mock(SearchHistoryRepository.class));
+        record(tracker, "laksa", 2, clock.get());
+        assertThat(tracker.getTopKeywords(Duration.ofHours(1), 10).get()).hasSize(1);
+
+        record(tracker, "mala", 5, clock.get());
+        assertThat(tracker.getTopKeywords(Duration.ofHours(1), 10).get()).hasSize(1);
+        assertThat(tracker.getStatistics().get("cacheHits")).isEqualTo(1L);
+
+        clock.addAndGet(2000);
+        assertThat(tracker.getTopKeywords(Duration.ofHours(1), 10).get())
+                .extracting(PopularKeywordTracker.KeywordCount::keyword)
+                .containsExactly("mala", "laksa");
+    }
+
+    @Test
+    void rebuildsFromHistoryBeforeAnsweringAndMergesWithLiveSearches() {
+        SearchHistoryRepository repository = mock(SearchHistoryRepository.class);
+        // 7天窗口需要 168 + 1 个桶，两小时前的桶序号为 166
+        LocalDateTime firstBucket = toLocalDateTime(clock.get() / HOUR * HOUR - 168 * HOUR);
+        when(repository.countKeywordsByBucket(eq(firstBucket), any(), eq(60))).thenReturn(List.of(
+                new Object[]{"Chicken Rice", 166L, 7L}, new Object[]{"laksa", 166L, 2L}));
+
+        PopularKeywordsProperties properties = new PopularKeywordsProperties();
+        PopularKeywordTracker tracker = newTracker(properties, repository);
+        record(tracker, "chicken rice", 1, clock.get());
+        assertThat(tracker.getTopKeywords(Duration.ofHours(24), 10)).isEmpty();
+
+        tracker.rebuild();
+
+        assertThat(tracker.isReady()).isTrue();
+        assertThat(tracker.getTopKeywords(Duration.ofHours(24), 10)).hasValueSatisfying(top ->
+                assertThat(top).containsExactly(
+                        new PopularKeywordTracker.KeywordCount("chicken rice", 8),
+                        new PopularKeywordTracker.KeywordCount("laksa", 2)));
+        verify(repository, times(1)).countKeywordsByBucket(any(), any(), anyInt());
+    }
+
+    @Test
+    void slidesWindowAcrossBucketBoundaryWithPartialOldestBucket() {
+        // 整点后6分钟：最近1小时包含上一桶的后54分钟
+        clock.set(clock.get() / HOUR * HOUR + HOUR / 10);
+        PopularKeywordTracker tracker = newTracker(liveOnly(), mock(SearchHistoryRepository.class));
+        record(tracker, "laksa", 20, clock.get() - HOUR / 2);
+        record(tracker, "mala", 4, clock.get());
+
+        assertThat(tracker.getTopKeywords(Duration.ofHours(1), 10)).hasValueSatisfying(top ->
+                assertThat(top).containsExactly(
+                        new PopularKeywordTracker.KeywordCount("laksa", 18),
+                        new PopularKeywordTracker.KeywordCount("mala", 4)));
+        // 最近30分钟只覆盖上一桶的后24分钟
+        assertThat(tracker.getTopKeywords(Duration.ofMinutes(30), 10)).hasValueSatisfying(top ->
+                assertThat(top).containsExactly(
+                        new PopularKeywordTracker.KeywordCount("laksa", 8),
+                        new PopularKeywordTracker.KeywordCount("mala", 4)));
+    }
+
+    private PopularKeywordTracker newTracker(PopularKeywordsProperties properties, SearchHistoryRepository repository) {
+        return new PopularKeywordTracker(properties, repository, clock::get);
+    }
+
+    private PopularKeywordsProperties liveOnly() {
+        PopularKeywordsProperties properties = new PopularKeywordsProperties();
+        properties.setRebuildOnStartup(false);
+        return properties;
+    }
+
+    private void record(PopularKeywordTracker tracker, String keyword, int times, long at) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(keyword, toLocalDateTime(at));
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
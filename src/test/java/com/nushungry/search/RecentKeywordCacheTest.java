@@ -0,0 +1,84 @@
+package com.nushungry.search;
+
+import com.nushungry.config.RecentKeywordCacheProperties;
+import com.nushungry.repository.SearchHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecentKeywordCacheTest {
+
+    private SearchHistoryRepository repository;
+    private RecentKeywordCacheProperties properties;
+    private RecentKeywordCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(SearchHistoryRepository.class);
+        when(repository.findDistinctKeywordsByUserId(anyLong(), anyInt())).thenReturn(List.of());
+        properties = new RecentKeywordCacheProperties();
+        cache = new RecentKeywordCache(properties, repository);
+    }
+
+    @Test
+    void loadsOnceThenServesFromMemoryWithRequestedLimit() {
+        when(repository.findDistinctKeywordsByUserId(1L, 50)).thenReturn(List.of("laksa", "mala", "prata"));
+
+        assertThat(cache.getRecentKeywords(1L, 2)).containsExactly("laksa", "mala");
+        cache.record(1L, "chicken rice");
+        cache.record(1L, "Mala");
+
+        assertThat(cache.getRecentKeywords(1L, 10)).containsExactly("Mala", "chicken rice", "laksa", "prata");
+        assertThat(cache.getRecentKeywords(1L, 1)).containsExactly("Mala");
+        verify(repository, times(1)).findDistinctKeywordsByUserId(eq(1L), anyInt());
+        assertThat(cache.getStatistics().get("hits")).isEqualTo(2L);
+    }
+
+    @Test
+    void keepsSearchesNotYetWrittenToDatabaseAheadOfStoredKeywords() {
+        cache.record(2L, "nasi lemak");
+        when(repository.findDistinctKeywordsByUserId(2L, 50)).thenReturn(List.of("laksa", "Nasi Lemak"));
+
+        assertThat(cache.getRecentKeywords(2L, 10)).containsExactly("nasi lemak", "laksa");
+    }
+
+    @Test
+    void boundsKeywordsPerUserAndReloadsAfterInvalidate() {
+        properties.setPerUserCapacity(3);
+        for (String keyword : List.of("a", "b", "c", "d")) {
+            cache.record(3L, keyword);
+        }
+        assertThat(cache.getRecentKeywords(3L, 10)).containsExactly("d", "c", "b");
+
+        cache.invalidate(3L);
+        assertThat(cache.getRecentKeywords(3L, 10)).isEmpty();
+        verify(repository, times(2)).findDistinctKeywordsByUserId(3L, 3);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUsersOverMemoryBudget() {
+        properties.setMaxMemoryBytes(600);
+        cache.record(1L, "laksa");
+        cache.record(2L, "mala");
+        cache.getRecentKeywords(1L, 10);
+        cache.record(3L, "prata");
+        cache.record(4L, "chicken rice");
+
+        assertThat((Long) cache.getStatistics().get("estimatedBytes")).isLessThanOrEqualTo(600L);
+        assertThat((Long) cache.getStatistics().get("evictions")).isGreaterThan(0L);
+
+        cache.getRecentKeywords(2L, 10);
+        verify(repository).findDistinctKeywordsByUserId(2L, 50);
+        assertThat(cache.getRecentKeywords(2L, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,108 @@
+package com.nushungry.security;
+
+import com.nushungry.config.PasswordHashingProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffloadingPasswordEncoderTest {
+
+    private OffloadingPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) {
+            encoder.destroy();
+        }
+    }
+
+    @Test
+    void encodesAndMatchesOnHashingPool() {
+        encoder = new OffloadingPasswordEncoder(new PasswordHashingProperties(), 4);
+
+        String hash = encoder.encode("secret");
+
+        assertThat(hash).startsWith("$2a$04$");
+        assertThat(encoder.matches("secret", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(encoder.getStatistics().get("completed")).isEqualTo(3L);
+    }
+
+    @Test
+    void requestsRehashOnlyWhenStoredCostIsLower() {
+        encoder = new OffloadingPasswordEncoder(new PasswordHashingProperties(), 5);
+        String weaker = new BCryptPasswordEncoder(4).encode("secret");
+        String current = new BCryptPasswordEncoder(5).encode("secret");
+        String stronger = new BCryptPasswordEncoder(6).encode("secret");
+
+        assertThat(encoder.upgradeEncoding(weaker)).isTrue();
+        assertThat(encoder.upgradeEncoding(current)).isFalse();
+        assertThat(encoder.upgradeEncoding(stronger)).isFalse();
+        assertThat(encoder.upgradeEncoding("{noop}plain")).isFalse();
+
+        encoder.setStrength(6);
+        assertThat(encoder.upgradeEncoding(current)).isTrue();
+        assertThat(encoder.encode("secret")).startsWith("$2a$06$");
+    }
+
+    @Test
+    void rejectsFastWhenQueueIsFull() throws Exception {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setThreads(1);
+        properties.setQueueCapacity(1);
+        encoder = new OffloadingPasswordEncoder(properties, 12);
+        String hash = new BCryptPasswordEncoder(12).encode("secret");
+
+        int callers = 6;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService callerPool = Executors.newFixedThreadPool(callers);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(callerPool.submit(() -> {
+                start.await();
+                try {
+                    return encoder.matches("secret", hash);
+                } catch (PasswordHashingBusyException e) {
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+
+        int rejected = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS) == null) {
+                rejected++;
+            }
+        }
+        callerPool.shutdown();
+
+        // 1个正在执行 + 1个排队，其余立即被拒绝
+        assertThat(rejected).isGreaterThanOrEqualTo(callers - 2);
+        assertThat((Long) encoder.getStatistics().get("rejected")).isEqualTo(rejected);
+    }
+
+    @Test
+    void timesOutWhenHashTakesLongerThanMaxWait() {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setMaxWaitMs(1);
+        properties.setRetryAfterSeconds(3);
+        encoder = new OffloadingPasswordEncoder(properties, 12);
+
+        assertThatThrownBy(() -> encoder.encode("secret"))
+                .isInstanceOf(PasswordHashingBusyException.class)
+                .extracting("retryAfterSeconds")
+                .isEqualTo(3L);
+    }
+}
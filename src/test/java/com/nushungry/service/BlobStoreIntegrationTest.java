@@ -0,0 +1,204 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.ImageProcessingProperties;
+import com.nushungry.model.Image;
+import com.nushungry.model.ImageProcessingJob;
+import com.nushungry.model.StoredBlob;
+import com.nushungry.repository.ImageProcessingJobRepository;
+import com.nushungry.repository.ImageRepository;
+import com.nushungry.repository.StoredBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class BlobStoreIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ImageProcessingJobRepository imageProcessingJobRepository;
+
+    @Autowired
+    private ImageProcessingJobService imageProcessingJobService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageProcessingProperties imageProcessingProperties;
+
+    @BeforeEach
+    void setUp() {
+        imageProcessingProperties.setEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingProperties.setEnabled(true);
+        imageProcessingJobRepository.deleteAll();
+        imageRepository.deleteAll();
+        storedBlobRepository.deleteAll();
+    }
+
+    @Test
+    void storesIdenticalContentOnceAndCountsReferences() throws IOException {
+        StoredBlob first = blobStoreService.store(jpeg("menu.jpg", Color.RED));
+        StoredBlob second = blobStoreService.store(jpeg("menu-copy.jpg", Color.RED));
+
+        assertThat(second.getId()).isEqualTo(first.getId());
+        assertThat(second.getUrl()).isEqualTo(first.getUrl()).startsWith("/uploads/images/cas/");
+        assertThat(storedBlobRepository.count()).isEqualTo(1);
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(first.getUrl()))).isTrue();
+
+        blobStoreService.retain(first.getUrl());
+        blobStoreService.retain(first.getUrl());
+        assertThat(reload(first).getRefCount()).isEqualTo(2);
+        assertThat(reload(first).getUnreferencedSince()).isNull();
+
+        blobStoreService.release(first.getUrl());
+        blobStoreService.release(first.getUrl());
+        blobStoreService.release(first.getUrl());
+        assertThat(reload(first).getRefCount()).isZero();
+        assertThat(reload(first).getUnreferencedSince()).isNotNull();
+    }
+
+    @Test
+    void collectsOnlyUnreferencedBlobsPastGracePeriod() throws IOException {
+        StoredBlob orphan = blobStoreService.store(jpeg("orphan.jpg", Color.BLUE));
+        StoredBlob untracked = blobStoreService.store(jpeg("untracked.jpg", Color.GREEN));
+        StoredBlob recent = blobStoreService.store(jpeg("recent.jpg", Color.YELLOW));
+        backdate(orphan);
+        backdate(untracked);
+        // 引用记录存在但引用数没有增加（例如绕过服务直接写入的记录）
+        Image image = new Image();
+        image.setImageUrl(untracked.getUrl());
+        imageRepository.save(image);
+
+        blobStoreService.collectGarbage();
+
+        assertThat(storedBlobRepository.findById(orphan.getId())).isEmpty();
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(orphan.getUrl()))).isFalse();
+        assertThat(reload(untracked).getRefCount()).isEqualTo(1);
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(untracked.getUrl()))).isTrue();
+        assertThat(storedBlobRepository.findById(recent.getId())).isPresent();
+    }
+
+    @Test
+    void deleteReleasesOnlyCallersReferenceAndLeavesRemovalToGarbageCollection() throws IOException {
+        StoredBlob blob = blobStoreService.store(jpeg("shared.jpg", Color.MAGENTA));
+        Image image = new Image();
+        image.setImageUrl(blob.getUrl());
+        imageRepository.save(image);
+        // 图片记录一个引用 + 上传者一个引用
+        blobStoreService.retain(blob.getUrl(), blob.getUrl());
+
+        assertThat(blobStoreService.delete(blob.getUrl())).isFalse();
+        assertThat(reload(blob).getRefCount()).isEqualTo(1);
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(blob.getUrl()))).isTrue();
+
+        imageRepository.delete(image);
+        blobStoreService.release(blob.getUrl());
+        assertThat(blobStoreService.delete(blob.getUrl())).isTrue();
+        assertThat(reload(blob).getRefCount()).isZero();
+
+        // 宽限期内不回收
+        blobStoreService.collectGarbage();
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(blob.getUrl()))).isTrue();
+
+        backdate(blob);
+        blobStoreService.collectGarbage();
+        assertThat(storedBlobRepository.findById(blob.getId())).isEmpty();
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(blob.getUrl()))).isFalse();
+    }
+
+    @Test
+    void reusesProcessedVariantsForDuplicateUploads() throws IOException {
+        StoredBlob blob = blobStoreService.store(jpeg("dish.jpg", Color.ORANGE));
+        ImageProcessingJob firstJob = imageProcessingJobService.enqueue(blob.getUrl(), null);
+        imageProcessingJobService.processPending();
+        long cacheHits = (long) blobStoreService.getStatistics().get("variantCacheHits");
+
+        StoredBlob duplicate = blobStoreService.store(jpeg("dish-again.jpg", Color.ORANGE));
+        ImageProcessingJob secondJob = imageProcessingJobService.enqueue(duplicate.getUrl(), null);
+        imageProcessingJobService.processPending();
+
+        assertThat(blobStoreService.getStatistics().get("variantCacheHits")).isEqualTo(cacheHits + 1);
+        assertThat(imageProcessingJobRepository.findById(secondJob.getId()).orElseThrow().getVariants())
+                .isEqualTo(imageProcessingJobRepository.findById(firstJob.getId()).orElseThrow().getVariants())
+                .isEqualTo(reload(blob).getVariants());
+    }
+
+    @Test
+    void reusesSynchronousProcessingResultsForDuplicateUploads() throws IOException {
+        ImageProcessingService.ImageProcessingResult first =
+                blobStoreService.storeProcessed(jpeg("noodles.jpg", Color.CYAN), true);
+        long cacheHits = (long) blobStoreService.getStatistics().get("processedCacheHits");
+        long blobs = storedBlobRepository.count();
+
+        ImageProcessingService.ImageProcessingResult second =
+                blobStoreService.storeProcessed(jpeg("noodles-again.jpg", Color.CYAN), true);
+
+        assertThat(first.getOriginalUrl()).startsWith("/uploads/images/cas/");
+        assertThat(first.getThumbnailUrl()).startsWith("/uploads/images/cas/");
+        assertThat(second.getOriginalUrl()).isEqualTo(first.getOriginalUrl());
+        assertThat(second.getThumbnailUrl()).isEqualTo(first.getThumbnailUrl());
+        assertThat(blobStoreService.getStatistics().get("processedCacheHits")).isEqualTo(cacheHits + 1);
+        assertThat(storedBlobRepository.count()).isEqualTo(blobs);
+
+        // 处理结果与其他内容寻址文件一样计算引用
+        blobStoreService.retain(second.getOriginalUrl());
+        assertThat(storedBlobRepository.findByUrl(first.getOriginalUrl()).orElseThrow().getRefCount()).isEqualTo(1);
+
+        // 缩略图缺失时重新处理，压缩图仍然复用
+        assertThat(fileStorageService.deleteFile(first.getThumbnailUrl())).isTrue();
+        ImageProcessingService.ImageProcessingResult third =
+                blobStoreService.storeProcessed(jpeg("noodles-third.jpg", Color.CYAN), true);
+        assertThat(third.getOriginalUrl()).isEqualTo(first.getOriginalUrl());
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(third.getThumbnailUrl()))).isTrue();
+    }
+
+    private StoredBlob reload(StoredBlob blob) {
+        return storedBlobRepository.findById(blob.getId()).orElseThrow();
+    }
+
+    private void backdate(StoredBlob blob) {
+        StoredBlob stored = reload(blob);
+        stored.setUnreferencedSince(LocalDateTime.now().minusDays(2));
+        storedBlobRepository.save(stored);
+    }
+
+    private static MockMultipartFile jpeg(String name, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(1000, 500, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 1000, 500);
+        graphics.dispose();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return new MockMultipartFile("file", name, "image/jpeg", output.toByteArray());
+    }
+}
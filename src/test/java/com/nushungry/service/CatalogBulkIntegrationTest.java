@@ -0,0 +1,241 @@
+package com.nushungry.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.CatalogBulkProperties;
+import com.nushungry.model.Cafeteria;
+import com.nushungry.model.Review;
+import com.nushungry.model.Stall;
+import com.nushungry.model.User;
+import com.nushungry.repository.CafeteriaRepository;
+import com.nushungry.repository.ReviewRepository;
+import com.nushungry.repository.StallRepository;
+import com.nushungry.repository.UserRepository;
+import com.nushungry.util.CsvReader;
+import com.nushungry.util.CsvWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class CatalogBulkIntegrationTest extends IntegrationTestBase {
+
+    private static final String PREFIX = "Bulk ";
+
+    @Autowired
+    private CatalogBulkService catalogBulkService;
+
+    @Autowired
+    private CatalogBulkProperties catalogBulkProperties;
+
+    @Autowired
+    private CafeteriaRepository cafeteriaRepository;
+
+    @Autowired
+    private StallRepository stallRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        // 小批次以覆盖跨批次的自然键匹配
+        catalogBulkProperties.setBatchSize(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        catalogBulkProperties.setBatchSize(500);
+        jdbcTemplate.update("DELETE FROM review WHERE stall_id IN (SELECT id FROM stall WHERE name LIKE ?)", PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM stall WHERE name LIKE ?", PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM cafeteria WHERE name LIKE ?", PREFIX + "%");
+        jdbcTemplate.update("DELETE FROM users WHERE username = ?", "bulk_reviewer");
+    }
+
+    @Test
+    void importsCafeteriasFromJsonWithDryRunAndUpsert() throws IOException {
+        String json = "[" +
+                "{\"name\": \"Bulk Deck\", \"location\": \"Arts\", \"latitude\": 1.29, \"longitude\": 103.77, \"seatingCapacity\": 500}," +
+                "{\"name\": \"Bulk Frontier\", \"location\": \"Science\"}," +
+                "{\"name\": \"  \"}," +
+                "{\"name\": \"Bulk Techno\", \"latitude\": 91}," +
+                "{\"name\": \"Bulk Summit\", \"seatingCapacity\": \"many\"}," +
+                "{\"name\": \"Bulk Deck\", \"description\": \"Latest row wins\"}" +
+                "]";
+
+        Map<String, Object> dryRun = catalogBulkService.importCatalog(CatalogBulkService.Entity.CAFETERIAS,
+                CatalogBulkService.Format.JSON, stream(json), true);
+
+        assertThat(dryRun).containsEntry("rows", 6L).containsEntry("inserted", 2L)
+                .containsEntry("updated", 1L).containsEntry("duplicates", 1L).containsEntry("rejected", 3L);
+        assertThat(errors(dryRun)).extracting(error -> error.get("row")).containsExactly(3L, 4L, 5L);
+        assertThat(cafeteriaRepository.findAll()).noneMatch(c -> c.getName().startsWith(PREFIX));
+
+        Map<String, Object> applied = catalogBulkService.importCatalog(CatalogBulkService.Entity.CAFETERIAS,
+                CatalogBulkService.Format.JSON, stream(json), false);
+
+        assertThat(applied).containsEntry("inserted", 2L).containsEntry("updated", 1L).containsEntry("rejected", 3L);
+        Cafeteria deck = cafeteria("Bulk Deck");
+        assertThat(deck.getDescription()).isEqualTo("Latest row wins");
+        assertThat(deck.getLocation()).isEqualTo("Arts");
+        assertThat(deck.getSeatingCapacity()).isEqualTo(500);
+        assertThat(cafeteria("Bulk Frontier").getLatitude()).isZero();
+
+        // 再次导入按名称更新，缺省字段保留原值
+        Map<String, Object> update = catalogBulkService.importCatalog(CatalogBulkService.Entity.CAFETERIAS,
+                CatalogBulkService.Format.JSON, stream("[{\"name\": \"Bulk Deck\", \"location\": \"UTown\"}]"), false);
+
+        assertThat(update).containsEntry("inserted", 0L).containsEntry("updated", 1L);
+        deck = cafeteria("Bulk Deck");
+        assertThat(deck.getLocation()).isEqualTo("UTown");
+        assertThat(deck.getDescription()).isEqualTo("Latest row wins");
+
+        // 自然键不区分大小写和首尾空白，与数据库排序规则无关
+        Map<String, Object> caseInsensitive = catalogBulkService.importCatalog(CatalogBulkService.Entity.CAFETERIAS,
+                CatalogBulkService.Format.JSON, stream("[{\"name\": \" bulk DECK \", \"location\": \"Kent\"}]"), false);
+
+        assertThat(caseInsensitive).containsEntry("inserted", 0L).containsEntry("updated", 1L);
+        assertThat(cafeteria("Bulk Deck").getLocation()).isEqualTo("Kent");
+        assertThat(cafeteriaRepository.findAll()).filteredOn(c -> c.getName().equalsIgnoreCase("bulk deck")).hasSize(1);
+
+        assertThatThrownBy(() -> catalogBulkService.importCatalog(CatalogBulkService.Entity.CAFETERIAS,
+                CatalogBulkService.Format.JSON, stream("[{\"name\": \"Bulk Broken\"}, {"), false))
+                .isInstanceOf(IOException.class);
+        assertThat(cafeteriaRepository.findAll()).noneMatch(c -> c.getName().equals("Bulk Broken"));
+    }
+
+    @Test
+    void importsStallsFromCsvRecalculatesAggregatesAndExportsRoundTrip() throws IOException {
+        Cafeteria cafeteria = new Cafeteria();
+        cafeteria.setName("Bulk Terrace");
+        cafeteria = cafeteriaRepository.save(cafeteria);
+        Stall existing = new Stall();
+        existing.setName("Bulk Chicken Rice");
+        existing.setCafeteria(cafeteria);
+        existing = stallRepository.save(existing);
+        User reviewer = new User();
+        reviewer.setUsername("bulk_reviewer");
+        reviewer.setEmail("bulk_reviewer@test.com");
+        reviewer.setPassword("secret");
+        reviewer = userRepository.save(reviewer);
+        review(existing, reviewer, 4.0, 12.0, 2);
+        review(existing, reviewer, 5.0, 9.0, 1);
+        review(existing, reviewer, 3.0, null, null);
+
+        String csv = "name,cafeteria,cuisineType,contact,latitude\r\n" +
+                "Bulk Chicken Rice,Bulk Terrace,Chinese,,\r\n" +
+                "\"Bulk Noodles, Soup\",Bulk Terrace,\"Say \"\"hi\"\"\",8123 4567,1.3\r\n" +
+                "Bulk Waffles,,Dessert,,\r\n" +
+                "Bulk Ghost,Bulk Nowhere,Western,,\r\n" +
+                "Bulk Short,Bulk Terrace\r\n";
+
+        Map<String, Object> result = catalogBulkService.importCatalog(CatalogBulkService.Entity.STALLS,
+                CatalogBulkService.Format.CSV, stream(csv), false);
+
+        assertThat(result).containsEntry("rows", 5L).containsEntry("inserted", 2L).containsEntry("updated", 1L)
+                .containsEntry("rejected", 2L).containsEntry("aggregatesRecalculated", 1L);
+        assertThat(errors(result)).extracting(error -> error.get("message"))
+                .containsExactly("Unknown cafeteria: Bulk Nowhere", "Expected 5 columns but found 2");
+
+        Stall updated = stallRepository.findById(existing.getId()).orElseThrow();
+        assertThat(updated.getCuisineType()).isEqualTo("Chinese");
+        assertThat(updated.getReviewCount()).isEqualTo(3);
+        assertThat(updated.getAverageRating()).isEqualTo(4.0);
+        assertThat(updated.getAveragePrice()).isEqualTo(7.5);
+
+        ByteArrayOutputStream csvOut = new ByteArrayOutputStream();
+        catalogBulkService.exportCatalog(CatalogBulkService.Entity.STALLS, CatalogBulkService.Format.CSV, csvOut);
+        CsvReader reader = new CsvReader(new StringReader(csvOut.toString(StandardCharsets.UTF_8)));
+        List<String> header = reader.readRecord();
+        List<List<String>> exported = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.readRecord()) != null) {
+            if (record.get(header.indexOf("name")).startsWith(PREFIX)) {
+                exported.add(record);
+            }
+        }
+        assertThat(exported).hasSize(3);
+        assertThat(exported).anySatisfy(row -> {
+            assertThat(row.get(header.indexOf("name"))).isEqualTo("Bulk Noodles, Soup");
+            assertThat(row.get(header.indexOf("cuisineType"))).isEqualTo("Say \"hi\"");
+            assertThat(row.get(header.indexOf("cafeteria"))).isEqualTo("Bulk Terrace");
+        });
+
+        // 导出的行可直接再导入，全部按自然键匹配为更新
+        StringWriter reimportCsv = new StringWriter();
+        CsvWriter writer = new CsvWriter(reimportCsv);
+        writer.writeRecord(header.toArray());
+        for (List<String> row : exported) {
+            writer.writeRecord(row.toArray());
+        }
+        Map<String, Object> reimport = catalogBulkService.importCatalog(CatalogBulkService.Entity.STALLS,
+                CatalogBulkService.Format.CSV, stream(reimportCsv.toString()), true);
+        assertThat(reimport).containsEntry("inserted", 0L).containsEntry("updated", 3L)
+                .containsEntry("rejected", 0L);
+
+        Map<String, Object> caseInsensitive = catalogBulkService.importCatalog(CatalogBulkService.Entity.STALLS,
+                CatalogBulkService.Format.CSV, stream("name,cafeteria,cuisineType\r\nBULK CHICKEN RICE,bulk terrace,Hainanese\r\n"),
+                false);
+        assertThat(caseInsensitive).containsEntry("inserted", 0L).containsEntry("updated", 1L);
+        assertThat(stallRepository.findById(existing.getId()).orElseThrow().getCuisineType()).isEqualTo("Hainanese");
+
+        ByteArrayOutputStream jsonOut = new ByteArrayOutputStream();
+        catalogBulkService.exportCatalog(CatalogBulkService.Entity.CAFETERIAS, CatalogBulkService.Format.JSON, jsonOut);
+        List<Map<String, Object>> cafeterias = objectMapper.readValue(jsonOut.toByteArray(), new TypeReference<>() {
+        });
+        assertThat(cafeterias).anySatisfy(row -> assertThat(row).containsEntry("name", "Bulk Terrace"));
+    }
+
+    private void review(Stall stall, User user, double rating, Double totalCost, Integer people) {
+        Review review = new Review();
+        review.setStall(stall);
+        review.setUser(user);
+        review.setRating(rating);
+        review.setTotalCost(totalCost);
+        review.setNumberOfPeople(people);
+        reviewRepository.save(review);
+    }
+
+    private Cafeteria cafeteria(String name) {
+        return cafeteriaRepository.findAll().stream()
+                .filter(c -> name.equals(c.getName()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> errors(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("errors");
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
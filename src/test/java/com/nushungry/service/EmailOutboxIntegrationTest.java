@@ -0,0 +1,140 @@
+package com.nushungry.service;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.MailOutboxProperties;
+import com.nushungry.model.EmailDeadLetter;
+import com.nushungry.model.EmailOutbox;
+import com.nushungry.model.EmailOutboxStatus;
+import com.nushungry.repository.EmailDeadLetterRepository;
+import com.nushungry.repository.EmailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class EmailOutboxIntegrationTest extends IntegrationTestBase {
+
+    /**
+     * 本地SMTP服务器，端口与 IntegrationTestBase 中的 spring.mail.port 一致
+     */
+    private final GreenMail smtpServer = new GreenMail(new ServerSetup(2525, null, ServerSetup.PROTOCOL_SMTP))
+            .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailDeadLetterRepository emailDeadLetterRepository;
+
+    @Autowired
+    private MailOutboxProperties mailOutboxProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @DynamicPropertySource
+    static void configureMail(DynamicPropertyRegistry registry) {
+        registry.add("spring.mail.properties.mail.smtp.auth", () -> "false");
+        registry.add("spring.mail.properties.mail.smtp.starttls.enable", () -> "false");
+    }
+
+    @BeforeEach
+    void setUp() {
+        smtpServer.start();
+        emailOutboxRepository.deleteAll();
+        emailDeadLetterRepository.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        smtpServer.stop();
+        mailOutboxProperties.setEnabled(true);
+        mailOutboxProperties.setMaxAttempts(5);
+        mailOutboxProperties.setInitialBackoffMs(30000);
+    }
+
+    @Test
+    void queuedEmailIsDeliveredAfterCommit() throws Exception {
+        transactionTemplate.executeWithoutResult(status ->
+                emailService.sendPasswordResetCode("student@u.nus.edu", "123456"));
+
+        assertThat(smtpServer.waitForIncomingEmail(10000, 1)).isTrue();
+        MimeMessage[] received = smtpServer.getReceivedMessages();
+        assertThat(received).hasSize(1);
+        assertThat(received[0].getAllRecipients()[0].toString()).isEqualTo("student@u.nus.edu");
+        assertThat(received[0].getContent().toString()).contains("123456");
+
+        // 邮件送达后发送线程才更新状态
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emailOutboxRepository.countByStatus(EmailOutboxStatus.SENT) == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        List<EmailOutbox> outbox = emailOutboxRepository.findAll();
+        assertThat(outbox).hasSize(1);
+        assertThat(outbox.get(0).getStatus()).isEqualTo(EmailOutboxStatus.SENT);
+        assertThat(outbox.get(0).getSentAt()).isNotNull();
+    }
+
+    @Test
+    void rolledBackTransactionDoesNotSend() {
+        transactionTemplate.executeWithoutResult(status -> {
+            emailService.sendPasswordResetCode("student@u.nus.edu", "654321");
+            status.setRollbackOnly();
+        });
+
+        assertThat(emailOutboxRepository.count()).isZero();
+        assertThat(emailOutboxDispatcher.dispatchPending()).isZero();
+        assertThat(smtpServer.getReceivedMessages()).isEmpty();
+    }
+
+    @Test
+    void failedEmailIsRetriedThenDeadLettered() throws InterruptedException {
+        // 关闭后台线程，由测试线程同步驱动发送；等待已启动的线程退出，避免抢先领取邮件
+        mailOutboxProperties.setEnabled(false);
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((int) emailOutboxDispatcher.getStatistics().get("activeWorkers") > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        mailOutboxProperties.setMaxAttempts(2);
+        mailOutboxProperties.setInitialBackoffMs(0);
+        smtpServer.stop();
+
+        emailService.sendPasswordResetCode("student@u.nus.edu", "111111");
+
+        assertThat(emailOutboxDispatcher.dispatchPending()).isEqualTo(2);
+
+        assertThat(emailOutboxRepository.count()).isZero();
+        List<EmailDeadLetter> deadLetters = emailDeadLetterRepository.findAll();
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0).getAttempts()).isEqualTo(2);
+        assertThat(deadLetters.get(0).getLastError()).isNotBlank();
+
+        // 恢复SMTP后重新投递
+        smtpServer.start();
+        assertThat(emailOutboxDispatcher.requeueDeadLetter(deadLetters.get(0).getId())).isTrue();
+        assertThat(emailOutboxDispatcher.dispatchPending()).isEqualTo(1);
+        assertThat(smtpServer.getReceivedMessages()).hasSize(1);
+        assertThat(emailDeadLetterRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,254 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.FileDeletionProperties;
+import com.nushungry.config.ImageProcessingProperties;
+import com.nushungry.model.FileDeletion;
+import com.nushungry.model.FileDeletionStatus;
+import com.nushungry.model.Image;
+import com.nushungry.model.ImageProcessingJob;
+import com.nushungry.model.ImageProcessingJobStatus;
+import com.nushungry.model.StoredBlob;
+import com.nushungry.repository.FileDeletionRepository;
+import com.nushungry.repository.ImageProcessingJobRepository;
+import com.nushungry.repository.ImageRepository;
+import com.nushungry.repository.StoredBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class FileDeletionIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private FileDeletionService fileDeletionService;
+
+    @Autowired
+    private FileDeletionRepository fileDeletionRepository;
+
+    @Autowired
+    private FileDeletionProperties fileDeletionProperties;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ImageProcessingJobRepository imageProcessingJobRepository;
+
+    @Autowired
+    private ImageProcessingProperties imageProcessingProperties;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    void setUp() {
+        // 由测试线程直接驱动删除
+        fileDeletionProperties.setEnabled(false);
+        imageProcessingProperties.setEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileDeletionProperties.setEnabled(true);
+        fileDeletionProperties.setInitialBackoffMs(30000);
+        imageProcessingProperties.setEnabled(true);
+        fileDeletionRepository.deleteAll();
+        imageProcessingJobRepository.deleteAll();
+        imageRepository.deleteAll();
+        storedBlobRepository.deleteAll();
+    }
+
+    @Test
+    void deletesRowsImmediatelyAndFilesInBackground() throws IOException {
+        FileStorageService.StoredFile original = writeImage();
+        Path alternate = sibling(original.path(), "webp");
+        Files.write(alternate, new byte[]{1});
+        FileStorageService.StoredFile thumbnail = fileStorageService.newThumbnailFile("jpg");
+        Files.write(thumbnail.path(), new byte[]{1});
+        FileStorageService.StoredFile variant = writeImage();
+        Image legacy = saveImage(original.url(), thumbnail.url());
+        ImageProcessingJob job = new ImageProcessingJob();
+        job.setSourceUrl(original.url());
+        job.setImageId(legacy.getId());
+        job.setStatus(ImageProcessingJobStatus.COMPLETED);
+        job.setVariants(Map.of(800, variant.url()));
+        imageProcessingJobRepository.save(job);
+
+        StoredBlob blob = blobStoreService.store(jpeg());
+        Image shared = saveImage(blob.getUrl(), null);
+        blobStoreService.retain(blob.getUrl());
+
+        List<Long> deleted = imageService.deleteImages(List.of(legacy.getId(), shared.getId(), -1L));
+
+        assertThat(deleted).containsExactlyInAnyOrder(legacy.getId(), shared.getId());
+        assertThat(imageRepository.count()).isZero();
+        assertThat(imageProcessingJobRepository.count()).isZero();
+        // 文件只写入删除任务，内容寻址文件只减少引用数
+        assertThat(Files.exists(original.path())).isTrue();
+        assertThat(fileDeletionRepository.findAll()).extracting(FileDeletion::getUrl)
+                .containsExactlyInAnyOrder(original.url(), thumbnail.url(), variant.url());
+        assertThat(storedBlobRepository.findById(blob.getId()).orElseThrow().getRefCount()).isZero();
+
+        assertThat(fileDeletionService.deletePending()).isEqualTo(3);
+
+        assertThat(Files.exists(original.path())).isFalse();
+        assertThat(Files.exists(alternate)).isFalse();
+        assertThat(Files.exists(thumbnail.path())).isFalse();
+        assertThat(Files.exists(variant.path())).isFalse();
+        assertThat(Files.exists(fileStorageService.resolveImageUrl(blob.getUrl()))).isTrue();
+        assertThat(fileDeletionRepository.count()).isZero();
+    }
+
+    @Test
+    void retriesFailedDeletionsAndKeepsReferencedFiles() throws IOException {
+        fileDeletionProperties.setInitialBackoffMs(0);
+        // 非空目录无法删除，模拟删除失败
+        FileStorageService.StoredFile blocked = fileStorageService.newImageFile("jpg", false);
+        Files.createDirectories(blocked.path());
+        Files.write(blocked.path().resolve("inner"), new byte[]{1});
+        FileStorageService.StoredFile referenced = writeImage();
+        saveImage(referenced.url(), null);
+
+        fileDeletionService.enqueue(List.of(blocked.url(), referenced.url()));
+        fileDeletionService.deletePending();
+
+        FileDeletion failed = fileDeletionRepository.findAll().get(0);
+        assertThat(fileDeletionRepository.count()).isEqualTo(1);
+        assertThat(failed.getUrl()).isEqualTo(blocked.url());
+        assertThat(failed.getStatus()).isEqualTo(FileDeletionStatus.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(fileDeletionProperties.getMaxAttempts());
+        assertThat(failed.getLastError()).isNotBlank();
+        assertThat(Files.exists(referenced.path())).isTrue();
+
+        Files.delete(blocked.path().resolve("inner"));
+        assertThat(fileDeletionService.retryFailed()).isEqualTo(1);
+        fileDeletionService.deletePending();
+
+        assertThat(Files.exists(blocked.path())).isFalse();
+        assertThat(fileDeletionRepository.count()).isZero();
+    }
+
+    @Test
+    void orphanScanEnqueuesOnlyUnreferencedFilesPastGracePeriod() throws IOException {
+        FileStorageService.StoredFile orphan = backdate(writeImage());
+        Path orphanAlternate = sibling(orphan.path(), "webp");
+        Files.write(orphanAlternate, new byte[]{1});
+        Files.setLastModifiedTime(orphanAlternate, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        FileStorageService.StoredFile referenced = backdate(writeImage());
+        saveImage(referenced.url(), null);
+        FileStorageService.StoredFile variant = backdate(writeImage());
+        ImageProcessingJob job = new ImageProcessingJob();
+        job.setSourceUrl(referenced.url());
+        job.setStatus(ImageProcessingJobStatus.COMPLETED);
+        job.setVariants(Map.of(800, variant.url()));
+        imageProcessingJobRepository.save(job);
+        FileStorageService.StoredFile recent = writeImage();
+        List<String> urls = List.of(orphan.url(), referenced.url(), variant.url(), recent.url(),
+                fileStorageService.toUploadUrl(orphanAlternate));
+
+        Map<String, Object> dryRun = fileDeletionService.scanOrphans(true);
+        assertThat((long) dryRun.get("orphanFiles")).isPositive();
+        assertThat(dryRun.get("enqueued")).isEqualTo(0L);
+        assertThat(fileDeletionRepository.findQueuedUrls(urls)).isEmpty();
+
+        fileDeletionService.scanOrphans(false);
+        assertThat(fileDeletionRepository.findQueuedUrls(urls)).containsExactly(orphan.url());
+
+        fileDeletionService.deletePending();
+        assertThat(Files.exists(orphan.path())).isFalse();
+        assertThat(Files.exists(orphanAlternate)).isFalse();
+        assertThat(Files.exists(referenced.path())).isTrue();
+        assertThat(Files.exists(variant.path())).isTrue();
+        assertThat(Files.exists(recent.path())).isTrue();
+    }
+
+    @Test
+    void keepsSourceOfRunningJobAndReclaimsItsOutputAsOrphans() throws IOException {
+        FileStorageService.StoredFile source = backdate(writeImage());
+        Image image = saveImage(source.url(), null);
+        ImageProcessingJob job = new ImageProcessingJob();
+        job.setSourceUrl(source.url());
+        job.setImageId(image.getId());
+        job.setStatus(ImageProcessingJobStatus.PROCESSING);
+        job = imageProcessingJobRepository.save(job);
+
+        imageService.deleteImages(List.of(image.getId()));
+
+        // 任务仍在读取原图，不写入删除任务
+        assertThat(fileDeletionRepository.count()).isZero();
+        assertThat(imageProcessingJobRepository.findById(job.getId())).isPresent();
+
+        // 任务在图片删除后完成，生成的文件不算被引用
+        FileStorageService.StoredFile variant = backdate(writeImage());
+        job.setStatus(ImageProcessingJobStatus.COMPLETED);
+        job.setVariants(Map.of(800, variant.url()));
+        imageProcessingJobRepository.save(job);
+
+        fileDeletionService.scanOrphans(false);
+        assertThat(fileDeletionRepository.findQueuedUrls(List.of(source.url(), variant.url())))
+                .containsExactlyInAnyOrder(source.url(), variant.url());
+    }
+
+    private Image saveImage(String imageUrl, String thumbnailUrl) {
+        Image image = new Image();
+        image.setImageUrl(imageUrl);
+        image.setThumbnailUrl(thumbnailUrl);
+        return imageRepository.save(image);
+    }
+
+    private FileStorageService.StoredFile writeImage() throws IOException {
+        FileStorageService.StoredFile file = fileStorageService.newImageFile("jpg", true);
+        Files.write(file.path(), new byte[]{1, 2, 3});
+        return file;
+    }
+
+    private static FileStorageService.StoredFile backdate(FileStorageService.StoredFile file) throws IOException {
+        Files.setLastModifiedTime(file.path(), FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        return file;
+    }
+
+    private static Path sibling(Path file, String extension) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.lastIndexOf('.')) + "." + extension);
+    }
+
+    private static MockMultipartFile jpeg() throws IOException {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.MAGENTA);
+        graphics.fillRect(0, 0, 64, 64);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return new MockMultipartFile("file", "shared.jpg", "image/jpeg", out.toByteArray());
+    }
+}
@@ -0,0 +1,93 @@
+package com.nushungry.service;
+
+import com.nushungry.config.FileStorageProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileStorageServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private FileStorageProperties properties;
+    private FileStorageService fileStorageService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new FileStorageProperties();
+        properties.setUploadDir(uploadDir.toString());
+        // 小缓冲区，确保文件分多块写入
+        properties.setIngestBufferBytes(1024);
+        fileStorageService = new FileStorageService(properties);
+    }
+
+    @Test
+    void streamsUploadToDiskWithDigestAndSniffedExtension() throws Exception {
+        byte[] png = png(400, 300);
+        MockMultipartFile file = new MockMultipartFile("file", "photo.jpeg", "image/jpeg", png);
+
+        FileStorageService.StoredUpload upload = fileStorageService.ingest(file, true);
+
+        assertThat(upload.contentType()).isEqualTo("image/png");
+        assertThat(upload.url()).startsWith("/uploads/images/").endsWith(".png");
+        assertThat(upload.size()).isEqualTo(png.length);
+        assertThat(upload.sha256()).isEqualTo(sha256(png));
+        assertThat(Files.readAllBytes(upload.path())).isEqualTo(png);
+        assertThat(fileStorageService.resolveImageUrl(upload.url())).isEqualTo(upload.path());
+    }
+
+    @Test
+    void rejectsContentThatIsNotAnImageAndLeavesNoPartialFile() throws IOException {
+        MockMultipartFile fake = new MockMultipartFile("file", "fake.jpg", "image/jpeg",
+                "<html>not an image</html>".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> fileStorageService.ingest(fake, false))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("fake.jpg");
+        try (Stream<Path> files = Files.walk(uploadDir)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void sniffsSupportedImageFormats() {
+        assertThat(FileStorageService.sniffImageType(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, 3))
+                .isEqualTo("image/jpeg");
+        assertThat(FileStorageService.sniffImageType("GIF89a".getBytes(StandardCharsets.US_ASCII), 6))
+                .isEqualTo("image/gif");
+        assertThat(FileStorageService.sniffImageType("RIFF\0\0\0\0WEBP".getBytes(StandardCharsets.US_ASCII), 12))
+                .isEqualTo("image/webp");
+        assertThat(FileStorageService.sniffImageType(new byte[]{(byte) 0xFF, (byte) 0xD8}, 2)).isNull();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, x % height, 0xFF8800);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
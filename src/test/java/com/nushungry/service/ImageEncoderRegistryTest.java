@@ -0,0 +1,144 @@
+package com.nushungry.service;
+
+import com.nushungry.config.ImageEncodingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageEncoderRegistryTest {
+
+    private ImageEncodingProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ImageEncodingProperties();
+    }
+
+    @Test
+    void picksLowestJpegQualityThatReachesTargetSsim() throws IOException {
+        properties.setTargetSsim(0.99);
+        properties.setMaxBytesPerPixel(0);
+        ImageEncoderRegistry registry = new ImageEncoderRegistry(properties, List.of());
+        BufferedImage photo = photo(640, 480);
+
+        ImageEncoderRegistry.EncodedImage tuned = registry.encode(photo, registry.primary(), 0.85f);
+        byte[] fixed = registry.primary().encode(photo, properties.getMaxQuality());
+
+        assertThat(tuned.encoder().format()).isEqualTo("jpeg");
+        assertThat(tuned.quality()).isBetween(properties.getMinQuality(), properties.getMaxQuality() - 0.05f);
+        assertThat(tuned.bytes().length).isLessThan(fixed.length);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(tuned.bytes()));
+        assertThat(ImageEncoderRegistry.meanSsim(ImageEncoderRegistry.luma(photo), ImageEncoderRegistry.luma(decoded),
+                640, 480)).isGreaterThanOrEqualTo(properties.getTargetSsim());
+    }
+
+    @Test
+    void lowersQualityUntilOutputFitsByteBudget() throws IOException {
+        properties.setTargetSsim(0.99);
+        properties.setMaxBytesPerPixel(0.05);
+        ImageEncoderRegistry registry = new ImageEncoderRegistry(properties, List.of());
+        BufferedImage photo = photo(640, 480);
+
+        ImageEncoderRegistry.EncodedImage encoded = registry.encode(photo, registry.primary(), 0.85f);
+
+        assertThat(encoded.bytes().length).isLessThanOrEqualTo((int) (0.05 * 640 * 480));
+        assertThat(encoded.quality()).isGreaterThanOrEqualTo(properties.getMinQuality());
+    }
+
+    @Test
+    void neverExceedsConfiguredQualityAndBoundsTrialEncodes() throws IOException {
+        properties.setTargetSsim(0.999);
+        properties.setMaxBytesPerPixel(0.01);
+        properties.setMaxTrialEncodes(4);
+        ImageEncoderRegistry registry = new ImageEncoderRegistry(properties, List.of());
+
+        ImageEncoderRegistry.EncodedImage encoded = registry.encode(photo(320, 240), registry.primary(), 0.6f);
+
+        assertThat(encoded.quality()).isBetween(properties.getMinQuality(), 0.6f);
+        assertThat((long) registry.getStatistics().get("trialEncodes")).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void usesFixedQualityWhenTuningIsDisabledAndRegistersPluggedEncoders() throws IOException {
+        properties.setTargetSsim(0);
+        properties.setMaxBytesPerPixel(0);
+        ImageEncoder webp = new FixedBytesEncoder("webp", new byte[]{'R', 'I', 'F', 'F'});
+        ImageEncoderRegistry registry = new ImageEncoderRegistry(properties, List.of(webp));
+
+        assertThat(registry.alternates()).containsExactly(webp);
+        assertThat(registry.findByExtension("WEBP")).isSameAs(webp);
+        assertThat(registry.encode(photo(64, 64), registry.primary(), 0.7f).quality()).isEqualTo(0.7f);
+
+        properties.setPrimaryFormat("avif");
+        assertThatThrownBy(() -> new ImageEncoderRegistry(properties, List.of()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * 渐变背景加上不同颜色的图形，有平滑区域也有边缘
+     */
+    static BufferedImage photo(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.DARK_GRAY));
+        graphics.fillRect(0, 0, width, height);
+        Random random = new Random(7);
+        for (int i = 0; i < 40; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(80), 20 + random.nextInt(80));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    /**
+     * 返回固定字节的编码器，用于模拟类路径中的其他格式插件
+     */
+    static class FixedBytesEncoder implements ImageEncoder {
+
+        private final String format;
+        private final byte[] bytes;
+
+        FixedBytesEncoder(String format, byte[] bytes) {
+            this.format = format;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String format() {
+            return format;
+        }
+
+        @Override
+        public String extension() {
+            return format;
+        }
+
+        @Override
+        public String contentType() {
+            return "image/" + format;
+        }
+
+        @Override
+        public boolean supportsQuality() {
+            return false;
+        }
+
+        @Override
+        public byte[] encode(BufferedImage image, float quality) {
+            return bytes;
+        }
+    }
+}
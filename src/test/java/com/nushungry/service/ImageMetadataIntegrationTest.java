@@ -0,0 +1,194 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.ImageProcessingProperties;
+import com.nushungry.dto.AdminImageResponse;
+import com.nushungry.model.Cafeteria;
+import com.nushungry.model.Image;
+import com.nushungry.model.Stall;
+import com.nushungry.repository.CafeteriaRepository;
+import com.nushungry.repository.ImageProcessingJobRepository;
+import com.nushungry.repository.ImageRepository;
+import com.nushungry.repository.StallRepository;
+import com.nushungry.repository.StoredBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ImageMetadataIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private CafeteriaRepository cafeteriaRepository;
+
+    @Autowired
+    private StallRepository stallRepository;
+
+    @Autowired
+    private ImageProcessingJobRepository imageProcessingJobRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private ImageProcessingProperties imageProcessingProperties;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    private Cafeteria cafeteria;
+    private Stall stall;
+
+    @BeforeEach
+    void setUp() {
+        imageProcessingProperties.setEnabled(false);
+        cafeteria = new Cafeteria();
+        cafeteria.setName("Metadata Cafeteria");
+        cafeteria = cafeteriaRepository.save(cafeteria);
+        stall = new Stall();
+        stall.setName("Metadata Stall");
+        stall.setCafeteria(cafeteria);
+        stall = stallRepository.save(stall);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingProperties.setEnabled(true);
+        imageProcessingJobRepository.deleteAll();
+        imageRepository.deleteAll();
+        storedBlobRepository.deleteAll();
+        stallRepository.delete(stall);
+        cafeteriaRepository.delete(cafeteria);
+    }
+
+    @Test
+    void storesMetadataOnUploadAndBackfillsLegacyRows() throws IOException {
+        Image uploaded = imageService.uploadStallImage(stall.getId(), jpeg(120, 80, Color.RED), "tester");
+
+        assertThat(uploaded.getWidth()).isEqualTo(120);
+        assertThat(uploaded.getHeight()).isEqualTo(80);
+        assertThat(uploaded.getSizeBytes()).isPositive();
+        assertThat(uploaded.getSha256()).hasSize(64)
+                .isEqualTo(storedBlobRepository.findByUrl(uploaded.getImageUrl()).orElseThrow().getSha256());
+
+        FileStorageService.StoredFile legacyFile = fileStorageService.newImageFile("jpg", false);
+        Files.write(legacyFile.path(), jpeg(64, 32, Color.BLUE).getBytes());
+        Image legacy = new Image();
+        legacy.setImageUrl(legacyFile.url());
+        legacy = imageRepository.save(legacy);
+        Image missing = new Image();
+        missing.setImageUrl("/uploads/images/missing.jpg");
+        imageRepository.save(missing);
+
+        Map<String, Long> result = imageService.backfillMetadata();
+
+        assertThat(result).containsEntry("updated", 1L).containsEntry("unreadable", 1L);
+        Image reloaded = imageRepository.findById(legacy.getId()).orElseThrow();
+        assertThat(reloaded.getWidth()).isEqualTo(64);
+        assertThat(reloaded.getHeight()).isEqualTo(32);
+        assertThat(reloaded.getSizeBytes()).isEqualTo(Files.size(legacyFile.path()));
+        assertThat(reloaded.getSha256()).isEqualTo(fileStorageService.sha256(legacyFile.path()));
+        Files.deleteIfExists(legacyFile.path());
+    }
+
+    @Test
+    void recordsFormatForSynchronouslyCompressedUploads() throws IOException {
+        ImageProcessingService.ImageProcessingResult result =
+                imageProcessingService.processImage(jpeg(400, 300, Color.GREEN), true);
+        Image image = new Image();
+        image.setImageUrl(result.getOriginalUrl());
+        image.setThumbnailUrl(result.getThumbnailUrl());
+
+        assertThat(imageService.populateMetadata(image)).isTrue();
+        assertThat(image.getFormat()).isEqualTo("jpeg");
+        assertThat(image.getWidth()).isEqualTo(400);
+        fileStorageService.deleteFile(result.getOriginalUrl());
+        fileStorageService.deleteFile(result.getThumbnailUrl());
+    }
+
+    @Test
+    void adminPageLoadsOwnerNamesWithoutPerRowQueries() {
+        for (int i = 0; i < 5; i++) {
+            save("/uploads/images/stall-" + i + ".jpg", Image.ImageType.PHOTO, null, stall, 100L);
+        }
+        save("/uploads/images/menu.jpg", Image.ImageType.MENU, cafeteria, null, 50L);
+        save("/uploads/images/loose.jpg", Image.ImageType.PHOTO, null, null, null);
+
+        Counted<Page<AdminImageResponse>> counted = countStatements(() -> imageRepository.findAdminPage(null, null, null,
+                PageRequest.of(0, 4, Sort.by("uploadedAt").descending())));
+        Page<AdminImageResponse> page = counted.result();
+
+        assertThat(counted.statements()).isLessThanOrEqualTo(2);
+        assertThat(page.getTotalElements()).isEqualTo(7);
+        assertThat(page.getContent()).hasSize(4);
+
+        AdminImageResponse menu = imageRepository.findAdminPage(Image.ImageType.MENU, null, "%menu%",
+                PageRequest.of(0, 10)).getContent().get(0);
+        assertThat(menu.getCafeteriaName()).isEqualTo("Metadata Cafeteria");
+        assertThat(menu.getStallId()).isNull();
+        assertThat(imageRepository.findAdminPage(null, null, "%stall-%", PageRequest.of(0, 10)).getContent())
+                .hasSize(5)
+                .allSatisfy(row -> assertThat(row.getStallName()).isEqualTo("Metadata Stall"));
+
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, Long> bytes = new HashMap<>();
+        List<Object[]> rows = imageRepository.countByTypeAndOwner();
+        for (Object[] row : rows) {
+            counts.put(row[0] + "/" + row[1], ((Number) row[2]).longValue());
+            bytes.put(row[0] + "/" + row[1], ((Number) row[3]).longValue());
+        }
+        assertThat(counts).containsEntry("PHOTO/stall", 5L)
+                .containsEntry("MENU/cafeteria", 1L)
+                .containsEntry("PHOTO/none", 1L);
+        assertThat(bytes).containsEntry("PHOTO/stall", 500L).containsEntry("PHOTO/none", 0L);
+    }
+
+    private void save(String url, Image.ImageType type, Cafeteria owner, Stall stallOwner, Long size) {
+        Image image = new Image();
+        image.setImageUrl(url);
+        image.setType(type);
+        image.setCafeteria(owner);
+        image.setStall(stallOwner);
+        image.setSizeBytes(size);
+        imageRepository.save(image);
+    }
+
+    private static MockMultipartFile jpeg(int width, int height, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return new MockMultipartFile("file", "photo.jpg", "image/jpeg", out.toByteArray());
+    }
+}
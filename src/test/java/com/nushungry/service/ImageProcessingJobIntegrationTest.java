@@ -0,0 +1,115 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.ImageProcessingProperties;
+import com.nushungry.model.Image;
+import com.nushungry.model.ImageProcessingJob;
+import com.nushungry.model.ImageProcessingJobStatus;
+import com.nushungry.repository.ImageProcessingJobRepository;
+import com.nushungry.repository.ImageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class ImageProcessingJobIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private ImageProcessingJobService imageProcessingJobService;
+
+    @Autowired
+    private ImageProcessingJobRepository imageProcessingJobRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageProcessingProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        // 关闭后台线程，由测试线程直接处理任务
+        properties.setEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        properties.setEnabled(true);
+        properties.setInitialBackoffMs(10000);
+        imageProcessingJobRepository.deleteAll();
+        imageRepository.deleteAll();
+    }
+
+    @Test
+    void generatesVariantsAndUpdatesImageThumbnail() throws IOException {
+        String sourceUrl = fileStorageService.storeFile(jpeg(2000, 1000), true);
+        Image image = new Image();
+        image.setImageUrl(sourceUrl);
+        image = imageRepository.save(image);
+        ImageProcessingJob job = imageProcessingJobService.enqueue(sourceUrl, image.getId());
+
+        assertThat(imageProcessingJobService.processPending()).isEqualTo(1);
+
+        ImageProcessingJob completed = imageProcessingJobRepository.findById(job.getId()).orElseThrow();
+        assertThat(completed.getStatus()).isEqualTo(ImageProcessingJobStatus.COMPLETED);
+        assertThat(completed.getVariants()).containsOnlyKeys(300, 800, 1600);
+        assertThat(ImageIO.read(fileStorageService.resolveImageUrl(completed.getVariants().get(800)).toFile())
+                .getWidth()).isEqualTo(800);
+        assertThat(imageRepository.findById(image.getId()).orElseThrow().getThumbnailUrl())
+                .isEqualTo(completed.getVariants().get(300));
+    }
+
+    @Test
+    void marksJobFailedWithoutRetryWhenSourceIsMissing() {
+        ImageProcessingJob job = imageProcessingJobService.enqueue("/uploads/images/missing.jpg", null);
+
+        imageProcessingJobService.processPending();
+
+        ImageProcessingJob failed = imageProcessingJobRepository.findById(job.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(ImageProcessingJobStatus.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).contains("missing.jpg");
+    }
+
+    @Test
+    void retriesUnreadableImagesUpToMaxAttempts() {
+        properties.setInitialBackoffMs(0);
+        String sourceUrl = fileStorageService.storeFile(
+                new MockMultipartFile("file", "broken.jpg", "image/jpeg",
+                        new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4}), true);
+        ImageProcessingJob job = imageProcessingJobService.enqueue(sourceUrl, null);
+
+        assertThat(imageProcessingJobService.processPending()).isEqualTo(properties.getMaxAttempts());
+
+        ImageProcessingJob failed = imageProcessingJobRepository.findById(job.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(ImageProcessingJobStatus.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(properties.getMaxAttempts());
+    }
+
+    private static MockMultipartFile jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.GREEN);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return new MockMultipartFile("file", "upload.jpg", "image/jpeg", output.toByteArray());
+    }
+}
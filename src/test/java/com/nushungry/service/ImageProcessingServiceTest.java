@@ -0,0 +1,229 @@
+package com.nushungry.service;
+
+import com.nushungry.config.FileStorageProperties;
+import com.nushungry.config.ImageEncodingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageProcessingServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private FileStorageProperties properties;
+    private ImageProcessingService imageProcessingService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new FileStorageProperties();
+        properties.setUploadDir(uploadDir.toString());
+        imageProcessingService = new ImageProcessingService(properties, new FileStorageService(properties),
+                new ImageEncoderRegistry(new ImageEncodingProperties(), List.of()));
+    }
+
+    @Test
+    void writesCompressedImageAndThumbnailFromSingleDecode() throws IOException {
+        MockMultipartFile file = png("photo.png", 3000, 1500, true);
+
+        ImageProcessingService.ImageProcessingResult result = imageProcessingService.processImage(file, true);
+
+        BufferedImage compressed = ImageIO.read(resolve(result.getOriginalUrl()).toFile());
+        assertThat(result.getOriginalUrl()).startsWith("/uploads/images/").endsWith(".jpg");
+        assertThat(compressed.getWidth()).isEqualTo(2048);
+        assertThat(compressed.getHeight()).isEqualTo(1024);
+        // 透明区域铺白色背景，而不是变成黑色
+        assertThat(new Color(compressed.getRGB(2000, 1000)).getRed()).isGreaterThan(240);
+
+        BufferedImage thumbnail = ImageIO.read(resolve(result.getThumbnailUrl()).toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(300);
+        assertThat(thumbnail.getHeight()).isEqualTo(300);
+    }
+
+    @Test
+    void keepsSmallImagesAtOriginalSize() throws IOException {
+        ImageProcessingService.ImageProcessingResult result =
+                imageProcessingService.processImage(png("small.png", 640, 480, false), false);
+
+        BufferedImage compressed = ImageIO.read(resolve(result.getOriginalUrl()).toFile());
+        assertThat(compressed.getWidth()).isEqualTo(640);
+        assertThat(compressed.getHeight()).isEqualTo(480);
+        assertThat(result.getThumbnailUrl()).isNull();
+    }
+
+    @Test
+    void validatesAndDescribesImagesFromHeaderOnly() throws IOException {
+        MockMultipartFile image = png("info.png", 1200, 800, false);
+        MockMultipartFile garbage = new MockMultipartFile("file", "fake.jpg", "image/jpeg", new byte[]{1, 2, 3, 4});
+
+        assertThat(imageProcessingService.isValidImage(image)).isTrue();
+        assertThat(imageProcessingService.isValidImage(garbage)).isFalse();
+
+        ImageProcessingService.ImageInfo info = imageProcessingService.getImageInfo(image);
+        assertThat(info.getWidth()).isEqualTo(1200);
+        assertThat(info.getHeight()).isEqualTo(800);
+        assertThat(info.getContentType()).isEqualTo("image/png");
+    }
+
+    @Test
+    void subsamplesLargeImagesWhileDecodingAndReleasesDecodeMemory() throws IOException {
+        assertThat(ImageProcessingService.subsamplingFor(new ImageProcessingService.ImageHeader("png", 8000, 6000), 2048))
+                .isEqualTo(3);
+        assertThat(ImageProcessingService.subsamplingFor(new ImageProcessingService.ImageHeader("png", 2048, 100), 2048))
+                .isEqualTo(1);
+
+        ImageProcessingService.ImageProcessingResult result =
+                imageProcessingService.processImage(png("large.png", 4100, 2050, false), true);
+
+        BufferedImage compressed = ImageIO.read(resolve(result.getOriginalUrl()).toFile());
+        assertThat(compressed.getWidth()).isEqualTo(2048);
+        assertThat(compressed.getHeight()).isEqualTo(1024);
+        assertThat(imageProcessingService.getStatistics().get("decodeMemoryInUseBytes")).isEqualTo(0L);
+    }
+
+    @Test
+    void rejectsDecompressionBombsFromHeaderDimensions() throws IOException {
+        properties.setMaxImagePixels(1_000_000);
+        MockMultipartFile bomb = png("bomb.png", 1200, 1000, false);
+
+        assertThat(imageProcessingService.isValidImage(bomb)).isFalse();
+        assertThatThrownBy(() -> imageProcessingService.processImage(bomb, true))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("1200x1000");
+        assertThat(uploadDir.resolve("images")).isEmptyDirectory();
+    }
+
+    @Test
+    void cropsAvatarFromSubsampledSourceRegion() throws IOException {
+        BufferedImage image = new BufferedImage(2400, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, 1200, 1200);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(1200, 0, 1200, 1200);
+        graphics.dispose();
+        Path source = uploadDir.resolve("avatar.png");
+        ImageIO.write(image, "png", source.toFile());
+        Path destination = uploadDir.resolve("avatar.jpg");
+
+        imageProcessingService.cropImage(source, 1200, 0, 1200, 1200, 200, destination);
+
+        BufferedImage avatar = ImageIO.read(destination.toFile());
+        assertThat(avatar.getWidth()).isEqualTo(200);
+        assertThat(avatar.getHeight()).isEqualTo(200);
+        assertThat(new Color(avatar.getRGB(100, 100)).getBlue()).isGreaterThan(200);
+        assertThat(imageProcessingService.getStatistics().get("decodeMemoryInUseBytes")).isEqualTo(0L);
+    }
+
+    @Test
+    void rejectsAvatarCropOfOversizedImageBeforeDecoding() throws IOException {
+        properties.setMaxImagePixels(1_000_000);
+        Path source = uploadDir.resolve("bomb.png");
+        Files.write(source, png("bomb.png", 1200, 1000, false).getBytes());
+        Path destination = uploadDir.resolve("avatar.jpg");
+
+        assertThatThrownBy(() -> imageProcessingService.cropImage(source, 0, 0, 100, 100, 200, destination))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("1200x1000");
+        assertThat(destination).doesNotExist();
+        assertThat(imageProcessingService.getStatistics().get("decodeMemoryInUseBytes")).isEqualTo(0L);
+    }
+
+    @Test
+    void runsBatchTasksConcurrentlyInInputOrderAndRejectsWhenSaturated() {
+        properties.setUploadConcurrency(2);
+        properties.setUploadQueueCapacity(0);
+        ImageProcessingService service = new ImageProcessingService(properties, new FileStorageService(properties),
+                new ImageEncoderRegistry(new ImageEncodingProperties(), List.of()));
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Supplier<String>> tasks = List.of(
+                () -> awaitTogether("first", bothRunning, release),
+                () -> awaitTogether("second", bothRunning, release),
+                () -> "third");
+        List<CompletableFuture<String>> futures = service.submitAll(tasks);
+        release.countDown();
+
+        assertThat(futures.get(0).join()).isEqualTo("first");
+        assertThat(futures.get(1).join()).isEqualTo("second");
+        assertThatThrownBy(() -> futures.get(2).join()).hasCauseInstanceOf(ImageProcessingBusyException.class);
+        service.shutdown();
+    }
+
+    @Test
+    void writesSmallerAlternateFormatsNextToVariantsAndDeletesThemTogether() throws IOException {
+        ImageEncoder webp = new ImageEncoderRegistryTest.FixedBytesEncoder("webp", new byte[]{'R', 'I', 'F', 'F'});
+        FileStorageService fileStorageService = new FileStorageService(properties);
+        ImageProcessingService service = new ImageProcessingService(properties, fileStorageService,
+                new ImageEncoderRegistry(new ImageEncodingProperties(), List.of(webp)));
+        Path source = uploadDir.resolve("source.png");
+        Files.write(source, png("source.png", 1200, 600, false).getBytes());
+
+        Map<Integer, String> variants = service.generateVariants(source, List.of(300, 800));
+
+        Path variant = resolve(variants.get(300));
+        Path alternate = variant.resolveSibling(variant.getFileName().toString().replace(".jpg", ".webp"));
+        assertThat(Files.readAllBytes(alternate)).containsExactly('R', 'I', 'F', 'F');
+        assertThat(service.formatsOf(variant)).containsExactly("jpeg", "webp");
+
+        assertThat(fileStorageService.deleteFile(variants.get(300))).isTrue();
+        assertThat(alternate).doesNotExist();
+        service.shutdown();
+    }
+
+    private static String awaitTogether(String value, CountDownLatch bothRunning, CountDownLatch release) {
+        bothRunning.countDown();
+        try {
+            // 两个任务必须同时运行才能通过
+            if (!bothRunning.await(5, TimeUnit.SECONDS) || !release.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("tasks did not run concurrently");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return value;
+    }
+
+    private Path resolve(String url) {
+        return uploadDir.resolve(url.substring("/uploads/".length()));
+    }
+
+    private static MockMultipartFile png(String name, int width, int height, boolean transparentCorner)
+            throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width, height);
+        if (transparentCorner) {
+            graphics.setComposite(AlphaComposite.Clear);
+            graphics.fillRect(width * 3 / 4, height * 3 / 4, width / 4, height / 4);
+        }
+        graphics.dispose();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return new MockMultipartFile("file", name, "image/png", output.toByteArray());
+    }
+}
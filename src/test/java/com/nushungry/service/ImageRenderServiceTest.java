@@ -0,0 +1,174 @@
+package com.nushungry.service;
+
+import com.nushungry.config.FileStorageProperties;
+import com.nushungry.config.ImageEncodingProperties;
+import com.nushungry.config.ImageRenderProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageRenderServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private ImageRenderProperties renderProperties;
+    private ImageProcessingService imageProcessingService;
+    private ImageRenderService imageRenderService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileStorageProperties storageProperties = new FileStorageProperties();
+        storageProperties.setUploadDir(uploadDir.toString());
+        FileStorageService fileStorageService = new FileStorageService(storageProperties);
+        imageProcessingService = new ImageProcessingService(storageProperties, fileStorageService,
+                new ImageEncoderRegistry(new ImageEncodingProperties(), List.of()));
+        renderProperties = new ImageRenderProperties();
+        imageRenderService = new ImageRenderService(fileStorageService, imageProcessingService, renderProperties);
+        imageRenderService.init();
+
+        writeJpeg("images/dish.jpg", 1000, 500, Color.RED);
+        writeJpeg("images/drink.jpg", 1000, 500, Color.BLUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingService.shutdown();
+    }
+
+    @Test
+    void rendersWhitelistedSizesAndServesRepeatsFromCache() throws IOException {
+        ImageRenderService.RenderedImage cover = imageRenderService.render("images/dish.jpg", 300, 300, "cover");
+        assertThat(dimensions(cover)).containsExactly(300, 300);
+        assertThat(dimensions(imageRenderService.render("images/dish.jpg", 300, 300, "contain")))
+                .containsExactly(300, 150);
+        assertThat(dimensions(imageRenderService.render("images/dish.jpg", 150, null, null)))
+                .containsExactly(150, 75);
+
+        ImageRenderService.RenderedImage repeat = imageRenderService.render("images/dish.jpg", 300, 300, "cover");
+        assertThat(repeat.path()).isEqualTo(cover.path());
+        assertThat(imageRenderService.getStatistics().get("misses")).isEqualTo(3L);
+        assertThat(imageRenderService.getStatistics().get("hits")).isEqualTo(1L);
+
+        assertThatThrownBy(() -> imageRenderService.render("images/dish.jpg", 301, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> imageRenderService.render("images/dish.jpg", 300, null, "stretch"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(imageRenderService.render("images/missing.jpg", 300, null, null)).isNull();
+        assertThat(imageRenderService.render("../outside.jpg", 300, null, null)).isNull();
+    }
+
+    @Test
+    void concurrentRequestsForSameVariantDecodeOnce() throws Exception {
+        int requests = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<ImageRenderService.RenderedImage>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                Callable<ImageRenderService.RenderedImage> task = () -> {
+                    start.await();
+                    return imageRenderService.render("images/dish.jpg", 800, null, null);
+                };
+                futures.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<ImageRenderService.RenderedImage> future : futures) {
+                assertThat(dimensions(future.get())).containsExactly(800, 400);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(imageRenderService.getStatistics().get("misses")).isEqualTo(1L);
+        assertThat(imageRenderService.getStatistics().get("entries")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedVariantsWhenOverBudget() throws IOException {
+        ImageRenderService.RenderedImage first = imageRenderService.render("images/dish.jpg", 300, null, null);
+        renderProperties.setMaxCacheBytes(Files.size(first.path()) + 1);
+
+        ImageRenderService.RenderedImage second = imageRenderService.render("images/drink.jpg", 300, null, null);
+
+        assertThat(Files.exists(first.path())).isFalse();
+        assertThat(Files.exists(second.path())).isTrue();
+        assertThat(imageRenderService.getStatistics().get("evictions")).isEqualTo(1L);
+        assertThat(imageRenderService.getStatistics().get("entries")).isEqualTo(1);
+
+        // 被淘汰的尺寸再次请求时重新生成
+        assertThat(dimensions(imageRenderService.render("images/dish.jpg", 300, null, null)))
+                .containsExactly(300, 150);
+        assertThat(imageRenderService.getStatistics().get("misses")).isEqualTo(3L);
+    }
+
+    @Test
+    void openedVariantSurvivesEvictionAndEvictedVariantIsRenderedAgain() throws IOException {
+        try (ImageRenderService.OpenedImage opened = imageRenderService.open("images/dish.jpg", 300, null, null)) {
+            renderProperties.setMaxCacheBytes(opened.size() + 1);
+            ImageRenderService.RenderedImage other = imageRenderService.render("images/drink.jpg", 300, null, null);
+
+            assertThat(Files.exists(opened.image().path())).isFalse();
+            assertThat(Files.exists(other.path())).isTrue();
+            // 已打开的文件被淘汰后仍能完整读出
+            BufferedImage image = ImageIO.read(opened.content());
+            assertThat(new int[]{image.getWidth(), image.getHeight()}).containsExactly(300, 150);
+        }
+
+        try (ImageRenderService.OpenedImage reopened = imageRenderService.open("images/dish.jpg", 300, null, null)) {
+            assertThat(Files.exists(reopened.image().path())).isTrue();
+            assertThat(reopened.size()).isEqualTo(Files.size(reopened.image().path()));
+        }
+        assertThat(imageRenderService.getStatistics().get("misses")).isEqualTo(3L);
+        assertThat(imageRenderService.open("images/missing.jpg", 300, null, null)).isNull();
+    }
+
+    @Test
+    void computesEtagKeyFromSourceAttributesWithoutRendering() throws IOException {
+        String key = imageRenderService.key("images/dish.jpg", 300, 300, "cover");
+
+        assertThat(imageRenderService.getStatistics().get("misses")).isEqualTo(0L);
+        assertThat(imageRenderService.getStatistics().get("entries")).isEqualTo(0);
+        assertThat(imageRenderService.render("images/dish.jpg", 300, 300, "cover").key()).isEqualTo(key);
+        assertThat(imageRenderService.key("images/dish.jpg", 300, 300, "contain")).isNotEqualTo(key);
+        assertThat(imageRenderService.key("images/missing.jpg", 300, null, null)).isNull();
+        assertThatThrownBy(() -> imageRenderService.key("images/dish.jpg", 301, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int[] dimensions(ImageRenderService.RenderedImage rendered) throws IOException {
+        BufferedImage image = ImageIO.read(rendered.path().toFile());
+        return new int[]{image.getWidth(), image.getHeight()};
+    }
+
+    private void writeJpeg(String relativePath, int width, int height, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        Path file = uploadDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, "jpg", file.toFile());
+    }
+}
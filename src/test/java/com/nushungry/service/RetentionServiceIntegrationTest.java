@@ -0,0 +1,124 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.RetentionProperties;
+import com.nushungry.model.SearchKeywordDaily;
+import com.nushungry.model.VerificationCode;
+import com.nushungry.repository.SearchKeywordDailyRepository;
+import com.nushungry.repository.VerificationCodeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class RetentionServiceIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private RetentionService retentionService;
+
+    @Autowired
+    private RetentionProperties retentionProperties;
+
+    @Autowired
+    private SchedulerLockService schedulerLockService;
+
+    @Autowired
+    private VerificationCodeRepository verificationCodeRepository;
+
+    @Autowired
+    private SearchKeywordDailyRepository searchKeywordDailyRepository;
+
+    @AfterEach
+    void tearDown() {
+        verificationCodeRepository.deleteAll();
+        searchKeywordDailyRepository.deleteAll();
+        retentionProperties.setChunkSize(500);
+        retentionProperties.setPauseBetweenChunksMs(200);
+    }
+
+    @Test
+    void runCleanup_deletesExpiredRowsInChunks() {
+        retentionProperties.setChunkSize(3);
+        retentionProperties.setPauseBetweenChunksMs(0);
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 7; i++) {
+            verificationCodeRepository.save(code("expired" + i + "@test.com", now.minusHours(1)));
+        }
+        verificationCodeRepository.save(code("valid@test.com", now.plusMinutes(10)));
+
+        Map<String, Long> purged = retentionService.runCleanup();
+
+        assertThat(purged).containsEntry("verificationCodes", 7L);
+        assertThat(verificationCodeRepository.findAll())
+                .extracting(VerificationCode::getEmail)
+                .containsExactly("valid@test.com");
+    }
+
+    @Test
+    void runCleanup_purgesDailyRollupsByDateColumn() {
+        retentionProperties.setPauseBetweenChunksMs(0);
+        LocalDate today = LocalDate.now();
+        searchKeywordDailyRepository.save(rollup(today.minusDays(800), "old"));
+        searchKeywordDailyRepository.save(rollup(today.minusDays(10), "recent"));
+
+        Map<String, Long> purged = retentionService.runCleanup();
+
+        assertThat(purged).containsEntry("searchKeywordDaily", 1L);
+        assertThat(searchKeywordDailyRepository.findAll())
+                .extracting(SearchKeywordDaily::getKeyword)
+                .containsExactly("recent");
+    }
+
+    @Test
+    void runCleanup_skipsWhenLockHeldElsewhere() {
+        assertThat(schedulerLockService.tryLock("retention-cleanup", Duration.ofMinutes(5))).isTrue();
+        try {
+            verificationCodeRepository.save(code("expired@test.com", LocalDateTime.now().minusHours(1)));
+
+            assertThat(retentionService.runCleanup()).isEmpty();
+            assertThat(verificationCodeRepository.count()).isEqualTo(1);
+        } finally {
+            schedulerLockService.unlock("retention-cleanup");
+        }
+    }
+
+    @Test
+    void extendRenewsOnlyOwnUnexpiredLease() {
+        assertThat(schedulerLockService.tryLock("retention-lease-test", Duration.ofMinutes(5))).isTrue();
+        try {
+            assertThat(schedulerLockService.extend("retention-lease-test", Duration.ofMinutes(5))).isTrue();
+        } finally {
+            schedulerLockService.unlock("retention-lease-test");
+        }
+        // 释放后（或租期已过）不能续租，由其他节点重新获取
+        assertThat(schedulerLockService.extend("retention-lease-test", Duration.ofMinutes(5))).isFalse();
+        assertThat(schedulerLockService.extend("retention-never-locked", Duration.ofMinutes(5))).isFalse();
+    }
+
+    private SearchKeywordDaily rollup(LocalDate day, String keyword) {
+        SearchKeywordDaily rollup = new SearchKeywordDaily();
+        rollup.setStatDate(day);
+        rollup.setKeyword(keyword);
+        rollup.setSearchCount(1);
+        return rollup;
+    }
+
+    private VerificationCode code(String email, LocalDateTime expiresAt) {
+        VerificationCode code = new VerificationCode();
+        code.setEmail(email);
+        code.setCode("123456");
+        code.setType("PASSWORD_RESET");
+        code.setCreatedAt(expiresAt.minusMinutes(5));
+        code.setExpiresAt(expiresAt);
+        return code;
+    }
+}
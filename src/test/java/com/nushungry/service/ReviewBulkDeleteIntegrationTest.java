@@ -0,0 +1,185 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.model.Cafeteria;
+import com.nushungry.model.FileDeletion;
+import com.nushungry.model.ReportReason;
+import com.nushungry.model.Review;
+import com.nushungry.model.ReviewLike;
+import com.nushungry.model.ReviewReport;
+import com.nushungry.model.Stall;
+import com.nushungry.model.User;
+import com.nushungry.repository.CafeteriaRepository;
+import com.nushungry.repository.FileDeletionRepository;
+import com.nushungry.repository.ReviewLikeRepository;
+import com.nushungry.repository.ReviewReportRepository;
+import com.nushungry.repository.ReviewRepository;
+import com.nushungry.repository.StallRepository;
+import com.nushungry.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class ReviewBulkDeleteIntegrationTest extends IntegrationTestBase {
+
+    private static final int SPAM_REVIEWS = 40;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private CafeteriaRepository cafeteriaRepository;
+
+    @Autowired
+    private StallRepository stallRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private ReviewLikeRepository reviewLikeRepository;
+
+    @Autowired
+    private ReviewReportRepository reviewReportRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileDeletionRepository fileDeletionRepository;
+
+    private Cafeteria cafeteria;
+    private Stall first;
+    private Stall second;
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        quiescePollers();
+        cafeteria = new Cafeteria();
+        cafeteria.setName("Bulk Review Cafeteria");
+        cafeteria = cafeteriaRepository.save(cafeteria);
+        first = stall("Bulk Review Stall A");
+        second = stall("Bulk Review Stall B");
+    }
+
+    @AfterEach
+    void tearDown() {
+        resumePollers();
+        fileDeletionRepository.deleteAll();
+        reviewService.deleteReviewsByAdmin(Stream.of(first, second)
+                .flatMap(stall -> reviewRepository.findByStallIdOrderByCreatedAtDesc(stall.getId()).stream())
+                .map(Review::getId)
+                .toList());
+        stallRepository.deleteAll(List.of(first, second));
+        cafeteriaRepository.delete(cafeteria);
+        userRepository.deleteAll(users);
+        users.clear();
+    }
+
+    @Test
+    void deletesSpamWaveWithSetBasedCascadeAndRecalculatesEachStallOnce() {
+        Review keptFirst = review(first, user(0), 5.0, 20.0, 2);
+        Review keptSecond = review(second, user(1), 2.0, null, null);
+        List<Long> spam = new ArrayList<>();
+        for (int i = 0; i < SPAM_REVIEWS; i++) {
+            User author = user(i + 2);
+            Review review = review(i % 2 == 0 ? first : second, author, 1.0, 100.0, 1);
+            like(review, user(0));
+            report(review, user(1));
+            spam.add(review.getId());
+        }
+        spam.add(-1L);
+
+        Counted<ReviewService.BulkDeleteResult> counted = countStatements(() -> reviewService.deleteReviewsByAdmin(spam));
+        ReviewService.BulkDeleteResult result = counted.result();
+
+        assertThat(result.deletedIds()).hasSize(SPAM_REVIEWS);
+        assertThat(result.missingIds()).containsExactly(-1L);
+        assertThat(result.recalculatedStalls()).isEqualTo(2);
+        assertThat(result.deletedRows())
+                .containsEntry("review", SPAM_REVIEWS)
+                .containsEntry("review_likes", SPAM_REVIEWS)
+                .containsEntry("review_reports", SPAM_REVIEWS)
+                .containsEntry("review_images", SPAM_REVIEWS);
+        // 语句数与评价数量无关
+        assertThat(counted.statements()).isLessThanOrEqualTo(10);
+
+        assertThat(reviewRepository.findAllById(spam)).isEmpty();
+        assertThat(reviewLikeRepository.findAll()).noneMatch(like -> spam.contains(like.getReview().getId()));
+        assertThat(reviewReportRepository.findAll()).noneMatch(report -> spam.contains(report.getReview().getId()));
+        assertThat(fileDeletionRepository.findAll()).extracting(FileDeletion::getUrl)
+                .contains("/uploads/images/review-" + spam.get(0) + ".jpg")
+                .doesNotContain("/uploads/images/review-" + keptFirst.getId() + ".jpg");
+
+        Stall reloadedFirst = stallRepository.findById(first.getId()).orElseThrow();
+        assertThat(reloadedFirst.getReviewCount()).isEqualTo(1);
+        assertThat(reloadedFirst.getAverageRating()).isEqualTo(5.0);
+        assertThat(reloadedFirst.getAveragePrice()).isEqualTo(10.0);
+        Stall reloadedSecond = stallRepository.findById(second.getId()).orElseThrow();
+        assertThat(reloadedSecond.getReviewCount()).isEqualTo(1);
+        assertThat(reloadedSecond.getAverageRating()).isEqualTo(2.0);
+        assertThat(reloadedSecond.getAveragePrice()).isZero();
+
+        reviewService.deleteReviewByAdmin(keptSecond.getId());
+        assertThat(reviewRepository.existsById(keptSecond.getId())).isFalse();
+        assertThat(stallRepository.findById(second.getId()).orElseThrow().getReviewCount()).isZero();
+        assertThatThrownBy(() -> reviewService.deleteReviewByAdmin(keptSecond.getId()))
+                .hasMessage("评价不存在");
+    }
+
+    private Stall stall(String name) {
+        Stall stall = new Stall();
+        stall.setName(name);
+        stall.setCafeteria(cafeteria);
+        return stallRepository.save(stall);
+    }
+
+    private User user(int index) {
+        while (users.size() <= index) {
+            User user = new User();
+            user.setUsername("bulk_review_user_" + users.size());
+            user.setEmail("bulk_review_user_" + users.size() + "@test.com");
+            user.setPassword("secret");
+            users.add(userRepository.save(user));
+        }
+        return users.get(index);
+    }
+
+    private Review review(Stall stall, User user, double rating, Double totalCost, Integer people) {
+        Review review = new Review();
+        review.setStall(stall);
+        review.setUser(user);
+        review.setRating(rating);
+        review.setTotalCost(totalCost);
+        review.setNumberOfPeople(people);
+        review = reviewRepository.save(review);
+        review.setImageUrls(new ArrayList<>(List.of("/uploads/images/review-" + review.getId() + ".jpg")));
+        return reviewRepository.save(review);
+    }
+
+    private void like(Review review, User user) {
+        ReviewLike like = new ReviewLike();
+        like.setReview(review);
+        like.setUser(user);
+        reviewLikeRepository.save(like);
+    }
+
+    private void report(Review review, User reporter) {
+        ReviewReport report = new ReviewReport();
+        report.setReview(review);
+        report.setReporter(reporter);
+        report.setReason(ReportReason.SPAM);
+        reviewReportRepository.save(report);
+    }
+}
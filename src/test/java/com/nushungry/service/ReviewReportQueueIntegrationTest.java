@@ -0,0 +1,227 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.dto.CreateReportRequest;
+import com.nushungry.dto.HandleReportRequest;
+import com.nushungry.dto.ReportResponse;
+import com.nushungry.dto.ReportedReviewResponse;
+import com.nushungry.model.Cafeteria;
+import com.nushungry.model.ReportReason;
+import com.nushungry.model.ReportStatus;
+import com.nushungry.model.Review;
+import com.nushungry.model.ReviewReportSummary;
+import com.nushungry.model.Stall;
+import com.nushungry.model.User;
+import com.nushungry.repository.CafeteriaRepository;
+import com.nushungry.repository.ReviewReportSummaryRepository;
+import com.nushungry.repository.ReviewRepository;
+import com.nushungry.repository.StallRepository;
+import com.nushungry.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest
+class ReviewReportQueueIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private ReviewReportService reviewReportService;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private ReviewReportSummaryRepository summaryRepository;
+
+    @Autowired
+    private CafeteriaRepository cafeteriaRepository;
+
+    @Autowired
+    private StallRepository stallRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Cafeteria cafeteria;
+    private Stall stall;
+    private final List<User> users = new ArrayList<>();
+    private final List<Long> reviewIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        quiescePollers();
+        cafeteria = new Cafeteria();
+        cafeteria.setName("Report Queue Cafeteria");
+        cafeteria = cafeteriaRepository.save(cafeteria);
+        stall = new Stall();
+        stall.setName("Report Queue Stall");
+        stall.setCafeteria(cafeteria);
+        stall = stallRepository.save(stall);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewService.deleteReviewsByAdmin(reviewIds);
+        reviewIds.clear();
+        stallRepository.delete(stall);
+        cafeteriaRepository.delete(cafeteria);
+        userRepository.deleteAll(users);
+        users.clear();
+        resumePollers();
+    }
+
+    @Test
+    void ranksQueueByOpenReportersThenRecencyInOneOrTwoQueries() {
+        Review quiet = review(user(0));
+        Review busy = review(user(1));
+        Review recent = review(user(2));
+
+        report(quiet, user(3));
+        Long busyHandled = report(busy, user(3)).getId();
+        report(busy, user(4));
+        report(busy, user(5));
+        report(recent, user(4));
+        report(recent, user(5));
+
+        // busy 有一条被处理后与 recent 同为 2 人待处理，recent 最近被举报排在前面
+        HandleReportRequest handle = new HandleReportRequest();
+        handle.setStatus(ReportStatus.RESOLVED);
+        reviewReportService.handleReport(busyHandled, "admin", handle);
+        assertThat(summaryRepository.findById(busy.getId()).orElseThrow().getOpenReports()).isEqualTo(2);
+
+        Counted<Page<ReportResponse>> queue =
+                countStatements(() -> reviewReportService.getPendingReports(PageRequest.of(0, 50)));
+
+        List<ReportResponse> ours = queue.result().getContent().stream()
+                .filter(r -> reviewIds.contains(r.getReview().getId()))
+                .toList();
+        assertThat(ours).extracting(r -> r.getReview().getId())
+                .containsExactly(recent.getId(), recent.getId(), busy.getId(), busy.getId(), quiet.getId());
+        assertThat(ours).extracting(ReportResponse::getOpenReportCount).containsExactly(2, 2, 2, 2, 1);
+        assertThat(ours.get(0).getReporter().getUsername()).isEqualTo("report_queue_user_5");
+        assertThat(ours.get(0).getReview().getUser().getUsername()).isEqualTo("report_queue_user_2");
+        assertThat(ours.get(0).getReview().getStall().getName()).isEqualTo("Report Queue Stall");
+        // 数据页 + 计数，不随行数增加
+        assertThat(queue.statements()).isLessThanOrEqualTo(2);
+
+        // 重新打开后回到队列最前
+        handle.setStatus(ReportStatus.PENDING);
+        reviewReportService.handleReport(busyHandled, "admin", handle);
+        List<Long> reopened = reviewReportService.getPendingReports(PageRequest.of(0, 50)).getContent().stream()
+                .map(r -> r.getReview().getId())
+                .filter(reviewIds::contains)
+                .toList();
+        assertThat(reopened.get(0)).isEqualTo(busy.getId());
+
+        Counted<ReviewReportService.ReportStatistics> stats = countStatements(reviewReportService::getStatistics);
+        assertThat(stats.statements()).isEqualTo(1);
+        assertThat(stats.result().getTotalCount()).isGreaterThanOrEqualTo(6);
+        assertThat(stats.result().getPendingCount()).isGreaterThanOrEqualTo(6);
+
+        // 删除评价时一并删除汇总行
+        reviewService.deleteReviewByAdmin(busy.getId());
+        assertThat(summaryRepository.existsById(busy.getId())).isFalse();
+    }
+
+    @Test
+    void collapsesReportsPerReviewAndHandlesThemInOneStatement() {
+        Review abusive = review(user(0));
+        user(3);
+        User reporter = user(1);
+        // 插入举报 + 插入或累加汇总，不预先查询评价、用户和重复举报
+        assertThat(countStatements(() -> report(abusive, reporter, ReportReason.SPAM)).statements()).isEqualTo(2);
+        report(abusive, user(2), ReportReason.SPAM);
+        report(abusive, user(3), ReportReason.OFFENSIVE);
+
+        assertThatThrownBy(() -> report(abusive, user(1), ReportReason.OTHER))
+                .hasMessage("您已经举报过此评价");
+        assertThatThrownBy(() -> reviewReportService.createReport(-1L, user(1).getId(), request(ReportReason.SPAM)))
+                .hasMessage("评价不存在");
+
+        ReviewReportSummary summary = summaryRepository.findById(abusive.getId()).orElseThrow();
+        assertThat(summary.getTotalReports()).isEqualTo(3);
+        assertThat(summary.getOpenReports()).isEqualTo(3);
+        assertThat(summary.getReasonCounts())
+                .containsExactly(entry(ReportReason.SPAM, 2), entry(ReportReason.OFFENSIVE, 1));
+        assertThat(summary.getFirstReportedAt()).isBefore(summary.getLastReportedAt());
+
+        Counted<List<ReportedReviewResponse>> queue =
+                countStatements(() -> reviewReportService.getReportedReviews(PageRequest.of(0, 50)).getContent());
+        ReportedReviewResponse entry = queue.result().stream()
+                .filter(r -> r.getReview().getId().equals(abusive.getId()))
+                .findFirst()
+                .orElseThrow();
+        assertThat(entry.getOpenReports()).isEqualTo(3);
+        assertThat(entry.getReasonCounts()).containsEntry(ReportReason.SPAM, 2);
+        assertThat(entry.getReview().getUser().getUsername()).isEqualTo("report_queue_user_0");
+        assertThat(entry.getReview().getStall().getName()).isEqualTo("Report Queue Stall");
+        assertThat(queue.statements()).isLessThanOrEqualTo(2);
+
+        HandleReportRequest handle = new HandleReportRequest();
+        handle.setStatus(ReportStatus.RESOLVED);
+        handle.setHandleNote("spam wave");
+        Counted<Integer> handled =
+                countStatements(() -> reviewReportService.handleReportsOfReview(abusive.getId(), "admin", handle));
+
+        assertThat(handled.result()).isEqualTo(3);
+        // 举报明细一条 UPDATE + 汇总清零一条 UPDATE
+        assertThat(handled.statements()).isEqualTo(2);
+        assertThat(reviewReportService.getReportsByReview(abusive.getId()))
+                .allSatisfy(r -> {
+                    assertThat(r.getStatus()).isEqualTo(ReportStatus.RESOLVED);
+                    assertThat(r.getHandledBy()).isEqualTo("admin");
+                });
+        assertThat(summaryRepository.findById(abusive.getId()).orElseThrow().getOpenReports()).isZero();
+        assertThat(reviewReportService.getReportedReviews(PageRequest.of(0, 50)).getContent())
+                .noneMatch(r -> r.getReview().getId().equals(abusive.getId()));
+    }
+
+    private User user(int index) {
+        while (users.size() <= index) {
+            User user = new User();
+            user.setUsername("report_queue_user_" + users.size());
+            user.setEmail("report_queue_user_" + users.size() + "@test.com");
+            user.setPassword("secret");
+            users.add(userRepository.save(user));
+        }
+        return users.get(index);
+    }
+
+    private Review review(User author) {
+        Review review = new Review();
+        review.setStall(stall);
+        review.setUser(author);
+        review.setRating(1.0);
+        review = reviewRepository.save(review);
+        reviewIds.add(review.getId());
+        return review;
+    }
+
+    private ReportResponse report(Review review, User reporter) {
+        return report(review, reporter, ReportReason.SPAM);
+    }
+
+    private ReportResponse report(Review review, User reporter, ReportReason reason) {
+        return reviewReportService.createReport(review.getId(), reporter.getId(), request(reason));
+    }
+
+    private static CreateReportRequest request(ReportReason reason) {
+        CreateReportRequest request = new CreateReportRequest();
+        request.setReason(reason);
+        return request;
+    }
+}
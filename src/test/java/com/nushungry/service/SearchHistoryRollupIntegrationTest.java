@@ -0,0 +1,143 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.model.SearchHistory;
+import com.nushungry.model.SearchKeywordDaily;
+import com.nushungry.repository.SearchHistoryRepository;
+import com.nushungry.repository.SearchKeywordDailyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest
+class SearchHistoryRollupIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private SearchHistoryRollupService searchHistoryRollupService;
+
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+
+    @Autowired
+    private SearchHistoryRepository searchHistoryRepository;
+
+    @Autowired
+    private SearchKeywordDailyRepository searchKeywordDailyRepository;
+
+    @AfterEach
+    void tearDown() {
+        searchHistoryRepository.deleteAll();
+        searchKeywordDailyRepository.deleteAll();
+    }
+
+    @Test
+    void rollsUpEachPastDayOnceAndRerunsIdempotently() {
+        LocalDate today = LocalDate.now();
+        save("laksa", today.minusDays(3), 3);
+        save("mala", today.minusDays(3), 1);
+        save("laksa", today.minusDays(2), 1);
+        save("prata", today.minusDays(2), 2);
+        save("mala", today, 4);
+
+        Map<LocalDate, Integer> written = searchHistoryRollupService.runRollup(today);
+
+        assertThat(written).containsExactly(
+                entry(today.minusDays(3), 2),
+                entry(today.minusDays(2), 2),
+                entry(today.minusDays(1), 0));
+        assertThat(searchKeywordDailyRepository.findLastStatDate()).isEqualTo(today.minusDays(2));
+
+        // 最后一次有数据的日期之后的日期会重新汇总，结果不变
+        searchHistoryRollupService.runRollup(today);
+        List<SearchKeywordDaily> rollups = searchKeywordDailyRepository.findAll();
+        assertThat(rollups).hasSize(4);
+        assertThat(rollups)
+                .filteredOn(rollup -> rollup.getKeyword().equals("laksa"))
+                .extracting(SearchKeywordDaily::getSearchCount)
+                .containsExactlyInAnyOrder(3L, 1L);
+    }
+
+    @Test
+    void longWindowsCombineRollupsWithTodaysRawRows() {
+        LocalDate today = LocalDate.now();
+        save("laksa", today.minusDays(3), 3);
+        save("laksa", today.minusDays(2), 1);
+        save("prata", today.minusDays(2), 2);
+        save("mala", today.minusDays(3), 1);
+        searchHistoryRollupService.runRollup(today);
+        save("mala", today, 4);
+
+        // 30天窗口超出内存统计范围，走汇总表 + 当天原始记录
+        List<Map<String, Object>> popular = searchHistoryService.getPopularKeywords(Duration.ofDays(30), 2);
+
+        assertThat(popular).extracting(item -> item.get("keyword")).containsExactly("mala", "laksa");
+        assertThat(popular).extracting(item -> ((Number) item.get("count")).longValue()).containsExactly(5L, 4L);
+    }
+
+    @Test
+    void sqlFallbacksMergeKeywordsLikeTheInMemoryTracker() {
+        LocalDate today = LocalDate.now();
+        save("Chicken Rice", today.minusDays(3), 2);
+        save("chicken rice", today.minusDays(2), 1);
+        save("mala", today.minusDays(2), 2);
+        searchHistoryRollupService.runRollup(today);
+        save("CHICKEN  RICE", today, 1);
+        save(" Mala", today, 2);
+
+        // 汇总表 + 当天原始记录
+        List<Map<String, Object>> popular = searchHistoryService.getPopularKeywords(Duration.ofDays(30), 5);
+        assertThat(popular).extracting(item -> item.get("keyword") + "=" + ((Number) item.get("count")).longValue())
+                .contains("chicken rice=4", "mala=4")
+                .noneMatch(item -> item.startsWith("Chicken") || item.startsWith(" "));
+
+        // 只有原始记录时同样归一化
+        List<Object[]> raw = SearchHistoryRollupService.mergeNormalized(
+                searchHistoryRepository.findPopularKeywords(today.minusDays(1).atStartOfDay(),
+                        PageRequest.of(0, 5)), 5);
+        assertThat(raw).extracting(row -> row[0] + "=" + row[1])
+                .contains("mala=2", "chicken rice=1")
+                .noneMatch(item -> item.startsWith(" ") || item.startsWith("CHICKEN"));
+    }
+
+    @Test
+    void countsKeywordsPerBucketInOneGroupedQuery() {
+        LocalDate today = LocalDate.now();
+        save("laksa", today.minusDays(3), 3);
+        save("laksa", today.minusDays(2), 1);
+        save("mala", today.minusDays(2), 2);
+
+        // 每小时一个桶，12:00 的记录落在第 12 和第 36 个桶
+        List<Object[]> rows = searchHistoryRepository.countKeywordsByBucket(
+                today.minusDays(3).atStartOfDay(), today.minusDays(1).atStartOfDay(), 60);
+
+        assertThat(rows).extracting(row -> row[0] + "@" + ((Number) row[1]).longValue() + "=" + ((Number) row[2]).longValue())
+                .containsExactlyInAnyOrder("laksa@12=3", "laksa@36=1", "mala@36=2");
+    }
+
+    private void save(String keyword, LocalDate day, int times) {
+        LocalDateTime time = day.atTime(12, 0);
+        if (day.equals(LocalDate.now()) && time.isAfter(LocalDateTime.now())) {
+            time = day.atStartOfDay();
+        }
+        for (int i = 0; i < times; i++) {
+            SearchHistory history = new SearchHistory();
+            history.setUserId(1L);
+            history.setKeyword(keyword);
+            history.setSearchType("stall");
+            history.setResultCount(1);
+            history.setSearchTime(time);
+            searchHistoryRepository.save(history);
+        }
+    }
+}
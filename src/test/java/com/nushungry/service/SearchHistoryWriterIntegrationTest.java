@@ -0,0 +1,93 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.config.SearchHistoryBufferProperties;
+import com.nushungry.model.SearchHistory;
+import com.nushungry.repository.SearchHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class SearchHistoryWriterIntegrationTest extends IntegrationTestBase {
+
+    @Autowired
+    private SearchHistoryService searchHistoryService;
+
+    @Autowired
+    private SearchHistoryWriter searchHistoryWriter;
+
+    @Autowired
+    private SearchHistoryRepository searchHistoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        searchHistoryRepository.deleteAll();
+    }
+
+    @Test
+    void recordSearchIsWrittenInBatchesByBackgroundFlusher() throws Exception {
+        long batchesBefore = (Long) searchHistoryWriter.getStatistics().get("batches");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.7");
+
+        for (int i = 0; i < 450; i++) {
+            searchHistoryService.recordSearch((long) (i % 3), "  chicken rice " + i + "  ", "stall", i, request);
+        }
+        searchHistoryService.recordSearch(1L, "   ", "stall", 0, request);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (searchHistoryRepository.count() < 450 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(searchHistoryRepository.count()).isEqualTo(450);
+        List<SearchHistory> rows = searchHistoryRepository.findTop10ByUserIdOrderBySearchTimeDesc(0L);
+        assertThat(rows).allSatisfy(row -> {
+            assertThat(row.getKeyword()).startsWith("chicken rice ").doesNotEndWith(" ");
+            assertThat(row.getIpAddress()).isEqualTo("10.0.0.7");
+            assertThat(row.getSearchType()).isEqualTo("stall");
+        });
+        // 默认每批最多200条，450条至少分3批写入
+        assertThat((Long) searchHistoryWriter.getStatistics().get("batches") - batchesBefore)
+                .isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void dropsWhenFullAndDrainsRemainingEventsOnStop() {
+        SearchHistoryBufferProperties properties = new SearchHistoryBufferProperties();
+        properties.setCapacity(4);
+        properties.setBatchSize(100);
+        properties.setFlushIntervalMs(60000);
+        SearchHistoryWriter writer = new SearchHistoryWriter(jdbcTemplate, properties);
+        writer.start();
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(writer.submit(event("laksa " + i))).isTrue();
+        }
+        assertThat(writer.submit(event("overflow"))).isFalse();
+        assertThat(writer.getStatistics().get("dropped")).isEqualTo(1L);
+
+        writer.stop();
+
+        assertThat(writer.isRunning()).isFalse();
+        assertThat(writer.getStatistics().get("flushedRows")).isEqualTo(4L);
+        assertThat(searchHistoryRepository.count()).isEqualTo(4);
+        assertThat(writer.submit(event("after stop"))).isFalse();
+    }
+
+    private SearchHistoryWriter.SearchEvent event(String keyword) {
+        return new SearchHistoryWriter.SearchEvent(null, keyword, "stall", 1, "127.0.0.1", LocalDateTime.now());
+    }
+}
@@ -0,0 +1,182 @@
+package com.nushungry.service;
+
+import com.nushungry.IntegrationTestBase;
+import com.nushungry.model.Cafeteria;
+import com.nushungry.model.Favorite;
+import com.nushungry.model.FileDeletion;
+import com.nushungry.model.Image;
+import com.nushungry.model.ReportReason;
+import com.nushungry.model.Review;
+import com.nushungry.model.ReviewLike;
+import com.nushungry.model.ReviewReport;
+import com.nushungry.model.Stall;
+import com.nushungry.model.User;
+import com.nushungry.repository.CafeteriaRepository;
+import com.nushungry.repository.FavoriteRepository;
+import com.nushungry.repository.FileDeletionRepository;
+import com.nushungry.repository.ImageRepository;
+import com.nushungry.repository.ReviewLikeRepository;
+import com.nushungry.repository.ReviewReportRepository;
+import com.nushungry.repository.ReviewRepository;
+import com.nushungry.repository.StallRepository;
+import com.nushungry.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class StallBatchDeleteIntegrationTest extends IntegrationTestBase {
+
+    private static final int STALLS = 30;
+
+    @Autowired
+    private StallService stallService;
+
+    @Autowired
+    private CafeteriaRepository cafeteriaRepository;
+
+    @Autowired
+    private StallRepository stallRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private ReviewLikeRepository reviewLikeRepository;
+
+    @Autowired
+    private ReviewReportRepository reviewReportRepository;
+
+    @Autowired
+    private FavoriteRepository favoriteRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileDeletionRepository fileDeletionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Cafeteria cafeteria;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        quiescePollers();
+        cafeteria = new Cafeteria();
+        cafeteria.setName("Batch Delete Cafeteria");
+        cafeteria = cafeteriaRepository.save(cafeteria);
+        user = new User();
+        user.setUsername("batch_delete_user");
+        user.setEmail("batch_delete_user@test.com");
+        user.setPassword("secret");
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resumePollers();
+        fileDeletionRepository.deleteAll();
+        cafeteriaRepository.delete(cafeteria);
+        userRepository.delete(user);
+    }
+
+    @Test
+    void deletesStallsWithDependentsInAFixedNumberOfStatements() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < STALLS; i++) {
+            ids.add(stallWithDependents(i).getId());
+        }
+        Stall kept = stallWithDependents(STALLS);
+        ids.add(-1L);
+
+        Counted<StallService.BatchDeleteResult> counted = countStatements(() -> stallService.deleteAllById(ids));
+        StallService.BatchDeleteResult result = counted.result();
+
+        assertThat(result.deletedIds()).hasSize(STALLS);
+        assertThat(result.missingIds()).containsExactly(-1L);
+        assertThat(result.deletedRows())
+                .containsEntry("stall", STALLS)
+                .containsEntry("review", STALLS)
+                .containsEntry("review_likes", STALLS)
+                .containsEntry("review_reports", STALLS)
+                .containsEntry("review_images", STALLS)
+                .containsEntry("images", STALLS)
+                .containsEntry("favorites", STALLS);
+        // 语句数与摊位数量无关
+        assertThat(counted.statements()).isLessThanOrEqualTo(15);
+
+        assertThat(stallRepository.findAllById(ids)).isEmpty();
+        assertThat(stallRepository.existsById(kept.getId())).isTrue();
+        assertThat(count("SELECT COUNT(*) FROM review WHERE user_id = ?")).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM review_likes WHERE user_id = ?")).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM review_reports WHERE reporter_id = ?")).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM favorites WHERE user_id = ?")).isEqualTo(1);
+        assertThat(imageRepository.findAll()).extracting(Image::getImageUrl)
+                .filteredOn(url -> url.startsWith("/uploads/images/photo-"))
+                .containsExactly("/uploads/images/photo-" + STALLS + ".jpg");
+        // 封面、图片和评价图片文件写入删除任务
+        assertThat(fileDeletionRepository.findAll()).extracting(FileDeletion::getUrl)
+                .contains("/uploads/images/cover-0.jpg", "/uploads/images/photo-0.jpg", "/uploads/images/review-0.jpg")
+                .doesNotContain("/uploads/images/cover-" + STALLS + ".jpg")
+                .hasSize(STALLS * 3);
+
+        stallService.deleteById(kept.getId());
+        assertThat(stallRepository.existsById(kept.getId())).isFalse();
+        assertThat(count("SELECT COUNT(*) FROM review WHERE user_id = ?")).isZero();
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class, user.getId());
+    }
+
+    private Stall stallWithDependents(int index) {
+        Stall stall = new Stall();
+        stall.setName("Batch Stall " + index);
+        stall.setCafeteria(cafeteria);
+        stall.setImageUrl("/uploads/images/cover-" + index + ".jpg");
+        stall = stallRepository.save(stall);
+
+        Review review = new Review();
+        review.setStall(stall);
+        review.setUser(user);
+        review.setRating(4.0);
+        review.setImageUrls(new ArrayList<>(List.of("/uploads/images/review-" + index + ".jpg")));
+        review = reviewRepository.save(review);
+
+        ReviewLike like = new ReviewLike();
+        like.setReview(review);
+        like.setUser(user);
+        reviewLikeRepository.save(like);
+
+        ReviewReport report = new ReviewReport();
+        report.setReview(review);
+        report.setReporter(user);
+        report.setReason(ReportReason.SPAM);
+        reviewReportRepository.save(report);
+
+        Favorite favorite = new Favorite();
+        favorite.setUser(user);
+        favorite.setStall(stall);
+        favoriteRepository.save(favorite);
+
+        Image image = new Image();
+        image.setImageUrl("/uploads/images/photo-" + index + ".jpg");
+        image.setStall(stall);
+        imageRepository.save(image);
+        return stall;
+    }
+}